@@ -0,0 +1,56 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The address value of the benchmarks which is mapped to a user type  
+ */
+class Address {
+    
+    @Field(name = "street")
+    private String street;
+    
+    @Field(name = "city")
+    private String city;
+    
+    @Field(name = "post_code")
+    private String postCode;
+    
+    
+    Address() {
+        
+    }
+    
+    Address(String street, String city, String postCode) {
+        this.street = street;
+        this.city = city;
+        this.postCode = postCode;
+    }
+    
+    String getStreet() {
+        return street;
+    }
+    
+    String getCity() {
+        return city;
+    }
+    
+    String getPostCode() {
+        return postCode;
+    }
+}
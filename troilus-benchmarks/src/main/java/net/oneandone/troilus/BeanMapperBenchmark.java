@@ -0,0 +1,100 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+
+
+/**
+ * Measures the mapping of an entity to the column values and vice versa by the 
+ * available field accessors
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BeanMapperBenchmark {
+    
+    @Param({ "METHOD_HANDLES", "REFLECTION" })
+    public String accessors;
+    
+    private BeanMapper beanMapper;
+    private Hotel hotel;
+    private ImmutableSet<String> columnNames;
+    private PropertiesSource source;
+    
+    
+    @Setup
+    public void setup() {
+        beanMapper = new BeanMapper(accessors.equals("REFLECTION") ? PropertyAccessorFactory.REFLECTION 
+                                                                   : PropertyAccessorFactory.METHOD_HANDLES);
+        hotel = new Hotel("BUP45544", "Corinthia Budapest", 5, "Superb hotel housed in a heritage building", new Address("Erzsebet korut 43", "Budapest", "1073"));
+        columnNames = ImmutableSet.copyOf(StubbedSession.COLUMNS);
+        source = new MapPropertiesSource(beanMapper.toValues(hotel, columnNames));
+    }
+    
+    
+    @Benchmark
+    public ImmutableMap<String, Optional<Object>> toValues() {
+        return beanMapper.toValues(hotel, columnNames);
+    }
+    
+    @Benchmark
+    public Hotel fromValues() {
+        return beanMapper.fromValues(Hotel.class, source, columnNames);
+    }
+    
+    
+    
+    private static final class MapPropertiesSource implements PropertiesSource {
+        private final ImmutableMap<String, Optional<Object>> values;
+        
+        MapPropertiesSource(ImmutableMap<String, Optional<Object>> values) {
+            this.values = values;
+        }
+        
+        @Override
+        public <T> Optional<T> read(String name, Class<?> clazz) {
+            return read(name, clazz, Object.class);
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T> Optional<T> read(String name, Class<?> clazz1, Class<?> clazz2) {
+            final Optional<Object> value = values.get(name);
+            return (value == null) ? Optional.<T>absent() : (Optional<T>) value;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The hotel entity of the benchmarks 
+ */
+class Hotel {
+    
+    @Field(name = "id")
+    private String id;
+    
+    @Field(name = "name")
+    private String name;
+    
+    @Field(name = "classification")
+    private Integer classification;
+    
+    @Field(name = "description")
+    private String description;
+    
+    @Field(name = "address")
+    private Address address;
+    
+    
+    Hotel() {
+        
+    }
+    
+    Hotel(String id, String name, Integer classification, String description, Address address) {
+        this.id = id;
+        this.name = name;
+        this.classification = classification;
+        this.description = description;
+        this.address = address;
+    }
+    
+    String getId() {
+        return id;
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    Integer getClassification() {
+        return classification;
+    }
+    
+    String getDescription() {
+        return description;
+    }
+    
+    Address getAddress() {
+        return address;
+    }
+}
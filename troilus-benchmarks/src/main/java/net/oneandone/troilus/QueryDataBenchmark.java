@@ -0,0 +1,98 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.TimeUnit;
+
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+import net.oneandone.troilus.java7.interceptor.WriteQueryData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datastax.driver.core.Statement;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+
+
+/**
+ * Measures the mapping of the query data to the (bound) statement. The statements 
+ * will be prepared on the first invocation   
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryDataBenchmark {
+    
+    private Context ctx;
+    private WriteQueryData insertData;
+    private WriteQueryData updateData;
+    private ReadQueryData singleReadData;
+    private ReadQueryData multiReadData;
+    
+    
+    @Setup
+    public void setup() {
+        final StubbedSession session = new StubbedSession();
+        final Tablename tablename = session.getTablename();
+        ctx = session.newContext();
+        
+        final Hotel hotel = new Hotel("BUP45544", "Corinthia Budapest", 5, "Superb hotel housed in a heritage building", new Address("Erzsebet korut 43", "Budapest", "1073"));
+        insertData = new WriteQueryDataImpl(tablename).valuesToMutate(ctx.getBeanMapper().toValues(hotel, ctx.getCatalog().getColumnNames(tablename)));
+        
+        updateData = new WriteQueryDataImpl(tablename).keys(ImmutableMap.<String, Object>of("id", "BUP45544"))
+                                                      .valuesToMutate(ImmutableMap.of("name", Optional.<Object>of("Corinthia Budapest"), 
+                                                                                      "classification", Optional.<Object>of(5)));
+
+        singleReadData = new ReadQueryDataImpl(tablename).keys(ImmutableMap.of("id", ImmutableList.<Object>of("BUP45544")));
+        
+        multiReadData = new ReadQueryDataImpl(tablename).keys(ImmutableMap.of("id", ImmutableList.<Object>of("BUP45544", "BUP14334", "BUP932432", "BUP231434")));
+    }
+    
+    
+    @Benchmark
+    public Statement insert() throws Exception {
+        return WriteQueryDataImpl.toStatementAsync(insertData, ctx.getExecutionSpec(), ctx.getUDTValueMapper(), ctx.getDefaultDbSession()).get();
+    }
+    
+    @Benchmark
+    public Statement update() throws Exception {
+        return WriteQueryDataImpl.toStatementAsync(updateData, ctx.getExecutionSpec(), ctx.getUDTValueMapper(), ctx.getDefaultDbSession()).get();
+    }
+    
+    @Benchmark
+    public Statement readWithKey() throws Exception {
+        return ReadQueryDataImpl.toStatementAsync(singleReadData, ctx.getUDTValueMapper(), ctx.getDefaultDbSession()).get();
+    }
+    
+    @Benchmark
+    public Statement readWithKeys() throws Exception {
+        return ReadQueryDataImpl.toStatementAsync(multiReadData, ctx.getUDTValueMapper(), ctx.getDefaultDbSession()).get();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.oneandone.troilus.java7.FetchingIterator;
+import net.oneandone.troilus.java7.Record;
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+
+
+/**
+ * Measures the creation of the records of a key-based read result (incl. the paranoia check)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecordBenchmark {
+    
+    @Param({ "1", "100" })
+    public int numRows;
+    
+    private Context ctx;
+    private ReadQueryData queryData;
+    private ResultSet resultSet;
+    
+    
+    @Setup
+    public void setup() {
+        final StubbedSession session = new StubbedSession();
+        ctx = session.newContext();
+        
+        final List<Object> keys = Lists.newArrayList();
+        final List<Row> rows = Lists.newArrayList();
+        for (int i = 0; i < numRows; i++) {
+            final String id = "BUP" + (45544 + i);
+            keys.add(id);
+            rows.add(session.newRow(id, "Corinthia Budapest", 5, "Superb hotel housed in a heritage building", null));
+        }
+        
+        queryData = new ReadQueryDataImpl(session.getTablename()).keys(ImmutableMap.of("id", ImmutableList.copyOf(keys)));
+        resultSet = StubbedSession.newResultSet(ImmutableList.copyOf(rows));
+    }
+    
+    
+    @Benchmark
+    public void records(Blackhole blackhole) {
+        final FetchingIterator<Record> records = new RecordListImpl(ctx, queryData, resultSet).iterator();
+        while (records.hasNext()) {
+            blackhole.consume(records.next());
+        }
+    }
+    
+    @Benchmark
+    public void recordValues(Blackhole blackhole) {
+        final FetchingIterator<Record> records = new RecordListImpl(ctx, queryData, resultSet).iterator();
+        while (records.hasNext()) {
+            final Record record = records.next();
+            blackhole.consume(record.getString("name"));
+            blackhole.consume(record.getInt("classification"));
+        }
+    }
+}
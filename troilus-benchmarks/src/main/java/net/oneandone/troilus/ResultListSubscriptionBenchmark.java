@@ -0,0 +1,169 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.oneandone.troilus.java7.FetchingIterator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.datastax.driver.core.ResultSet;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+
+
+/**
+ * Measures the throughput of a reactive subscription which emits fetched elements 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResultListSubscriptionBenchmark {
+    
+    @Param({ "1", "1000" })
+    public int numElements;
+    
+    private ImmutableList<Integer> elements;
+    private Executor executor;
+    
+    
+    @Setup
+    public void setup() {
+        final ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+        for (int i = 0; i < numElements; i++) {
+            builder.add(i);
+        }
+        elements = builder.build();
+        executor = new Context(new StubbedSession().getSession()).getTaskExecutor();
+    }
+    
+    
+    @Benchmark
+    public int subscription() throws Exception {
+        final CountingSubscriber subscriber = new CountingSubscriber();
+        new ResultListSubscription<>(subscriber, new FetchedIterator<>(elements), executor);
+        return subscriber.awaitCompletion();
+    }
+    
+    
+    
+    private static final class FetchedIterator<E> implements FetchingIterator<E> {
+        private final Iterator<E> iterator;
+        private int available;
+        
+        FetchedIterator(ImmutableList<E> elements) {
+            this.iterator = elements.iterator();
+            this.available = elements.size();
+        }
+        
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+        
+        @Override
+        public E next() {
+            available--;
+            return iterator.next();
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public int getAvailableWithoutFetching() {
+            return available;
+        }
+        
+        @Override
+        public boolean isFullyFetched() {
+            return true;
+        }
+        
+        @Override
+        public ListenableFuture<ResultSet> fetchMoreResultsAsync() {
+            return Futures.immediateFuture(null);
+        }
+    }
+    
+    
+    private static final class CountingSubscriber implements Subscriber<Integer> {
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final List<Throwable> errors = Lists.newCopyOnWriteArrayList();
+        private volatile int numReceived = 0;
+        
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+        
+        @Override
+        public void onNext(Integer element) {
+            numReceived++;   // the notifications are serialized
+        }
+        
+        @Override
+        public void onError(Throwable t) {
+            errors.add(t);
+            completed.countDown();
+        }
+        
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+        
+        int awaitCompletion() throws InterruptedException, TimeoutException {
+            if (!completed.await(30, TimeUnit.SECONDS)) {
+                throw new TimeoutException("subscription is not completed");
+            }
+            
+            if (!errors.isEmpty()) {
+                Throwables.throwIfUnchecked(errors.get(0));
+                throw new RuntimeException(errors.get(0));
+            }
+            
+            return numReceived;
+        }
+    }
+}
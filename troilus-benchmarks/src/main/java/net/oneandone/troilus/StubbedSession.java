@@ -0,0 +1,348 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.mockito.Matchers;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.UserType;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+
+
+
+/**
+ * Stubbed session which serves the hotels table of the benchmarks without a running database. 
+ * The cluster metadata is stubbed by mocks which will be called on setup only. The objects 
+ * which are called per operation (prepared statements, result sets and rows) are dynamic 
+ * proxies which do not record the invocations  
+ */
+final class StubbedSession {
+    
+    static final String KEYSPACE = "bench";
+    static final String TABLE = "hotels";
+    static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+    
+    static final ImmutableList<String> COLUMNS = ImmutableList.of("id", "name", "classification", "description", "address");
+    
+    private final UserType addressType;
+    private final ImmutableList<DataType> columnTypes;
+    private final Session session;
+
+    
+    StubbedSession() {
+        this.addressType = newUserType(KEYSPACE, "address", ImmutableMap.of("street", DataType.text(),
+                                                                             "city", DataType.text(),
+                                                                             "post_code", DataType.text()));
+        this.columnTypes = ImmutableList.of(DataType.text(), DataType.text(), DataType.cint(), DataType.text(), addressType);
+        
+        final List<ColumnMetadata> columns = Lists.newArrayList();
+        final TableMetadata tableMetadata = mock(TableMetadata.class);
+        for (int i = 0; i < COLUMNS.size(); i++) {
+            final ColumnMetadata column = mock(ColumnMetadata.class);
+            when(column.getName()).thenReturn(COLUMNS.get(i));
+            when(column.getType()).thenReturn(columnTypes.get(i));
+            when(tableMetadata.getColumn(COLUMNS.get(i))).thenReturn(column);
+            columns.add(column);
+        }
+        when(tableMetadata.getColumns()).thenReturn(columns);
+        when(tableMetadata.getPrimaryKey()).thenReturn(ImmutableList.of(columns.get(0)));
+        
+        final KeyspaceMetadata keyspaceMetadata = mock(KeyspaceMetadata.class);
+        when(keyspaceMetadata.getTable(TABLE)).thenReturn(tableMetadata);
+        when(keyspaceMetadata.getUserType("address")).thenReturn(addressType);
+        
+        final Metadata metadata = mock(Metadata.class);
+        when(metadata.getKeyspace(KEYSPACE)).thenReturn(keyspaceMetadata);
+        
+        final ProtocolOptions protocolOptions = mock(ProtocolOptions.class);
+        when(protocolOptions.getProtocolVersion()).thenReturn(PROTOCOL_VERSION);
+        final Configuration configuration = mock(Configuration.class);
+        when(configuration.getProtocolOptions()).thenReturn(protocolOptions);
+        
+        final Cluster cluster = mock(Cluster.class);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        
+        this.session = mock(Session.class);
+        when(session.getLoggedKeyspace()).thenReturn(KEYSPACE);
+        when(session.getCluster()).thenReturn(cluster);
+        when(session.prepareAsync(Matchers.any(RegularStatement.class))).thenReturn(Futures.immediateFuture(newPreparedStatement()));
+    }
+    
+    /**
+     * @return the stubbed session
+     */
+    Session getSession() {
+        return session;
+    }
+    
+    /**
+     * @return a new context on the top of the stubbed session
+     */
+    Context newContext() {
+        return new Context(session);
+    }
+    
+    /**
+     * @return the hotels table
+     */
+    Tablename getTablename() {
+        return Tablename.newTablename(KEYSPACE, TABLE);
+    }
+    
+    /**
+     * @return the address user type
+     */
+    UserType getAddressType() {
+        return addressType;
+    }
+    
+    
+    /**
+     * @param values  the column values in order of {@link #COLUMNS} 
+     * @return a new row
+     */
+    Row newRow(Object... values) {
+        final ByteBuffer[] serialized = new ByteBuffer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            serialized[i] = (values[i] == null) ? null : CodecRegistry.DEFAULT_INSTANCE.codecFor(columnTypes.get(i)).serialize(values[i], PROTOCOL_VERSION);
+        }
+        return newProxy(Row.class, new RowHandler(values, serialized));
+    }
+    
+    /**
+     * @param rows  the rows
+     * @return a new fully fetched result set
+     */
+    static ResultSet newResultSet(ImmutableList<Row> rows) {
+        return newProxy(ResultSet.class, new ResultSetHandler(rows));
+    }
+    
+    
+    private static PreparedStatement newPreparedStatement() {
+        final BoundStatement boundStatement = mock(BoundStatement.class);
+        
+        return newProxy(PreparedStatement.class, new StubHandler() {
+            
+            @Override
+            Object handle(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("bind")) {
+                    return boundStatement;
+                }
+                return defaultValue(method.getReturnType());
+            }
+        });
+    }
+    
+    
+    /**
+     * The user type can not be created by public driver API. The driver's constructor
+     * will be called by reflection
+     */
+    private static UserType newUserType(String keyspace, String typeName, ImmutableMap<String, DataType> fieldTypes) {
+        try {
+            final Constructor<UserType.Field> fieldConstructor = UserType.Field.class.getDeclaredConstructor(String.class, DataType.class);
+            fieldConstructor.setAccessible(true);
+            final List<UserType.Field> fields = Lists.newArrayList();
+            for (Entry<String, DataType> entry : fieldTypes.entrySet()) {
+                fields.add(fieldConstructor.newInstance(entry.getKey(), entry.getValue()));
+            }
+            
+            for (Constructor<?> constructor : UserType.class.getDeclaredConstructors()) {
+                final Class<?>[] parameterTypes = constructor.getParameterTypes();
+                final Object[] args = new Object[parameterTypes.length];
+                final List<String> names = Lists.newArrayList(keyspace, typeName);
+                
+                boolean isSupported = true;
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    if ((parameterTypes[i] == String.class) && !names.isEmpty()) {
+                        args[i] = names.remove(0);
+                    } else if (parameterTypes[i] == boolean.class) {
+                        args[i] = true;   // frozen
+                    } else if (parameterTypes[i].isAssignableFrom(List.class) && Collection.class.isAssignableFrom(parameterTypes[i])) {
+                        args[i] = fields;
+                    } else if (parameterTypes[i] == ProtocolVersion.class) {
+                        args[i] = PROTOCOL_VERSION;
+                    } else if (parameterTypes[i] == CodecRegistry.class) {
+                        args[i] = CodecRegistry.DEFAULT_INSTANCE;
+                    } else {
+                        isSupported = false;
+                    }
+                }
+                
+                if (isSupported && names.isEmpty()) {
+                    constructor.setAccessible(true);
+                    return (UserType) constructor.newInstance(args);
+                }
+            }
+            
+            throw new IllegalStateException("no supported constructor of " + UserType.class + " found");
+            
+        } catch (ReflectiveOperationException roe) {
+            throw new RuntimeException(roe);
+        }
+    }
+    
+    
+    @SuppressWarnings("unchecked")
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(StubbedSession.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+    
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type.isPrimitive() && (type != void.class)) {
+            throw new UnsupportedOperationException("unsupported return type " + type);
+        } else {
+            return null;
+        }
+    }
+    
+    
+    
+    /**
+     * handles the methods of the stubbed interface. The object methods are identity-based  
+     */
+    private static abstract class StubHandler implements InvocationHandler {
+        
+        @Override
+        public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "stubbed " + proxy.getClass().getInterfaces()[0].getSimpleName();
+                }
+            }
+            
+            return handle(proxy, method, args);
+        }
+        
+        abstract Object handle(Object proxy, Method method, Object[] args);
+    }
+    
+    
+    private static final class RowHandler extends StubHandler {
+        private final Object[] values;
+        private final ByteBuffer[] serialized;
+        
+        RowHandler(Object[] values, ByteBuffer[] serialized) {
+            this.values = values;
+            this.serialized = serialized;
+        }
+        
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) {
+            if ((args == null) || (args.length != 1)) {
+                return defaultValue(method.getReturnType());
+            }
+            
+            final int idx = (args[0] instanceof Integer) ? (Integer) args[0] : COLUMNS.indexOf(args[0]);
+            if (idx < 0) {
+                throw new IllegalArgumentException(args[0] + " is not a column");
+            }
+            
+            switch (method.getName()) {
+            case "isNull":
+                return values[idx] == null;
+                
+            case "getBytesUnsafe":
+                return (serialized[idx] == null) ? null : serialized[idx].duplicate();
+                
+            default:
+                return (values[idx] == null) ? defaultValue(method.getReturnType()) : values[idx];
+            }
+        }
+    }
+    
+    
+    private static final class ResultSetHandler extends StubHandler {
+        private final ImmutableList<Row> rows;
+        
+        ResultSetHandler(ImmutableList<Row> rows) {
+            this.rows = rows;
+        }
+        
+        @Override
+        Object handle(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+            case "iterator":
+                return rows.iterator();
+                
+            case "all":
+                return rows;
+                
+            case "getAvailableWithoutFetching":
+                return rows.size();
+                
+            case "isFullyFetched":
+            case "wasApplied":
+                return true;
+                
+            case "isExhausted":
+                return rows.isEmpty();
+
+            case "getAllExecutionInfo":
+                return ImmutableList.<ExecutionInfo>of();
+                
+            case "fetchMoreResults":
+                return Futures.immediateFuture(proxy);
+                
+            default:
+                return defaultValue(method.getReturnType());
+            }
+        }
+    }
+}
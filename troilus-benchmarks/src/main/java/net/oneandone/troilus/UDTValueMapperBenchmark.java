@@ -0,0 +1,81 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.datastax.driver.core.DataType;
+import com.google.common.collect.ImmutableSet;
+
+
+
+/**
+ * Measures the mapping of java values to udt values 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UDTValueMapperBenchmark {
+    
+    private Context ctx;
+    private Tablename tablename;
+    private DataType addressType;
+    private DataType addressSetType;
+    private Address address;
+    private ImmutableSet<Address> addresses;
+    
+    
+    @Setup
+    public void setup() {
+        final StubbedSession session = new StubbedSession();
+        ctx = session.newContext();
+        tablename = session.getTablename();
+        
+        // the encoders are cached per data type instance  
+        addressType = session.getAddressType();
+        addressSetType = DataType.set(addressType);
+        
+        address = new Address("Erzsebet korut 43", "Budapest", "1073");
+        addresses = ImmutableSet.of(address, 
+                                    new Address("Andrassy ut 25", "Budapest", "1061"), 
+                                    new Address("Vaci utca 20", "Budapest", "1052"));
+    }
+    
+    
+    @Benchmark
+    public Object toUdtValue() {
+        return ctx.getUDTValueMapper().toUdtValue(tablename, ctx.getCatalog(), addressType, address);
+    }
+    
+    @Benchmark
+    public Object toUdtValues() {
+        return ctx.getUDTValueMapper().toUdtValue(tablename, ctx.getCatalog(), addressSetType, addresses);
+    }
+}
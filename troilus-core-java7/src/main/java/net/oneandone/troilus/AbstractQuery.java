@@ -17,8 +17,12 @@ package net.oneandone.troilus;
 
 
 
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 
+import net.oneandone.troilus.MetricsRegistry.Operation;
+import net.oneandone.troilus.MetricsRegistry.Stage;
+
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.ExecutionInfo;
 import com.datastax.driver.core.ResultSet;
@@ -28,6 +32,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 
 /**
@@ -95,6 +100,21 @@ abstract class AbstractQuery<Q> {
         return newQuery(ctx.withoutTracking());
     }
     
+    /**
+     * @return a cloned query instance which records the timing breakdown of the execution 
+     *         (without activating server-side tracing)
+     */
+    public Q withStageTiming() {
+        return newQuery(ctx.withStageTiming());
+    }
+
+    /**
+     * @return a cloned query instance which does not record the timing breakdown of the execution 
+     */
+    public Q withoutStageTiming() {
+        return newQuery(ctx.withoutStageTiming());
+    }
+    
     /**
      * @param policy  the retry policy
      * @return a cloned query instance with the modified behavior
@@ -150,6 +170,30 @@ abstract class AbstractQuery<Q> {
         return ctx.getDefaultDbSession();
     }
     
+    /**
+     * @param result  the result of a query execution
+     * @return the db session which records to the timings of the given result, if available 
+     */
+    protected DBSession getExecutionDbSession(Result result) {
+        if (result.getTimings() instanceof QueryTimingsRecorder) {
+            return getDefaultDbSession().withTimingsRecorder((QueryTimingsRecorder) result.getTimings());
+        } else {
+            return getDefaultDbSession();
+        }
+    }
+    
+    /**
+     * @return the db session to execute the query with. If stage timing is activated, the returned 
+     *         session records the timings of this execution 
+     */
+    protected DBSession newExecutionDbSession() {
+        if (ctx.isStageTimingEnabled()) {
+            return getDefaultDbSession().withTimingsRecorder(new QueryTimingsRecorder());
+        } else {
+            return getDefaultDbSession();
+        }
+    }
+    
     protected MetadataCatalog getCatalog() {
         return ctx.getCatalog();
     }
@@ -177,50 +221,129 @@ abstract class AbstractQuery<Q> {
         return ctx.getBeanMapper();
     }
     
+    EntityRowMapper getEntityRowMapper() {
+        return ctx.getEntityRowMapper();
+    }
+    
     /**
+     * @param dbSession        the db session to use
+     * @param tablename        the tablename or null, if the statement may refer several tables (batches) 
+     * @param operation        the operation type of the statement 
      * @param statementFuture  the statement to perform in an async way
      * @return the result future 
      */
-    protected ListenableFuture<ResultSet> performAsync(final DBSession dbSession, ListenableFuture<Statement> statementFuture) {
+    protected ListenableFuture<ResultSet> performAsync(final DBSession dbSession, final Tablename tablename, final Operation operation, ListenableFuture<Statement> statementFuture) {
+        final long startNanos = System.nanoTime();
         
         Function<Statement, ListenableFuture<ResultSet>> statementToResultSetFuture = new Function<Statement, ListenableFuture<ResultSet>>() {
             @Override
             public ListenableFuture<ResultSet> apply(Statement statement) {
-                return performAsync(dbSession, statement);
+                applyExecutionSpec(getExecutionSpec(), statement);
+                return dbSession.recordStageTime(tablename, Stage.SERVER, System.nanoTime(), submitAsync(dbSession, tablename, operation, startNanos, statement));
             }
         };
         
         // use executor to avoid handling with database I/O thread, which could lead to blocking behavior
-        return ListenableFutures.transform(statementFuture, statementToResultSetFuture);  
+        return recordLatency(dbSession, tablename, operation, startNanos, null, ListenableFutures.transform(statementFuture, statementToResultSetFuture));  
     }
         
     
     /**
-     * @param statementFuture  the statement to perform in a sync way
+     * @param dbSession  the db session to use
+     * @param tablename  the tablename or null, if the statement may refer several tables (batches) 
+     * @param operation  the operation type of the statement 
+     * @param statement  the statement to perform
      * @return the result future 
      */
-    protected ListenableFuture<ResultSet> performAsync(DBSession dbSession, Statement statement) {
-        if (getExecutionSpec().getConsistencyLevel() != null) {
-            statement.setConsistencyLevel(getExecutionSpec().getConsistencyLevel());
+    protected ListenableFuture<ResultSet> performAsync(DBSession dbSession, Tablename tablename, Operation operation, Statement statement) {
+        applyExecutionSpec(getExecutionSpec(), statement);
+        return performAsIsAsync(dbSession, tablename, operation, statement);
+    }
+    
+    /**
+     * @param dbSession  the db session to use
+     * @param tablename  the tablename or null, if the statement may refer several tables (batches) 
+     * @param operation  the operation type of the statement 
+     * @param statement  the statement to perform. The execution spec of this query will not be applied 
+     * @return the result future 
+     */
+    protected ListenableFuture<ResultSet> performAsIsAsync(DBSession dbSession, Tablename tablename, Operation operation, Statement statement) {
+        final long startNanos = System.nanoTime();
+        
+        // the server stage starts with the query. The latency recorder records the server time as well 
+        return recordLatency(dbSession, tablename, operation, startNanos, Stage.SERVER, submitAsync(dbSession, tablename, operation, startNanos, statement));
+    }
+    
+    /**
+     * @param executionSpec  the execution spec 
+     * @param statement      the statement to configure
+     */
+    static void applyExecutionSpec(ExecutionSpec executionSpec, Statement statement) {
+        if (executionSpec.getConsistencyLevel() != null) {
+            statement.setConsistencyLevel(executionSpec.getConsistencyLevel());
         }
         
-        if (getExecutionSpec().getWritetime() != null) {
-            statement.setDefaultTimestamp(getExecutionSpec().getWritetime());
+        if (executionSpec.getWritetime() != null) {
+            statement.setDefaultTimestamp(executionSpec.getWritetime());
         }
 
-        if (getExecutionSpec().getRetryPolicy() != null) {
-            statement.setRetryPolicy(getExecutionSpec().getRetryPolicy());
+        if (executionSpec.getRetryPolicy() != null) {
+            statement.setRetryPolicy(executionSpec.getRetryPolicy());
         }
 
-        if (getExecutionSpec().getEnableTracing() != null) {
-            if (getExecutionSpec().getEnableTracing()) {
+        if (executionSpec.getEnableTracing() != null) {
+            if (executionSpec.getEnableTracing()) {
                 statement.enableTracing();
             } else {
                 statement.disableTracing(); 
             }
         }
+    }
+    
+    
+    private ListenableFuture<ResultSet> submitAsync(DBSession dbSession, Tablename tablename, Operation operation, long startNanos, Statement statement) {
+        // the query will be admitted by the concurrency limiter of the context 
+        final ListenableFuture<ResultSet> future = ctx.getConcurrencyLimiter().executeAsync(dbSession, tablename, operation, statement);
+        
+        final SlowQueryLog slowQueryLog = dbSession.getSlowQueryLog();
+        if (slowQueryLog != null) {
+            slowQueryLog.observe(tablename, operation, statement, startNanos, dbSession.getTimingsRecorder(), dbSession.getProtocolVersion(), dbSession.getCodecRegistry(), future);
+        }
         
-        return dbSession.executeAsync(statement);
+        return future;
+    }
+    
+    
+    private static ListenableFuture<ResultSet> recordLatency(final DBSession dbSession, 
+                                                             final Tablename tablename, 
+                                                             final Operation operation, 
+                                                             final long startNanos, 
+                                                             final Stage stage,
+                                                             final ListenableFuture<ResultSet> future) {
+        
+        // one listener per query records the latency and the stage time (if the stage starts with the query) 
+        final Runnable latencyRecorder = new Runnable() {
+            
+            @Override
+            public void run() {
+                if (stage != null) {
+                    dbSession.recordStageTime(tablename, stage, startNanos);
+                }
+                
+                boolean isSuccess;
+                try {
+                    future.get();
+                    isSuccess = true;
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    isSuccess = false;
+                }
+                
+                dbSession.recordLatency(tablename, operation, startNanos, isSuccess);
+            }
+        };
+        future.addListener(latencyRecorder, MoreExecutors.directExecutor());
+        
+        return future;
     }
     
     
@@ -229,16 +352,39 @@ abstract class AbstractQuery<Q> {
      * @return the new result 
      */
     Result newResult(ResultSet rs) {
-        return new ResultImpl(rs);
+        return new ResultImpl(rs, null);
+    }
+    
+    /**
+     * @param rs         the underlying result set
+     * @param dbSession  the db session the query has been executed with 
+     * @return the new result 
+     */
+    Result newResult(ResultSet rs, DBSession dbSession) {
+        return new ResultImpl(rs, stopTimings(dbSession));
+    }
+    
+    /**
+     * @param dbSession  the db session the query has been executed with
+     * @return the timings of the execution or null, if stage timing is not activated
+     */
+    static QueryTimings stopTimings(DBSession dbSession) {
+        final QueryTimingsRecorder timingsRecorder = dbSession.getTimingsRecorder();
+        if (timingsRecorder != null) {
+            timingsRecorder.stop();
+        }
+        return timingsRecorder;
     }
     
     
     
     private static class ResultImpl implements Result {
         private final ResultSet rs;
+        private final QueryTimings timings;
         
-        ResultImpl(ResultSet rs) {
+        ResultImpl(ResultSet rs, QueryTimings timings) {
             this.rs = rs;
+            this.timings = timings;
         }
         
         @Override
@@ -256,6 +402,11 @@ abstract class AbstractQuery<Q> {
             return ImmutableList.copyOf(rs.getAllExecutionInfo());
         }
         
+        @Override
+        public QueryTimings getTimings() {
+            return timings;
+        }
+        
         @Override
         public String toString() {
             StringBuilder builder = new StringBuilder(); 
@@ -275,6 +426,10 @@ abstract class AbstractQuery<Q> {
                     builder.append("\r\nevents:\r\n" + Joiner.on("\r\n").join(info.getQueryTrace().getEvents()));
                 }
             }
+            
+            if (timings != null) {
+                builder.append("\r\n" + timings);
+            }
             return builder.toString();
         }
     }    
@@ -19,14 +19,32 @@ package net.oneandone.troilus;
 
 
 
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import net.oneandone.troilus.DBSession.InvalidatedRows;
+import net.oneandone.troilus.MetricsRegistry.Operation;
 import net.oneandone.troilus.java7.BatchMutation;
 import net.oneandone.troilus.java7.Batchable;
 
+import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.BatchStatement.Type;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Statement;
 import com.google.common.base.Function;
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 
  
@@ -34,6 +52,15 @@ import com.google.common.util.concurrent.ListenableFuture;
  * Batch mutation query
  */
 class BatchMutationQuery extends MutationQuery<BatchMutation> implements BatchMutation {
+    
+    /**
+     * system property to overrule the max size (in kb) of the values of an unlogged batch. Larger unlogged
+     * batches will be split. The default is cassandra's batch_size_warn_threshold_in_kb  
+     */
+    static final String BATCH_SPLIT_THRESHOLD_KB_PROPERTY = "net.oneandone.troilus.batchSplitThresholdKb";
+    private static final int DEFAULT_BATCH_SPLIT_THRESHOLD_KB = 5;
+    private static final long BATCH_SPLIT_THRESHOLD_BYTES = Integer.getInteger(BATCH_SPLIT_THRESHOLD_KB_PROPERTY, DEFAULT_BATCH_SPLIT_THRESHOLD_KB) * 1024L;
+    
     private final ImmutableList<Batchable<?>> batchables;
     private final Type type;  
     
@@ -99,6 +126,16 @@ class BatchMutationQuery extends MutationQuery<BatchMutation> implements BatchMu
     }
 
 
+    @Override
+    Tablename getTablename() {
+        return null;
+    }
+    
+    @Override
+    Operation getOperation() {
+        return Operation.BATCH;
+    }
+    
     @Override
     public ListenableFuture<Statement> getStatementAsync(final DBSession dbSession) {
         
@@ -109,4 +146,229 @@ class BatchMutationQuery extends MutationQuery<BatchMutation> implements BatchMu
         };
         return mergeToBatch(type, batchables.iterator(), statementFetcher);
     }
+    
+    
+    @Override
+    public ListenableFuture<Result> executeAsync() {
+        final DBSession dbSession = newExecutionDbSession();
+        if (!dbSession.isRowCachingActivated()) {
+            return executeAsync(dbSession);
+        }
+        
+        // the batched mutations invalidate the cached rows, if their statements are built 
+        final InvalidatedRows invalidatedRows = new InvalidatedRows();
+        final ListenableFuture<Result> future = executeAsync(dbSession.withInvalidatedRows(invalidatedRows));
+        
+        // reads performed while the batch is in flight may have cached the old rows 
+        final Runnable cacheInvalidator = new Runnable() {
+            @Override
+            public void run() {
+                invalidatedRows.invalidateAgain(dbSession);
+            }
+        };
+        future.addListener(cacheInvalidator, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    @Override
+    protected ListenableFuture<Result> executeAsync(final DBSession dbSession) {
+        // logged batches are atomic and will never be split 
+        if (type == Type.LOGGED) {
+            return super.executeAsync(dbSession);
+        }
+        
+        Function<Batchable<?>, ListenableFuture<Statement>> statementFetcher = new Function<Batchable<?>, ListenableFuture<Statement>>() {
+            public ListenableFuture<Statement> apply(Batchable<?> batchable) {
+                return batchable.getStatementAsync(dbSession);
+            };
+        };
+        
+        Function<ImmutableList<Statement>, ListenableFuture<Result>> splittedExecutor = new Function<ImmutableList<Statement>, ListenableFuture<Result>>() {
+            public ListenableFuture<Result> apply(ImmutableList<Statement> statements) {
+                return executeSplittedAsync(dbSession, split(statements, dbSession.getProtocolVersion(), getUDTValueMapper().getCodecRegistry()));
+            };
+        };
+        return ListenableFutures.transform(resolveStatementsAsync(batchables.iterator(), statementFetcher), splittedExecutor);
+    }
+    
+    
+    private ListenableFuture<Result> executeSplittedAsync(final DBSession dbSession, ImmutableList<ImmutableList<Statement>> splittedStatements) {
+        ImmutableList.Builder<ListenableFuture<ResultSet>> resultSetFutures = ImmutableList.builder();
+        for (ImmutableList<Statement> statements : splittedStatements) {
+            resultSetFutures.add(performAsync(dbSession, null, Operation.BATCH, newBatchStatement(type, statements)));
+        }
+        
+        Function<ImmutableList<ResultSet>, Result> resultMerger = new Function<ImmutableList<ResultSet>, Result>() {
+            public Result apply(ImmutableList<ResultSet> resultSets) {
+                if (resultSets.size() == 1) {
+                    return newResult(resultSets.get(0), dbSession);
+                } else {
+                    ImmutableList.Builder<Result> results = ImmutableList.builder();
+                    for (ResultSet resultSet : resultSets) {
+                        results.add(newResult(resultSet, dbSession));
+                    }
+                    return new SplittedBatchResult(results.build());
+                }
+            };
+        };
+        return Futures.transform(ListenableFutures.allOf(resultSetFutures.build(), MoreExecutors.directExecutor()), resultMerger);
+    }
+    
+    
+    /**
+     * @param statements       the statements to split
+     * @param protocolVersion  the protocol version
+     * @param codecRegistry    the codec registry
+     * @return the statements splitted into chunks which do not exceed the batch split threshold. The statements 
+     *         of the same partition are kept together. Batches which contain conditional statements or which 
+     *         address a single partition only will not be split      
+     */
+    private static ImmutableList<ImmutableList<Statement>> split(ImmutableList<Statement> statements, ProtocolVersion protocolVersion, CodecRegistry codecRegistry) {
+        
+        // group the statements by partition 
+        final Map<ImmutableList<Object>, List<Statement>> partitions = Maps.newLinkedHashMap();
+        for (Statement statement : statements) {
+            if (Statements.isConditional(statement)) {
+                // a conditional batch has to be executed as a whole
+                return ImmutableList.of(statements);
+            }
+            
+            final String keyspacename = statement.getKeyspace();
+            final ByteBuffer routingKey = statement.getRoutingKey(protocolVersion, codecRegistry);
+            if ((keyspacename == null) || (routingKey == null)) {
+                // the partition is unknown
+                return ImmutableList.of(statements);
+            }
+            
+            final ImmutableList<Object> partitionKey = ImmutableList.<Object>of(keyspacename, routingKey);
+            List<Statement> partitionStatements = partitions.get(partitionKey);
+            if (partitionStatements == null) {
+                partitionStatements = Lists.newArrayList();
+                partitions.put(partitionKey, partitionStatements);
+            }
+            partitionStatements.add(statement);
+        }
+        
+        // a single partition batch is applied atomically and in isolation by cassandra  
+        if (partitions.size() < 2) {
+            return ImmutableList.of(statements);
+        }
+        
+        
+        ImmutableList.Builder<ImmutableList<Statement>> chunks = ImmutableList.builder();
+        
+        ImmutableList.Builder<Statement> chunk = ImmutableList.builder();
+        int chunkSize = 0;
+        long chunkBytes = 0;
+        for (List<Statement> partitionStatements : partitions.values()) {
+            long bytes = 0;
+            for (Statement statement : partitionStatements) {
+                bytes += estimateSize(statement, protocolVersion, codecRegistry);
+            }
+            
+            if ((chunkSize > 0) && ((chunkBytes + bytes) > BATCH_SPLIT_THRESHOLD_BYTES)) {
+                chunks.add(chunk.build());
+                chunk = ImmutableList.builder();
+                chunkSize = 0;
+                chunkBytes = 0;
+            }
+            
+            chunk.addAll(partitionStatements);
+            chunkSize += partitionStatements.size();
+            chunkBytes += bytes;
+        }
+        
+        if (chunkSize > 0) {
+            chunks.add(chunk.build());
+        }
+        return chunks.build();
+    }
+
+    
+    /**
+     * @param statement        the statement 
+     * @param protocolVersion  the protocol version 
+     * @param codecRegistry    the codec registry 
+     * @return the estimated mutation size of the statement. Like cassandra the values will be considered only 
+     */
+    private static long estimateSize(Statement statement, ProtocolVersion protocolVersion, CodecRegistry codecRegistry) {
+        long size = 0;
+        
+        if (statement instanceof BoundStatement) {
+            BoundStatement boundStatement = (BoundStatement) statement;
+            for (int i = 0; i < boundStatement.preparedStatement().getVariables().size(); i++) {
+                ByteBuffer value = boundStatement.getBytesUnsafe(i);
+                if (value != null) {
+                    size += value.remaining();
+                }
+            }
+            
+        } else if (statement instanceof BatchStatement) {
+            for (Statement childStatement : ((BatchStatement) statement).getStatements()) {
+                size += estimateSize(childStatement, protocolVersion, codecRegistry);
+            }
+            
+        } else if (statement instanceof RegularStatement) {
+            RegularStatement regularStatement = (RegularStatement) statement;
+            ByteBuffer[] values = regularStatement.getValues(protocolVersion, codecRegistry);
+            if (values == null) {
+                // values are inlined
+                size += regularStatement.getQueryString().length();
+            } else {
+                for (ByteBuffer value : values) {
+                    if (value != null) {
+                        size += value.remaining();
+                    }
+                }
+            }
+        }
+        
+        return size;
+    }
+    
+    
+    
+    private static final class SplittedBatchResult implements Result {
+        private final ImmutableList<Result> results;
+        
+        SplittedBatchResult(ImmutableList<Result> results) {
+            this.results = results;
+        }
+        
+        @Override
+        public boolean wasApplied() {
+            for (Result result : results) {
+                if (!result.wasApplied()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public ExecutionInfo getExecutionInfo() {
+            return results.get(results.size() - 1).getExecutionInfo();
+        }
+        
+        @Override
+        public ImmutableList<ExecutionInfo> getAllExecutionInfo() {
+            ImmutableList.Builder<ExecutionInfo> infos = ImmutableList.builder();
+            for (Result result : results) {
+                infos.addAll(result.getAllExecutionInfo());
+            }
+            return infos.build();
+        }
+        
+        @Override
+        public QueryTimings getTimings() {
+            // the chunks are executed within the same query execution
+            return results.get(0).getTimings();
+        }
+        
+        @Override
+        public String toString() {
+            return Joiner.on("\r\n").join(results);
+        }
+    }
 }
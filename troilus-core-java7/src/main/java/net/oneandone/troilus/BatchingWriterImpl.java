@@ -0,0 +1,347 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.oneandone.troilus.DBSession.InvalidatedRows;
+import net.oneandone.troilus.MetricsRegistry.Operation;
+import net.oneandone.troilus.java7.Batchable;
+import net.oneandone.troilus.java7.BatchingWriter;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BatchStatement.Type;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+
+/**
+ * Batching writer implementation. The mutations are grouped by consistency level, keyspace and routing key. 
+ * Mutations without routing key, mutations which are batches by their own and mutations which require 
+ * a dedicated execution (conditional writes, tracing or an explicit writetime) will be executed as they are.  
+ * The execution spec of each mutation is applied to its statement   
+ */
+class BatchingWriterImpl extends AbstractQuery<BatchingWriterImpl> implements BatchingWriter {
+    
+    private final long maxDelayMillis;
+    private final int maxBatchSize;
+    private final int maxInFlight;
+    private final int maxQueueSize;
+    
+    private final Object lock = new Object();
+    private final Map<ImmutableList<Object>, List<PendingWrite>> pendingBatches = Maps.newHashMap();
+    private final Deque<List<PendingWrite>> readyBatches = new ArrayDeque<>();
+    private int numInFlight = 0;
+    
+    
+    /**
+     * @param ctx             the context
+     * @param maxDelayMillis  the max time a mutation waits for further mutations of the same partition
+     * @param maxBatchSize    the max number of mutations per batch
+     * @param maxInFlight     the max number of concurrently executed batches 
+     * @param maxQueueSize    the max number of ready batches waiting for execution. Further batches will be rejected  
+     */
+    BatchingWriterImpl(Context ctx, long maxDelayMillis, int maxBatchSize, int maxInFlight, int maxQueueSize) {
+        super(ctx);
+        
+        if ((maxDelayMillis < 0) || (maxBatchSize < 1) || (maxInFlight < 1) || (maxQueueSize < 0)) {
+            throw new IllegalArgumentException("max delay and max queue size must not be negative. Max batch size and max in flight must be at least 1");
+        }
+        
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxBatchSize = maxBatchSize;
+        this.maxInFlight = maxInFlight;
+        this.maxQueueSize = maxQueueSize;
+    }
+    
+    @Override
+    protected BatchingWriterImpl newQuery(Context newContext) {
+        return new BatchingWriterImpl(newContext, maxDelayMillis, maxBatchSize, maxInFlight, maxQueueSize);
+    }
+    
+    
+    @Override
+    public ListenableFuture<Result> writeAsync(Batchable<?> mutation) {
+        return writeAsync(mutation, (mutation instanceof AbstractQuery) ? ((AbstractQuery<?>) mutation).getExecutionSpec() : null);
+    }
+    
+    /**
+     * @param mutation               the mutation to write
+     * @param mutationExecutionSpec  the execution spec of the mutation or null to use the one of the writer
+     * @return the result future of the mutation
+     */
+    ListenableFuture<Result> writeAsync(Batchable<?> mutation, ExecutionSpec mutationExecutionSpec) {
+        final SettableFuture<Result> resultFuture = SettableFuture.create();
+        
+        final ListenableFuture<Statement> statementFuture;
+        final DBSession dbSession = getDefaultDbSession();
+        if (dbSession.isRowCachingActivated()) {
+            // the mutation invalidates the cached rows, if its statement is built 
+            final InvalidatedRows invalidatedRows = new InvalidatedRows();
+            statementFuture = mutation.getStatementAsync(dbSession.withInvalidatedRows(invalidatedRows));
+            
+            // reads performed while the batch is in flight may have cached the old rows 
+            final Runnable cacheInvalidator = new Runnable() {
+                @Override
+                public void run() {
+                    invalidatedRows.invalidateAgain(dbSession);
+                }
+            };
+            resultFuture.addListener(cacheInvalidator, MoreExecutors.directExecutor());
+            
+        } else {
+            statementFuture = mutation.getStatementAsync(dbSession);
+        }
+        
+        // the consistency level, writetime and tracing setting of the mutation have to be kept 
+        final ExecutionSpec executionSpec = (mutationExecutionSpec == null) ? getExecutionSpec() : mutationExecutionSpec; 
+        
+        final Runnable statementHandler = new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    final Statement statement = statementFuture.get();
+                    applyExecutionSpec(executionSpec, statement);
+                    add(new PendingWrite(statement, resultFuture));
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    resultFuture.setException(ListenableFutures.unwrapIfNecessary(e));
+                }
+            }
+        };
+        statementFuture.addListener(statementHandler, MoreExecutors.directExecutor());
+        
+        return resultFuture;
+    }
+    
+    
+    @Override
+    public void flush() {
+        final List<List<PendingWrite>> batches;
+        synchronized (lock) {
+            batches = Lists.newArrayList(pendingBatches.values());
+            pendingBatches.clear();
+        }
+        
+        for (List<PendingWrite> batch : batches) {
+            submit(batch);
+        }
+    }
+    
+    
+    private void add(PendingWrite write) {
+        final ImmutableList<Object> batchKey = getBatchKey(write.getStatement());
+        if (batchKey == null) {
+            submit(ImmutableList.of(write));
+            return;
+        }
+        
+        List<PendingWrite> fullBatch = null;
+        synchronized (lock) {
+            List<PendingWrite> batch = pendingBatches.get(batchKey);
+            if (batch == null) {
+                batch = Lists.newArrayList();
+                pendingBatches.put(batchKey, batch);
+                scheduleFlush(batchKey, batch);
+            }
+            batch.add(write);
+            
+            if (batch.size() >= maxBatchSize) {
+                pendingBatches.remove(batchKey);
+                fullBatch = batch;
+            }
+        }
+        
+        if (fullBatch != null) {
+            submit(fullBatch);
+        }
+    }
+    
+    
+    private ImmutableList<Object> getBatchKey(Statement statement) {
+        // batches will not be merged. This would drop the write ahead log of logged batches   
+        if (statement instanceof BatchStatement) {
+            return null;
+        }
+        
+        // the result of a conditional write is specific to the write. Tracing and the writetime apply to the whole batch 
+        if (Statements.isConditional(statement) || statement.isTracing() || (statement.getDefaultTimestamp() != Long.MIN_VALUE)) {
+            return null;
+        }
+        
+        final String keyspacename = statement.getKeyspace();
+        final ByteBuffer routingKey = statement.getRoutingKey(getDefaultDbSession().getProtocolVersion(), getDefaultDbSession().getCodecRegistry());
+        if ((keyspacename == null) || (routingKey == null)) {
+            return null;
+        }
+        
+        // the consistency level applies to the whole batch 
+        return ImmutableList.<Object>of(String.valueOf(statement.getConsistencyLevel()), keyspacename, routingKey);
+    }
+    
+    
+    private void scheduleFlush(final ImmutableList<Object> batchKey, final List<PendingWrite> batch) {
+        final Runnable delayedFlush = new Runnable() {
+            
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    // batch already executed? 
+                    if (pendingBatches.get(batchKey) != batch) {
+                        return;
+                    }
+                    pendingBatches.remove(batchKey);
+                }
+                
+                submit(batch);
+            }
+        };
+        
+        SharedScheduler.INSTANCE.schedule(delayedFlush, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    
+    private void submit(List<PendingWrite> batch) {
+        final int queueDepth;
+        synchronized (lock) {
+            if (numInFlight < maxInFlight) {
+                numInFlight++;
+                queueDepth = -1;
+                
+            } else if (readyBatches.size() < maxQueueSize) {
+                readyBatches.addLast(batch);
+                return;
+                
+            } else {
+                queueDepth = readyBatches.size();
+            }
+        }
+        
+        if (queueDepth < 0) {
+            execute(batch);
+        } else {
+            final RejectedExecutionException error = new RejectedExecutionException("max in flight " + maxInFlight + " exceeded (queue depth " + queueDepth + ")");
+            for (PendingWrite write : batch) {
+                write.getResultFuture().setException(error);
+            }
+        }
+    }
+    
+    
+    private void execute(final List<PendingWrite> batch) {
+        final Statement statement;
+        if (batch.size() == 1) {
+            statement = batch.get(0).getStatement();
+        } else {
+            final BatchStatement batchStatement = new BatchStatement(Type.UNLOGGED);
+            
+            // the writes of a batch share the consistency level 
+            final ConsistencyLevel consistencyLevel = batch.get(0).getStatement().getConsistencyLevel();
+            if (consistencyLevel != null) {
+                batchStatement.setConsistencyLevel(consistencyLevel);
+            }
+            
+            for (PendingWrite write : batch) {
+                batchStatement.add(write.getStatement());
+            }
+            statement = batchStatement;
+        }
+        
+        
+        ListenableFuture<ResultSet> resultSetFuture;
+        try {
+            // the statements have been configured by the execution spec of the mutations 
+            resultSetFuture = performAsIsAsync(getDefaultDbSession(), null, Operation.BATCH, statement);
+        } catch (RuntimeException rt) {
+            resultSetFuture = Futures.immediateFailedFuture(rt);
+        }
+        
+        final ListenableFuture<ResultSet> future = resultSetFuture;
+        final Runnable resultHandler = new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    final Result result = newResult(future.get());
+                    for (PendingWrite write : batch) {
+                        write.getResultFuture().set(result);
+                    }
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    final RuntimeException error = ListenableFutures.unwrapIfNecessary(e);
+                    for (PendingWrite write : batch) {
+                        write.getResultFuture().setException(error);
+                    }
+                }
+                
+                onExecuted();
+            }
+        };
+        
+        // running result handler within dedicated threads!
+        future.addListener(resultHandler, getExecutor());
+    }
+    
+    
+    private void onExecuted() {
+        final List<PendingWrite> nextBatch;
+        synchronized (lock) {
+            nextBatch = readyBatches.pollFirst();
+            if (nextBatch == null) {
+                numInFlight--;
+            }
+        }
+        
+        if (nextBatch != null) {
+            execute(nextBatch);
+        }
+    }
+    
+    
+    
+    private static final class PendingWrite {
+        private final Statement statement;
+        private final SettableFuture<Result> resultFuture;
+        
+        PendingWrite(Statement statement, SettableFuture<Result> resultFuture) {
+            this.statement = statement;
+            this.resultFuture = resultFuture;
+        }
+        
+        Statement getStatement() {
+            return statement;
+        }
+        
+        SettableFuture<Result> getResultFuture() {
+            return resultFuture;
+        }
+    }
+}
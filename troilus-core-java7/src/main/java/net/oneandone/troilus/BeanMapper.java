@@ -18,22 +18,25 @@ package net.oneandone.troilus;
 
 
 import java.lang.annotation.Annotation;
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
-import java.security.AccessController;
-import java.security.PrivilegedAction;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.common.base.Optional;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -41,7 +44,11 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 
 /**
@@ -49,16 +56,42 @@ import com.google.common.collect.Maps;
  */
 class BeanMapper {
     
-    private final LoadingCache<Class<?>, PropertiesMapper> propertiesMapperCache = CacheBuilder.newBuilder()
-                                                                                               .build(new PropertiesMapperLoader());
+    private static final Logger LOG = LoggerFactory.getLogger(BeanMapper.class);
+    
+    // generated entity mappers registered as service provider, per class loader 
+    private static final LoadingCache<ClassLoader, ImmutableMap<Class<?>, EntityMapper<?>>> ENTITY_MAPPERS = CacheBuilder.newBuilder()
+                                                                                                                         .weakKeys()
+                                                                                                                         .build(new EntityMappersLoader());
+    
+    private final LoadingCache<Class<?>, PropertiesMapper> propertiesMapperCache;
+    
+    
+    /**
+     * constructor
+     */
+    BeanMapper() {
+        this(PropertyAccessorFactory.METHOD_HANDLES);
+    }
+    
+    /**
+     * @param accessorFactory the factory to create the field accessors and bean instantiators
+     */
+    BeanMapper(PropertyAccessorFactory accessorFactory) {
+        this.propertiesMapperCache = CacheBuilder.newBuilder()
+                                                 .build(new PropertiesMapperLoader(accessorFactory));
+    }
     
     
     private static final class PropertiesMapper {
         private final Class<?> clazz;
+        private final PropertyAccessorFactory accessorFactory;
         private final ImmutableMap<String, PropertyWriter> propertyWriters;
         private final ImmutableMap<String, PropertyReader> propertyReaders;
+        
+        // will be resolved on the first fromValues call. Beans which are written only do not require a no-args constructor  
+        private volatile PropertyAccessorFactory.Instantiator<?> instantiator;
            
-        public PropertiesMapper(ImmutableMap<String, PropertyReader> propertyReaders,  ImmutableMap<String, PropertyWriter> propertyWriters, Class<?> clazz) {
+        public PropertiesMapper(ImmutableMap<String, PropertyReader> propertyReaders,  ImmutableMap<String, PropertyWriter> propertyWriters, Class<?> clazz, PropertyAccessorFactory accessorFactory) {
             // Safety check up front for invalid classes that cannot be instantiated
         	// during property mapping
             
@@ -74,7 +107,7 @@ class BeanMapper {
         	this.propertyReaders = propertyReaders;
             this.propertyWriters = propertyWriters;
         	this.clazz = clazz;
-            
+        	this.accessorFactory = accessorFactory;
         }
      
         private Class<?> getConcreteClass() {
@@ -82,84 +115,69 @@ class BeanMapper {
         }
       
         public ImmutableMap<String, Optional<Object>> toValues(Object entity, ImmutableSet<String> namesToMap) {
-            final Map<String, Optional<Object>> values = Maps.newHashMap();
+            // the property names are unique, so the values can be collected without an intermediate map
+            final ImmutableMap.Builder<String, Optional<Object>> values = ImmutableMap.builder();
             
             for (Entry<String, PropertyReader> entry : propertyReaders.entrySet()) {
                 if (namesToMap.isEmpty() || namesToMap.contains(entry.getKey())) {
-                    Map.Entry<String, Optional<Object>> pair = entry.getValue().readProperty(entity);
-                    values.put(pair.getKey(), pair.getValue());
+                    values.put(entry.getKey(), entry.getValue().readProperty(entity));
                 }
             }
 
-            return ImmutableMap.copyOf(values);
+            return values.build();
         }
 
         
-        @SuppressWarnings("unchecked")
         public <T> T fromValues(PropertiesSource datasource, ImmutableSet<String> namesToMap) {
-            try {
-                final T bean = newInstance((Constructor<T>) getConcreteClass().getDeclaredConstructor());
-            	
-            	// This blows on java.util.List, ImmutableList, etc.
-            	// Basically, anything that is not a concrete class with an empty constructor
-                //T bean = newInstance((Constructor<T>) clazz.getDeclaredConstructor());
-                
-                for (Entry<String, PropertyWriter> entry : propertyWriters.entrySet()) {
-                    if (namesToMap.isEmpty() || namesToMap.contains(entry.getKey())) {
-                        entry.getValue().writeProperty(bean, datasource);
-                    }
+            final T bean = newInstance();
+            
+            for (Entry<String, PropertyWriter> entry : propertyWriters.entrySet()) {
+                if (namesToMap.isEmpty() || namesToMap.contains(entry.getKey())) {
+                    entry.getValue().writeProperty(bean, datasource);
                 }
-                    
-                return bean;
-            } catch (ReflectiveOperationException e) {
-                throw new RuntimeException(e);
             }
+                
+            return bean;
         }
         
         
-        private <T> T newInstance(final Constructor<T> constructor) {
-            try {
-                return (T) constructor.newInstance();
-            } catch (ReflectiveOperationException e) {
-                AccessController.doPrivileged(new SetConstructorAccessible<>(constructor));
-
-                try {
-                    return (T) constructor.newInstance();
-                } catch (ReflectiveOperationException e2) {
-                    throw new RuntimeException(e);
-                }
-            }
+        public ImmutableSet<String> getPropertyNames() {
+            return propertyWriters.keySet();
         }
-    }
-    
-    
-    private static final class SetConstructorAccessible<T> implements PrivilegedAction<Object> {
-        private final Constructor<T> constructor;
         
-        public SetConstructorAccessible(Constructor<T> constructor) {
-            this.constructor = constructor;
+        public PropertyWriter getPropertyWriter(String name) {
+            return propertyWriters.get(name);
         }
         
-        @Override
-        public Object run() {
-            constructor.setAccessible(true);
-            return null;
+        public ImmutableSet<String> getReadablePropertyNames() {
+            return propertyReaders.keySet();
         }
-    }
-    
-    private static final class SetFieldAccessible implements PrivilegedAction<Object> {
-        private final Field field;
         
-        public SetFieldAccessible(Field field) {
-            this.field = field;
+        public PropertyReader getPropertyReader(String name) {
+            return propertyReaders.get(name);
         }
         
-        @Override
-        public Object run() {
-            field.setAccessible(true);
-            return null;
+        @SuppressWarnings("unchecked")
+        public <T> T newInstance() {
+            return (T) getInstantiator().newInstance();
+        }
+        
+        private PropertyAccessorFactory.Instantiator<?> getInstantiator() {
+            PropertyAccessorFactory.Instantiator<?> inst = instantiator;
+            if (inst == null) {
+                // This blows on java.util.List, ImmutableList, etc.
+                // Basically, anything that is not a concrete class with an empty constructor
+                try {
+                    inst = accessorFactory.newInstantiator(getConcreteClass());
+                } catch (NoSuchMethodException e) {
+                    throw new RuntimeException(e);
+                }
+                instantiator = inst;
+            }
+            
+            return inst;
         }
-    }  
+    }
 
     /**
      * @param entity       the entity to map
@@ -180,6 +198,109 @@ class BeanMapper {
         return getPropertiesMapper(clazz).fromValues(datasource, propertyNames);
     }
     
+    /**
+     * @param clazz  the object type
+     * @return the names of the properties which can be written 
+     */
+    ImmutableSet<String> getPropertyNames(Class<?> clazz) {
+        return getPropertiesMapper(clazz).getPropertyNames();
+    }
+    
+    /**
+     * @param clazz  the object type
+     * @return the names of the properties which can be read 
+     */
+    ImmutableSet<String> getReadablePropertyNames(Class<?> clazz) {
+        return getPropertiesMapper(clazz).getReadablePropertyNames();
+    }
+    
+    /**
+     * @param clazz  the object type
+     * @param names  the names of the properties to read. The index of the name is the property index of the reader   
+     * @return the reader to read the properties by index
+     */
+    IndexedReader newIndexedReader(Class<?> clazz, ImmutableList<String> names) {
+        return new IndexedReader(getPropertiesMapper(clazz), names);
+    }
+    
+    /**
+     * @param clazz          the object type
+     * @param sourceIndexes  the index of the source value per property name. Properties which are not included will not be written  
+     * @return the mapper to create object instances based on indexed data sources
+     */
+    <T> IndexedMapper<T> newIndexedMapper(Class<T> clazz, ImmutableMap<String, Integer> sourceIndexes) {
+        return new IndexedMapper<>(getPropertiesMapper(clazz), sourceIndexes);
+    }
+    
+    
+    /**
+     * Reads the properties of an object by index. The property to index binding is resolved once 
+     */
+    static final class IndexedReader {
+        private final PropertyReader[] propertyReaders;
+        
+        private IndexedReader(PropertiesMapper propertiesMapper, ImmutableList<String> names) {
+            this.propertyReaders = new PropertyReader[names.size()];
+            for (int i = 0; i < names.size(); i++) {
+                propertyReaders[i] = propertiesMapper.getPropertyReader(names.get(i));
+                if (propertyReaders[i] == null) {
+                    throw new IllegalArgumentException("property " + names.get(i) + " is not supported");
+                }
+            }
+        }
+        
+        /**
+         * @param entity  the entity to read
+         * @param idx     the property index
+         * @return the property value
+         */
+        Optional<Object> read(Object entity, int idx) {
+            return propertyReaders[idx].readProperty(entity);
+        }
+    }
+    
+    
+    /**
+     * Maps indexed data sources to object instances. The property to index binding is resolved once  
+     * @param <T> the object type
+     */
+    static final class IndexedMapper<T> {
+        private final PropertiesMapper propertiesMapper;
+        private final PropertyWriter[] propertyWriters;
+        private final int[] sourceIndexes;
+        
+        private IndexedMapper(PropertiesMapper propertiesMapper, ImmutableMap<String, Integer> sourceIndexes) {
+            this.propertiesMapper = propertiesMapper;
+            
+            final List<PropertyWriter> writers = Lists.newArrayList();
+            final List<Integer> indexes = Lists.newArrayList();
+            for (Entry<String, Integer> entry : sourceIndexes.entrySet()) {
+                final PropertyWriter writer = propertiesMapper.getPropertyWriter(entry.getKey());
+                if (writer != null) {
+                    writers.add(writer);
+                    indexes.add(entry.getValue());
+                }
+            }
+            
+            this.propertyWriters = writers.toArray(new PropertyWriter[writers.size()]);
+            this.sourceIndexes = Ints.toArray(indexes);
+        }
+        
+        /**
+         * @param datasource the data source to fetch the property values
+         * @return the object instance
+         */
+        T fromValues(IndexedPropertiesSource datasource) {
+            final T bean = propertiesMapper.newInstance();
+            
+            for (int i = 0; i < propertyWriters.length; i++) {
+                propertyWriters[i].writeProperty(bean, datasource, sourceIndexes[i]);
+            }
+            
+            return bean;
+        }
+    }
+    
 
     private PropertiesMapper getPropertiesMapper(Class<?> clazz) {
         try {
@@ -191,9 +312,18 @@ class BeanMapper {
     
         
     private static final class PropertiesMapperLoader extends CacheLoader<Class<?>, PropertiesMapper> {
+        private final PropertyAccessorFactory accessorFactory;
+        
+        public PropertiesMapperLoader(PropertyAccessorFactory accessorFactory) {
+            this.accessorFactory = accessorFactory;
+        }
 
         @Override
         public PropertiesMapper load(Class<?> clazz) throws Exception {
+            final EntityMapper<?> entityMapper = getEntityMapper(clazz);
+            if (entityMapper != null) {
+                return loadGenerated(clazz, entityMapper);
+            }
 
         	// readers
             final Map<String, PropertyReader> propertyReaders = Maps.newHashMap();
@@ -203,10 +333,41 @@ class BeanMapper {
             final Map<String, PropertyWriter> propertyWriters = Maps.newHashMap();
             propertyWriters.putAll( loadPropertyWriters(clazz));
         	
-            return new PropertiesMapper(ImmutableMap.copyOf(propertyReaders), ImmutableMap.copyOf(propertyWriters), clazz);
+            return new PropertiesMapper(ImmutableMap.copyOf(propertyReaders), ImmutableMap.copyOf(propertyWriters), clazz, accessorFactory);
+        }
+        
+        private PropertiesMapper loadGenerated(Class<?> clazz, EntityMapper<?> entityMapper) throws NoSuchFieldException {
+            final PropertyAccessorFactory.EntityMapperAccessorFactory entityMapperAccessorFactory = new PropertyAccessorFactory.EntityMapperAccessorFactory(entityMapper, accessorFactory);
+            
+            final Map<String, PropertyReader> propertyReaders = Maps.newHashMap();
+            final Map<String, PropertyWriter> propertyWriters = Maps.newHashMap();
+            
+            // the type information is provided by the generated mapper. The fields will not be looked up 
+            for (int idx = 0; idx < entityMapper.getPropertyCount(); idx++) {
+                final String name = entityMapper.getPropertyName(idx);
+                final Class<?> type = entityMapper.getPropertyType(idx);
+                final Class<?>[] typeArguments = entityMapper.getPropertyTypeArguments(idx);
+                final PropertyAccessorFactory.FieldAccessor accessor = entityMapperAccessorFactory.newPropertyAccessor(idx);
+                
+                propertyReaders.put(name, new PropertyReader(name, type, accessor));
+                propertyWriters.put(name, new PropertyWriter(name, type, typeArguments, accessor));
+            }
+
+            return new PropertiesMapper(ImmutableMap.copyOf(propertyReaders), ImmutableMap.copyOf(propertyWriters), clazz, entityMapperAccessorFactory);
+        }
+        
+        private static EntityMapper<?> getEntityMapper(Class<?> clazz) {
+            final ClassLoader classLoader = (clazz.getClassLoader() == null) ? ClassLoader.getSystemClassLoader() : clazz.getClassLoader();
+            try {
+                return ENTITY_MAPPERS.getUnchecked(classLoader).get(clazz);
+            } catch (UncheckedExecutionException | ExecutionError e) {
+                // broken service registration -> the entity will be mapped by reflection
+                LOG.warn("could not load generated entity mappers. Using reflection based mapping for " + clazz.getName(), e.getCause());
+                return null;
+            }
         }
      
-        private static Map<String, PropertyReader> loadPropertyReaders(Class<?> clazz) {
+        private Map<String, PropertyReader> loadPropertyReaders(Class<?> clazz) {
             final Map<String, PropertyReader> fieldMap = new HashMap<String, PropertyReader>();
             Class<?> fieldsFromClass = clazz;
     		while(fieldsFromClass != null) {
@@ -225,7 +386,7 @@ class BeanMapper {
     		return fieldMap;
         }
         
-		private static Map<String, PropertyWriter> loadPropertyWriters(Class<?> clazz) {
+		private Map<String, PropertyWriter> loadPropertyWriters(Class<?> clazz) {
 		    final Map<String, PropertyWriter> fieldMap = new HashMap<String, PropertyWriter>();
         	Class<?> fieldsFromClass = clazz;
         	
@@ -248,13 +409,13 @@ class BeanMapper {
         }
 		
         
-        private static ImmutableMap<String, PropertyReader> fetchFieldReaders(ImmutableSet<Field> beanFields) {
+        private ImmutableMap<String, PropertyReader> fetchFieldReaders(ImmutableSet<Field> beanFields) {
             final Map<String, PropertyReader> propertyReaders = Maps.newHashMap();
             
             for (Field beanField : beanFields) {
                 final net.oneandone.troilus.Field field = beanField.getAnnotation(net.oneandone.troilus.Field.class);
                 if (field != null) {
-                    propertyReaders.put(field.name(), new PropertyReader(field.name(), beanField));
+                    propertyReaders.put(field.name(), new PropertyReader(field.name(), beanField, accessorFactory));
                 }
             }
             
@@ -262,7 +423,7 @@ class BeanMapper {
         }
         
         
-        private static ImmutableMap<String, PropertyReader> fetchJEEFieldReaders(ImmutableSet<Field> beanFields) {
+        private ImmutableMap<String, PropertyReader> fetchJEEFieldReaders(ImmutableSet<Field> beanFields) {
             final Map<String, PropertyReader> propertyReaders = Maps.newHashMap();
             
             for (Field beanField : beanFields) {
@@ -274,7 +435,7 @@ class BeanMapper {
                                 try {
                                     final String columnName = (String) attributeMethod.invoke(annotation);
                                     if (columnName != null) {
-                                        propertyReaders.put(columnName, new PropertyReader(columnName, beanField));
+                                        propertyReaders.put(columnName, new PropertyReader(columnName, beanField, accessorFactory));
                                     }
                                     break;
 
@@ -289,7 +450,7 @@ class BeanMapper {
         }
         
 
-        private static ImmutableMap<String, PropertyReader> fetchCassandraMapperFieldReaders(ImmutableSet<java.lang.reflect.Field> beanFields) {
+        private ImmutableMap<String, PropertyReader> fetchCassandraMapperFieldReaders(ImmutableSet<java.lang.reflect.Field> beanFields) {
             final Map<String, PropertyReader> propertyReaders = Maps.newHashMap();
             
             for (Field beanField : beanFields) {
@@ -301,7 +462,7 @@ class BeanMapper {
                                 try {
                                     final String columnName = (String) attributeMethod.invoke(annotation);
                                     if (columnName != null) {
-                                        propertyReaders.put(columnName, new PropertyReader(columnName, beanField));
+                                        propertyReaders.put(columnName, new PropertyReader(columnName, beanField, accessorFactory));
                                     }
                                     break;
 
@@ -317,14 +478,14 @@ class BeanMapper {
         }
         
    
-        private static Map<String, PropertyWriter> fetchFieldWriters(ImmutableSet<Field> beanFields) {
+        private Map<String, PropertyWriter> fetchFieldWriters(ImmutableSet<Field> beanFields) {
             final Map<String, PropertyWriter> propertyWriters = Maps.newHashMap();
             
             for (Field beanField : beanFields) {
                 
                 final net.oneandone.troilus.Field field = beanField.getAnnotation(net.oneandone.troilus.Field.class);
                 if (field != null) {
-                    propertyWriters.put(field.name(), new PropertyWriter(field.name(), beanField));
+                    propertyWriters.put(field.name(), new PropertyWriter(field.name(), beanField, accessorFactory));
                 }
             }
             
@@ -332,7 +493,7 @@ class BeanMapper {
         }
         
         
-        private static Map<String, PropertyWriter> fetchJEEFieldWriters(ImmutableSet<Field> beanFields) {
+        private Map<String, PropertyWriter> fetchJEEFieldWriters(ImmutableSet<Field> beanFields) {
             final Map<String, PropertyWriter> propertyWriters = Maps.newHashMap();
             
             for (Field beanField : beanFields) {
@@ -343,7 +504,7 @@ class BeanMapper {
                             if (attributeMethod.getName().equalsIgnoreCase("name")) {
                                 try {
                                     String columnName = (String) attributeMethod.invoke(annotation);
-                                    propertyWriters.put(columnName, new PropertyWriter(columnName, beanField));
+                                    propertyWriters.put(columnName, new PropertyWriter(columnName, beanField, accessorFactory));
                                 } catch (ReflectiveOperationException ignore) { }
                             }
                         }
@@ -356,7 +517,7 @@ class BeanMapper {
 
         
                 
-        private static Map<String, PropertyWriter> fetchCassandraMapperFieldWriters(ImmutableSet<Field> beanFields) {
+        private Map<String, PropertyWriter> fetchCassandraMapperFieldWriters(ImmutableSet<Field> beanFields) {
             final Map<String, PropertyWriter> propertyWriters = Maps.newHashMap();
 
             for (Field beanField : beanFields) {
@@ -367,7 +528,7 @@ class BeanMapper {
                             if (attributeMethod.getName().equalsIgnoreCase("name")) {
                                 try {
                                     String columnName = (String) attributeMethod.invoke(annotation);
-                                    propertyWriters.put(columnName, new PropertyWriter(columnName, beanField));
+                                    propertyWriters.put(columnName, new PropertyWriter(columnName, beanField, accessorFactory));
                                 } catch (ReflectiveOperationException ignore) { }
                             }
                         }
@@ -380,24 +541,49 @@ class BeanMapper {
     }    
     
 
+    private static final class EntityMappersLoader extends CacheLoader<ClassLoader, ImmutableMap<Class<?>, EntityMapper<?>>> {
+        
+        @Override
+        public ImmutableMap<Class<?>, EntityMapper<?>> load(ClassLoader classLoader) throws Exception {
+            final Map<Class<?>, EntityMapper<?>> entityMappers = Maps.newHashMap();
+            
+            @SuppressWarnings("rawtypes")
+            final Iterator<EntityMapper> it = ServiceLoader.load(EntityMapper.class, classLoader).iterator();
+            while (true) {
+                try {
+                    if (!it.hasNext()) {
+                        break;
+                    }
+                    final EntityMapper<?> entityMapper = it.next();
+                    entityMappers.put(entityMapper.getEntityClass(), entityMapper);
+                    
+                } catch (ServiceConfigurationError sce) {
+                    // e.g. a stale registration of a removed entity. The other mappers will be used anyway 
+                    LOG.warn("ignoring entity mapper registration", sce);
+                }
+            }
+            
+            return ImmutableMap.copyOf(entityMappers);
+        }
+    }
+    
+
     private static class PropertyReader {
         
-        private final String fieldName;
-        private final java.lang.reflect.Field field;
+        private final PropertyAccessorFactory.FieldAccessor accessor;
         private final OptionalWrapper optionalWrapper;
         
-        public PropertyReader(String fieldName, java.lang.reflect.Field field) {
-            this.fieldName = fieldName;
-
-            this.field = field;
-            AccessController.doPrivileged(new SetFieldAccessible(field));
+        public PropertyReader(String fieldName, java.lang.reflect.Field field, PropertyAccessorFactory accessorFactory) {
+            this(fieldName, field.getType(), accessorFactory.newFieldAccessor(field));
+        }
+        
+        public PropertyReader(String fieldName, Class<?> type, PropertyAccessorFactory.FieldAccessor accessor) {
+            this.accessor = accessor;
             
-            if (Optional.class.isAssignableFrom(field.getType())) {
+            if (Optional.class.isAssignableFrom(type)) {
                 this.optionalWrapper = new GuavaOptionalWrapper();
                 
-            } else if (field.getType().getName().equals("java.util.Optional")) {
-                getActualTypeArgument(field.getType(), 0);
-
+            } else if (type.getName().equals("java.util.Optional")) {
                 this.optionalWrapper = new JavaOptionalWrapper();
                 
             } else {
@@ -406,14 +592,8 @@ class BeanMapper {
         }
         
         
-        public Entry<String, Optional<Object>> readProperty(Object bean) {
-            
-            Object value = null;
-            try {
-                value = field.get(bean);
-            } catch (IllegalArgumentException | IllegalAccessException e) { }
-            
-            return  Maps.immutableEntry(fieldName, optionalWrapper.wrap(value));
+        public Optional<Object> readProperty(Object bean) {
+            return optionalWrapper.wrap(accessor.get(bean));
         }
 
         
@@ -471,38 +651,51 @@ class BeanMapper {
     
 
     
-    private static Type getActualTypeArgument(Type type, int argIndex) {
+    private static Type[] getActualTypeArguments(Type type) {
         if (type instanceof ParameterizedType) {
-            final ParameterizedType paramizedType = (ParameterizedType) type;
-            final Type[] types = paramizedType.getActualTypeArguments();
-            if ((types != null) && (types.length > argIndex)) {
-                return types[argIndex];
+            final Type[] types = ((ParameterizedType) type).getActualTypeArguments();
+            if (types != null) {
+                return types;
             }
         }
         
-        return Object.class;
+        return new Type[0];
+    }
+    
+    private static Type getTypeArgument(Type[] typeArguments, int argIndex) {
+        return (typeArguments.length > argIndex) ? typeArguments[argIndex] : Object.class;
     }
     
     
     private static class PropertyWriter {
         
         private final String fieldName;
-        private final java.lang.reflect.Field field;
+        private final Class<?> type;
+        private final PropertyAccessorFactory.FieldAccessor accessor;
         private final OptionalWrapper optionalWrapper;
         
         private Class<?> javaOptionalClass;
         
-        public PropertyWriter(String fieldName, java.lang.reflect.Field field) {
+        // the type information required to read the value is resolved once 
+        private final ValueKind valueKind;
+        private final Type elementType1;
+        private final Type elementType2;
+        
+        public PropertyWriter(String fieldName, java.lang.reflect.Field field, PropertyAccessorFactory accessorFactory) {
+            this(fieldName, field.getType(), getActualTypeArguments(field.getGenericType()), accessorFactory.newFieldAccessor(field));
+        }
+        
+        public PropertyWriter(String fieldName, Class<?> type, Type[] typeArguments, PropertyAccessorFactory.FieldAccessor accessor) {
             this.fieldName = fieldName;
 
-            this.field = field;
-            AccessController.doPrivileged(new SetFieldAccessible(field));
+            this.type = type;
+            this.accessor = accessor;
 
             
-            if (Optional.class.isAssignableFrom(field.getType())) {
+            if (Optional.class.isAssignableFrom(type)) {
                 this.optionalWrapper = new GuavaOptionalWrapper();
                 
-           } else if (field.getType().getName().equals("java.util.Optional")) {
+           } else if (type.getName().equals("java.util.Optional")) {
                 this.optionalWrapper = new JavaOptionalWrapper();
 
             } else {
@@ -516,56 +709,106 @@ class BeanMapper {
             } catch (ClassNotFoundException | RuntimeException e) { }
             
             javaOptionalClass = cl;
+            
+            
+            if (isOptional(type)) {
+                this.valueKind = ValueKind.VALUE;
+                this.elementType1 = getTypeArgument(typeArguments, 0);
+                this.elementType2 = null;
+                
+            } else if (Set.class.isAssignableFrom(type)) {
+                this.valueKind = ValueKind.SET;
+                this.elementType1 = getTypeArgument(typeArguments, 0);
+                this.elementType2 = null;
+                
+            } else if (List.class.isAssignableFrom(type)) {
+                this.valueKind = ValueKind.LIST;
+                this.elementType1 = getTypeArgument(typeArguments, 0);
+                this.elementType2 = null;
+
+            } else if (Map.class.isAssignableFrom(type)) {
+                this.valueKind = ValueKind.MAP;
+                this.elementType1 = getTypeArgument(typeArguments, 0);
+                this.elementType2 = getTypeArgument(typeArguments, 1);
+                
+            } else {
+                this.valueKind = ValueKind.VALUE;
+                this.elementType1 = type;
+                this.elementType2 = null;
+            }
         }
 
         
         void writeProperty(Object bean, PropertiesSource datasource) {
-            
-            final Optional<Object> optionalValue = readValue(field.getType(), datasource);
+            writeValue(bean, readValue(datasource));
+        }
 
+        void writeProperty(Object bean, IndexedPropertiesSource datasource, int idx) {
+            writeValue(bean, readValue(datasource, idx));
+        }
+
+        private void writeValue(Object bean, Optional<Object> optionalValue) {
             if (optionalValue == null) {
                 return;
             }
             
             try {
-                field.set(bean, optionalWrapper.unwrap(optionalValue));
-            } catch (IllegalArgumentException | IllegalAccessException e) {
+                accessor.set(bean, optionalWrapper.unwrap(optionalValue));
+            } catch (RuntimeException e) {
                 e.printStackTrace();
             }
         }
       
         
-        @SuppressWarnings({ "unchecked", "rawtypes" })
-        private Optional<Object> readValue(Class<?> clazz, PropertiesSource datasource) {
-            Optional<Object> value = Optional.absent();
-            Type type = field.getGenericType();
-            
-            if (isOptional(clazz)) {
-                type = getActualTypeArgument(type, 0);
+        @SuppressWarnings("unchecked")
+        private Optional<Object> readValue(PropertiesSource datasource) {
+            switch (valueKind) {
+            case SET:
+            case LIST:
+                return toImmutable(datasource.read(fieldName, type, (Class<Object>) elementType1));
+            
+            case MAP:
+                return toImmutable(datasource.read(fieldName, (Class<Object>) elementType1, (Class<Object>) elementType2));
+                
+            default:
+                return datasource.read(fieldName, (Class<Object>) elementType1);
             }
+        }
+        
+        @SuppressWarnings("unchecked")
+        private Optional<Object> readValue(IndexedPropertiesSource datasource, int idx) {
+            switch (valueKind) {
+            case SET:
+            case LIST:
+                return toImmutable(datasource.read(idx, type, (Class<Object>) elementType1));
+            
+            case MAP:
+                return toImmutable(datasource.read(idx, (Class<Object>) elementType1, (Class<Object>) elementType2));
                 
-            if (Set.class.isAssignableFrom(clazz)) {
-                value = datasource.read(fieldName, clazz, (Class<Object>) getActualTypeArgument(type, 0));
-                if (value.isPresent()) {
-                    return Optional.<Object>of(ImmutableSet.copyOf((Collection) value.get()));
-                }
+            default:
+                return datasource.read(idx, (Class<Object>) elementType1);
+            }
+        }
+        
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private Optional<Object> toImmutable(Optional<Object> value) {
+            if (!value.isPresent()) {
+                return value;
+            }
+            
+            switch (valueKind) {
+            case SET:
+                return Optional.<Object>of(ImmutableSet.copyOf((Collection) value.get()));
 
-            } else if (List.class.isAssignableFrom(clazz)) {
-                value =  datasource.read(fieldName, clazz, (Class<Object>) getActualTypeArgument(type, 0));
-                if (value.isPresent()) {
-                    return Optional.<Object>of(ImmutableList.copyOf((Collection) value.get()));
-                }
-            } else if (Map.class.isAssignableFrom(clazz)) {
-                value = datasource.read(fieldName, (Class<Object>) getActualTypeArgument(type, 0), (Class<Object>) getActualTypeArgument(field.getGenericType(), 1));
-                if (value.isPresent()) {
-                    return Optional.<Object>of(ImmutableMap.copyOf((Map) value.get()));
-                }
+            case LIST:
+                return Optional.<Object>of(ImmutableList.copyOf((Collection) value.get()));
 
-            } else {
-                value = datasource.read(fieldName, (Class<Object>) type);
+            case MAP:
+                return Optional.<Object>of(ImmutableMap.copyOf((Map) value.get()));
+                
+            default:
+                return value;
             }
-            
-            return value;
         }
         
         
@@ -574,6 +817,9 @@ class BeanMapper {
         }
         
         
+        private static enum ValueKind { VALUE, SET, LIST, MAP }
+        
+        
         private static interface OptionalWrapper {
             
             Object unwrap(Optional<Object> obj);
@@ -0,0 +1,523 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.oneandone.troilus.MetricsRegistry.Operation;
+import net.oneandone.troilus.MetricsRegistry.Stage;
+import net.oneandone.troilus.java7.BulkWrite;
+import net.oneandone.troilus.java7.BulkWriteProgressListener;
+import net.oneandone.troilus.java7.interceptor.CascadeOnWriteInterceptor;
+import net.oneandone.troilus.java7.interceptor.WriteQueryData;
+import net.oneandone.troilus.java7.interceptor.WriteQueryRequestInterceptor;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.datastax.driver.core.querybuilder.BuiltStatement;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+
+/**
+ * Bulk write implementation. The entities are written by insert statements of the same shape. The 
+ * insert statement is prepared once per entity class and the values are bound by a preallocated 
+ * bind array without passing the write interceptor chain. If write interceptors are registered, the 
+ * entities are written by regular insert queries        
+ */
+class BulkWriteQuery extends AbstractQuery<BulkWriteQuery> implements BulkWrite {
+    
+    private static final int DEFAULT_MAX_IN_FLIGHT = 128;
+    private static final int DEFAULT_MAX_RETRIES = 3;
+    
+    private final Tablename tablename;
+    private final Iterator<?> entities;
+    private final Publisher<?> publisher;
+    private final int maxInFlight;
+    private final int maxRetries;
+    private final long reportInterval;
+    private final BulkWriteProgressListener progressListener;
+
+    
+    /**
+     * @param ctx        the context
+     * @param tablename  the tablename
+     * @param entities   the entities to write
+     */
+    BulkWriteQuery(Context ctx, Tablename tablename, Iterator<?> entities) {
+        this(ctx, tablename, entities, null, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_RETRIES, 0, null);
+    }
+    
+    /**
+     * @param ctx        the context
+     * @param tablename  the tablename
+     * @param publisher  the publisher of the entities to write
+     */
+    BulkWriteQuery(Context ctx, Tablename tablename, Publisher<?> publisher) {
+        this(ctx, tablename, null, publisher, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_RETRIES, 0, null);
+    }
+    
+    private BulkWriteQuery(Context ctx, 
+                           Tablename tablename, 
+                           Iterator<?> entities, 
+                           Publisher<?> publisher, 
+                           int maxInFlight, 
+                           int maxRetries, 
+                           long reportInterval, 
+                           BulkWriteProgressListener progressListener) {
+        super(ctx);
+        this.tablename = tablename;
+        this.entities = entities;
+        this.publisher = publisher;
+        this.maxInFlight = maxInFlight;
+        this.maxRetries = maxRetries;
+        this.reportInterval = reportInterval;
+        this.progressListener = progressListener;
+    }
+
+    
+    ////////////////////
+    // factory methods
+    
+    @Override
+    protected BulkWriteQuery newQuery(Context newContext) {
+        return new BulkWriteQuery(newContext, tablename, entities, publisher, maxInFlight, maxRetries, reportInterval, progressListener);
+    }
+    
+    //
+    ////////////////////
+    
+    
+    @Override
+    public BulkWriteQuery withMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("max in flight must be at least 1");
+        }
+        return new BulkWriteQuery(getContext(), tablename, entities, publisher, maxInFlight, maxRetries, reportInterval, progressListener);
+    }
+    
+    @Override
+    public BulkWriteQuery withMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("max retries must not be negative");
+        }
+        return new BulkWriteQuery(getContext(), tablename, entities, publisher, maxInFlight, maxRetries, reportInterval, progressListener);
+    }
+    
+    @Override
+    public BulkWriteQuery withProgressListener(long reportInterval, BulkWriteProgressListener listener) {
+        if (reportInterval < 1) {
+            throw new IllegalArgumentException("report interval must be at least 1");
+        }
+        return new BulkWriteQuery(getContext(), tablename, entities, publisher, maxInFlight, maxRetries, reportInterval, listener);
+    }
+    
+    
+    @Override
+    public BulkWriteReport execute() {
+        return ListenableFutures.getUninterruptibly(executeAsync());
+    }
+    
+    @Override
+    public ListenableFuture<BulkWriteReport> executeAsync() {
+        final BulkWriteExecution execution = new BulkWriteExecution();
+        if (publisher == null) {
+            execution.start(entities);
+        } else {
+            execution.start(publisher);
+        }
+        
+        return execution.getReportFuture();
+    }
+    
+    
+    
+    /**
+     * the state of a running bulk write. The entities are mapped and bound by one thread at the same 
+     * time only (iterator drain loop or the serialized onNext calls of the publisher) 
+     */
+    private final class BulkWriteExecution {
+        private final SettableFuture<BulkWriteReport> reportFuture = SettableFuture.create();
+        private final long startMillis = System.currentTimeMillis();
+        private final AtomicLong numWritten = new AtomicLong();
+        private final AtomicLong numRetries = new AtomicLong();
+        private final AtomicInteger numInFlight = new AtomicInteger();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Map<Class<?>, InsertTemplate> templates = Maps.newHashMap();
+        private final boolean isInterceptorChainRequired;
+        
+        private volatile boolean isSourceCompleted = false;
+        private volatile Iterator<?> iterator;
+        private volatile Subscription subscription;
+        
+        
+        BulkWriteExecution() {
+            this.isInterceptorChainRequired = !getInterceptorRegistry().getInterceptors(WriteQueryRequestInterceptor.class).isEmpty() ||
+                                              !getInterceptorRegistry().getInterceptors(CascadeOnWriteInterceptor.class).isEmpty();
+        }
+        
+        ListenableFuture<BulkWriteReport> getReportFuture() {
+            return reportFuture;
+        }
+        
+        
+        void start(Iterator<?> entities) {
+            this.iterator = entities;
+            
+            // running the drain loop within dedicated threads!
+            getExecutor().execute(new Runnable() {
+                
+                @Override
+                public void run() {
+                    drain();
+                }
+            });
+        }
+        
+        void start(Publisher<?> publisher) {
+            publisher.subscribe(new Subscriber<Object>() {
+                
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    BulkWriteExecution.this.subscription = subscription;
+                    subscription.request(maxInFlight);
+                }
+                
+                @Override
+                public void onNext(Object entity) {
+                    try {
+                        write(entity);
+                    } catch (RuntimeException rt) {
+                        fail(rt);
+                    }
+                }
+                
+                @Override
+                public void onError(Throwable t) {
+                    fail(t);
+                }
+                
+                @Override
+                public void onComplete() {
+                    isSourceCompleted = true;
+                    completeIfDone();
+                }
+            });
+        }
+        
+        
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            
+            do {
+                try {
+                    while (!reportFuture.isDone() && (numInFlight.get() < maxInFlight) && iterator.hasNext()) {
+                        write(iterator.next());
+                    }
+                    
+                    if (!reportFuture.isDone() && !iterator.hasNext()) {
+                        isSourceCompleted = true;
+                        completeIfDone();
+                    }
+                } catch (RuntimeException rt) {
+                    fail(rt);
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+        
+        
+        private void write(Object entity) {
+            final DBSession dbSession = getDefaultDbSession();
+            final boolean isRowCachingActivated = dbSession.isRowCachingActivated();
+            
+            final ImmutableMap<String, Object> rowKeys;
+            final ListenableFuture<Statement> statementFuture;
+            if (isInterceptorChainRequired) {
+                // the insert query invalidates the cached rows by itself, if the statement is built  
+                final ImmutableMap<String, Optional<Object>> values = getBeanMapper().toValues(entity, getCatalog().getColumnNames(tablename));
+                rowKeys = isRowCachingActivated ? toRowKeys(values) : null;
+                statementFuture = new InsertQuery(getContext(), new WriteQueryDataImpl(tablename).valuesToMutate(values)).getStatementAsync(dbSession);
+                
+            } else {
+                InsertTemplate template = templates.get(entity.getClass());
+                if (template == null) {
+                    template = new InsertTemplate(entity.getClass());
+                    templates.put(entity.getClass(), template);
+                }
+                
+                rowKeys = isRowCachingActivated ? template.getRowKeys(entity) : null;
+                if (rowKeys != null) {
+                    dbSession.invalidateCachedRows(tablename, rowKeys);
+                }
+                statementFuture = template.bind(entity);
+            }
+            
+            numInFlight.incrementAndGet();
+            execute(statementFuture, rowKeys, 0);
+        }
+        
+        
+        private ImmutableMap<String, Object> toRowKeys(ImmutableMap<String, Optional<Object>> values) {
+            final Map<String, Object> keys = Maps.newHashMap();
+            for (Map.Entry<String, Optional<Object>> entry : values.entrySet()) {
+                if (entry.getValue().isPresent()) {
+                    keys.put(entry.getKey(), entry.getValue().get());
+                }
+            }
+            return ImmutableMap.copyOf(keys);
+        }
+        
+        
+        private void execute(final ListenableFuture<Statement> statementFuture, final ImmutableMap<String, Object> rowKeys, final int attempt) {
+            final ListenableFuture<ResultSet> future = performAsync(getDefaultDbSession(), tablename, Operation.WRITE, statementFuture);
+            
+            final Runnable resultHandler = new Runnable() {
+                
+                @Override
+                public void run() {
+                    // reads performed while the write is in flight may have cached the old row 
+                    if (rowKeys != null) {
+                        getDefaultDbSession().invalidateCachedRows(tablename, rowKeys);
+                    }
+                    
+                    try {
+                        future.get();
+                        onWritten();
+                        
+                    } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                        final RuntimeException error = ListenableFutures.unwrapIfNecessary(e);
+                        if (isTimeout(error) && (attempt < maxRetries) && !reportFuture.isDone()) {
+                            numRetries.incrementAndGet();
+                            execute(statementFuture, rowKeys, attempt + 1);
+                        } else {
+                            fail(error);
+                        }
+                    }
+                }
+            };
+            
+            // running result handler within dedicated threads!
+            future.addListener(resultHandler, getExecutor());
+        }
+        
+        
+        private boolean isTimeout(Throwable error) {
+            return (error instanceof WriteTimeoutException) || (error instanceof OperationTimedOutException);
+        }
+        
+        
+        private void onWritten() {
+            final long written = numWritten.incrementAndGet();
+            numInFlight.decrementAndGet();
+            
+            if ((progressListener != null) && ((written % reportInterval) == 0)) {
+                progressListener.onProgress(newReport());
+            }
+            
+            if (subscription == null) {
+                drain();
+            } else if (!reportFuture.isDone()) {
+                subscription.request(1);
+            }
+            
+            completeIfDone();
+        }
+        
+        
+        private void completeIfDone() {
+            if (isSourceCompleted && (numInFlight.get() == 0)) {
+                reportFuture.set(newReport());
+            }
+        }
+        
+        
+        private void fail(Throwable t) {
+            if (reportFuture.setException(ListenableFutures.unwrapIfNecessary(t)) && (subscription != null)) {
+                subscription.cancel();
+            }
+        }
+        
+        
+        private BulkWriteReport newReport() {
+            return new BulkWriteReportImpl(numWritten.get(), numRetries.get(), System.currentTimeMillis() - startMillis);
+        }
+    }
+    
+    
+    
+    /**
+     * insert statement template per entity class. The property to column binding is resolved once and
+     * the bind array is reused for each entity  
+     */
+    private final class InsertTemplate {
+        private final BeanMapper.IndexedReader reader;
+        private final ColumnPlan columnPlan;
+        private final ImmutableList<String> names;
+        private final int[] columnIndexes;
+        private final Object[] values;
+        private final ListenableFuture<PreparedStatement> preparedStatementFuture;
+        
+        InsertTemplate(Class<?> clazz) {
+            final ImmutableSet<String> columnNames = getCatalog().getColumnNames(tablename);
+            
+            // same order as the bean mapper's toValues(...) to share the statement shape with regular entity writes  
+            final ImmutableList.Builder<String> namesBuilder = ImmutableList.builder();
+            for (String name : getBeanMapper().getReadablePropertyNames(clazz)) {
+                if (columnNames.contains(name)) {
+                    namesBuilder.add(name);
+                }
+            }
+            this.names = namesBuilder.build();
+            
+            this.reader = getBeanMapper().newIndexedReader(clazz, names);
+            this.columnPlan = getCatalog().getColumnPlan(tablename);
+            this.columnIndexes = new int[names.size()];
+            for (int i = 0; i < names.size(); i++) {
+                columnIndexes[i] = columnPlan.indexOf(names.get(i));
+            }
+            
+            final boolean isTtlPresent = (getExecutionSpec().getTtl() != null);
+            this.values = new Object[names.size() + (isTtlPresent ? 1 : 0)];
+            if (isTtlPresent) {
+                values[names.size()] = (Integer) getExecutionSpec().getTtl();
+            }
+            
+            final Map<String, Optional<Object>> columns = Maps.newLinkedHashMap();
+            for (String name : names) {
+                columns.put(name, Optional.<Object>absent());
+            }
+            final WriteQueryData data = new WriteQueryDataImpl(tablename).valuesToMutate(ImmutableMap.copyOf(columns));
+            
+            final Supplier<BuiltStatement> insertFactory = new Supplier<BuiltStatement>() {
+                
+                @Override
+                public BuiltStatement get() {
+                    return WriteQueryDataImpl.newInsert(data, getExecutionSpec());
+                }
+            };
+            
+            final StatementShape shape = StatementShape.of(tablename, "INSERT", names, false, null, isTtlPresent);
+            this.preparedStatementFuture = getDefaultDbSession().prepareAsync(shape, insertFactory);
+        }
+        
+        
+        /**
+         * @param entity  the entity 
+         * @return the primary key values of the entity's row
+         */
+        ImmutableMap<String, Object> getRowKeys(Object entity) {
+            final Map<String, Object> keys = Maps.newHashMap();
+            for (int i = 0; i < columnIndexes.length; i++) {
+                if (columnPlan.isPrimaryKey(columnIndexes[i])) {
+                    final Optional<Object> value = reader.read(entity, i);
+                    if (value.isPresent()) {
+                        keys.put(names.get(i), value.get());
+                    }
+                }
+            }
+            return ImmutableMap.copyOf(keys);
+        }
+        
+        ListenableFuture<Statement> bind(Object entity) {
+            final long startNanos = System.nanoTime();
+            for (int i = 0; i < columnIndexes.length; i++) {
+                values[i] = getUDTValueMapper().toStatementValue(columnPlan, columnIndexes[i], reader.read(entity, i).orNull());
+            }
+            getDefaultDbSession().recordStageTime(tablename, Stage.ENTITY_MAPPING, startNanos);
+            
+            // binding serializes the values. The bind array can be reused afterwards  
+            if (preparedStatementFuture.isDone()) {
+                try {
+                    final long bindStartNanos = System.nanoTime();
+                    final Statement statement = preparedStatementFuture.get().bind(values);
+                    getDefaultDbSession().recordStageTime(tablename, Stage.BIND, bindStartNanos);
+                    
+                    return Futures.<Statement>immediateFuture(statement);
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    return Futures.immediateFailedFuture(ListenableFutures.unwrapIfNecessary(e));
+                }
+            } else {
+                return getDefaultDbSession().bindAsync(tablename, preparedStatementFuture, values.clone());
+            }
+        }
+    }
+    
+    
+    
+    private static final class BulkWriteReportImpl implements BulkWriteReport {
+        private final long numWritten;
+        private final long numRetries;
+        private final long elapsedMillis;
+        
+        BulkWriteReportImpl(long numWritten, long numRetries, long elapsedMillis) {
+            this.numWritten = numWritten;
+            this.numRetries = numRetries;
+            this.elapsedMillis = elapsedMillis;
+        }
+        
+        @Override
+        public long getNumWritten() {
+            return numWritten;
+        }
+        
+        @Override
+        public long getNumRetries() {
+            return numRetries;
+        }
+        
+        @Override
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+        
+        @Override
+        public double getThroughput() {
+            return (numWritten * 1000.0) / Math.max(1, elapsedMillis);
+        }
+        
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                              .add("written", numWritten)
+                              .add("retries", numRetries)
+                              .add("elapsedMillis", elapsedMillis)
+                              .add("throughput", getThroughput())
+                              .toString();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The progress and throughput report of a bulk write
+ */
+public interface BulkWriteReport {
+
+    /**
+     * @return the number of written entities 
+     */
+    long getNumWritten();
+    
+    /**
+     * @return the number of retried writes (because of timeouts)
+     */
+    long getNumRetries();
+    
+    /**
+     * @return the elapsed time in millis since the bulk write has been started 
+     */
+    long getElapsedMillis();
+    
+    /**
+     * @return the written entities per sec
+     */
+    double getThroughput();
+}
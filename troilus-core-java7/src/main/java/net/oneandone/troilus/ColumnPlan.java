@@ -0,0 +1,168 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.List;
+import java.util.Map;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.TableMetadata;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+
+
+/**
+ * The immutable column plan of a table. The plan will be computed once per table 
+ * and maps each column to a dense index. Per index the data type and some 
+ * derived flags are available without further map or cache lookups   
+ */
+final class ColumnPlan {
+    
+    private final Tablename tablename;
+    private final ImmutableMap<String, Integer> columnIndex;
+    private final String[] names;
+    private final DataType[] types;
+    private final boolean[] isPrimaryKey;
+    private final boolean[] isBuildInType;
+    private final boolean[] isTextType;
+    private final boolean[] isBlobType;
+    
+    
+    private ColumnPlan(Tablename tablename, TableMetadata tableMetadata) {
+        this.tablename = tablename;
+        
+        final List<ColumnMetadata> columns = tableMetadata.getColumns();
+        final List<ColumnMetadata> primaryKey = tableMetadata.getPrimaryKey();
+        
+        final int size = columns.size();
+        this.names = new String[size];
+        this.types = new DataType[size];
+        this.isPrimaryKey = new boolean[size];
+        this.isBuildInType = new boolean[size];
+        this.isTextType = new boolean[size];
+        this.isBlobType = new boolean[size];
+        
+        final Map<String, Integer> index = Maps.newHashMap();
+        for (int i = 0; i < size; i++) {
+            final ColumnMetadata column = columns.get(i);
+            final DataType dataType = column.getType();
+            
+            index.put(column.getName(), i);
+            names[i] = column.getName();
+            types[i] = dataType;
+            isPrimaryKey[i] = primaryKey.contains(column);
+            isBuildInType[i] = UDTValueMapper.isBuildInType(dataType);
+            isTextType[i] = DataTypes.isTextDataType(dataType);
+            isBlobType[i] = dataType.equals(DataType.blob());
+        }
+        this.columnIndex = ImmutableMap.copyOf(index);
+    }
+    
+    /**
+     * @param tablename      the tablename
+     * @param tableMetadata  the table metadata
+     * @return the new column plan 
+     */
+    static ColumnPlan newColumnPlan(Tablename tablename, TableMetadata tableMetadata) {
+        return new ColumnPlan(tablename, tableMetadata);
+    }
+    
+    /**
+     * @return the tablename
+     */
+    Tablename getTablename() {
+        return tablename;
+    }
+    
+    /**
+     * @return the number of columns
+     */
+    int size() {
+        return names.length;
+    }
+    
+    /**
+     * @param columnName the column name 
+     * @return true, if the column exists
+     */
+    boolean contains(String columnName) {
+        return columnIndex.containsKey(columnName);
+    }
+    
+    /**
+     * @param columnName  the column name
+     * @return the column index
+     * @throws RuntimeException if the column does not exist
+     */
+    int indexOf(String columnName) {
+        final Integer idx = columnIndex.get(columnName);
+        if (idx == null) {
+            throw new RuntimeException("table " + tablename + " does not support column '" + columnName + "'");
+        }
+        return idx;
+    }
+    
+    /**
+     * @param idx the column index
+     * @return the column name
+     */
+    String getName(int idx) {
+        return names[idx];
+    }
+    
+    /**
+     * @param idx the column index
+     * @return the data type
+     */
+    DataType getType(int idx) {
+        return types[idx];
+    }
+    
+    /**
+     * @param idx the column index
+     * @return true, if the column is part of the primary key
+     */
+    boolean isPrimaryKey(int idx) {
+        return isPrimaryKey[idx];
+    }
+    
+    /**
+     * @param idx the column index
+     * @return true, if the column type is a build-in type (incl. collections of build-in types) 
+     */
+    boolean isBuildInType(int idx) {
+        return isBuildInType[idx];
+    }
+    
+    /**
+     * @param idx the column index
+     * @return true, if the column is a text, varchar or ascii column 
+     */
+    boolean isTextType(int idx) {
+        return isTextType[idx];
+    }
+    
+    /**
+     * @param idx the column index
+     * @return true, if the column is a blob column 
+     */
+    boolean isBlobType(int idx) {
+        return isBlobType[idx];
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The state of the client-side concurrency limit of a dao
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * @return the current max number of concurrently executed queries  
+     */
+    int getLimit();
+    
+    /**
+     * @return the number of currently executed queries
+     */
+    int getNumInFlight();
+    
+    /**
+     * @return the number of queries waiting for execution 
+     */
+    int getQueueDepth();
+    
+    /**
+     * @return the number of rejected queries
+     */
+    long getNumRejected();
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.oneandone.troilus.MetricsRegistry.Operation;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.ReadTimeoutException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+
+/**
+ * Admission controller which limits the concurrently executed queries. The limit adapts to the 
+ * measured latency (AIMD): The limit will be increased additively as long as the latency stays 
+ * close to the observed min latency of the (table, operation) and decreased multiplicatively if 
+ * the latency grows or the queries time out. Queries beyond the limit are queued and rejected, if 
+ * the queue is full. The limiter is shared by all copies of a context  
+ */
+class ConcurrencyLimiter implements ConcurrencyLimit {
+    
+    private static final int DEFAULT_INITIAL_LIMIT = 20;
+    private static final int MIN_LIMIT = 1;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final int MIN_LATENCY_RESET_SAMPLES = 1000;
+    
+    /**
+     * the limiter which does not limit the queries at all
+     */
+    static final ConcurrencyLimiter UNLIMITED = new ConcurrencyLimiter(Integer.MAX_VALUE, 0, MoreExecutors.directExecutor());
+    
+    private final Executor executor;
+    private final boolean isUnlimited;
+    private final int maxLimit;
+    private final int maxQueueSize;
+    
+    // guarded by this
+    private final Deque<PendingQuery> queue = new ArrayDeque<>();
+    private double limit;
+    private int numInFlight = 0;
+    private long numRejected = 0;
+    private final Map<ImmutableList<String>, MinLatency> minLatencies = Maps.newHashMap();
+    private int numSamplesSinceDecrease = 0;
+    
+    
+    /**
+     * @param maxLimit      the max number of concurrently executed queries
+     * @param maxQueueSize  the max number of queued queries
+     * @param executor      the executor to start the queued queries
+     */
+    ConcurrencyLimiter(int maxLimit, int maxQueueSize, Executor executor) {
+        if ((maxLimit < MIN_LIMIT) || (maxQueueSize < 0)) {
+            throw new IllegalArgumentException("max limit must be at least 1 and max queue size must not be negative");
+        }
+        
+        this.executor = executor;
+        this.isUnlimited = (maxLimit == Integer.MAX_VALUE);
+        this.maxLimit = maxLimit;
+        this.maxQueueSize = maxQueueSize;
+        this.limit = Math.min(maxLimit, DEFAULT_INITIAL_LIMIT);
+    }
+    
+    
+    @Override
+    public synchronized int getLimit() {
+        return isUnlimited ? Integer.MAX_VALUE : (int) limit;
+    }
+    
+    @Override
+    public synchronized int getNumInFlight() {
+        return numInFlight;
+    }
+    
+    @Override
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+    
+    @Override
+    public synchronized long getNumRejected() {
+        return numRejected;
+    }
+    
+    
+    /**
+     * @param dbSession  the db session
+     * @param tablename  the tablename or null, if the statement may refer several tables (batches)
+     * @param operation  the operation type of the statement
+     * @param statement  the statement to execute 
+     * @return the result set future. The future fails with a {@link RejectedExecutionException}, if the limit is exceeded and the queue is full 
+     */
+    ListenableFuture<ResultSet> executeAsync(DBSession dbSession, Tablename tablename, Operation operation, Statement statement) {
+        if (isUnlimited) {
+            return dbSession.executeAsync(statement);
+        }
+        
+        synchronized (this) {
+            if (numInFlight >= (int) limit) {
+                if (queue.size() >= maxQueueSize) {
+                    numRejected++;
+                    return Futures.immediateFailedFuture(new RejectedExecutionException("concurrency limit " + (int) limit + " exceeded (queue depth " + queue.size() + ")"));
+                }
+                
+                final PendingQuery pendingQuery = new PendingQuery(dbSession, toLatencyKey(tablename, operation), statement);
+                queue.addLast(pendingQuery);
+                
+                // a cancelled query must not occupy the queue until a slot is released 
+                final Runnable cancellationHandler = new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        if (pendingQuery.getResultFuture().isCancelled()) {
+                            synchronized (ConcurrencyLimiter.this) {
+                                queue.remove(pendingQuery);
+                            }
+                        }
+                    }
+                };
+                pendingQuery.getResultFuture().addListener(cancellationHandler, MoreExecutors.directExecutor());
+                
+                return pendingQuery.getResultFuture();
+            }
+            
+            numInFlight++;
+        }
+        
+        return start(dbSession, toLatencyKey(tablename, operation), statement);
+    }
+    
+    
+    private static ImmutableList<String> toLatencyKey(Tablename tablename, Operation operation) {
+        // the latency baseline depends on the table and the operation 
+        return ImmutableList.of(String.valueOf(tablename), String.valueOf(operation));
+    }
+    
+    
+    private ListenableFuture<ResultSet> start(DBSession dbSession, final ImmutableList<String> latencyKey, Statement statement) {
+        final long startNanos = System.nanoTime();
+        
+        ListenableFuture<ResultSet> resultSetFuture;
+        try {
+            resultSetFuture = dbSession.executeAsync(statement);
+        } catch (RuntimeException rt) {
+            resultSetFuture = Futures.immediateFailedFuture(rt);
+        }
+        
+        final ListenableFuture<ResultSet> future = resultSetFuture;
+        final Runnable completionHandler = new Runnable() {
+            
+            @Override
+            public void run() {
+                onCompleted(latencyKey, future, System.nanoTime() - startNanos);
+            }
+        };
+        future.addListener(completionHandler, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+
+    
+    private void onCompleted(ImmutableList<String> latencyKey, ListenableFuture<ResultSet> future, long latencyNanos) {
+        final List<PendingQuery> queriesToStart = Lists.newArrayList();
+        
+        synchronized (this) {
+            numSamplesSinceDecrease++;
+            
+            try {
+                future.get();
+                onSample(latencyKey, latencyNanos);
+            } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                if (isOverloaded(ListenableFutures.unwrapIfNecessary(e))) {
+                    decrease();
+                }
+            }
+            
+            numInFlight--;
+            pollQueue(queriesToStart);
+        }
+        
+        startQueued(queriesToStart);
+    }
+    
+    
+    // guarded by this
+    private void pollQueue(List<PendingQuery> queriesToStart) {
+        while ((numInFlight < (int) limit) && !queue.isEmpty()) {
+            final PendingQuery pendingQuery = queue.pollFirst();
+            if (!pendingQuery.getResultFuture().isCancelled()) {
+                numInFlight++;
+                queriesToStart.add(pendingQuery);
+            }
+        }
+    }
+    
+    
+    private void startQueued(List<PendingQuery> queriesToStart) {
+        while (!queriesToStart.isEmpty()) {
+            final PendingQuery pendingQuery = queriesToStart.remove(0);
+            
+            try {
+                // running queued queries within dedicated threads! (the completion handler may be called by the driver's I/O thread) 
+                executor.execute(new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        pendingQuery.getDbSession().recordQueueWait(pendingQuery.getEnqueuedNanos());
+                        pendingQuery.forward(start(pendingQuery.getDbSession(), pendingQuery.getLatencyKey(), pendingQuery.getStatement()));
+                    }
+                });
+                
+            } catch (RejectedExecutionException ree) {
+                // the query will never be started. Release its slot, otherwise the remaining queued queries may wait forever 
+                synchronized (this) {
+                    numInFlight--;
+                    numRejected++;
+                    pollQueue(queriesToStart);
+                }
+                pendingQuery.fail(ree);
+            }
+        }
+    }
+    
+    
+    private void onSample(ImmutableList<String> latencyKey, long latencyNanos) {
+        MinLatency minLatency = minLatencies.get(latencyKey);
+        if (minLatency == null) {
+            minLatency = new MinLatency();
+            minLatencies.put(latencyKey, minLatency);
+        }
+        
+        final long minLatencyNanos = minLatency.update(latencyNanos);
+        if (latencyNanos > (minLatencyNanos * LATENCY_TOLERANCE)) {
+            decrease();
+            
+        // increase only, if the limit is utilized 
+        } else if ((numInFlight * 2) >= limit) {
+            limit = Math.min(maxLimit, limit + (1.0 / limit));
+        }
+    }
+    
+    
+    private void decrease() {
+        // decrease once per window. The queries which have been started before the last decrease has to be completed 
+        if (numSamplesSinceDecrease >= numInFlight) {
+            limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            numSamplesSinceDecrease = 0;
+        }
+    }
+    
+    
+    private static boolean isOverloaded(Throwable error) {
+        return (error instanceof OperationTimedOutException) ||
+               (error instanceof ReadTimeoutException) ||
+               (error instanceof WriteTimeoutException) ||
+               (error instanceof OverloadedException);
+    }
+    
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("limit", getLimit())
+                          .add("inFlight", getNumInFlight())
+                          .add("queueDepth", getQueueDepth())
+                          .add("rejected", getNumRejected())
+                          .toString();
+    }
+    
+    
+    
+    private static final class MinLatency {
+        private long minLatencyNanos = Long.MAX_VALUE;
+        private int numSamples = 0;
+        
+        /**
+         * @param latencyNanos  the measured latency 
+         * @return the min latency 
+         */
+        long update(long latencyNanos) {
+            numSamples++;
+            
+            // the min latency will be reset periodically to follow a changing baseline 
+            if ((latencyNanos < minLatencyNanos) || (numSamples >= MIN_LATENCY_RESET_SAMPLES)) {
+                minLatencyNanos = latencyNanos;
+                numSamples = 0;
+            }
+            
+            return minLatencyNanos;
+        }
+    }
+    
+    
+    
+    private static final class PendingQuery {
+        private final DBSession dbSession;
+        private final ImmutableList<String> latencyKey;
+        private final Statement statement;
+        private final SettableFuture<ResultSet> resultFuture = SettableFuture.create();
+        private final long enqueuedNanos = System.nanoTime();
+        
+        PendingQuery(DBSession dbSession, ImmutableList<String> latencyKey, Statement statement) {
+            this.dbSession = dbSession;
+            this.latencyKey = latencyKey;
+            this.statement = statement;
+        }
+        
+        long getEnqueuedNanos() {
+            return enqueuedNanos;
+        }
+        
+        DBSession getDbSession() {
+            return dbSession;
+        }
+        
+        ImmutableList<String> getLatencyKey() {
+            return latencyKey;
+        }
+        
+        Statement getStatement() {
+            return statement;
+        }
+        
+        ListenableFuture<ResultSet> getResultFuture() {
+            return resultFuture;
+        }
+        
+        void fail(Throwable error) {
+            resultFuture.setException(error);
+        }
+        
+        void forward(final ListenableFuture<ResultSet> future) {
+            final Runnable resultForwarder = new Runnable() {
+                
+                @Override
+                public void run() {
+                    try {
+                        resultFuture.set(future.get());
+                    } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                        resultFuture.setException(ListenableFutures.unwrapIfNecessary(e));
+                    }
+                }
+            };
+            future.addListener(resultForwarder, MoreExecutors.directExecutor());
+        }
+    }
+}
@@ -20,9 +20,14 @@ package net.oneandone.troilus;
 import java.lang.reflect.InvocationTargetException;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.oneandone.troilus.interceptor.QueryInterceptor;
 
@@ -30,6 +35,7 @@ import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.policies.RetryPolicy;
 import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 
 
@@ -39,10 +45,24 @@ import com.google.common.base.MoreObjects;
  * 
  */
 public class Context  {
+    
+    /**
+     * system property to run the tasks (e.g. the reactive subscriptions) on a shared executor with  
+     * the given number of threads instead of the common fork join pool 
+     */
+    static final String TASK_EXECUTOR_THREADS_PROPERTY = "net.oneandone.troilus.taskExecutorThreads";
+    
+    /**
+     * system property to set the max queue size of the shared executor (see {@link #TASK_EXECUTOR_THREADS_PROPERTY})
+     */
+    static final String TASK_EXECUTOR_QUEUE_SIZE_PROPERTY = "net.oneandone.troilus.taskExecutorQueueSize";
  
-    private final ExecutionSpec executionSpec;
+    private final ExecutionSpecImpl executionSpec;
     private final InterceptorRegistry interceptorRegistry;
     private final UDTValueMapper udtValueMapper;
+    private final EntityRowMapper entityRowMapper;
+    private final ParanoiaCheck paranoiaCheck;
+    private final ConcurrencyLimiter concurrencyLimiter;
     private final BeanMapper beanMapper;
     private final Executor executor;
     private final MetadataCatalog catalog;
@@ -69,21 +89,31 @@ public class Context  {
     }
     
     private Context(Session session, BeanMapper beanMapper, Executor executor, MetadataCatalog catalog, DBSession dbSession) {
+        this(dbSession, catalog, beanMapper, new UDTValueMapper(dbSession.getProtocolVersion(), dbSession.getCodecRegistry(), catalog, beanMapper), executor);
+    }
+    
+    private Context(DBSession dbSession, MetadataCatalog catalog, BeanMapper beanMapper, UDTValueMapper udtValueMapper, Executor executor) {
         this(dbSession, 
              catalog,
              new ExecutionSpecImpl(), 
              new InterceptorRegistry(),
              beanMapper,
-             new UDTValueMapper(dbSession.getProtocolVersion(), catalog, beanMapper),
+             udtValueMapper,
+             new EntityRowMapper(beanMapper, udtValueMapper),
+             new ParanoiaCheck(),
+             ConcurrencyLimiter.UNLIMITED,
              executor);
     }
     
     private Context(DBSession dbSession, 
                     MetadataCatalog catalog,
-                    ExecutionSpec executionSpec,
+                    ExecutionSpecImpl executionSpec,
                     InterceptorRegistry interceptorRegistry,
                     BeanMapper beanMapper,
                     UDTValueMapper udtValueMapper,
+                    EntityRowMapper entityRowMapper,
+                    ParanoiaCheck paranoiaCheck,
+                    ConcurrencyLimiter concurrencyLimiter,
                     Executor executors) {
         this.dbSession = dbSession;
         this.catalog = catalog;
@@ -92,18 +122,26 @@ public class Context  {
         this.executor = executors;
         this.beanMapper = beanMapper;
         this.udtValueMapper = udtValueMapper;
+        this.entityRowMapper = entityRowMapper;
+        this.paranoiaCheck = paranoiaCheck;
+        this.concurrencyLimiter = concurrencyLimiter;
     }
  
   
     
     private static Executor newTaskExecutor() {
-        try {
-            Method commonPoolMeth = ForkJoinPool.class.getMethod("commonPool");  // Java8 method
-            return (Executor) commonPoolMeth.invoke(ForkJoinPool.class);
-        } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-            return Executors.newCachedThreadPool();
+        if (Integer.getInteger(TASK_EXECUTOR_THREADS_PROPERTY) == null) {
+            try {
+                Method commonPoolMeth = ForkJoinPool.class.getMethod("commonPool");  // Java8 method
+                return (Executor) commonPoolMeth.invoke(ForkJoinPool.class);
+            } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+                // fall through
+            }
         }
+        
+        return SharedTaskExecutor.INSTANCE;
     }
+
     
     
     Context withInterceptor(QueryInterceptor interceptor) {
@@ -113,6 +151,9 @@ public class Context  {
                            interceptorRegistry.withInterceptor(interceptor),
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);
 
     }
@@ -124,6 +165,9 @@ public class Context  {
                            interceptorRegistry,
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);
     }
 
@@ -134,6 +178,9 @@ public class Context  {
                            interceptorRegistry,
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);        
     }
 
@@ -144,6 +191,9 @@ public class Context  {
                            interceptorRegistry,
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);        
     }
     
@@ -154,6 +204,9 @@ public class Context  {
                            interceptorRegistry,
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);        
     }
     
@@ -164,6 +217,9 @@ public class Context  {
                            interceptorRegistry,
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);        
     }
     
@@ -174,9 +230,89 @@ public class Context  {
                            interceptorRegistry,
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);        
     }
     
+    Context withPrefetch(int pages, int lowWatermarkRows) {
+        if ((pages < 1) || (lowWatermarkRows < 0)) {
+            throw new IllegalArgumentException("at least one page has to be prefetched and the low watermark must not be negative");
+        }
+        
+        return new Context(dbSession,
+                           catalog,
+                           executionSpec.withPrefetch(pages, lowWatermarkRows),
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        
+        return new Context(dbSession,
+                           catalog,
+                           executionSpec.withParallelism(parallelism),
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withStageTiming() {
+        return new Context(dbSession,
+                           catalog,
+                           executionSpec.withStageTiming(),
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withoutStageTiming() {
+        return new Context(dbSession,
+                           catalog,
+                           executionSpec.withoutStageTiming(),
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withSpeculativeExecution(double percentile) {
+        if ((percentile <= 0) || (percentile >= 100)) {
+            throw new IllegalArgumentException("percentile must be greater than 0 and less than 100");
+        }
+        
+        return new Context(dbSession,
+                           catalog,
+                           executionSpec.withSpeculativeExecution(percentile),
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
     Context withConsistency(ConsistencyLevel consistencyLevel) {
         return new Context(dbSession,
                            catalog,
@@ -184,9 +320,132 @@ public class Context  {
                            interceptorRegistry,
                            beanMapper,
                            udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
                            executor);
     }
     
+    Context withParanoiaCheck(ParanoiaCheckMode mode) {
+        return new Context(dbSession,
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck.withMode(mode),
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withConcurrencyLimit(int maxLimit, int maxQueueSize) {
+        return new Context(dbSession,
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           new ConcurrencyLimiter(maxLimit, maxQueueSize, executor),
+                           executor);
+    }
+    
+    Context withMetricsRegistry(MetricsRegistry metricsRegistry) {
+        if ((executor instanceof ExecutorMetrics) && (metricsRegistry instanceof InMemoryMetricsRegistry)) {
+            ((InMemoryMetricsRegistry) metricsRegistry).setTaskExecutorMetrics((ExecutorMetrics) executor);
+        }
+        
+        return new Context(dbSession.withMetricsRegistry(metricsRegistry),
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withSlowQueryLog(SlowQueryLog slowQueryLog) {
+        return new Context(dbSession.withSlowQueryLog(slowQueryLog),
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withReadCache(int maxSize, long ttlMillis, long refreshAfterMillis) {
+        return new Context(dbSession.withReadCache(new ReadCache(catalog, maxSize, ttlMillis, refreshAfterMillis)),
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withoutReadCache() {
+        return new Context(dbSession.withReadCache(null),
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withNegativeCache(int maxSize, long ttlMillis) {
+        return new Context(dbSession.withNegativeCache(NegativeCache.newKeySetCache(catalog, maxSize, ttlMillis)),
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withNegativeBloomFilterCache(int expectedKeys, double fpp, long ttlMillis) {
+        return new Context(dbSession.withNegativeCache(NegativeCache.newBloomFilterCache(catalog, expectedKeys, fpp, ttlMillis, executor)),
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
+    
+    Context withoutNegativeCache() {
+        return new Context(dbSession.withNegativeCache(null),
+                           catalog,
+                           executionSpec,
+                           interceptorRegistry,
+                           beanMapper,
+                           udtValueMapper,
+                           entityRowMapper,
+                           paranoiaCheck,
+                           concurrencyLimiter,
+                           executor);
+    }
 
     
     
@@ -202,14 +461,77 @@ public class Context  {
         return udtValueMapper;
     }
     
+    EntityRowMapper getEntityRowMapper() {
+        return entityRowMapper;
+    }
+    
+    ParanoiaCheck getParanoiaCheck() {
+        return paranoiaCheck;
+    }
+    
+    ConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+    
+    MetricsRegistry getMetricsRegistry() {
+        return dbSession.getMetricsRegistry();
+    }
+    
+    SlowQueryLog getSlowQueryLog() {
+        return dbSession.getSlowQueryLog();
+    }
+    
     ExecutionSpec getExecutionSpec() {
         return executionSpec;
     }
     
+    /**
+     * @return the number of pages to fetch ahead or null, if prefetching is not activated
+     */
+    Integer getPrefetchPages() {
+        return executionSpec.getPrefetchPages();
+    }
+    
+    /**
+     * @return the number of remaining rows which triggers the prefetch or null, if prefetching is not activated
+     */
+    Integer getPrefetchLowWatermarkRows() {
+        return executionSpec.getPrefetchLowWatermarkRows();
+    }
+    
+    /**
+     * @return the max number of concurrently executed sub queries of a split query or null, if the query will not be split 
+     */
+    Integer getParallelism() {
+        return executionSpec.getParallelism();
+    }
+    
+    /**
+     * @return the latency percentile which delays the speculative read or null, if speculative execution is not activated 
+     */
+    Double getSpeculativeExecutionPercentile() {
+        return executionSpec.getSpeculativeExecutionPercentile();
+    }
+    
+    /**
+     * @return true, if the stage times of each execution will be attached to the result 
+     */
+    boolean isStageTimingEnabled() {
+        return (executionSpec.getEnableStageTiming() != null) && executionSpec.getEnableStageTiming();
+    }
+    
     Executor getTaskExecutor() {
         return executor;
     }
     
+    /**
+     * closes the context and all of its copies. The cached metadata and statements will not be 
+     * invalidated on schema changes anymore 
+     */
+    void close() {
+        dbSession.close();
+    }
+    
     BeanMapper getBeanMapper() {
         return beanMapper;
     }
@@ -225,6 +547,8 @@ public class Context  {
                           .add("dsession", dbSession)
                           .add("execution-spec", executionSpec)
                           .add("interceptorRegistry", interceptorRegistry)
+                          .add("paranoiaCheck", paranoiaCheck)
+                          .add("concurrencyLimiter", concurrencyLimiter)
                           .toString();
     }
    
@@ -238,9 +562,19 @@ public class Context  {
         private final Long writetimeMicrosSinceEpoch;
         private final Boolean enableTracing;
         private final RetryPolicy retryPolicy;
+        private final Integer prefetchPages;
+        private final Integer prefetchLowWatermarkRows;
+        private final Integer parallelism;
+        private final Double speculativeExecutionPercentile;
+        private final Boolean enableStageTiming;
         
         ExecutionSpecImpl() {
             this(null, 
+                 null,
+                 null,
+                 null,
+                 null,
+                 null,
                  null,
                  null,
                  null,
@@ -253,76 +587,191 @@ public class Context  {
                                  Integer ttlSec,
                                  Long writetimeMicrosSinceEpoch,
                                  Boolean enableTracking,
-                                 RetryPolicy retryPolicy) {
+                                 RetryPolicy retryPolicy,
+                                 Integer prefetchPages,
+                                 Integer prefetchLowWatermarkRows,
+                                 Integer parallelism,
+                                 Double speculativeExecutionPercentile,
+                                 Boolean enableStageTiming) {
             this.consistencyLevel = consistencyLevel;
             this.serialConsistencyLevel = serialConsistencyLevel;
             this.ttlSec = ttlSec;
             this.writetimeMicrosSinceEpoch = writetimeMicrosSinceEpoch;
             this.enableTracing = enableTracking;
             this.retryPolicy = retryPolicy;
+            this.prefetchPages = prefetchPages;
+            this.prefetchLowWatermarkRows = prefetchLowWatermarkRows;
+            this.parallelism = parallelism;
+            this.speculativeExecutionPercentile = speculativeExecutionPercentile;
+            this.enableStageTiming = enableStageTiming;
         }
         
-        public ExecutionSpec withConsistency(ConsistencyLevel consistencyLevel) {
+        public ExecutionSpecImpl withConsistency(ConsistencyLevel consistencyLevel) {
             return new ExecutionSpecImpl(consistencyLevel,
                                          this.serialConsistencyLevel,
                                          this.ttlSec,
                                          this.writetimeMicrosSinceEpoch,
                                          this.enableTracing,
-                                         this.retryPolicy);
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
         }
     
-        public ExecutionSpec withSerialConsistency(ConsistencyLevel consistencyLevel) {
+        public ExecutionSpecImpl withSerialConsistency(ConsistencyLevel consistencyLevel) {
             return new ExecutionSpecImpl(this.consistencyLevel,
                                          consistencyLevel,
                                          this.ttlSec,
                                          this.writetimeMicrosSinceEpoch,
                                          this.enableTracing,
-                                         this.retryPolicy);
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
         }
         
-        public ExecutionSpec withTtl(int ttlSec) {
+        public ExecutionSpecImpl withTtl(int ttlSec) {
             return new ExecutionSpecImpl(this.consistencyLevel,
                                          this.serialConsistencyLevel,
                                          ttlSec,
                                          this.writetimeMicrosSinceEpoch,
                                          this.enableTracing,
-                                         this.retryPolicy);
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
         }
         
-        public ExecutionSpec withWritetime(long microsSinceEpoch) {
+        public ExecutionSpecImpl withWritetime(long microsSinceEpoch) {
             return new ExecutionSpecImpl(this.consistencyLevel,
                                          this.serialConsistencyLevel,
                                          this.ttlSec,
                                          microsSinceEpoch,
                                          this.enableTracing,
-                                         this.retryPolicy);
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
         }
 
-        public ExecutionSpec withTracking() {
+        public ExecutionSpecImpl withTracking() {
             return new ExecutionSpecImpl(this.consistencyLevel,
                                          this.serialConsistencyLevel,
                                          this.ttlSec,
                                          this.writetimeMicrosSinceEpoch,
                                          true,
-                                         this.retryPolicy);
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
         }
 
-        public ExecutionSpec withoutTracking() {
+        public ExecutionSpecImpl withoutTracking() {
             return new ExecutionSpecImpl(this.consistencyLevel,
                                          this.serialConsistencyLevel,
                                          this.ttlSec,
                                          this.writetimeMicrosSinceEpoch,
                                          false,
-                                         this.retryPolicy);
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
         }
         
-        public ExecutionSpec withRetryPolicy(RetryPolicy policy) {
+        public ExecutionSpecImpl withRetryPolicy(RetryPolicy policy) {
+            return new ExecutionSpecImpl(this.consistencyLevel,
+                                         this.serialConsistencyLevel,
+                                         this.ttlSec,
+                                         this.writetimeMicrosSinceEpoch,
+                                         this.enableTracing,
+                                         policy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
+        }
+
+        public ExecutionSpecImpl withPrefetch(int pages, int lowWatermarkRows) {
             return new ExecutionSpecImpl(this.consistencyLevel,
                                          this.serialConsistencyLevel,
                                          this.ttlSec,
                                          this.writetimeMicrosSinceEpoch,
                                          this.enableTracing,
-                                         policy);
+                                         this.retryPolicy,
+                                         pages,
+                                         lowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
+        }
+
+        public ExecutionSpecImpl withParallelism(int parallelism) {
+            return new ExecutionSpecImpl(this.consistencyLevel,
+                                         this.serialConsistencyLevel,
+                                         this.ttlSec,
+                                         this.writetimeMicrosSinceEpoch,
+                                         this.enableTracing,
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         this.enableStageTiming);
+        }
+
+        public ExecutionSpecImpl withSpeculativeExecution(double percentile) {
+            return new ExecutionSpecImpl(this.consistencyLevel,
+                                         this.serialConsistencyLevel,
+                                         this.ttlSec,
+                                         this.writetimeMicrosSinceEpoch,
+                                         this.enableTracing,
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         percentile,
+                                         this.enableStageTiming);
+        }
+
+        public ExecutionSpecImpl withStageTiming() {
+            return new ExecutionSpecImpl(this.consistencyLevel,
+                                         this.serialConsistencyLevel,
+                                         this.ttlSec,
+                                         this.writetimeMicrosSinceEpoch,
+                                         this.enableTracing,
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         true);
+        }
+
+        public ExecutionSpecImpl withoutStageTiming() {
+            return new ExecutionSpecImpl(this.consistencyLevel,
+                                         this.serialConsistencyLevel,
+                                         this.ttlSec,
+                                         this.writetimeMicrosSinceEpoch,
+                                         this.enableTracing,
+                                         this.retryPolicy,
+                                         this.prefetchPages,
+                                         this.prefetchLowWatermarkRows,
+                                         this.parallelism,
+                                         this.speculativeExecutionPercentile,
+                                         false);
         }
 
         public ConsistencyLevel getConsistencyLevel() {
@@ -350,6 +799,26 @@ public class Context  {
             return retryPolicy;
         }
         
+        public Integer getPrefetchPages() {
+            return prefetchPages;
+        }
+        
+        public Integer getPrefetchLowWatermarkRows() {
+            return prefetchLowWatermarkRows;
+        }
+        
+        public Integer getParallelism() {
+            return parallelism;
+        }
+        
+        public Double getSpeculativeExecutionPercentile() {
+            return speculativeExecutionPercentile;
+        }
+        
+        public Boolean getEnableStageTiming() {
+            return enableStageTiming;
+        }
+        
         @Override
         public String toString() {
             return MoreObjects.toStringHelper("spec")
@@ -359,7 +828,61 @@ public class Context  {
                               .add("writetimeMicrosSinceEpoch", writetimeMicrosSinceEpoch)
                               .add("enableTracing", enableTracing)
                               .add("retryPolicy", retryPolicy)
+                              .add("prefetchPages", prefetchPages)
+                              .add("prefetchLowWatermarkRows", prefetchLowWatermarkRows)
+                              .add("parallelism", parallelism)
+                              .add("speculativeExecutionPercentile", speculativeExecutionPercentile)
+                              .add("enableStageTiming", enableStageTiming)
                               .toString();
         }
     }
+    
+    
+    /**
+     * bounded task executor which is shared by all contexts. The executor will be created on first use. 
+     * Tasks exceeding the queue size will be rejected by a {@link RejectedExecutionException}. The 
+     * futures of the queries, which run their interceptors on the executor, fail in this case   
+     */
+    static final class SharedTaskExecutor extends ThreadPoolExecutor implements ExecutorMetrics {
+        private static final int DEFAULT_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private static final int DEFAULT_QUEUE_SIZE = 10000;
+        
+        static final SharedTaskExecutor INSTANCE = new SharedTaskExecutor(Integer.getInteger(TASK_EXECUTOR_THREADS_PROPERTY, DEFAULT_THREADS),
+                                                                          Integer.getInteger(TASK_EXECUTOR_QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE));
+        
+        private final AtomicLong numRejected;
+        
+        SharedTaskExecutor(int numThreads, int maxQueueSize) {
+            this(numThreads, maxQueueSize, new AtomicLong());
+        }
+        
+        private SharedTaskExecutor(int numThreads, int maxQueueSize, final AtomicLong numRejected) {
+            super(numThreads,
+                  numThreads,
+                  60L, TimeUnit.SECONDS,
+                  new ArrayBlockingQueue<Runnable>(maxQueueSize),
+                  new ThreadFactoryBuilder().setDaemon(true)
+                                            .setNameFormat("troilus-task-%d")
+                                            .build(),
+                  new RejectedExecutionHandler() {
+                      @Override
+                      public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+                          numRejected.incrementAndGet();
+                          throw new RejectedExecutionException("task executor queue is full (queue depth " + executor.getQueue().size() + ")");
+                      }
+                  });
+            this.numRejected = numRejected;
+            allowCoreThreadTimeOut(true);
+        }
+        
+        @Override
+        public int getQueueDepth() {
+            return getQueue().size();
+        }
+        
+        @Override
+        public long getNumRejected() {
+            return numRejected.get();
+        }
+    }
 }
\ No newline at end of file
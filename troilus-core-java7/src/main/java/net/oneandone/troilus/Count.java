@@ -33,22 +33,25 @@ public abstract class Count implements Result {
     public abstract long getCount();
  
     /**
-     * @param rs  the result set
+     * @param rs       the result set
+     * @param timings  the timings of the query execution or null
      * @return the associated count result
      */
-    static Count newCountResult(ResultSet rs) {
-        return new CountResultImpl(rs);
+    static Count newCountResult(ResultSet rs, QueryTimings timings) {
+        return new CountResultImpl(rs, timings);
     }
     
     
     private static final class CountResultImpl extends Count {
         private final ResultSet rs;
         private final long count;
+        private final QueryTimings timings;
 
         
-        private CountResultImpl(ResultSet rs) {
+        private CountResultImpl(ResultSet rs, QueryTimings timings) {
             this.rs = rs;
             this.count = rs.one().getLong("count");
+            this.timings = timings;
         }
 
         @Override
@@ -66,6 +69,11 @@ public abstract class Count implements Result {
             return rs.wasApplied();
         }
         
+        @Override
+        public QueryTimings getTimings() {
+            return timings;
+        }
+        
         @Override
         public long getCount() {
             return count;
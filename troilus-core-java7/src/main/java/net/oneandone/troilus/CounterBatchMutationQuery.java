@@ -17,6 +17,7 @@ package net.oneandone.troilus;
 
 
 
+import net.oneandone.troilus.MetricsRegistry.Operation;
 import net.oneandone.troilus.java7.CounterMutation;
 
 import com.datastax.driver.core.BatchStatement.Type;
@@ -65,6 +66,16 @@ class CounterBatchMutationQuery extends MutationQuery<CounterMutation> implement
         return newQuery(Immutables.join(batchables, other));
     }
     
+    @Override
+    Tablename getTablename() {
+        return null;
+    }
+    
+    @Override
+    Operation getOperation() {
+        return Operation.BATCH;
+    }
+    
     @Override
     public ListenableFuture<Statement> getStatementAsync(final DBSession dbSession) {
         
@@ -15,6 +15,7 @@
  */
 package net.oneandone.troilus;
 
+import net.oneandone.troilus.MetricsRegistry.Operation;
 import net.oneandone.troilus.java7.CounterMutation;
 
 import com.datastax.driver.core.ResultSet;
@@ -23,6 +24,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 
 /**
@@ -60,12 +62,24 @@ class CounterMutationQuery extends AbstractQuery<CounterMutation> implements Cou
     
     @Override
     public ListenableFuture<Result> executeAsync() {
-        ListenableFuture<ResultSet> future = performAsync(getDefaultDbSession(), getStatementAsync(getDefaultDbSession()));
+        final DBSession dbSession = newExecutionDbSession();
+        ListenableFuture<ResultSet> future = performAsync(dbSession, data.getTablename(), Operation.COUNTER, getStatementAsync(dbSession));
+        
+        if (dbSession.isRowCachingActivated()) {
+            // reads performed while the mutation is in flight may have cached the old row 
+            Runnable cacheInvalidator = new Runnable() {
+                @Override
+                public void run() {
+                    dbSession.invalidateCachedRows(data.getTablename(), data.getKeys());
+                }
+            };
+            future.addListener(cacheInvalidator, MoreExecutors.directExecutor());
+        }
         
         Function<ResultSet, Result> mapEntity = new Function<ResultSet, Result>() {
             @Override
             public Result apply(ResultSet resultSet) {
-                return newResult(resultSet);
+                return newResult(resultSet, dbSession);
             }
         };
         
@@ -75,6 +89,9 @@ class CounterMutationQuery extends AbstractQuery<CounterMutation> implements Cou
     
     @Override
     public ListenableFuture<Statement> getStatementAsync(DBSession dbSession) {
+        if (dbSession.isRowCachingActivated()) {
+            dbSession.invalidateCachedRows(data.getTablename(), data.getKeys());
+        }
         return data.toStatementAsync(getExecutionSpec(), dbSession, data.getTablename());
     }
 }
@@ -23,6 +23,8 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.update;
 import java.util.List;
 import java.util.Map.Entry;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
+
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Clause;
@@ -122,6 +124,7 @@ class CounterMutationQueryData {
     }
     
     ListenableFuture<Statement> toStatementAsync(ExecutionSpec executionSpec, DBSession dbSession, Tablename tablename) {
+        final long startNanos = System.nanoTime();
         
         com.datastax.driver.core.querybuilder.Update update = (tablename.getKeyspacename() == null) ? update(tablename.getTablename()) 
                                                                                                     : update(tablename.getKeyspacename(), tablename.getTablename());
@@ -149,9 +152,10 @@ class CounterMutationQueryData {
                 values.add((Integer) executionSpec.getTtl());
             }
 
+            dbSession.recordStageTime(tablename, Stage.STATEMENT_BUILD, startNanos);
             
-            ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(update);
-            return dbSession.bindAsync(preparedStatementFuture, values.toArray());
+            ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(tablename, update);
+            return dbSession.bindAsync(tablename, preparedStatementFuture, values.toArray());
             
         // where condition-based update
         } else {
@@ -170,6 +174,7 @@ class CounterMutationQueryData {
             for (Clause whereCondition : getWhereConditions()) {
                 update.where(whereCondition);
             }
+            dbSession.recordStageTime(tablename, Stage.STATEMENT_BUILD, startNanos);
             
             return Futures.<Statement>immediateFuture(update);
         }
@@ -16,26 +16,45 @@
 package net.oneandone.troilus;
 
 
-import java.util.concurrent.atomic.AtomicLong;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.oneandone.troilus.MetricsRegistry.Operation;
+import net.oneandone.troilus.MetricsRegistry.Stage;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.Host;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ProtocolVersion;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TokenRange;
 import com.datastax.driver.core.exceptions.DriverInternalError;
 import com.datastax.driver.core.exceptions.InvalidQueryException;
 import com.datastax.driver.core.querybuilder.BuiltStatement;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Supplier;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 
 
@@ -44,13 +63,25 @@ import com.google.common.util.concurrent.ListenableFuture;
  */
 public class DBSession  {
     private static final Logger LOG = LoggerFactory.getLogger(DBSession.class);
+    
+    /**
+     * system property to overrule the max number of cached prepared statements 
+     */
+    static final String PREPARED_STATEMENT_CACHE_SIZE_PROPERTY = "net.oneandone.troilus.preparedStatementCacheSize";
+    private static final int DEFAULT_PREPARED_STATEMENT_CACHE_SIZE = 150;
 
     private final Session session;
     private final boolean isKeyspacenameAssigned;
     private final String keyspacename;
-    private final PreparedStatementCache preparedStatementCache;
-    
-    private final AtomicLong lastCacheCleanTime = new AtomicLong(0);
+    private final StatementCaches statementCaches;
+    private final SchemaChangeInvalidator schemaChangeInvalidator;
+    private final LatencyTracker latencyTracker;
+    private final MetricsRegistry metricsRegistry;
+    private final QueryTimingsRecorder timingsRecorder;
+    private final SlowQueryLog slowQueryLog;
+    private final ReadCache readCache;
+    private final NegativeCache negativeCache;
+    private final InvalidatedRows invalidatedRows;
     
 
     
@@ -67,7 +98,92 @@ public class DBSession  {
         this.keyspacename = session.getLoggedKeyspace();
         this.isKeyspacenameAssigned = (keyspacename != null);
         
-        this.preparedStatementCache = new PreparedStatementCache(session);
+        final int cacheSize = Integer.getInteger(PREPARED_STATEMENT_CACHE_SIZE_PROPERTY, DEFAULT_PREPARED_STATEMENT_CACHE_SIZE);
+        this.statementCaches = new StatementCaches(session, cacheSize);
+        
+        // invalidate cached metadata and statements of a table, if the table is altered 
+        this.schemaChangeInvalidator = SchemaChangeInvalidator.register(session.getCluster(), catalog, statementCaches);
+        this.latencyTracker = new LatencyTracker();
+        this.metricsRegistry = new InMemoryMetricsRegistry();
+        this.timingsRecorder = null;
+        this.slowQueryLog = null;
+        this.readCache = null;
+        this.negativeCache = null;
+        this.invalidatedRows = null;
+    }
+    
+    private DBSession(DBSession dbSession, MetricsRegistry metricsRegistry, QueryTimingsRecorder timingsRecorder, SlowQueryLog slowQueryLog, ReadCache readCache, NegativeCache negativeCache, InvalidatedRows invalidatedRows) {
+        this.session = dbSession.session;
+        this.keyspacename = dbSession.keyspacename;
+        this.isKeyspacenameAssigned = dbSession.isKeyspacenameAssigned;
+        this.statementCaches = dbSession.statementCaches;
+        this.schemaChangeInvalidator = dbSession.schemaChangeInvalidator;
+        this.latencyTracker = dbSession.latencyTracker;
+        this.metricsRegistry = metricsRegistry;
+        this.timingsRecorder = timingsRecorder;
+        this.slowQueryLog = slowQueryLog;
+        this.readCache = readCache;
+        this.negativeCache = negativeCache;
+        this.invalidatedRows = invalidatedRows;
+    }
+    
+    
+    /**
+     * unregisters the schema change listener. The cached metadata and statements will 
+     * not be invalidated on schema changes anymore. This applies to all sessions which 
+     * share the caches of this session   
+     */
+    void close() {
+        schemaChangeInvalidator.unregister();
+    }
+    
+    
+    /**
+     * @param metricsRegistry  the metrics registry to use
+     * @return a db session which shares the caches of this session and records the metrics to the given registry 
+     */
+    DBSession withMetricsRegistry(MetricsRegistry metricsRegistry) {
+        return new DBSession(this, metricsRegistry, timingsRecorder, slowQueryLog, readCache, negativeCache, invalidatedRows);
+    }
+    
+    /**
+     * @param timingsRecorder  the recorder of a single query execution
+     * @return a db session which shares the caches of this session and additionally records the timings of the query execution
+     */
+    DBSession withTimingsRecorder(QueryTimingsRecorder timingsRecorder) {
+        return new DBSession(this, metricsRegistry, timingsRecorder, slowQueryLog, readCache, negativeCache, invalidatedRows);
+    }
+    
+    /**
+     * @param slowQueryLog  the slow query log or null
+     * @return a db session which shares the caches of this session and additionally logs the slow queries
+     */
+    DBSession withSlowQueryLog(SlowQueryLog slowQueryLog) {
+        return new DBSession(this, metricsRegistry, timingsRecorder, slowQueryLog, readCache, negativeCache, invalidatedRows);
+    }
+    
+    /**
+     * @param readCache  the read cache or null
+     * @return a db session which shares the caches of this session and additionally caches the records read by key
+     */
+    DBSession withReadCache(ReadCache readCache) {
+        return new DBSession(this, metricsRegistry, timingsRecorder, slowQueryLog, readCache, negativeCache, invalidatedRows);
+    }
+    
+    /**
+     * @param invalidatedRows  the recorder of the invalidated rows or null
+     * @return a db session which shares the caches of this session and additionally records the rows invalidated by {@link #invalidateCachedRows(Tablename, ImmutableMap)}
+     */
+    DBSession withInvalidatedRows(InvalidatedRows invalidatedRows) {
+        return new DBSession(this, metricsRegistry, timingsRecorder, slowQueryLog, readCache, negativeCache, invalidatedRows);
+    }
+    
+    /**
+     * @param negativeCache  the negative cache or null
+     * @return a db session which shares the caches of this session and additionally remembers the keys of absent rows
+     */
+    DBSession withNegativeCache(NegativeCache negativeCache) {
+        return new DBSession(this, metricsRegistry, timingsRecorder, slowQueryLog, readCache, negativeCache, invalidatedRows);
     }
 
 
@@ -86,6 +202,177 @@ public class DBSession  {
         return keyspacename;
     }
     
+    /**
+     * @return the metrics registry
+     */
+    MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+    
+    /**
+     * @return the timings of the query execution or null, if the timings are not recorded  
+     */
+    QueryTimingsRecorder getTimingsRecorder() {
+        return timingsRecorder;
+    }
+    
+    /**
+     * @return the slow query log or null
+     */
+    SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+    
+    /**
+     * @return the read cache or null
+     */
+    ReadCache getReadCache() {
+        return readCache;
+    }
+    
+    /**
+     * @return the negative cache or null
+     */
+    NegativeCache getNegativeCache() {
+        return negativeCache;
+    }
+    
+    /**
+     * @return true, if rows are cached locally (read cache or negative cache)
+     */
+    boolean isRowCachingActivated() {
+        return (readCache != null) || (negativeCache != null);
+    }
+    
+    /**
+     * invalidates the locally cached rows which are modified 
+     * 
+     * @param tablename  the tablename
+     * @param keys       the keys of the modified row(s)
+     */
+    void invalidateCachedRows(Tablename tablename, ImmutableMap<String, Object> keys) {
+        if (readCache != null) {
+            readCache.invalidate(tablename, keys);
+        }
+        if (negativeCache != null) {
+            negativeCache.invalidate(tablename, keys);
+        }
+        if (invalidatedRows != null) {
+            invalidatedRows.add(tablename, keys);
+        }
+    }
+    
+    /**
+     * @param tablename   the tablename or null
+     * @param operation   the operation
+     * @param startNanos  the start time of the query execution (System.nanoTime())
+     * @param isSuccess   true, if the query has been executed successfully
+     */
+    void recordLatency(Tablename tablename, Operation operation, long startNanos, boolean isSuccess) {
+        metricsRegistry.recordLatency(toName(tablename), operation, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos), isSuccess);
+    }
+
+    /**
+     * @param tablename   the tablename or null
+     * @param stage       the stage
+     * @param startNanos  the start time of the stage (System.nanoTime())
+     */
+    void recordStageTime(Tablename tablename, Stage stage, long startNanos) {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        metricsRegistry.recordStageTime(toName(tablename), stage, elapsedNanos);
+        if (timingsRecorder != null) {
+            timingsRecorder.recordStageTime(stage, elapsedNanos);
+        }
+    }
+    
+    /**
+     * @param tablename   the tablename or null
+     * @param stage       the stage
+     * @param startNanos  the start time of the stage (System.nanoTime())
+     * @param future      the future which completes the stage  
+     * @return the future 
+     */
+    <T> ListenableFuture<T> recordStageTime(final Tablename tablename, final Stage stage, final long startNanos, ListenableFuture<T> future) {
+        // e.g. cached prepared statements. No listener is required 
+        if (future.isDone()) {
+            recordStageTime(tablename, stage, startNanos);
+            return future;
+        }
+        
+        final Runnable stageTimeRecorder = new Runnable() {
+            
+            @Override
+            public void run() {
+                recordStageTime(tablename, stage, startNanos);
+            }
+        };
+        future.addListener(stageTimeRecorder, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    /**
+     * @param tablename             the tablename
+     * @param isRequestInterceptor  true, if the future is returned by a request interceptor 
+     * @param startNanos            the start time of the interceptor (System.nanoTime())
+     * @param future                the future returned by the interceptor  
+     * @return the future 
+     */
+    <T> ListenableFuture<T> recordInterceptorTime(final Tablename tablename, final boolean isRequestInterceptor, final long startNanos, ListenableFuture<T> future) {
+        // interceptors typically return completed futures. No listener is required in this case 
+        if (future.isDone()) {
+            recordInterceptorTime(tablename, isRequestInterceptor, startNanos);
+            return future;
+        }
+        
+        final Runnable interceptorTimeRecorder = new Runnable() {
+            
+            @Override
+            public void run() {
+                recordInterceptorTime(tablename, isRequestInterceptor, startNanos);
+            }
+        };
+        future.addListener(interceptorTimeRecorder, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    private void recordInterceptorTime(Tablename tablename, boolean isRequestInterceptor, long startNanos) {
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        metricsRegistry.recordStageTime(toName(tablename), Stage.INTERCEPTOR, elapsedNanos);
+        if (timingsRecorder != null) {
+            timingsRecorder.recordInterceptorTime(isRequestInterceptor, elapsedNanos);
+        }
+    }
+    
+    /**
+     * @param startNanos  the time the statement has been queued (System.nanoTime())
+     */
+    void recordQueueWait(long startNanos) {
+        if (timingsRecorder != null) {
+            timingsRecorder.recordQueueWait(System.nanoTime() - startNanos);
+        }
+    }
+    
+    private ListenableFuture<PreparedStatement> recordPrepareCacheAccess(ListenableFuture<PreparedStatement> preparedStatementFuture) {
+        if (timingsRecorder != null) {
+            timingsRecorder.recordPrepareCacheAccess(preparedStatementFuture.isDone());
+        }
+        return preparedStatementFuture;
+    }
+    
+    private static String toName(Tablename tablename) {
+        // tables of the same name may exist in several keyspaces 
+        return (tablename == null) ? null : tablename.getQualifiedName();
+    }
+    
+    /**
+     * @return the latency tracker
+     */
+    LatencyTracker getLatencyTracker() {
+        return latencyTracker;
+    }
+    
     private Session getSession() {
         return session;
     }
@@ -98,25 +385,71 @@ public class DBSession  {
         return getSession().getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
     }
     
+    /**
+     * @return the codec registry of the cluster
+     */
+    CodecRegistry getCodecRegistry() {
+        return getSession().getCluster().getConfiguration().getCodecRegistry();
+    }
+    
  
     /**
+     * @return the token ranges of the ring in token order. Wrapping ranges are split at the minimum token 
+     */
+    ImmutableList<TokenRange> getTokenRanges() {
+        final List<TokenRange> ranges = Lists.newArrayList();
+        for (TokenRange range : getSession().getCluster().getMetadata().getTokenRanges()) {
+            ranges.addAll(range.unwrap());
+        }
+        Collections.sort(ranges);
+        
+        return ImmutableList.copyOf(ranges);
+    }
+    
+    
+    /**
+     * @param keyspacename  the keyspacename
+     * @param partitionKey  the serialized partition key
+     * @return the replicas of the partition
+     */
+    Set<Host> getReplicas(String keyspacename, ByteBuffer partitionKey) {
+        return getSession().getCluster().getMetadata().getReplicas(keyspacename, partitionKey);
+    }
+    
+    
+    /**
+     * @param tablename the tablename the statement refers to
      * @param statement the statement to prepare
      * @return the prepared statement future
      */
-    ListenableFuture<PreparedStatement> prepareAsync(final BuiltStatement statement) {
-        return preparedStatementCache.prepareAsync(statement);
+    ListenableFuture<PreparedStatement> prepareAsync(Tablename tablename, BuiltStatement statement) {
+        return recordStageTime(tablename, Stage.PREPARE, System.nanoTime(), recordPrepareCacheAccess(statementCaches.prepareAsync(tablename, statement)));
     }
     
     /**
+     * @param shape             the shape of the statement
+     * @param statementFactory  the factory to create the statement, if the shape is unknown 
+     * @return the prepared statement future
+     */
+    ListenableFuture<PreparedStatement> prepareAsync(StatementShape shape, Supplier<BuiltStatement> statementFactory) {
+        return recordStageTime(shape.getTablename(), Stage.PREPARE, System.nanoTime(), recordPrepareCacheAccess(statementCaches.prepareAsync(shape, statementFactory)));
+    }
+    
+    /**
+     * @param tablename the tablename the statement refers to
      * @param preparedStatementFuture the prepared statement future to bind
      * @param values the values to bind 
      * @return the statement future
      */
-    public ListenableFuture<Statement> bindAsync(ListenableFuture<PreparedStatement> preparedStatementFuture, final Object[] values) {
+    public ListenableFuture<Statement> bindAsync(final Tablename tablename, ListenableFuture<PreparedStatement> preparedStatementFuture, final Object[] values) {
         final Function<PreparedStatement, Statement> bindStatementFunction = new Function<PreparedStatement, Statement>() {
             @Override
             public Statement apply(PreparedStatement preparedStatement) {
-                return preparedStatement.bind(values);
+                final long startNanos = System.nanoTime();
+                final Statement statement = preparedStatement.bind(values);
+                recordStageTime(tablename, Stage.BIND, startNanos);
+                
+                return statement;
             }
         };
         return Futures.transform(preparedStatementFuture, bindStatementFunction);
@@ -129,31 +462,151 @@ public class DBSession  {
      */
     public ListenableFuture<ResultSet> executeAsync(Statement statement) {
         try {
-            return getSession().executeAsync(statement);
+            if (timingsRecorder == null) {
+                return getSession().executeAsync(statement);
+            } else {
+                return recordExecute(System.nanoTime(), getSession().executeAsync(statement));
+            }
         } catch (InvalidQueryException | DriverInternalError e) {
-            cleanUp();
+            if (statement instanceof BoundStatement) {
+                invalidate(((BoundStatement) statement).preparedStatement());
+            }
             LOG.warn("could not execute statement", e);
             return Futures.immediateFailedFuture(e);
         }
     }
 
     
+    private ListenableFuture<ResultSet> recordExecute(final long startNanos, ListenableFuture<ResultSet> future) {
+        final Runnable executeTimeRecorder = new Runnable() {
+            
+            @Override
+            public void run() {
+                timingsRecorder.recordExecute(System.nanoTime() - startNanos);
+            }
+        };
+        future.addListener(executeTimeRecorder, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    
+    private void invalidate(PreparedStatement preparedStatement) {
+        statementCaches.invalidate(preparedStatement);
+    }
+    
     
     @Override
     public String toString() {
-        return MoreObjects.toStringHelper(this)
-                          .add("preparedStatementsCache", preparedStatementCache.toString())
-                          .toString();
+        return statementCaches.toString();
     }
   
     
-    private void cleanUp() {
-
-        // avoid bulk clean calls within the same time
-        if (System.currentTimeMillis() > (lastCacheCleanTime.get() + 1600)) {  // not really thread safe. However this does not matter 
-            lastCacheCleanTime.set(System.currentTimeMillis());
-
-            preparedStatementCache.invalidateAll();
+    
+    private static void invalidate(Cache<StatementShape, ListenableFuture<PreparedStatement>> cache, String keyspacename, String tablename) {
+        for (Iterator<StatementShape> it = cache.asMap().keySet().iterator(); it.hasNext(); ) {
+            if (it.next().getTablename().isSameTable(keyspacename, tablename)) {
+                it.remove();
+            }
+        }
+    }
+    
+    private static void invalidate(Cache<StatementShape, ListenableFuture<PreparedStatement>> cache, PreparedStatement preparedStatement) {
+        for (Iterator<ListenableFuture<PreparedStatement>> it = cache.asMap().values().iterator(); it.hasNext(); ) {
+            final ListenableFuture<PreparedStatement> future = it.next();
+            if (future.isDone()) {
+                try {
+                    if (Futures.getUnchecked(future) == preparedStatement) {
+                        it.remove();
+                    }
+                } catch (RuntimeException failedPrepare) {
+                    // failed prepares will not be cached  
+                    it.remove();
+                }
+            }
+        }
+    }
+    
+    
+    
+    /**
+     * the rows which have been invalidated while the statements of a mutation have been built. Batched 
+     * mutations do not know the keys of their rows, so the recorded rows will be invalidated once again, 
+     * if the batch has been executed   
+     */
+    static final class InvalidatedRows {
+        private final List<Tablename> tablenames = Lists.newArrayList();              // guarded by this
+        private final List<ImmutableMap<String, Object>> keys = Lists.newArrayList();  // guarded by this
+        
+        synchronized void add(Tablename tablename, ImmutableMap<String, Object> rowKeys) {
+            tablenames.add(tablename);
+            keys.add(rowKeys);
+        }
+        
+        /**
+         * @param dbSession  the session to invalidate the recorded rows. The session must not record the invalidated rows itself 
+         */
+        synchronized void invalidateAgain(DBSession dbSession) {
+            for (int i = 0; i < tablenames.size(); i++) {
+                dbSession.invalidateCachedRows(tablenames.get(i), keys.get(i));
+            }
+        }
+    }
+    
+    
+    
+    /**
+     * the statement caches which are shared by all sessions derived from the same root session  
+     */
+    static final class StatementCaches {
+        private final PreparedStatementCache preparedStatementCache;
+        private final StatementTemplateCache statementTemplateCache;
+        
+        StatementCaches(Session session, int maxSize) {
+            this.preparedStatementCache = new PreparedStatementCache(session, maxSize);
+            this.statementTemplateCache = new StatementTemplateCache(preparedStatementCache, maxSize);
+        }
+        
+        
+        ListenableFuture<PreparedStatement> prepareAsync(Tablename tablename, BuiltStatement statement) {
+            return preparedStatementCache.prepareAsync(tablename, statement);
+        }
+        
+        ListenableFuture<PreparedStatement> prepareAsync(StatementShape shape, Supplier<BuiltStatement> statementFactory) {
+            return statementTemplateCache.prepareAsync(shape, statementFactory);
+        }
+        
+        
+        /**
+         * invalidates the cached statements of the given table
+         * @param tablename the tablename
+         */
+        void invalidate(Tablename tablename) {
+            statementTemplateCache.invalidate(tablename.getKeyspacename(), tablename.getTablename());
+            preparedStatementCache.invalidate(tablename.getKeyspacename(), tablename.getTablename());
+        }
+        
+        /**
+         * invalidates the cached statements of all tables of the given keyspace
+         * @param keyspacename the keyspacename
+         */
+        void invalidate(String keyspacename) {
+            statementTemplateCache.invalidate(keyspacename, null);
+            preparedStatementCache.invalidate(keyspacename, null);
+        }
+        
+        void invalidate(PreparedStatement preparedStatement) {
+            statementTemplateCache.invalidate(preparedStatement);
+            preparedStatementCache.invalidate(preparedStatement);
+        }
+        
+        
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                              .add("preparedStatementsCache", preparedStatementCache.toString())
+                              .add("statementTemplateCache", statementTemplateCache.toString())
+                              .toString();
         }
     }
     
@@ -161,37 +614,64 @@ public class DBSession  {
     
     private static final class PreparedStatementCache {
         private final Session session;
-        private final Cache<String, PreparedStatement> preparedStatementCache;
+        private final Cache<StatementShape, ListenableFuture<PreparedStatement>> preparedStatementCache;
 
-        public PreparedStatementCache(Session session) {
+        public PreparedStatementCache(Session session, int maxSize) {
             this.session = session;
-            this.preparedStatementCache = CacheBuilder.newBuilder().maximumSize(150).<String, PreparedStatement>build();
+            this.preparedStatementCache = CacheBuilder.newBuilder().maximumSize(maxSize).<StatementShape, ListenableFuture<PreparedStatement>>build();
         }
         
         
-        ListenableFuture<PreparedStatement> prepareAsync(final BuiltStatement statement) {
-            final PreparedStatement preparedStatment = preparedStatementCache.getIfPresent(statement.getQueryString());
-            if (preparedStatment == null) {
-                final ListenableFuture<PreparedStatement> future = session.prepareAsync(statement);
+        ListenableFuture<PreparedStatement> prepareAsync(Tablename tablename, final BuiltStatement statement) {
+            final StatementShape query = StatementShape.of(tablename, statement.getQueryString());
+            
+            final ListenableFuture<PreparedStatement> cachedFuture = preparedStatementCache.getIfPresent(query);
+            if (cachedFuture != null) {
+                return cachedFuture;
+            }
+            
+            // concurrent callers of the same query share one in-flight prepare
+            final SettableFuture<PreparedStatement> newFuture = SettableFuture.create();
+            final ListenableFuture<PreparedStatement> runningFuture = preparedStatementCache.asMap().putIfAbsent(query, newFuture);
+            if (runningFuture != null) {
+                return runningFuture;
+            }
+            
+            final ListenableFuture<PreparedStatement> future;
+            try {
+                future = session.prepareAsync(statement);
+            } catch (RuntimeException rt) {
+                preparedStatementCache.asMap().remove(query, newFuture);
+                newFuture.setException(rt);
+                return newFuture;
+            }
+
+            final Runnable resultForwarder = new Runnable() {
                 
-                final Function<PreparedStatement, PreparedStatement> addToCacheFunction = new Function<PreparedStatement, PreparedStatement>() {
-                    
-                    public PreparedStatement apply(PreparedStatement preparedStatment) {
-                        preparedStatementCache.put(statement.getQueryString(), preparedStatment);
-                        return preparedStatment;
+                @Override
+                public void run() {
+                    try {
+                        newFuture.set(future.get());
+                    } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                        // do not cache failures. The next caller will retry to prepare the statement  
+                        preparedStatementCache.asMap().remove(query, newFuture);
+                        newFuture.setException(ListenableFutures.unwrapIfNecessary(e));
                     }
-                };
-                
-                return Futures.transform(future, addToCacheFunction);
-            } else {
-                return Futures.immediateFuture(preparedStatment);
-            }
+                }
+            };
+            future.addListener(resultForwarder, MoreExecutors.directExecutor());
+            
+            return newFuture;
         }
         
         
-        public void invalidateAll() {
-            preparedStatementCache.invalidateAll();
-        }      
+        public void invalidate(String keyspacename, String tablename) {
+            DBSession.invalidate(preparedStatementCache, keyspacename, tablename);
+        }
+        
+        public void invalidate(PreparedStatement preparedStatement) {
+            DBSession.invalidate(preparedStatementCache, preparedStatement);
+        }
         
         
         @Override
@@ -199,4 +679,62 @@ public class DBSession  {
             return Joiner.on(", ").withKeyValueSeparator("=").join(preparedStatementCache.asMap());
         }
     }
-}
\ No newline at end of file
+    
+    
+    
+    /**
+     * maps the statement shape to the prepared statement. This avoids building the CQL query string 
+     * for statements which has already been prepared 
+     */
+    private static final class StatementTemplateCache {
+        private final PreparedStatementCache preparedStatementCache;
+        private final Cache<StatementShape, ListenableFuture<PreparedStatement>> templateCache;
+
+        public StatementTemplateCache(PreparedStatementCache preparedStatementCache, int maxSize) {
+            this.preparedStatementCache = preparedStatementCache;
+            this.templateCache = CacheBuilder.newBuilder().maximumSize(maxSize).<StatementShape, ListenableFuture<PreparedStatement>>build();
+        }
+        
+        
+        ListenableFuture<PreparedStatement> prepareAsync(final StatementShape shape, Supplier<BuiltStatement> statementFactory) {
+            final ListenableFuture<PreparedStatement> cachedFuture = templateCache.getIfPresent(shape);
+            if (cachedFuture != null) {
+                return cachedFuture;
+            }
+
+            // concurrent prepares of the same query string will be coalesced by the prepared statement cache 
+            final ListenableFuture<PreparedStatement> future = preparedStatementCache.prepareAsync(shape.getTablename(), statementFactory.get());
+            templateCache.put(shape, future);
+            
+            final Runnable failureRemover = new Runnable() {
+                
+                @Override
+                public void run() {
+                    try {
+                        future.get();
+                    } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                        templateCache.asMap().remove(shape, future);
+                    }
+                }
+            };
+            future.addListener(failureRemover, MoreExecutors.directExecutor());
+            
+            return future;
+        }
+        
+        
+        public void invalidate(String keyspacename, String tablename) {
+            DBSession.invalidate(templateCache, keyspacename, tablename);
+        }
+        
+        public void invalidate(PreparedStatement preparedStatement) {
+            DBSession.invalidate(templateCache, preparedStatement);
+        }
+        
+        
+        @Override
+        public String toString() {
+            return Joiner.on(", ").withKeyValueSeparator("=").join(templateCache.asMap());
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import net.oneandone.troilus.MetricsRegistry.Operation;
 import net.oneandone.troilus.interceptor.DeleteQueryData;
 import net.oneandone.troilus.java7.Batchable;
 import net.oneandone.troilus.java7.Deletion;
@@ -39,6 +40,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 
 
@@ -134,10 +136,32 @@ class DeleteQuery extends MutationQuery<Deletion> implements Deletion {
     	return removeMapValue(column.getName(), mapKey);
     }
     
+    @Override
+    Tablename getTablename() {
+        return data.getTablename();
+    }
+    
+    @Override
+    Operation getOperation() {
+        return Operation.DELETE;
+    }
+    
     @Override
     public ListenableFuture<Result> executeAsync() {
         ListenableFuture<Result> future = super.executeAsync();
         
+        final DBSession dbSession = getDefaultDbSession();
+        if (dbSession.isRowCachingActivated()) {
+            // reads performed while the delete is in flight may have cached the old row 
+            Runnable cacheInvalidator = new Runnable() {
+                @Override
+                public void run() {
+                    dbSession.invalidateCachedRows(data.getTablename(), data.getKey());
+                }
+            };
+            future.addListener(cacheInvalidator, MoreExecutors.directExecutor());
+        }
+        
         Function<Result, Result> validateOnlyIfFunction = new Function<Result, Result>() {
             @Override
             public Result apply(Result result) {
@@ -155,7 +179,7 @@ class DeleteQuery extends MutationQuery<Deletion> implements Deletion {
     public ListenableFuture<Statement> getStatementAsync(final DBSession dbSession) {
         
         // perform request executors
-        ListenableFuture<DeleteQueryData> queryDataFuture = executeRequestInterceptorsAsync(Futures.<DeleteQueryData>immediateFuture(data));
+        ListenableFuture<DeleteQueryData> queryDataFuture = executeRequestInterceptorsAsync(dbSession, Futures.<DeleteQueryData>immediateFuture(data));
         
         // query data to statement
         Function<DeleteQueryData, ListenableFuture<Statement>> queryDataToStatement = new Function<DeleteQueryData, ListenableFuture<Statement>>() {
@@ -164,6 +188,9 @@ class DeleteQuery extends MutationQuery<Deletion> implements Deletion {
                 if (queryData == null) {
                     throw new NullPointerException();
                 }
+                if (dbSession.isRowCachingActivated()) {
+                    dbSession.invalidateCachedRows(queryData.getTablename(), queryData.getKey());
+                }
                 return DeleteQueryDataImpl.toStatementAsync(queryData, getExecutionSpec(), getUDTValueMapper(), dbSession);
             }
         };
@@ -185,7 +212,7 @@ class DeleteQuery extends MutationQuery<Deletion> implements Deletion {
     
    
     
-    private ListenableFuture<DeleteQueryData> executeRequestInterceptorsAsync(ListenableFuture<DeleteQueryData> queryDataFuture) {
+    private ListenableFuture<DeleteQueryData> executeRequestInterceptorsAsync(final DBSession dbSession, ListenableFuture<DeleteQueryData> queryDataFuture) {
 
         for (DeleteQueryRequestInterceptor interceptor : getInterceptorRegistry().getInterceptors(DeleteQueryRequestInterceptor.class).reverse()) {
             final DeleteQueryRequestInterceptor icptor = interceptor;
@@ -193,7 +220,7 @@ class DeleteQuery extends MutationQuery<Deletion> implements Deletion {
             Function<DeleteQueryData, ListenableFuture<DeleteQueryData>> mapperFunction = new Function<DeleteQueryData, ListenableFuture<DeleteQueryData>>() {
                 @Override
                 public ListenableFuture<DeleteQueryData> apply(DeleteQueryData queryData) {
-                    return icptor.onDeleteRequestAsync(queryData);
+                    return dbSession.recordInterceptorTime(queryData.getTablename(), true, System.nanoTime(), icptor.onDeleteRequestAsync(queryData));
                 }
             };
             
@@ -214,7 +241,7 @@ class DeleteQuery extends MutationQuery<Deletion> implements Deletion {
             Function<DeleteQueryData, ListenableFuture<ImmutableSet<? extends Batchable<?>>>> querydataToBatchables = new Function<DeleteQueryData, ListenableFuture<ImmutableSet<? extends Batchable<?>>>>() {
                 @Override
                 public ListenableFuture<ImmutableSet<? extends Batchable<?>>> apply(DeleteQueryData queryData) {
-                    return icptor.onDeleteAsync(queryData);                    
+                    return dbSession.recordInterceptorTime(queryData.getTablename(), true, System.nanoTime(), icptor.onDeleteAsync(queryData));
                 }
             };
             ListenableFuture<ImmutableSet<? extends Batchable<?>>> batchablesFutureSet = ListenableFutures.transform(queryDataFuture, querydataToBatchables);
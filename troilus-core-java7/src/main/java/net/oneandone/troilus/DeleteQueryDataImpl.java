@@ -24,6 +24,7 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import java.util.List;
 import java.util.Map.Entry;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.interceptor.DeleteQueryData;
 
 import com.datastax.driver.core.PreparedStatement;
@@ -161,6 +162,7 @@ class DeleteQueryDataImpl implements DeleteQueryData {
      * @return the query data statement
      */
     static ListenableFuture<Statement> toStatementAsync(DeleteQueryData data, ExecutionSpec executionSpec, UDTValueMapper udtValueMapper, DBSession dbSession) {
+        final long startNanos = System.nanoTime();
         
     	Delete.Selection deletion = delete();
         Delete delete = (data.getTablename().getKeyspacename() == null) ? deletion.from(data.getTablename().getTablename())
@@ -193,14 +195,17 @@ class DeleteQueryDataImpl implements DeleteQueryData {
                 values.add(udtValueMapper.toStatementValue(data.getTablename(), entry.getKey(), entry.getValue()));
             }
             
-            ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(delete);
-            return dbSession.bindAsync(preparedStatementFuture, values.toArray());
+            dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
+            
+            ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(data.getTablename(), delete);
+            return dbSession.bindAsync(data.getTablename(), preparedStatementFuture, values.toArray());
             
         // where condition-based delete    
         } else {
             for (Clause whereCondition : data.getWhereConditions()) {
                 delete.where(whereCondition);
             }
+            dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
            
             return Futures.<Statement>immediateFuture(delete);
         }        
@@ -0,0 +1,102 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+
+
+/**
+ * Mapper of an entity class which is generated at compile time by the troilus-processor. The 
+ * generated mappers are registered as service provider (META-INF/services/net.oneandone.troilus.EntityMapper)
+ * and will be picked up by the {@link BeanMapper} instead of scanning the entity class by reflection.
+ * 
+ * The properties are addressed by index. The order of the properties corresponds to the order in which  
+ * the mapped fields are declared. The type information of the properties is provided by the mapper as 
+ * well, i.e. the mapped fields will not be looked up by reflection (except final fields, which can be 
+ * written by reflection only).    
+ *
+ * @param <T> the entity type
+ */
+public interface EntityMapper<T> {
+
+    /**
+     * @return the entity class
+     */
+    Class<T> getEntityClass();
+    
+    /**
+     * @return the number of mapped properties
+     */
+    int getPropertyCount();
+    
+    /**
+     * @param idx the property index
+     * @return the property name (the column name)
+     */
+    String getPropertyName(int idx);
+    
+    /**
+     * @param idx the property index
+     * @return the class which declares the field of the property
+     */
+    Class<?> getDeclaringClass(int idx);
+    
+    /**
+     * @param idx the property index
+     * @return the name of the field of the property
+     */
+    String getFieldName(int idx);
+    
+    /**
+     * @param idx the property index
+     * @return the (erased) type of the field of the property  
+     */
+    Class<?> getPropertyType(int idx);
+    
+    /**
+     * @param idx the property index
+     * @return the (erased) type arguments of the field type of the property, e.g. the element type of a set. Empty, if the type is not parameterized    
+     */
+    Class<?>[] getPropertyTypeArguments(int idx);
+    
+    /**
+     * @param idx the property index
+     * @return true, if the property can be written by {@link #write(Object, int, Object)}. False, if the field is final 
+     */
+    boolean isWritable(int idx);
+
+    /**
+     * @return the new entity instance
+     * @throws UnsupportedOperationException if the entity class does not provide an accessible no-args constructor  
+     */
+    T newInstance();
+    
+    /**
+     * @param entity  the entity
+     * @param idx     the property index
+     * @return the field value
+     */
+    Object read(T entity, int idx);
+    
+    /**
+     * @param entity  the entity
+     * @param idx     the property index
+     * @param value   the value to write
+     * @throws UnsupportedOperationException if the field is final
+     */
+    void write(T entity, int idx, Object value);
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.UDTValue;
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+
+
+/**
+ * Maps rows to entities. The mapping plan is bound once per entity class and column definitions. By 
+ * doing this the rows will be decoded by column index without resolving the column names for each field 
+ * of each row. Entity properties of columns which are not selected are left untouched  
+ */
+class EntityRowMapper {
+    
+    private final BeanMapper beanMapper;
+    private final UDTValueMapper udtValueMapper;
+    
+    // the column definitions will be shared by the rows of a result set (and by the result sets of a prepared statement).
+    // The plans must not reference the column definitions. Otherwise the weak keys would never be collected   
+    private final LoadingCache<ColumnDefinitions, ConcurrentMap<Class<?>, RowMappingPlan<?>>> planCache = CacheBuilder.newBuilder()
+                                                                                                                      .weakKeys()
+                                                                                                                      .build(new PlansLoader());
+
+    
+    /**
+     * @param beanMapper      the bean mapper
+     * @param udtValueMapper  the udt value mapper
+     */
+    EntityRowMapper(BeanMapper beanMapper, UDTValueMapper udtValueMapper) {
+        this.beanMapper = beanMapper;
+        this.udtValueMapper = udtValueMapper;
+    }
+    
+    
+    /**
+     * @param clazz  the entity type
+     * @param row    the row to map
+     * @return the entity
+     */
+    <T> T map(Class<T> clazz, Row row) {
+        return getPlan(clazz, row.getColumnDefinitions()).map(row);
+    }
+    
+    
+    /**
+     * @param clazz              the entity type
+     * @param columnDefinitions  the column definitions of the rows to map
+     * @return the mapping plan
+     */
+    @SuppressWarnings("unchecked")
+    <T> RowMappingPlan<T> getPlan(Class<T> clazz, ColumnDefinitions columnDefinitions) {
+        final ConcurrentMap<Class<?>, RowMappingPlan<?>> plans = planCache.getUnchecked(columnDefinitions);
+        
+        RowMappingPlan<T> plan = (RowMappingPlan<T>) plans.get(clazz);
+        if (plan == null) {
+            plan = new RowMappingPlan<>(clazz, columnDefinitions, beanMapper, udtValueMapper);
+            plans.put(clazz, plan);
+        }
+        
+        return plan;
+    }
+    
+    
+    private static final class PlansLoader extends CacheLoader<ColumnDefinitions, ConcurrentMap<Class<?>, RowMappingPlan<?>>> {
+        
+        @Override
+        public ConcurrentMap<Class<?>, RowMappingPlan<?>> load(ColumnDefinitions columnDefinitions) throws Exception {
+            return Maps.newConcurrentMap();
+        }
+    }
+    
+    
+    
+    /**
+     * The mapping plan of an entity class and column definitions 
+     * @param <T> the entity type
+     */
+    static final class RowMappingPlan<T> {
+        private final BeanMapper.IndexedMapper<T> mapper;
+        private final UDTValueMapper udtValueMapper;
+        
+        // per column index
+        private final DataType[] types;
+        private final boolean[] isBuildInType;
+        private final boolean[] isTextType;
+        private final boolean[] isBlobType;
+        
+        
+        private RowMappingPlan(Class<T> clazz, ColumnDefinitions columnDefinitions, BeanMapper beanMapper, UDTValueMapper udtValueMapper) {
+            this.udtValueMapper = udtValueMapper;
+            
+            final int size = columnDefinitions.size();
+            this.types = new DataType[size];
+            this.isBuildInType = new boolean[size];
+            this.isTextType = new boolean[size];
+            this.isBlobType = new boolean[size];
+            for (int idx = 0; idx < size; idx++) {
+                final DataType type = columnDefinitions.getType(idx);
+                types[idx] = type;
+                isBuildInType[idx] = UDTValueMapper.isBuildInType(type);
+                isTextType[idx] = DataTypes.isTextDataType(type);
+                isBlobType[idx] = type.equals(DataType.blob());
+            }
+            
+            // properties which are not included by the row will not be written, i.e. they keep the value 
+            // assigned by the entity constructor. Selected columns are written even if they are null 
+            final ImmutableMap.Builder<String, Integer> columnIndexes = ImmutableMap.builder();
+            for (String name : beanMapper.getPropertyNames(clazz)) {
+                final int idx = columnDefinitions.getIndexOf(name);
+                if (idx >= 0) {
+                    columnIndexes.put(name, idx);
+                }
+            }
+            this.mapper = beanMapper.newIndexedMapper(clazz, columnIndexes.build());
+        }
+        
+        
+        /**
+         * @param row  the row to map
+         * @return the entity 
+         */
+        T map(Row row) {
+            return mapper.fromValues(new RowPropertiesSource(row));
+        }
+        
+        
+        
+        private final class RowPropertiesSource implements IndexedPropertiesSource {
+            private final Row row;
+            
+            RowPropertiesSource(Row row) {
+                this.row = row;
+            }
+            
+            @Override
+            public <V> Optional<V> read(int idx, Class<?> clazz1) {
+                if (Collection.class.isAssignableFrom(clazz1)) {
+                    throw new IllegalArgumentException("clazz1 cannot be a collection. " + 
+                                                       "Call read(int idx, Class<?> clazz1, Class<?> clazz2) instead.");
+                }
+                return read(idx, clazz1, null);
+            }
+            
+            @SuppressWarnings("unchecked")
+            @Override
+            public <V> Optional<V> read(int idx, Class<?> clazz1, Class<?> clazz2) {
+                final Object value;
+                if (List.class.isAssignableFrom(clazz1)) {
+                    value = getList(idx, clazz2);
+                } else if (Set.class.isAssignableFrom(clazz1)) {
+                    value = getSet(idx, clazz2);
+                } else if (clazz2 != null) {
+                    // both classes are set and clazz1 is not a collection -> map 
+                    value = getMap(idx, clazz1, clazz2);
+                } else {
+                    value = getValue(idx, clazz1);
+                }
+                
+                return Optional.fromNullable((V) value);
+            }
+
+            
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            private Object getValue(int idx, Class<?> elementsClass) {
+                final DataType datatype = types[idx];
+                
+                // build-in
+                if (isBuildInType[idx]) {
+                    final ByteBuffer byteBuffer = row.getBytesUnsafe(idx); 
+                    final Object obj = (byteBuffer == null) ? null : udtValueMapper.deserialize(datatype, byteBuffer);
+                    
+                    // enum
+                    if ((obj != null) && isTextType[idx] && Enum.class.isAssignableFrom(elementsClass)) {
+                        return Enum.valueOf((Class<Enum>) elementsClass, obj.toString());
+                    }
+                    
+                    // bytebuffer (byte[])
+                    if (isBlobType[idx] && byte[].class.isAssignableFrom(elementsClass)) {
+                        if (obj == null) {
+                            return new byte[0];
+                        } else {
+                            final ByteBuffer bb = (ByteBuffer) obj;
+                            final byte[] bytes = new byte[bb.remaining()];
+                            bb.get(bytes, 0, bytes.length);
+                            return bytes;
+                        }
+                    }
+                    
+                    return obj;
+                    
+                // udt
+                } else {
+                    return udtValueMapper.fromUdtValue(datatype, row.getUDTValue(idx), elementsClass);
+                }
+            }
+            
+            private Object getSet(int idx, Class<?> elementsClass) {
+                if (row.isNull(idx)) {
+                    return ImmutableSet.of();
+                }
+
+                if (isBuildInType[idx]) {
+                    return ImmutableSet.copyOf(row.getSet(idx, elementsClass));
+                } else {
+                    return udtValueMapper.fromUdtValues(types[idx].getTypeArguments().get(0), ImmutableSet.copyOf(row.getSet(idx, UDTValue.class)), elementsClass);
+                }
+            }
+            
+            private Object getList(int idx, Class<?> elementsClass) {
+                if (row.isNull(idx)) {
+                    return ImmutableList.of();
+                }
+                
+                if (isBuildInType[idx]) {
+                    return ImmutableList.copyOf(row.getList(idx, elementsClass));
+                } else {
+                    return udtValueMapper.fromUdtValues(types[idx].getTypeArguments().get(0), ImmutableList.copyOf(row.getList(idx, UDTValue.class)), elementsClass);
+                }
+            }
+            
+            private Object getMap(int idx, Class<?> keysClass, Class<?> valuesClass) {
+                if (row.isNull(idx)) {
+                    return ImmutableMap.of();
+                }
+                
+                if (isBuildInType[idx]) {
+                    return ImmutableMap.copyOf(row.getMap(idx, keysClass, valuesClass));
+                } 
+                    
+                final DataType keyType = types[idx].getTypeArguments().get(0);
+                final DataType valueType = types[idx].getTypeArguments().get(1);
+                if (UDTValueMapper.isBuildInType(keyType)) {
+                    return udtValueMapper.fromUdtValues(keyType, valueType, ImmutableMap.copyOf(row.getMap(idx, keysClass, UDTValue.class)), keysClass, valuesClass);
+                    
+                } else if (UDTValueMapper.isBuildInType(valueType)) {
+                    return udtValueMapper.fromUdtValues(keyType, valueType, ImmutableMap.copyOf(row.getMap(idx, UDTValue.class, valuesClass)), keysClass, valuesClass);
+                        
+                } else {
+                    return udtValueMapper.fromUdtValues(keyType, valueType, ImmutableMap.copyOf(row.getMap(idx, UDTValue.class, UDTValue.class)), keysClass, valuesClass);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The metrics of the task executor, which runs the interceptors and the reactive subscriptions. A growing 
+ * queue depth or rejected tasks show that the executor is not able to keep up with the completed queries   
+ */
+public interface ExecutorMetrics {
+
+    /**
+     * @return the number of tasks waiting to be executed
+     */
+    int getQueueDepth();
+    
+    /**
+     * @return the approximate number of threads which are executing tasks
+     */
+    int getActiveCount();
+    
+    /**
+     * @return the approximate number of completed tasks
+     */
+    long getCompletedTaskCount();
+    
+    /**
+     * @return the number of rejected tasks, because the queue was full
+     */
+    long getNumRejected();
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.Lists;
+
+
+
+/**
+ * Metrics registry which keeps the metrics in memory. The latencies are kept by histograms 
+ * per table and operation, the stage times by counters per table. The tables are identified by  
+ * the qualified tablename (keyspace.table). The metrics of batches, 
+ * which may refer several tables, are kept by the tablename null  
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+    
+    private static final String NO_TABLENAME = "";  // cassandra does not support empty table names 
+    
+    private final ConcurrentMap<String, TableMetrics> tableMetrics = new ConcurrentHashMap<>();
+    private final AtomicReference<ExecutorMetrics> taskExecutorMetrics = new AtomicReference<>();
+
+    
+    
+    @Override
+    public void recordLatency(String tablename, Operation operation, long latencyMicros, boolean isSuccess) {
+        getOrCreateTableMetrics(tablename).getOrCreateOperationMetrics(operation).record(latencyMicros, isSuccess);
+    }
+    
+    @Override
+    public void recordStageTime(String tablename, Stage stage, long elapsedNanos) {
+        getOrCreateTableMetrics(tablename).getStageMetrics().record(stage, elapsedNanos);
+    }
+    
+    
+    /**
+     * @param tablename  the qualified tablename (keyspace.table) or null for batches
+     * @param operation  the operation
+     * @return the metrics of the operation of the table
+     */
+    public OperationMetrics getOperationMetrics(String tablename, Operation operation) {
+        final TableMetrics metrics = tableMetrics.get(toKey(tablename));
+        final OperationMetrics operationMetrics = (metrics == null) ? null : metrics.getOperationMetrics(operation);
+        return (operationMetrics == null) ? new OperationMetricsImpl() : operationMetrics;
+    }
+    
+    /**
+     * @param tablename the qualified tablename (keyspace.table) or null for batches
+     * @return the stage metrics of the table
+     */
+    public StageMetrics getStageMetrics(String tablename) {
+        final TableMetrics metrics = tableMetrics.get(toKey(tablename));
+        return (metrics == null) ? new StageMetricsImpl() : metrics.getStageMetrics(); 
+    }
+    
+    /**
+     * @return the metrics of the task executor. The metrics are available, if the shared task executor 
+     *         is used (see system property <code>net.oneandone.troilus.taskExecutorThreads</code>) 
+     */
+    public ExecutorMetrics getTaskExecutorMetrics() {
+        final ExecutorMetrics metrics = taskExecutorMetrics.get();
+        return (metrics == null) ? new NoExecutorMetrics() : metrics;
+    }
+    
+    void setTaskExecutorMetrics(ExecutorMetrics metrics) {
+        // the task executor is shared by all contexts 
+        if (taskExecutorMetrics.compareAndSet(null, metrics)) {
+            onNewTaskExecutorMetrics(metrics);
+        }
+    }
+    
+    
+    /**
+     * will be called, if the metrics of a new operation of a table has been created 
+     * 
+     * @param tablename  the tablename or null for batches
+     * @param operation  the operation
+     * @param metrics    the new metrics
+     */
+    protected void onNewOperationMetrics(String tablename, Operation operation, OperationMetrics metrics) {
+        
+    }
+    
+    /**
+     * will be called, if the stage metrics of a new table has been created
+     * 
+     * @param tablename  the tablename or null for batches
+     * @param metrics    the new metrics
+     */
+    protected void onNewStageMetrics(String tablename, StageMetrics metrics) {
+        
+    }
+    
+    /**
+     * will be called, if the metrics of the task executor has been set
+     * 
+     * @param metrics    the task executor metrics
+     */
+    protected void onNewTaskExecutorMetrics(ExecutorMetrics metrics) {
+        
+    }
+    
+    
+    private TableMetrics getOrCreateTableMetrics(String tablename) {
+        final String key = toKey(tablename);
+        
+        TableMetrics metrics = tableMetrics.get(key);
+        if (metrics == null) {
+            final TableMetrics newMetrics = new TableMetrics(tablename);
+            metrics = tableMetrics.putIfAbsent(key, newMetrics);
+            if (metrics == null) {
+                metrics = newMetrics;
+                onNewStageMetrics(tablename, metrics.getStageMetrics());
+            }
+        }
+        
+        return metrics;
+    }
+    
+    private static String toKey(String tablename) {
+        return (tablename == null) ? NO_TABLENAME : tablename;
+    }
+    
+    
+    @Override
+    public String toString() {
+        final List<String> entries = Lists.newArrayList();
+        for (TableMetrics metrics : tableMetrics.values()) {
+            entries.add(metrics.toString());
+        }
+        return Joiner.on(", ").join(entries);
+    }
+    
+    
+    
+    private final class TableMetrics {
+        private final String tablename;
+        private final AtomicReferenceArray<OperationMetricsImpl> operationMetrics = new AtomicReferenceArray<>(Operation.values().length);
+        private final StageMetricsImpl stageMetrics = new StageMetricsImpl();
+        
+        TableMetrics(String tablename) {
+            this.tablename = tablename;
+        }
+        
+        OperationMetricsImpl getOperationMetrics(Operation operation) {
+            return operationMetrics.get(operation.ordinal());
+        }
+        
+        OperationMetricsImpl getOrCreateOperationMetrics(Operation operation) {
+            OperationMetricsImpl metrics = operationMetrics.get(operation.ordinal());
+            if (metrics == null) {
+                final OperationMetricsImpl newMetrics = new OperationMetricsImpl();
+                if (operationMetrics.compareAndSet(operation.ordinal(), null, newMetrics)) {
+                    onNewOperationMetrics(tablename, operation, newMetrics);
+                }
+                metrics = operationMetrics.get(operation.ordinal());
+            }
+            
+            return metrics;
+        }
+        
+        StageMetricsImpl getStageMetrics() {
+            return stageMetrics;
+        }
+        
+        @Override
+        public String toString() {
+            final List<String> entries = Lists.newArrayList();
+            for (Operation operation : Operation.values()) {
+                final OperationMetricsImpl metrics = getOperationMetrics(operation);
+                if (metrics != null) {
+                    entries.add(operation + " " + metrics);
+                }
+            }
+            
+            return ((tablename == null) ? "<batch>" : tablename) + " [" + Joiner.on(", ").join(entries) + "] " + stageMetrics;
+        }
+    }
+    
+    
+    
+    private static final class OperationMetricsImpl implements OperationMetrics {
+        private final long createdNanos = System.nanoTime();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final AtomicLong numErrors = new AtomicLong();
+        
+        void record(long latencyMicros, boolean isSuccess) {
+            histogram.record(latencyMicros);
+            if (!isSuccess) {
+                numErrors.incrementAndGet();
+            }
+        }
+        
+        @Override
+        public long getCount() {
+            return histogram.getNumSamples();
+        }
+        
+        @Override
+        public long getNumErrors() {
+            return numErrors.get();
+        }
+        
+        @Override
+        public double getThroughput() {
+            final long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - createdNanos));
+            return (getCount() * 1000.0) / elapsedMillis;
+        }
+        
+        @Override
+        public double getMeanMicros() {
+            return histogram.getMeanMicros();
+        }
+        
+        @Override
+        public long getP50Micros() {
+            return getPercentileMicros(50);
+        }
+        
+        @Override
+        public long getP99Micros() {
+            return getPercentileMicros(99);
+        }
+        
+        @Override
+        public long getP999Micros() {
+            return getPercentileMicros(99.9);
+        }
+        
+        @Override
+        public long getPercentileMicros(double percentile) {
+            return histogram.getPercentileMicros(percentile);
+        }
+        
+        @Override
+        public String toString() {
+            return "count=" + getCount() + " errors=" + getNumErrors() + " p50=" + getP50Micros() + "us p99=" + getP99Micros() + "us";
+        }
+    }
+    
+    
+    
+    private static final class StageMetricsImpl implements StageMetrics {
+        private final AtomicLongArray nanos = new AtomicLongArray(Stage.values().length);
+        
+        void record(Stage stage, long elapsedNanos) {
+            nanos.addAndGet(stage.ordinal(), elapsedNanos);
+        }
+        
+        private long getMicros(Stage stage) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos.get(stage.ordinal()));
+        }
+        
+        @Override
+        public long getStatementBuildMicros() {
+            return getMicros(Stage.STATEMENT_BUILD);
+        }
+        
+        @Override
+        public long getPrepareMicros() {
+            return getMicros(Stage.PREPARE);
+        }
+        
+        @Override
+        public long getBindMicros() {
+            return getMicros(Stage.BIND);
+        }
+        
+        @Override
+        public long getServerMicros() {
+            return getMicros(Stage.SERVER);
+        }
+        
+        @Override
+        public long getInterceptorMicros() {
+            return getMicros(Stage.INTERCEPTOR);
+        }
+        
+        @Override
+        public long getEntityMappingMicros() {
+            return getMicros(Stage.ENTITY_MAPPING);
+        }
+        
+        @Override
+        public String toString() {
+            final List<String> entries = Lists.newArrayList();
+            for (Stage stage : Stage.values()) {
+                entries.add(stage + "=" + getMicros(stage) + "us");
+            }
+            return Joiner.on(" ").join(entries);
+        }
+    }
+    
+    
+    
+    private static final class NoExecutorMetrics implements ExecutorMetrics {
+        
+        @Override
+        public int getQueueDepth() {
+            return 0;
+        }
+        
+        @Override
+        public int getActiveCount() {
+            return 0;
+        }
+        
+        @Override
+        public long getCompletedTaskCount() {
+            return 0;
+        }
+        
+        @Override
+        public long getNumRejected() {
+            return 0;
+        }
+    }
+}
@@ -17,10 +17,14 @@ package net.oneandone.troilus;
 
 
 
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.interceptor.QueryInterceptor;
+import net.oneandone.troilus.java7.BatchingWriter;
+import net.oneandone.troilus.java7.BulkWrite;
 import net.oneandone.troilus.java7.Dao;
 import net.oneandone.troilus.java7.Deletion;
 import net.oneandone.troilus.java7.Insertion;
@@ -31,6 +35,8 @@ import net.oneandone.troilus.java7.SingleReadWithUnit;
 import net.oneandone.troilus.java7.UpdateWithUnitAndCounter;
 import net.oneandone.troilus.java7.WriteWithCounter;
 
+import org.reactivestreams.Publisher;
+
 import com.datastax.driver.core.Session;
 import com.datastax.driver.core.policies.RetryPolicy;
 import com.datastax.driver.core.querybuilder.Clause;
@@ -95,6 +101,16 @@ public class Java7DaoImpl implements Dao {
     public Dao withoutTracking() {
         return new Java7DaoImpl(ctx.withoutTracking(), this.tablename);
     }
+    
+    @Override
+    public Dao withStageTiming() {
+        return new Java7DaoImpl(ctx.withStageTiming(), this.tablename);
+    }
+    
+    @Override
+    public Dao withoutStageTiming() {
+        return new Java7DaoImpl(ctx.withoutStageTiming(), this.tablename);
+    }
 
     @Override
     public Dao withRetryPolicy(RetryPolicy policy) {
@@ -105,13 +121,105 @@ public class Java7DaoImpl implements Dao {
     public Dao withInterceptor(QueryInterceptor queryInterceptor) {
         return new Java7DaoImpl(ctx.withInterceptor(queryInterceptor), this.tablename);
     }
+
+    @Override
+    public Dao withParanoiaCheck(ParanoiaCheckMode mode) {
+        return new Java7DaoImpl(ctx.withParanoiaCheck(mode), this.tablename);
+    }
+    
+    @Override
+    public long getDetectedDataSwaps() {
+        return ctx.getParanoiaCheck().getDetectedDataSwaps();
+    }
+    
+    @Override
+    public Dao withConcurrencyLimit(int maxLimit, int maxQueueSize) {
+        return new Java7DaoImpl(ctx.withConcurrencyLimit(maxLimit, maxQueueSize), this.tablename);
+    }
+    
+    @Override
+    public ConcurrencyLimit getConcurrencyLimit() {
+        return ctx.getConcurrencyLimiter();
+    }
+    
+    /**
+     * unregisters the schema change listener of this dao and the daos derived from it. Call 
+     * this, if the dao is not used anymore. Otherwise the listener keeps the caches of the 
+     * dao referenced as long as the cluster is open  
+     */
+    public void close() {
+        ctx.close();
+    }
+    
+    @Override
+    public Dao withMetricsRegistry(MetricsRegistry metricsRegistry) {
+        return new Java7DaoImpl(ctx.withMetricsRegistry(metricsRegistry), this.tablename);
+    }
+    
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        return ctx.getMetricsRegistry();
+    }
+    
+    @Override
+    public Dao withSlowQueryLog(SlowQueryLog slowQueryLog) {
+        return new Java7DaoImpl(ctx.withSlowQueryLog(slowQueryLog), this.tablename);
+    }
+    
+    @Override
+    public SlowQueryLog getSlowQueryLog() {
+        return ctx.getSlowQueryLog();
+    }
+    
+    @Override
+    public Dao withReadCache(int maxSize, long ttlMillis, long refreshAfterMillis) {
+        return new Java7DaoImpl(ctx.withReadCache(maxSize, ttlMillis, refreshAfterMillis), this.tablename);
+    }
+    
+    @Override
+    public Dao withoutReadCache() {
+        return new Java7DaoImpl(ctx.withoutReadCache(), this.tablename);
+    }
+    
+    @Override
+    public Dao withNegativeCache(int maxSize, long ttlMillis) {
+        return new Java7DaoImpl(ctx.withNegativeCache(maxSize, ttlMillis), this.tablename);
+    }
+    
+    @Override
+    public Dao withNegativeBloomFilterCache(int expectedKeys, double fpp, long ttlMillis) {
+        return new Java7DaoImpl(ctx.withNegativeBloomFilterCache(expectedKeys, fpp, ttlMillis), this.tablename);
+    }
+    
+    @Override
+    public Dao withoutNegativeCache() {
+        return new Java7DaoImpl(ctx.withoutNegativeCache(), this.tablename);
+    }
+    
+    @Override
+    public BatchingWriter newBatchingWriter(long maxDelayMillis, int maxBatchSize, int maxInFlight, int maxQueueSize) {
+        return new BatchingWriterImpl(ctx, maxDelayMillis, maxBatchSize, maxInFlight, maxQueueSize);
+    }
     
     @Override
     public Insertion writeEntity(Object entity) {
+        final long startNanos = System.nanoTime();
         ImmutableMap<String, Optional<Object>> values = ctx.getBeanMapper().toValues(entity, ctx.getCatalog().getColumnNames(tablename));
+        ctx.getDefaultDbSession().recordStageTime(tablename, Stage.ENTITY_MAPPING, startNanos);
+        
         return new InsertQuery(ctx, new WriteQueryDataImpl(tablename).valuesToMutate(values));
     }
     
+    @Override
+    public BulkWrite bulkWrite(Iterator<?> entities) {
+        return new BulkWriteQuery(ctx, tablename, entities);
+    }
+    
+    @Override
+    public BulkWrite bulkWrite(Publisher<?> entities) {
+        return new BulkWriteQuery(ctx, tablename, entities);
+    }
+    
     @Override
     public UpdateWithUnitAndCounter writeWhere(Clause... clauses) {
         return new UpdateQuery(ctx, new WriteQueryDataImpl(tablename).whereConditions((ImmutableList.copyOf(clauses))));
@@ -0,0 +1,149 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+
+
+
+/**
+ * Metrics registry which keeps the metrics in memory and exposes them as MBeans. The MBeans are named   
+ * <code>net.oneandone.troilus:type=OperationMetrics,[scope=&lt;scope&gt;,][table=&lt;keyspace.table&gt;,]operation=&lt;operation&gt;</code>, 
+ * <code>net.oneandone.troilus:type=StageMetrics,[scope=&lt;scope&gt;,][table=&lt;keyspace.table&gt;]</code> 
+ * and <code>net.oneandone.troilus:type=TaskExecutorMetrics[,scope=&lt;scope&gt;]</code>
+ */
+public class JmxMetricsRegistry extends InMemoryMetricsRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(JmxMetricsRegistry.class);
+    
+    private static final String DOMAIN = "net.oneandone.troilus";
+
+    private final MBeanServer mbeanServer;
+    private final String scope;
+    private final Set<ObjectName> registeredNames = Sets.newConcurrentHashSet();
+    
+    
+    /**
+     * constructor which registers the MBeans at the platform MBean server
+     */
+    public JmxMetricsRegistry() {
+        this(null);
+    }
+    
+    /**
+     * constructor which registers the MBeans at the platform MBean server
+     *  
+     * @param scope  the scope which is added to the MBean names (e.g. to separate the metrics of different clusters) or null
+     */
+    public JmxMetricsRegistry(String scope) {
+        this(ManagementFactory.getPlatformMBeanServer(), scope);
+    }
+    
+    /**
+     * @param mbeanServer  the MBean server to use
+     * @param scope        the scope which is added to the MBean names or null
+     */
+    public JmxMetricsRegistry(MBeanServer mbeanServer, String scope) {
+        this.mbeanServer = mbeanServer;
+        this.scope = scope;
+    }
+    
+    
+    @Override
+    protected void onNewOperationMetrics(String tablename, Operation operation, OperationMetrics metrics) {
+        register(newObjectName("OperationMetrics", tablename, operation), metrics, OperationMetrics.class);
+    }
+    
+    @Override
+    protected void onNewStageMetrics(String tablename, StageMetrics metrics) {
+        register(newObjectName("StageMetrics", tablename, null), metrics, StageMetrics.class);
+    }
+    
+    @Override
+    protected void onNewTaskExecutorMetrics(ExecutorMetrics metrics) {
+        register(newObjectName("TaskExecutorMetrics", null, null), metrics, ExecutorMetrics.class);
+    }
+    
+    
+    /**
+     * @return the names of the registered MBeans 
+     */
+    public ImmutableSet<ObjectName> getRegisteredNames() {
+        return ImmutableSet.copyOf(registeredNames);
+    }
+    
+    /**
+     * unregisters the MBeans of this registry
+     */
+    public void unregister() {
+        for (ObjectName name : getRegisteredNames()) {
+            try {
+                mbeanServer.unregisterMBean(name);
+            } catch (JMException e) {
+                LOG.debug("could not unregister " + name, e);
+            }
+            registeredNames.remove(name);
+        }
+    }
+    
+    
+    private <T> void register(ObjectName name, T metrics, Class<T> metricsInterface) {
+        if (name == null) {
+            return;
+        }
+        
+        try {
+            mbeanServer.registerMBean(new StandardMBean(metrics, metricsInterface), name);
+            registeredNames.add(name);
+        } catch (JMException e) {
+            LOG.warn("could not register metrics " + name, e);
+        }
+    }
+    
+    private ObjectName newObjectName(String type, String tablename, Operation operation) {
+        final StringBuilder name = new StringBuilder(DOMAIN).append(":type=").append(type);
+
+        if (scope != null) {
+            name.append(",scope=").append(ObjectName.quote(scope));
+        }
+        
+        if (tablename != null) {
+            name.append(",table=").append(ObjectName.quote(tablename));
+        }
+        
+        if (operation != null) {
+            name.append(",operation=").append(operation.name());
+        }
+        
+        try {
+            return new ObjectName(name.toString());
+        } catch (JMException e) {
+            LOG.warn("invalid metrics name " + name, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Host;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+
+
+/**
+ * Key-based sub query which reads the partitions of a multi-key read that share the same replicas. 
+ * The sub query is routed by the partition key of its first key      
+ */
+final class KeyGroupQuery {
+    
+    private final ReadQueryData queryData;
+    private final ByteBuffer routingKey;
+    
+    
+    private KeyGroupQuery(ReadQueryData queryData, ByteBuffer routingKey) {
+        this.queryData = queryData;
+        this.routingKey = routingKey;
+    }
+    
+    /**
+     * @return the query data of the key group
+     */
+    ReadQueryData getQueryData() {
+        return queryData;
+    }
+    
+    /**
+     * @return the serialized partition key to route the query
+     */
+    ByteBuffer getRoutingKey() {
+        return routingKey;
+    }
+    
+    
+    /**
+     * @param queryData       the query data of the multi-key read 
+     * @param catalog         the metadata catalog
+     * @param udtValueMapper  the udt value mapper
+     * @param dbSession       the db session 
+     * @return the sub queries grouped by the replicas of the keys or an empty list, if the query can not be split 
+     */
+    static ImmutableList<KeyGroupQuery> newKeyGroupQueries(ReadQueryData queryData, MetadataCatalog catalog, UDTValueMapper udtValueMapper, DBSession dbSession) {
+        final Tablename tablename = queryData.getTablename();
+        final ImmutableList<String> partitionKeyNames = catalog.getPartitionKeyNames(tablename);
+        
+        // only IN reads on a single-column partition key will be split  
+        if ((tablename.getKeyspacename() == null) || (partitionKeyNames.size() != 1)) {
+            return ImmutableList.of();
+        }
+        
+        final String partitionKeyName = partitionKeyNames.get(0);
+        final ImmutableList<Object> keys = queryData.getKeys().get(partitionKeyName);
+        if ((keys == null) || (keys.size() < 2)) {
+            return ImmutableList.of();
+        }
+        
+        
+        final DataType dataType = catalog.getColumnMetadata(tablename, partitionKeyName).getType();
+        final Map<Set<Host>, List<Object>> keysByReplicas = Maps.newLinkedHashMap();
+        final Map<Set<Host>, ByteBuffer> routingKeys = Maps.newHashMap();
+        
+        for (Object key : keys) {
+            final ByteBuffer routingKey = udtValueMapper.serialize(dataType, udtValueMapper.toStatementValue(tablename, partitionKeyName, key));
+            final Set<Host> replicas = dbSession.getReplicas(tablename.getKeyspacename(), routingKey);
+            
+            List<Object> keyGroup = keysByReplicas.get(replicas);
+            if (keyGroup == null) {
+                keyGroup = Lists.newArrayList();
+                keysByReplicas.put(replicas, keyGroup);
+                routingKeys.put(replicas, routingKey);
+            }
+            keyGroup.add(key);
+        }
+        
+        if (keysByReplicas.size() < 2) {
+            return ImmutableList.of();
+        }
+        
+        
+        final ImmutableList.Builder<KeyGroupQuery> keyGroupQueries = ImmutableList.builder();
+        for (Entry<Set<Host>, List<Object>> entry : keysByReplicas.entrySet()) {
+            
+            // the order of the keys is kept. It is part of the statement shape  
+            final ImmutableMap.Builder<String, ImmutableList<Object>> groupKeys = ImmutableMap.builder();
+            for (Entry<String, ImmutableList<Object>> keyEntry : queryData.getKeys().entrySet()) {
+                if (keyEntry.getKey().equals(partitionKeyName)) {
+                    groupKeys.put(partitionKeyName, ImmutableList.copyOf(entry.getValue()));
+                } else {
+                    groupKeys.put(keyEntry.getKey(), keyEntry.getValue());
+                }
+            }
+            
+            keyGroupQueries.add(new KeyGroupQuery(queryData.keys(groupKeys.build()), routingKeys.get(entry.getKey())));
+        }
+        
+        return keyGroupQueries.build();
+    }
+}
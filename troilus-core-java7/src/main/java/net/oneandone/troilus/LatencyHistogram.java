@@ -0,0 +1,130 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+
+/**
+ * Lock-free latency histogram with log-linear buckets (32 sub buckets per power of two) in the 
+ * style of a HDR histogram. The recorded latencies are resolved with a relative error of ~3% at most 
+ */
+final class LatencyHistogram {
+    
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int NUM_SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * NUM_SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+    private final AtomicLong numSamples = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    
+    
+    /**
+     * @param latencyMicros the latency in micros
+     */
+    void record(long latencyMicros) {
+        final long micros = Math.max(0, latencyMicros);
+        
+        counts.incrementAndGet(bucketOf(micros));
+        sumMicros.addAndGet(micros);
+        numSamples.incrementAndGet();
+    }
+    
+    /**
+     * @return the number of recorded samples
+     */
+    long getNumSamples() {
+        return numSamples.get();
+    }
+    
+    /**
+     * @return the mean latency in micros or 0, if no samples are recorded
+     */
+    double getMeanMicros() {
+        final long num = numSamples.get();
+        return (num == 0) ? 0 : ((double) sumMicros.get()) / num;
+    }
+    
+    /**
+     * @param percentile  the percentile (e.g. 99.0)
+     * @return the latency of the percentile in micros or -1, if no samples are recorded
+     */
+    long getPercentileMicros(double percentile) {
+        return getPercentileMicros(percentile, this);
+    }
+    
+    
+    /**
+     * @param percentile  the percentile (e.g. 99.0)
+     * @param histograms  the histograms to merge
+     * @return the latency of the percentile of the merged histograms in micros or -1, if no samples are recorded
+     */
+    static long getPercentileMicros(double percentile, LatencyHistogram... histograms) {
+        long numSamples = 0;
+        for (LatencyHistogram histogram : histograms) {
+            numSamples += histogram.getNumSamples();
+        }
+        
+        if (numSamples == 0) {
+            return -1;
+        }
+        
+        final long target = Math.max(1, (long) Math.ceil(numSamples * (percentile / 100)));
+        long count = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            for (LatencyHistogram histogram : histograms) {
+                count += histogram.counts.get(i);
+            }
+            
+            if (count >= target) {
+                return upperBoundOf(i);
+            }
+        }
+        
+        return upperBoundOf(NUM_BUCKETS - 1);
+    }
+
+    
+    private static int bucketOf(long micros) {
+        if (micros < NUM_SUB_BUCKETS) {
+            return (int) micros;
+        }
+        
+        final int exp = 63 - Long.numberOfLeadingZeros(micros);
+        final int sub = (int) ((micros >>> (exp - SUB_BUCKET_BITS)) & (NUM_SUB_BUCKETS - 1));
+        return ((exp - SUB_BUCKET_BITS + 1) * NUM_SUB_BUCKETS) + sub;
+    }
+    
+    private static long upperBoundOf(int bucket) {
+        if (bucket < NUM_SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        
+        final int exp = (bucket / NUM_SUB_BUCKETS) + SUB_BUCKET_BITS - 1;
+        final int sub = bucket % NUM_SUB_BUCKETS;
+        final long upperBound = (NUM_SUB_BUCKETS + sub + 1L) << (exp - SUB_BUCKET_BITS);
+        return (upperBound > 0) ? upperBound : Long.MAX_VALUE;
+    }
+    
+    
+    @Override
+    public String toString() {
+        return "p50=" + getPercentileMicros(50) + "us p99=" + getPercentileMicros(99) + "us";
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Joiner;
+
+
+
+/**
+ * Latency histograms per table. The histograms consider the samples of the current and the previous 
+ * time window only, so the percentiles follow a changing latency of the cluster  
+ */
+class LatencyTracker {
+    
+    private static final long WINDOW_MILLIS = 10 * 1000;
+    private static final int MIN_SAMPLES = 100;
+
+    private final ConcurrentMap<Tablename, WindowedHistogram> histograms = new ConcurrentHashMap<>();
+    
+    
+    /**
+     * @param tablename      the tablename
+     * @param latencyMicros  the latency in micros 
+     */
+    void record(Tablename tablename, long latencyMicros) {
+        WindowedHistogram histogram = histograms.get(tablename);
+        if (histogram == null) {
+            histograms.putIfAbsent(tablename, new WindowedHistogram());
+            histogram = histograms.get(tablename);
+        }
+        
+        histogram.record(latencyMicros);
+    }
+    
+    /**
+     * @param tablename   the tablename
+     * @param percentile  the percentile (e.g. 99.0) 
+     * @return the latency of the percentile in micros or -1, if not enough samples are available  
+     */
+    long getPercentileMicros(Tablename tablename, double percentile) {
+        final WindowedHistogram histogram = histograms.get(tablename);
+        return (histogram == null) ? -1 : histogram.getPercentileMicros(percentile);
+    }
+    
+    
+    @Override
+    public String toString() {
+        return Joiner.on(", ").withKeyValueSeparator("=").join(histograms);
+    }
+    
+    
+    
+    /**
+     * latency histogram over the current and the previous time window   
+     */
+    private static final class WindowedHistogram {
+        
+        private volatile Window previous = new Window(0);
+        private volatile Window current = new Window(System.currentTimeMillis());
+        
+        
+        void record(long latencyMicros) {
+            final long now = System.currentTimeMillis();
+            
+            Window window = current;
+            if ((now - window.getStartMillis()) > WINDOW_MILLIS) {
+                synchronized (this) {
+                    window = current;
+                    if ((now - window.getStartMillis()) > WINDOW_MILLIS) {
+                        previous = window;
+                        window = new Window(now);
+                        current = window;
+                    }
+                }
+            }
+            
+            window.getHistogram().record(latencyMicros);
+        }
+        
+        
+        long getPercentileMicros(double percentile) {
+            final LatencyHistogram prev = previous.getHistogram();
+            final LatencyHistogram curr = current.getHistogram();
+            
+            if ((prev.getNumSamples() + curr.getNumSamples()) < MIN_SAMPLES) {
+                return -1;
+            }
+            
+            return LatencyHistogram.getPercentileMicros(percentile, prev, curr);
+        }
+        
+        
+        @Override
+        public String toString() {
+            return "p50=" + getPercentileMicros(50) + "us p99=" + getPercentileMicros(99) + "us";
+        }
+    }
+    
+    
+    
+    private static final class Window {
+        private final long startMillis;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        
+        Window(long startMillis) {
+            this.startMillis = startMillis;
+        }
+        
+        long getStartMillis() {
+            return startMillis;
+        }
+        
+        LatencyHistogram getHistogram() {
+            return histogram;
+        }
+    }
+}
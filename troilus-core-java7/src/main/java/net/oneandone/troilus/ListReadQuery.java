@@ -20,6 +20,8 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 
+import net.oneandone.troilus.MetricsRegistry.Operation;
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.java7.FetchingIterator;
 import net.oneandone.troilus.java7.ListRead;
 import net.oneandone.troilus.java7.ListReadWithUnit;
@@ -31,8 +33,11 @@ import net.oneandone.troilus.java7.interceptor.ReadQueryResponseInterceptor;
 
 import org.reactivestreams.Publisher;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.PagingState;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.Select;
@@ -146,6 +151,16 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
         return newQuery(data.fetchSize(fetchSize));
     }
     
+    @Override
+    public ListReadQuery withPrefetch(int pages, int lowWatermarkRows) {
+        return newQuery(getContext().withPrefetch(pages, lowWatermarkRows));
+    }
+    
+    @Override
+    public ListReadQuery withParallelism(int parallelism) {
+        return newQuery(getContext().withParallelism(parallelism));
+    }
+    
     @Override
     public ListReadQuery withDistinct() {
         return newQuery(data.distinct(true));
@@ -175,7 +190,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
     @Override
     public Publisher<Record> executeRx() {
         ListenableFuture<ResultList<Record>> recordsFuture = executeAsync();
-        return new ResultListPublisher<>(recordsFuture);
+        return new ResultListPublisher<>(recordsFuture, getExecutor());
     }
     
     @Override
@@ -185,39 +200,131 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
     
     @Override
     public ListenableFuture<ResultList<Record>> executeAsync() {
+        final DBSession dbSession = newExecutionDbSession();
+        
         // perform request executors
-        final ListenableFuture<ReadQueryData> queryDataFuture = executeRequestInterceptorsAsync(Futures.<ReadQueryData>immediateFuture(data));  
+        final ListenableFuture<ReadQueryData> queryDataFuture = executeRequestInterceptorsAsync(dbSession, Futures.<ReadQueryData>immediateFuture(data));  
 
         // execute query asnyc
         final Function<ReadQueryData, ListenableFuture<ResultList<Record>>> queryExecutor = new Function<ReadQueryData, ListenableFuture<ResultList<Record>>>() {
             @Override
             public ListenableFuture<ResultList<Record>> apply(ReadQueryData querData) {
-                return executeAsync(querData, getDefaultDbSession());
+                final Integer parallelism = getContext().getParallelism();
+                if (parallelism == null) {
+                    return executeAsync(querData, dbSession);
+                } else if (querData.getKeys().isEmpty()) {
+                    return executeScanAsync(querData, dbSession, parallelism);
+                } else {
+                    return executeKeyGroupsAsync(querData, dbSession, parallelism);
+                }
             }
         };
-        return ListenableFutures.transform(queryDataFuture, queryExecutor);
+        final ListenableFuture<ResultList<Record>> recordListFuture = ListenableFutures.transform(queryDataFuture, queryExecutor);
+        
+        if (dbSession.getTimingsRecorder() == null) {
+            return recordListFuture;
+        } else {
+            final Function<ResultList<Record>, ResultList<Record>> timingsStopper = new Function<ResultList<Record>, ResultList<Record>>() {
+                @Override
+                public ResultList<Record> apply(ResultList<Record> recordList) {
+                    stopTimings(dbSession);
+                    return recordList;
+                }
+            };
+            return Futures.transform(recordListFuture, timingsStopper);
+        }
     }
 
     
     private ListenableFuture<ResultList<Record>> executeAsync(final ReadQueryData queryData, DBSession dbSession) {
-        final ListenableFuture<ResultSet> resultSetFuture = performAsync(dbSession, toStatementAsync(queryData, getUDTValueMapper(), dbSession));
+        // running interceptors within dedicated threads!
+        return executeResponseInterceptorsAsync(queryData, dbSession, executeQueryAsync(queryData, dbSession));
+    }
+    
+    
+    private ListenableFuture<ResultList<Record>> executeScanAsync(final ReadQueryData queryData, final DBSession dbSession, int parallelism) {
+        if (!queryData.getWhereConditions().isEmpty() || (queryData.getLimit() != null) || 
+            (queryData.getFetchSize() != null) || (queryData.getPagingState() != null)) {
+            return Futures.immediateFailedFuture(new IllegalStateException("parallel scans are supported for full table reads without limit, fetch size and paging state only"));
+        }
+        
+        final ImmutableList<String> partitionKeyNames = getCatalog().getPartitionKeyNames(queryData.getTablename());
+        final ImmutableList.Builder<ReadQueryData> rangeQueries = ImmutableList.builder();
+        for (ImmutableSet<Clause> rangeConditions : TokenRangeScan.newRangeConditions(partitionKeyNames, dbSession.getTokenRanges())) {
+            rangeQueries.add(queryData.whereConditions(rangeConditions));
+        }
+        
+        final Function<ReadQueryData, ListenableFuture<ResultList<Record>>> rangeQueryExecutor = new Function<ReadQueryData, ListenableFuture<ResultList<Record>>>() {
+            @Override
+            public ListenableFuture<ResultList<Record>> apply(ReadQueryData rangeQueryData) {
+                return executeQueryAsync(rangeQueryData, dbSession);
+            }
+        };
+        final ListenableFuture<ResultList<Record>> recordListFuture = MergedResultList.executeAsync(rangeQueries.build(), rangeQueryExecutor, parallelism);
+        
+        // running interceptors within dedicated threads!
+        return executeResponseInterceptorsAsync(queryData, dbSession, recordListFuture);
+    }
+    
+    
+    private ListenableFuture<ResultList<Record>> executeKeyGroupsAsync(final ReadQueryData queryData, final DBSession dbSession, int parallelism) {
+        // limit and paging refer to the whole result. The query will not be split in this case  
+        if ((queryData.getLimit() != null) || (queryData.getFetchSize() != null) || (queryData.getPagingState() != null)) {
+            return executeAsync(queryData, dbSession);
+        }
+        
+        final ImmutableList<KeyGroupQuery> keyGroupQueries = KeyGroupQuery.newKeyGroupQueries(queryData, getCatalog(), getUDTValueMapper(), dbSession);
+        if (keyGroupQueries.isEmpty()) {
+            return executeAsync(queryData, dbSession);
+        }
+        
+        final Function<KeyGroupQuery, ListenableFuture<ResultList<Record>>> keyGroupQueryExecutor = new Function<KeyGroupQuery, ListenableFuture<ResultList<Record>>>() {
+            @Override
+            public ListenableFuture<ResultList<Record>> apply(final KeyGroupQuery keyGroupQuery) {
+                
+                // the bound IN statement does not provide a routing key by its own
+                final Function<Statement, Statement> routingKeySetter = new Function<Statement, Statement>() {
+                    @Override
+                    public Statement apply(Statement statement) {
+                        if (statement instanceof BoundStatement) {
+                            ((BoundStatement) statement).setRoutingKey(keyGroupQuery.getRoutingKey());
+                        }
+                        return statement;
+                    }
+                };
+                
+                final ListenableFuture<Statement> statementFuture = toStatementAsync(keyGroupQuery.getQueryData(), getUDTValueMapper(), dbSession);
+                return executeStatementAsync(keyGroupQuery.getQueryData(), Futures.transform(statementFuture, routingKeySetter), dbSession);
+            }
+        };
+        final ListenableFuture<ResultList<Record>> recordListFuture = MergedResultList.executeAsync(keyGroupQueries, keyGroupQueryExecutor, parallelism);
+        
+        // running interceptors within dedicated threads!
+        return executeResponseInterceptorsAsync(queryData, dbSession, recordListFuture);
+    }
+    
+    
+    private ListenableFuture<ResultList<Record>> executeQueryAsync(ReadQueryData queryData, DBSession dbSession) {
+        return executeStatementAsync(queryData, toStatementAsync(queryData, getUDTValueMapper(), dbSession), dbSession);
+    }
+    
+    
+    private ListenableFuture<ResultList<Record>> executeStatementAsync(final ReadQueryData queryData, ListenableFuture<Statement> statementFuture, final DBSession dbSession) {
+        final ListenableFuture<ResultSet> resultSetFuture = performAsync(dbSession, queryData.getTablename(), Operation.READ, statementFuture);
     	
         // result set to record list mapper
         final Function<ResultSet, ResultList<Record>> resultSetToRecordList = new Function<ResultSet, ResultList<Record>>() {
             
             @Override
             public ResultList<Record> apply(ResultSet resultSet) {
-                return new RecordListImpl(getContext(), queryData, resultSet);
+                return new RecordListImpl(getContext(), queryData, resultSet, dbSession.getTimingsRecorder());
             }
         };
-        final ListenableFuture<ResultList<Record>> recordListFuture =  Futures.transform(resultSetFuture, resultSetToRecordList); 
-        
-        // running interceptors within dedicated threads!
-        return executeResponseInterceptorsAsync(queryData, recordListFuture);
+        return Futures.transform(resultSetFuture, resultSetToRecordList); 
     }
 
     
-    private ListenableFuture<ReadQueryData> executeRequestInterceptorsAsync(ListenableFuture<ReadQueryData> queryDataFuture) {
+    private ListenableFuture<ReadQueryData> executeRequestInterceptorsAsync(final DBSession dbSession, ListenableFuture<ReadQueryData> queryDataFuture) {
 
         for (ReadQueryRequestInterceptor interceptor : getInterceptorRegistry().getInterceptors(ReadQueryRequestInterceptor.class).reverse()) {
             final ReadQueryRequestInterceptor icptor = interceptor;
@@ -225,7 +332,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
             final Function<ReadQueryData, ListenableFuture<ReadQueryData>> mapperFunction = new Function<ReadQueryData, ListenableFuture<ReadQueryData>>() {
                 @Override
                 public ListenableFuture<ReadQueryData> apply(ReadQueryData queryData) {
-                    return icptor.onReadRequestAsync(queryData);
+                    return dbSession.recordInterceptorTime(queryData.getTablename(), true, System.nanoTime(), icptor.onReadRequestAsync(queryData));
                 }
             };
             
@@ -237,7 +344,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
     }
     
     
-    private ListenableFuture<ResultList<Record>> executeResponseInterceptorsAsync(final ReadQueryData queryData, ListenableFuture<ResultList<Record>> recordFuture) {
+    private ListenableFuture<ResultList<Record>> executeResponseInterceptorsAsync(final ReadQueryData queryData, final DBSession dbSession, ListenableFuture<ResultList<Record>> recordFuture) {
     
         for (ReadQueryResponseInterceptor interceptor : getInterceptorRegistry().getInterceptors(ReadQueryResponseInterceptor.class).reverse()) {
             final ReadQueryResponseInterceptor icptor = interceptor;
@@ -245,7 +352,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
             final Function<ResultList<Record>, ListenableFuture<ResultList<Record>>> mapperFunction = new Function<ResultList<Record>, ListenableFuture<ResultList<Record>>>() {
                 @Override
                 public ListenableFuture<ResultList<Record>> apply(ResultList<Record> recordList) {
-                    return icptor.onReadResponseAsync(queryData, recordList);
+                    return dbSession.recordInterceptorTime(queryData.getTablename(), false, System.nanoTime(), icptor.onReadResponseAsync(queryData, recordList));
                 }
             };
             
@@ -268,9 +375,9 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
      * @return ListenableFuture<Statement>
      */
     private ListenableFuture<Statement> toStatementAsync(final ReadQueryData queryData, UDTValueMapper udtValueMapper, DBSession dbSession) {
-        final ListenableFuture<Statement> lfs = ReadQueryDataImpl.toStatementAsync(data, udtValueMapper, dbSession);
+        final ListenableFuture<Statement> lfs = ReadQueryDataImpl.toStatementAsync(queryData, udtValueMapper, dbSession);
     	
-    	final  Integer fetchSize = data.getFetchSize();
+    	final  Integer fetchSize = queryData.getFetchSize();
     	if (fetchSize != null) {
     		Statement statement = null;
     		try {
@@ -288,7 +395,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
 			// the driver compares the Select (a RegularStatement) to the previous PagingState's
 			// BoundStatement and fails the hash() check with a PagingStateException.
 			// So, like the fetch size, the PagingState must be done here.
-			statement.setPagingState(data.getPagingState());
+			statement.setPagingState(queryData.getPagingState());
 		}
     	return lfs;
     }
@@ -327,6 +434,16 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
             return query.withFetchSize(fetchSize).asEntity(clazz);
         }
         
+        @Override
+        public ListEntityReadQuery<E> withPrefetch(int pages, int lowWatermarkRows) {
+            return query.withPrefetch(pages, lowWatermarkRows).asEntity(clazz);
+        }
+        
+        @Override
+        public ListEntityReadQuery<E> withParallelism(int parallelism) {
+            return query.withParallelism(parallelism).asEntity(clazz);
+        }
+        
         @Override
         public ListEntityReadQuery<E> withAllowFiltering() {
             return query.withAllowFiltering().asEntity(clazz);
@@ -349,7 +466,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
             final Function<ResultList<Record>, ResultList<E>> mapEntity = new Function<ResultList<Record>, ResultList<E>>() {
                 @Override
                 public ResultList<E> apply(ResultList<Record> recordList) {
-                    return new EntityListImpl<>(query.data.getTablename(), getBeanMapper(), getCatalog(), recordList, clazz);
+                    return new EntityListImpl<>(query.data.getTablename(), getExecutionDbSession(recordList), getBeanMapper(), getEntityRowMapper(), getCatalog(), recordList, clazz);
                 }
             };
             
@@ -359,7 +476,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
         @Override
         public Publisher<E> executeRx() {
             final ListenableFuture<ResultList<E>> recordsFuture = executeAsync();
-            return new ResultListPublisher<>(recordsFuture);
+            return new ResultListPublisher<>(recordsFuture, getExecutor());
         }
 
 		@Override
@@ -373,15 +490,19 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
     
     private static class EntityListImpl<F> extends ResultAdapter implements ResultList<F> {
         private final Tablename tablename;
+        private final DBSession dbSession;
         private final BeanMapper beanMapper;
+        private final EntityRowMapper entityRowMapper;
         private final MetadataCatalog catalog;
         private final ResultList<Record> recordList;
         private final Class<F> clazz;
     
-        EntityListImpl(Tablename tablename, BeanMapper beanMapper, MetadataCatalog catalog, ResultList<Record> recordList, Class<F> clazz) {
+        EntityListImpl(Tablename tablename, DBSession dbSession, BeanMapper beanMapper, EntityRowMapper entityRowMapper, MetadataCatalog catalog, ResultList<Record> recordList, Class<F> clazz) {
             super(recordList);
             this.tablename = tablename;
+            this.dbSession = dbSession;
             this.beanMapper = beanMapper;
+            this.entityRowMapper = entityRowMapper;
             this.catalog = catalog;
             this.recordList = recordList;
             this.clazz = clazz;
@@ -392,6 +513,10 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
             return new FetchingIterator<F>() {
                 private final FetchingIterator<Record> recordIt = recordList.iterator();
                 
+                // the rows of a result set share the column definitions. The plan will be bound once  
+                private ColumnDefinitions planColumnDefinitions;
+                private EntityRowMapper.RowMappingPlan<F> plan;
+                
                 @Override
                 public boolean hasNext() {
                     return recordIt.hasNext();
@@ -399,7 +524,24 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
                 
                 @Override
                 public F next() {
-                    return beanMapper.fromValues(clazz, RecordImpl.toPropertiesSource(recordIt.next()), catalog.getColumnNames(tablename));
+                    final Record record = recordIt.next();
+                    
+                    final long startNanos = System.nanoTime();
+                    final F entity;
+                    if (record instanceof RecordImpl) {
+                        final Row row = ((RecordImpl) record).getRow();
+                        if ((plan == null) || (planColumnDefinitions != row.getColumnDefinitions())) {
+                            planColumnDefinitions = row.getColumnDefinitions();
+                            plan = entityRowMapper.getPlan(clazz, planColumnDefinitions);
+                        }
+                        entity = plan.map(row);
+                        
+                    } else {
+                        entity = beanMapper.fromValues(clazz, RecordImpl.toPropertiesSource(record), catalog.getColumnNames(tablename));
+                    }
+                    dbSession.recordStageTime(tablename, Stage.ENTITY_MAPPING, startNanos);
+                    
+                    return entity;
                 }
                 
                 @Override
@@ -572,6 +714,16 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
                                       data.fetchSize(fetchSize));
         }
         
+        @Override
+        public CountReadQuery withPrefetch(int pages, int lowWatermarkRows) {
+            return newQuery(getContext().withPrefetch(pages, lowWatermarkRows));
+        }
+        
+        @Override
+        public CountReadQuery withParallelism(int parallelism) {
+            throw new IllegalArgumentException("Count readers cannot be configured with parallelism.");
+        }
+        
         @Override
         public CountReadQuery withDistinct() {
             return new CountReadQuery(getContext(),
@@ -624,12 +776,13 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
         
         @Override
         public ListenableFuture<Count> executeAsync() {
-            ListenableFuture<ResultSet> future = performAsync(getDefaultDbSession(), toStatement(data));
+            final DBSession dbSession = newExecutionDbSession();
+            ListenableFuture<ResultSet> future = performAsync(dbSession, data.tablename, Operation.READ, toStatement(data));
             
             Function<ResultSet, Count> mapEntity = new Function<ResultSet, Count>() {
                 @Override
                 public Count apply(ResultSet resultSet) {
-                    return Count.newCountResult(resultSet);
+                    return Count.newCountResult(resultSet, stopTimings(dbSession));
                 }
             };
             
@@ -647,7 +800,7 @@ class ListReadQuery extends AbstractQuery<ListReadQuery> implements ListReadWith
                 }
             };
             
-            return new ResultListPublisher<>(Futures.transform(countFuture, toListFunction));
+            return new ResultListPublisher<>(Futures.transform(countFuture, toListFunction), getExecutor());
         }
 
 		@Override
@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractFuture;
@@ -178,6 +179,67 @@ class ListenableFutures {
     
         
     
+    public static <T> ListenableFuture<ImmutableList<T>> allOf(ImmutableList<ListenableFuture<T>> futureList, Executor executor) {
+        return new AllOfFuture<>(futureList, executor);
+    }
+
+
+    private static final class AllOfFuture<T> extends FutureImplBase<ImmutableList<T>> {
+        private final Object[] result;
+        private int numPendingFutures;
+
+        public AllOfFuture(ImmutableList<ListenableFuture<T>> futureList, Executor executor) {
+            result = new Object[futureList.size()];
+
+            if (futureList.isEmpty()) {
+                set(ImmutableList.<T>of());
+            } else {
+                numPendingFutures = futureList.size();
+
+                for (int i = 0; i < futureList.size(); i++) {
+                    futureList.get(i).addListener(new FutureListner(futureList.get(i), i), executor);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void onResult(ListenableFuture<T> future, int idx) {
+            synchronized (this) {
+                try {
+                    result[idx] = future.get();
+                    numPendingFutures--;
+
+                    if (numPendingFutures == 0) {
+                        final ImmutableList.Builder<T> builder = ImmutableList.builder();
+                        for (Object element : result) {
+                            builder.add((T) element);
+                        }
+                        set(builder.build());
+                    }
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    setException(e);
+                }
+            }
+        }
+
+        private final class FutureListner implements Runnable  {
+            private final ListenableFuture<T> future;
+            private final int idx;
+
+            public FutureListner(ListenableFuture<T> future, int idx) {
+                this.future = future;
+                this.idx = idx;
+            }
+
+            @Override
+            public void run() {
+                onResult(future, idx);
+            }
+        }
+    }
+
+
+
     public static <T> ListenableFuture<ImmutableSet<T>> join(ListenableFuture<ImmutableSet<T>> futureSet, ListenableFuture<T> future, Executor executor) {
         return new JoiningFuture<>(futureSet, future, executor);
     }
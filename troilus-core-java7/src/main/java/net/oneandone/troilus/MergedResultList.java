@@ -0,0 +1,297 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import net.oneandone.troilus.java7.FetchingIterator;
+import net.oneandone.troilus.java7.Record;
+import net.oneandone.troilus.java7.ResultList;
+
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+
+
+/**
+ * Result list which merges the results of sub queries. The sub queries are executed concurrently up 
+ * to the parallelism and returned in the order of the sub queries. A new sub query will be started, 
+ * if the records of the current one have been consumed. While a sub query is waiting to be consumed, 
+ * the next page of it will be fetched ahead. The result list is expected to be consumed by one thread 
+ * at the same time   
+ * 
+ * @param <T> the sub query type
+ */
+final class MergedResultList<T> implements ResultList<Record> {
+    
+    /**
+     * @param subQueries          the sub queries 
+     * @param subQueryExecutor    the executor of a single sub query  
+     * @param parallelism         the max number of concurrently running sub queries 
+     * @param <T> the sub query type
+     * @return the merged result list future which completes, if the first sub query completes  
+     */
+    static <T> ListenableFuture<ResultList<Record>> executeAsync(ImmutableList<T> subQueries, 
+                                                                 Function<T, ListenableFuture<ResultList<Record>>> subQueryExecutor, 
+                                                                 int parallelism) {
+        final MergedResultList<T> mergedResultList = new MergedResultList<>(subQueries.iterator(), subQueryExecutor, parallelism);
+        
+        final Function<ResultList<Record>, ResultList<Record>> toMergedResultList = new Function<ResultList<Record>, ResultList<Record>>() {
+            @Override
+            public ResultList<Record> apply(ResultList<Record> firstResultList) {
+                return mergedResultList;
+            }
+        };
+        
+        final RunningSubQuery firstSubQuery = mergedResultList.runningSubQueries.peekFirst();
+        return (firstSubQuery == null) ? Futures.<ResultList<Record>>immediateFuture(mergedResultList)
+                                       : Futures.transform(firstSubQuery.getResultFuture(), toMergedResultList);
+    }
+    
+    
+    private final Iterator<T> pendingSubQueries;
+    private final Function<T, ListenableFuture<ResultList<Record>>> subQueryExecutor;
+    private final int parallelism;
+
+    private final Deque<RunningSubQuery> runningSubQueries = new ArrayDeque<>();
+    private final List<ExecutionInfo> executionInfos = Lists.newArrayList();
+    private final FetchingIterator<Record> iterator = new MergedIterator();
+    
+    private ResultList<Record> currentResult = null;
+    private FetchingIterator<Record> currentIt = null;
+    private RuntimeException error = null;
+    
+    
+    private MergedResultList(Iterator<T> pendingSubQueries, 
+                             Function<T, ListenableFuture<ResultList<Record>>> subQueryExecutor,
+                             int parallelism) {
+        this.pendingSubQueries = pendingSubQueries;
+        this.subQueryExecutor = subQueryExecutor;
+        this.parallelism = parallelism;
+        
+        startSubQueries();
+    }
+    
+    private void startSubQueries() {
+        while ((runningSubQueries.size() < parallelism) && pendingSubQueries.hasNext()) {
+            runningSubQueries.addLast(new RunningSubQuery(subQueryExecutor.apply(pendingSubQueries.next())));
+        }
+    }
+    
+    private boolean isCurrentResultExhausted() {
+        return (currentIt == null) || ((currentIt.getAvailableWithoutFetching() <= 0) && currentIt.isFullyFetched());
+    }
+    
+    /**
+     * moves to the result of the next sub query, if the current result is exhausted 
+     * @param waitForResult  true, if the running next sub query should be waited for 
+     * @return false, if the next sub query is still running
+     */
+    private boolean moveToNextResultIfExhausted(boolean waitForResult) {
+        while ((error == null) && isCurrentResultExhausted() && !runningSubQueries.isEmpty()) {
+            final RunningSubQuery nextSubQuery = runningSubQueries.peekFirst();
+            if (!waitForResult && !nextSubQuery.getResultFuture().isDone()) {
+                return false;
+            }
+            runningSubQueries.removeFirst();
+            
+            if (currentResult != null) {
+                executionInfos.addAll(currentResult.getAllExecutionInfo());
+            }
+            
+            try {
+                currentResult = ListenableFutures.getUninterruptibly(nextSubQuery.getResultFuture());
+                currentIt = nextSubQuery.getIterator();
+            } catch (RuntimeException rt) {
+                error = rt;
+                currentResult = null;
+                currentIt = null;
+            }
+
+            startSubQueries();
+        }
+        
+        return true;
+    }
+    
+    
+    @Override
+    public ExecutionInfo getExecutionInfo() {
+        return (currentResult == null) ? null : currentResult.getExecutionInfo();
+    }
+    
+    @Override
+    public ImmutableList<ExecutionInfo> getAllExecutionInfo() {
+        final ImmutableList.Builder<ExecutionInfo> allExecutionInfos = ImmutableList.builder();
+        allExecutionInfos.addAll(executionInfos);
+        if (currentResult != null) {
+            allExecutionInfos.addAll(currentResult.getAllExecutionInfo());
+        }
+        return allExecutionInfos.build();
+    }
+    
+    @Override
+    public boolean wasApplied() {
+        return true;
+    }
+    
+    @Override
+    public QueryTimings getTimings() {
+        // the sub queries are executed within the same query execution
+        return (currentResult == null) ? null : currentResult.getTimings();
+    }
+    
+    @Override
+    public FetchingIterator<Record> iterator() {
+        return iterator;
+    }
+    
+    
+    private final class MergedIterator implements FetchingIterator<Record> {
+        
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                moveToNextResultIfExhausted(true);
+                if (error != null) {
+                    return true;
+                } else if (currentIt == null) {
+                    return false;
+                } else if (currentIt.hasNext()) {
+                    return true;
+                } else if (runningSubQueries.isEmpty()) {
+                    return false;
+                }
+                
+                // the current result turned out to be empty after fetching -> move to the next one
+            }
+        }
+        
+        @Override
+        public Record next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            
+            if (error != null) {
+                throw error;
+            }
+            
+            return currentIt.next();
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public int getAvailableWithoutFetching() {
+            if (!moveToNextResultIfExhausted(false)) {
+                return 0;
+            }
+            
+            // a failed sub query is reported as available to let next() throw the error  
+            if (error != null) {
+                return 1;
+            }
+            
+            return (currentIt == null) ? 0 : currentIt.getAvailableWithoutFetching();
+        }
+        
+        @Override
+        public boolean isFullyFetched() {
+            return moveToNextResultIfExhausted(false) && 
+                   (error == null) && 
+                   runningSubQueries.isEmpty() && 
+                   ((currentIt == null) || currentIt.isFullyFetched());
+        }
+        
+        @Override
+        public ListenableFuture<ResultSet> fetchMoreResultsAsync() {
+            if (!moveToNextResultIfExhausted(false)) {
+                // wait for the next sub query 
+                final Function<ResultList<Record>, ResultSet> toNoResultSet = new Function<ResultList<Record>, ResultSet>() {
+                    @Override
+                    public ResultSet apply(ResultList<Record> resultList) {
+                        return null;
+                    }
+                };
+                return Futures.transform(runningSubQueries.peekFirst().getResultFuture(), toNoResultSet);
+                
+            } else if ((currentIt != null) && !currentIt.isFullyFetched()) {
+                return currentIt.fetchMoreResultsAsync();
+                
+            } else {
+                return Futures.<ResultSet>immediateFuture(null);
+            }
+        }
+    }
+    
+    
+    
+    /**
+     * A running sub query. Once the first page of the sub query has been received, the next page 
+     * will be fetched ahead. This means the pages of all running sub queries are fetched concurrently 
+     * while the current sub query is consumed. At most two pages per running sub query will be buffered    
+     */
+    private static final class RunningSubQuery implements Runnable {
+        private final ListenableFuture<ResultList<Record>> resultFuture;
+        private FetchingIterator<Record> iterator = null;  // guarded by this 
+        
+        RunningSubQuery(ListenableFuture<ResultList<Record>> resultFuture) {
+            this.resultFuture = resultFuture;
+            resultFuture.addListener(this, MoreExecutors.directExecutor());
+        }
+        
+        ListenableFuture<ResultList<Record>> getResultFuture() {
+            return resultFuture;
+        }
+        
+        /**
+         * @return the iterator of the completed sub query. The iterator is the same for the 
+         *         prefetching and the consumer side 
+         */
+        synchronized FetchingIterator<Record> getIterator() {
+            if (iterator == null) {
+                iterator = ListenableFutures.getUninterruptibly(resultFuture).iterator();
+            }
+            return iterator;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                final FetchingIterator<Record> it = getIterator();
+                if (!it.isFullyFetched()) {
+                    it.fetchMoreResultsAsync();
+                }
+            } catch (RuntimeException ignore) { 
+                // the error will be reported to the consumer by processing the result future
+            }
+        }
+    }
+}
@@ -16,7 +16,8 @@
 package net.oneandone.troilus;
 
 
-import java.util.List;
+import java.util.Iterator;
+import java.util.Locale;
 import java.util.Set;
 
 
@@ -28,6 +29,7 @@ import com.datastax.driver.core.TableMetadata;
 import com.datastax.driver.core.UserType;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 
@@ -59,6 +61,14 @@ class MetadataCatalog  {
         return tableMetadataCache.getColumnNames(tablename);
     }
     
+    /**
+     * @param tablename the tablename
+     * @return the partition key columnnames of this table in key order
+     */
+    public ImmutableList<String> getPartitionKeyNames(Tablename tablename) {
+        return tableMetadataCache.getMetadata(tablename).getPartitionKeyNames();
+    }
+    
     /**
      * @param tablename  the tablename
      * @param columnName the cloumnname
@@ -84,9 +94,59 @@ class MetadataCatalog  {
      * @return true if pk, false otherwise
      */
     public boolean isPrimaryKey(Tablename tablename, String columnName) {
-    	final List<ColumnMetadata> primaryKeys = tableMetadataCache.getMetadata(tablename).tableMetadata.getPrimaryKey();
-    	final ColumnMetadata columnMetadata = getColumnMetadata(tablename, columnName);
-    	return primaryKeys.contains(columnMetadata);
+        final ColumnPlan columnPlan = getColumnPlan(tablename);
+        return columnPlan.isPrimaryKey(columnPlan.indexOf(columnName));
+    }
+    
+    /**
+     * @param tablename  the tablename
+     * @return the number of primary key columns (partition key and clustering columns)
+     */
+    public int getNumPrimaryKeys(Tablename tablename) {
+        final ColumnPlan columnPlan = getColumnPlan(tablename);
+        
+        int numPrimaryKeys = 0;
+        for (int i = 0; i < columnPlan.size(); i++) {
+            if (columnPlan.isPrimaryKey(i)) {
+                numPrimaryKeys++;
+            }
+        }
+        return numPrimaryKeys;
+    }
+    
+    /**
+     * invalidates the cached metadata of the table
+     * @param tablename the tablename
+     */
+    void invalidate(Tablename tablename) {
+        tableMetadataCache.invalidate(tablename.getKeyspacename(), tablename.getTablename());
+    }
+    
+    /**
+     * invalidates the cached usertype and the cached metadata of the tables of the usertype's keyspace 
+     * @param keyspacename  the keyspacename
+     * @param usertypeName  the usertype name
+     */
+    void invalidateUserType(String keyspacename, String usertypeName) {
+        userTypeCache.invalidate(keyspacename, usertypeName);
+        tableMetadataCache.invalidate(keyspacename, null);
+    }
+    
+    /**
+     * invalidates the cached metadata of the keyspace 
+     * @param keyspacename  the keyspacename
+     */
+    void invalidateKeyspace(String keyspacename) {
+        userTypeCache.invalidateAll();
+        tableMetadataCache.invalidate(keyspacename, null);
+    }
+    
+    /**
+     * @param tablename the tablename
+     * @return the precomputed column plan of the table
+     */
+    public ColumnPlan getColumnPlan(Tablename tablename) {
+        return tableMetadataCache.getMetadata(tablename).getColumnPlan();
     }
     
 
@@ -109,6 +169,18 @@ class MetadataCatalog  {
             return getMetadata(tablename).getColumnMetadata(columnName);
         }
         
+        /**
+         * @param keyspacename  the keyspacename
+         * @param tablename     the tablename or null to invalidate all tables of the keyspace
+         */
+        void invalidate(String keyspacename, String tablename) {
+            for (Iterator<Tablename> it = tableMetadataCache.asMap().keySet().iterator(); it.hasNext(); ) {
+                if (it.next().isSameTable(keyspacename, tablename)) {
+                    it.remove();
+                }
+            }
+        }
+        
         private Metadata getMetadata(Tablename tablename) {
             Metadata metadata = tableMetadataCache.getIfPresent(tablename);
             if (metadata == null) {
@@ -123,7 +195,9 @@ class MetadataCatalog  {
         private Metadata loadMetadata(Tablename tablename) {
             final TableMetadata tableMetadata = loadTableMetadata(session, tablename);
             final ImmutableSet<String> columnNames = loadColumnNames(tableMetadata);
-            return new Metadata(tablename, tableMetadata, columnNames);
+            final ImmutableList<String> partitionKeyNames = loadPartitionKeyNames(tableMetadata);
+            final ColumnPlan columnPlan = ColumnPlan.newColumnPlan(tablename, tableMetadata);
+            return new Metadata(tablename, tableMetadata, columnNames, partitionKeyNames, columnPlan);
         }
         
         
@@ -152,6 +226,15 @@ class MetadataCatalog  {
             
             return ImmutableSet.copyOf(columnNames);
         }
+        
+        private static ImmutableList<String> loadPartitionKeyNames(TableMetadata tableMetadata) {
+            final ImmutableList.Builder<String> partitionKeyNames = ImmutableList.builder();
+            for (ColumnMetadata columnMetadata : tableMetadata.getPartitionKey()) {
+                partitionKeyNames.add(columnMetadata.getName());
+            }
+            
+            return partitionKeyNames.build();
+        }
     }
     
     
@@ -159,17 +242,29 @@ class MetadataCatalog  {
         private final Tablename tablename;
         private final TableMetadata tableMetadata;
         private final ImmutableSet<String> columnNames;
+        private final ImmutableList<String> partitionKeyNames;
+        private final ColumnPlan columnPlan;
         
-        public Metadata(Tablename tablename, TableMetadata tableMetadata, ImmutableSet<String> columnNames) {
+        public Metadata(Tablename tablename, TableMetadata tableMetadata, ImmutableSet<String> columnNames, ImmutableList<String> partitionKeyNames, ColumnPlan columnPlan) {
             this.tablename = tablename;
             this.tableMetadata = tableMetadata;
             this.columnNames = columnNames;
+            this.partitionKeyNames = partitionKeyNames;
+            this.columnPlan = columnPlan;
         }
         
         ImmutableSet<String> getColumnNames() {
             return columnNames;
         }
         
+        ImmutableList<String> getPartitionKeyNames() {
+            return partitionKeyNames;
+        }
+        
+        ColumnPlan getColumnPlan() {
+            return columnPlan;
+        }
+        
         ColumnMetadata getColumnMetadata(String columnName) {
             final ColumnMetadata metadata = tableMetadata.getColumn(columnName);
             if (metadata == null) {
@@ -203,6 +298,15 @@ class MetadataCatalog  {
             return userType;
         }
         
+        public void invalidate(String keyspacename, String usertypeName) {
+            final String key = (keyspacename + "." + usertypeName).toLowerCase(Locale.US);
+            for (Iterator<String> it = userTypeCache.asMap().keySet().iterator(); it.hasNext(); ) {
+                if (it.next().toLowerCase(Locale.US).equals(key)) {
+                    it.remove();
+                }
+            }
+        }
+        
         public void invalidateAll() {
             userTypeCache.invalidateAll();
         }      
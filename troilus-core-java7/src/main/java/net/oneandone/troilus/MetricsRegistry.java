@@ -0,0 +1,112 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+
+/**
+ * Registry which receives the latencies and the stage times of the executed queries. The registry will be 
+ * called on the hot path of the queries. Implementations have to be thread-safe and non-blocking
+ */
+public interface MetricsRegistry {
+    
+    /**
+     * the operation type of a query
+     */
+    public enum Operation {
+        
+        /**
+         * select queries (including count queries)
+         */
+        READ, 
+        
+        /**
+         * insert and update queries
+         */
+        WRITE, 
+        
+        /**
+         * delete queries
+         */
+        DELETE, 
+        
+        /**
+         * counter updates
+         */
+        COUNTER, 
+        
+        /**
+         * batches of mutations
+         */
+        BATCH;
+    }
+    
+    
+    /**
+     * the stages of a query execution
+     */
+    public enum Stage {
+        
+        /**
+         * creating the statement of the query data (collecting the values, building the statement, if not prepared so far)
+         */
+        STATEMENT_BUILD,
+        
+        /**
+         * waiting for the prepared statement (the prepare request, if the statement is not cached)
+         */
+        PREPARE,
+        
+        /**
+         * binding the values to the prepared statement
+         */
+        BIND,
+        
+        /**
+         * waiting for the response of the driver (network and cassandra, including the time queued by a concurrency limit)
+         */
+        SERVER,
+        
+        /**
+         * executing the interceptors
+         */
+        INTERCEPTOR,
+        
+        /**
+         * mapping between entities and rows or column values
+         */
+        ENTITY_MAPPING;
+    }
+    
+    
+    
+    /**
+     * @param tablename      the qualified tablename (keyspace.table) or null, if the operation may refer several tables (batches) 
+     * @param operation      the operation
+     * @param latencyMicros  the latency of the query execution in micros
+     * @param isSuccess      true, if the query has been executed successfully
+     */
+    void recordLatency(String tablename, Operation operation, long latencyMicros, boolean isSuccess);
+    
+    
+    /**
+     * @param tablename     the qualified tablename (keyspace.table) or null, if the operation may refer several tables (batches)
+     * @param stage         the stage 
+     * @param elapsedNanos  the elapsed time of the stage in nanos
+     */
+    void recordStageTime(String tablename, Stage stage, long elapsedNanos);
+}
@@ -19,8 +19,8 @@ package net.oneandone.troilus;
 
 
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
 
+import net.oneandone.troilus.MetricsRegistry.Operation;
 import net.oneandone.troilus.java7.Batchable;
 
 import com.datastax.driver.core.BatchStatement;
@@ -28,10 +28,10 @@ import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.BatchStatement.Type;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.collect.UnmodifiableIterator;
-import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -56,12 +56,20 @@ abstract class MutationQuery<Q> extends AbstractQuery<Q> {
     }
     
     public ListenableFuture<Result> executeAsync() {
-        ListenableFuture<ResultSet> future = performAsync(getDefaultDbSession(), getStatementAsync(getDefaultDbSession()));
+        return executeAsync(newExecutionDbSession());
+    }
+    
+    /**
+     * @param dbSession  the session to execute the mutation
+     * @return the result future
+     */
+    protected ListenableFuture<Result> executeAsync(final DBSession dbSession) {
+        ListenableFuture<ResultSet> future = performAsync(dbSession, getTablename(), getOperation(), getStatementAsync(dbSession));
         
         Function<ResultSet, Result> mapEntity = new Function<ResultSet, Result>() {
             @Override
             public Result apply(ResultSet resultSet) {
-                return newResult(resultSet);
+                return newResult(resultSet, dbSession);
             }
         };
         
@@ -71,6 +79,16 @@ abstract class MutationQuery<Q> extends AbstractQuery<Q> {
     
     public abstract ListenableFuture<Statement> getStatementAsync(DBSession dbSession);
     
+    /**
+     * @return the tablename or null, if the mutation may refer several tables  
+     */
+    abstract Tablename getTablename();
+    
+    /**
+     * @return the operation type of the mutation
+     */
+    abstract Operation getOperation();
+    
     
     protected ListenableFuture<Statement> mergeStatements(ListenableFuture<Statement> statementFuture, ListenableFuture<ImmutableSet<Statement>> cascadingStatmentsFuture) {
         ListenableFuture<ImmutableSet<Statement>> statementsFuture = ListenableFutures.join(cascadingStatmentsFuture, statementFuture, getExecutor());
@@ -106,40 +124,39 @@ abstract class MutationQuery<Q> extends AbstractQuery<Q> {
     }
     
     
-    protected <T> ListenableFuture<Statement> mergeToBatch(Type batchType, UnmodifiableIterator<T> batchablesIt, Function<T, ListenableFuture<Statement>> statementFetcher) {
-        return new BatchQueryFutureAdapter<>(new BatchStatement(batchType), batchablesIt, statementFetcher);
+    protected <T> ListenableFuture<Statement> mergeToBatch(final Type batchType, UnmodifiableIterator<T> batchablesIt, Function<T, ListenableFuture<Statement>> statementFetcher) {
+        
+        Function<ImmutableList<Statement>, Statement> statementsBatcher = new Function<ImmutableList<Statement>, Statement>() {
+            
+            public Statement apply(ImmutableList<Statement> statements) {
+                return newBatchStatement(batchType, statements);
+            };
+        };
+        return Futures.transform(resolveStatementsAsync(batchablesIt, statementFetcher), statementsBatcher);
     }
     
     
-    protected static final class BatchQueryFutureAdapter<T> extends AbstractFuture<Statement> {
-        
-        BatchQueryFutureAdapter(BatchStatement batchStmt, UnmodifiableIterator<T> batchablesIt, Function<T, ListenableFuture<Statement>> statementFetcher) {
-            handle(batchStmt, batchablesIt, statementFetcher);
+    /**
+     * @param batchablesIt      the batchables 
+     * @param statementFetcher  the statement fetcher 
+     * @return the statements in order of the batchables. All statement futures are started at once 
+     */
+    protected <T> ListenableFuture<ImmutableList<Statement>> resolveStatementsAsync(UnmodifiableIterator<T> batchablesIt, Function<T, ListenableFuture<Statement>> statementFetcher) {
+        ImmutableList.Builder<ListenableFuture<Statement>> statementFutures = ImmutableList.builder();
+        while (batchablesIt.hasNext()) {
+            statementFutures.add(statementFetcher.apply(batchablesIt.next()));
         }
         
-        private void handle(final BatchStatement batchStmt, final UnmodifiableIterator<T> batchablesIt, final Function<T, ListenableFuture<Statement>> statementFetcher) {
-            
-            if (batchablesIt.hasNext()) {
-                final ListenableFuture<Statement> statementFuture = statementFetcher.apply(batchablesIt.next());
-                
-                Runnable resultHandler = new Runnable() {
-                    
-                    @Override
-                    public void run() {
-                        try {
-                            batchStmt.add(statementFuture.get());
-                            handle(batchStmt, batchablesIt, statementFetcher);
-                        } catch (InterruptedException | ExecutionException | RuntimeException e) {
-                            setException(ListenableFutures.unwrapIfNecessary(e));
-                        }
-                    }
-                };
-                statementFuture.addListener(resultHandler, MoreExecutors.directExecutor());
-                
-            } else {
-                set(batchStmt);
-            }
+        return ListenableFutures.allOf(statementFutures.build(), MoreExecutors.directExecutor());
+    }
+    
+    
+    protected static BatchStatement newBatchStatement(Type batchType, ImmutableList<Statement> statements) {
+        BatchStatement batchStatement = new BatchStatement(batchType);
+        for (Statement statement : statements) {
+            batchStatement.add(statement);
         }
-    }        
+        return batchStatement;
+    }
 
 }
\ No newline at end of file
@@ -0,0 +1,403 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.oneandone.troilus.java7.Record;
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+
+
+
+/**
+ * Local cache of the keys of absent rows. Reads of a remembered key will be answered without 
+ * a database round trip until the ttl is expired. Writes and deletes performed by the same context 
+ * invalidate the affected keys  
+ */
+abstract class NegativeCache {
+    
+    private final MetadataCatalog catalog;
+    
+    // loads which overlap a modification of their row will not be cached  
+    private final RowVersions versions;
+    
+    
+    private NegativeCache(MetadataCatalog catalog, int expectedKeys) {
+        this.catalog = catalog;
+        this.versions = new RowVersions(expectedKeys);
+    }
+    
+    /**
+     * @param catalog    the metadata catalog
+     * @param maxSize    the max number of remembered keys
+     * @param ttlMillis  the time to live of a remembered key in millis 
+     * @return a new negative cache which remembers the exact keys
+     */
+    static NegativeCache newKeySetCache(MetadataCatalog catalog, int maxSize, long ttlMillis) {
+        return new KeySetNegativeCache(catalog, maxSize, ttlMillis);
+    }
+    
+    /**
+     * @param catalog       the metadata catalog
+     * @param expectedKeys  the expected number of remembered keys per ttl 
+     * @param fpp           the false positive probability, i.e. the probability that an existing row is reported as absent
+     * @param ttlMillis     the time to live of a remembered key in millis 
+     * @param executor      the executor to clear outdated generations of the bloom filter
+     * @return a new negative cache which remembers the keys by an off-heap bloom filter
+     */
+    static NegativeCache newBloomFilterCache(MetadataCatalog catalog, int expectedKeys, double fpp, long ttlMillis, Executor executor) {
+        return new BloomFilterNegativeCache(catalog, expectedKeys, fpp, ttlMillis, executor);
+    }
+    
+    
+    /**
+     * @param rowKey  the key of the row to read. The key includes the full primary key
+     * @param data    the query data
+     * @param loader  the loader which performs the query
+     * @return null, if the key is known as absent or the loaded record   
+     */
+    ListenableFuture<Record> getAsync(final RowKey rowKey, final ReadQueryData data, Supplier<ListenableFuture<Record>> loader) {
+        if (isAbsent(rowKey)) {
+            return Futures.immediateFuture(null);
+        }
+        
+        final long loadVersion = versions.getCurrentVersion();
+        final ListenableFuture<Record> future = loader.get();
+        
+        final Runnable cacheUpdater = new Runnable() {
+            
+            @Override
+            public void run() {
+                try {
+                    // rows may be dropped by the selection of columns. Only reads of the whole row are remembered  
+                    if ((future.get() == null) && data.getColumnsToFetch().isEmpty()) {
+                        recordAbsent(rowKey);
+                        
+                        // a concurrent write of the row may have been missed by the load 
+                        if (versions.isModifiedSince(rowKey, loadVersion)) {
+                            invalidate(rowKey);
+                        }
+                    }
+                } catch (InterruptedException | ExecutionException | RuntimeException ignore) { }
+            }
+        };
+        future.addListener(cacheUpdater, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    
+    /**
+     * invalidates the keys of the modified rows
+     *  
+     * @param tablename  the tablename
+     * @param keys       the keys of the modified row(s). If the keys do not address a single row, all keys of the table will be invalidated  
+     */
+    void invalidate(Tablename tablename, ImmutableMap<String, Object> keys) {
+        final RowKey modifiedRowKey = RowKey.newRowKey(catalog, tablename, keys);
+        
+        // the version has to be updated first. Otherwise a concurrent load may re-add the key 
+        if (modifiedRowKey != null) {
+            versions.modified(modifiedRowKey);
+            invalidate(modifiedRowKey);
+        } else {
+            versions.modified(tablename);
+            invalidateAll(tablename);
+        }
+    }
+    
+    
+    protected abstract boolean isAbsent(RowKey rowKey);
+    
+    protected abstract void recordAbsent(RowKey rowKey);
+    
+    protected abstract void invalidate(RowKey rowKey);
+    
+    protected abstract void invalidateAll(Tablename tablename);
+    
+    
+    
+    
+    private static final class KeySetNegativeCache extends NegativeCache {
+        private final Cache<RowKey, Boolean> absentKeys;
+        
+        KeySetNegativeCache(MetadataCatalog catalog, int maxSize, long ttlMillis) {
+            super(catalog, maxSize);
+            this.absentKeys = CacheBuilder.newBuilder()
+                                          .maximumSize(maxSize)
+                                          .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                                          .<RowKey, Boolean>build();
+        }
+        
+        @Override
+        protected boolean isAbsent(RowKey rowKey) {
+            return absentKeys.getIfPresent(rowKey) != null;
+        }
+        
+        @Override
+        protected void recordAbsent(RowKey rowKey) {
+            absentKeys.put(rowKey, true);
+        }
+        
+        @Override
+        protected void invalidate(RowKey rowKey) {
+            absentKeys.invalidate(rowKey);
+        }
+        
+        @Override
+        protected void invalidateAll(Tablename tablename) {
+            for (RowKey rowKey : absentKeys.asMap().keySet()) {
+                if (rowKey.getTablename().equals(tablename)) {
+                    absentKeys.invalidate(rowKey);
+                }
+            }
+        }
+    }
+    
+    
+    
+    /**
+     * Remembers the absent keys by two generations of bloom filters. The generations are rotated each half ttl, 
+     * i.e. a key is remembered at least for the half ttl and at most for the ttl. Because single keys can not be 
+     * removed from a bloom filter, the locally modified keys are remembered separately. 
+     * 
+     * A rotation swaps in a generation which has been cleared before. Outdated generations are cleared 
+     * by the executor, so that reads never wait for clearing the bits. 
+     */
+    private static final class BloomFilterNegativeCache extends NegativeCache {
+        private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+        
+        private final long numBits;
+        private final int numHashFunctions;
+        private final long rotationIntervalNanos;
+        private final Cache<RowKey, Boolean> modifiedKeys;
+        private final Executor executor;
+        private final Queue<OffHeapBitSet> clearedBits = new ConcurrentLinkedQueue<>();
+        
+        private volatile OffHeapBitSet currentBits;
+        private volatile OffHeapBitSet previousBits;
+        private final long startNanos = System.nanoTime();
+        private volatile long currentEpoch = 0;
+        
+        
+        BloomFilterNegativeCache(MetadataCatalog catalog, int expectedKeys, double fpp, long ttlMillis, Executor executor) {
+            super(catalog, expectedKeys);
+            if ((fpp <= 0) || (fpp >= 1)) {
+                throw new IllegalArgumentException("false positive probability has to be larger than 0 and less than 1");
+            }
+            
+            this.numBits = Math.max(64, (long) (-expectedKeys * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+            this.numHashFunctions = Math.max(1, (int) Math.round((double) numBits / expectedKeys * Math.log(2)));
+            this.rotationIntervalNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(ttlMillis) / 2);
+            this.executor = executor;
+            this.currentBits = new OffHeapBitSet(numBits);
+            this.previousBits = new OffHeapBitSet(numBits);
+            this.clearedBits.add(new OffHeapBitSet(numBits));
+            
+            // the modified keys have to outlive the remembered absent keys. If modified keys are dropped because of 
+            // the size limit, the bloom filters will be reset 
+            final RemovalListener<RowKey, Boolean> evictionListener = new RemovalListener<RowKey, Boolean>() {
+                
+                @Override
+                public void onRemoval(RemovalNotification<RowKey, Boolean> notification) {
+                    if (notification.getCause() == RemovalCause.SIZE) {
+                        reset();
+                    }
+                }
+            };
+            this.modifiedKeys = CacheBuilder.newBuilder()
+                                            .maximumSize(expectedKeys)
+                                            .expireAfterWrite(ttlMillis * 2, TimeUnit.MILLISECONDS)
+                                            .removalListener(evictionListener)
+                                            .<RowKey, Boolean>build();
+        }
+        
+        
+        @Override
+        protected boolean isAbsent(RowKey rowKey) {
+            rotateIfNecessary();
+            
+            final long[] hashes = hash(rowKey);
+            return (contains(currentBits, hashes) || contains(previousBits, hashes)) && (modifiedKeys.getIfPresent(rowKey) == null);
+        }
+        
+        @Override
+        protected void recordAbsent(RowKey rowKey) {
+            rotateIfNecessary();
+            
+            final long[] hashes = hash(rowKey);
+            final OffHeapBitSet bits = currentBits;
+            for (int i = 0; i < numHashFunctions; i++) {
+                bits.set(index(hashes, i));
+            }
+        }
+        
+        @Override
+        protected void invalidate(RowKey rowKey) {
+            modifiedKeys.put(rowKey, true);
+        }
+        
+        @Override
+        protected void invalidateAll(Tablename tablename) {
+            reset();
+        }
+        
+        
+        private boolean contains(OffHeapBitSet bits, long[] hashes) {
+            for (int i = 0; i < numHashFunctions; i++) {
+                if (!bits.get(index(hashes, i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private long index(long[] hashes, int i) {
+            // double hashing
+            return ((hashes[0] + i * hashes[1]) & Long.MAX_VALUE) % numBits;
+        }
+        
+        private static long[] hash(RowKey rowKey) {
+            final Hasher hasher = HASH_FUNCTION.newHasher();
+            hasher.putString(rowKey.getTablename().toString(), Charsets.UTF_8);
+            
+            // the key order of the query does not matter 
+            for (Entry<String, Object> entry : ImmutableSortedMap.copyOf(rowKey.getKeys()).entrySet()) {
+                hasher.putString(entry.getKey(), Charsets.UTF_8);
+                
+                final Object value = entry.getValue();
+                if (value instanceof ByteBuffer) {
+                    final ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+                    final byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    hasher.putBytes(bytes);
+                } else {
+                    hasher.putString(value.toString(), Charsets.UTF_8);
+                }
+            }
+            
+            final ByteBuffer hash = ByteBuffer.wrap(hasher.hash().asBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            return new long[] { hash.getLong(0), hash.getLong(8) };
+        }
+        
+        private void rotateIfNecessary() {
+            final long epoch = (System.nanoTime() - startNanos) / rotationIntervalNanos;
+            if (epoch != currentEpoch) {
+                synchronized (this) {
+                    if (epoch == currentEpoch + 1) {
+                        recycle(previousBits);
+                        previousBits = currentBits;
+                        currentBits = newClearedBits();
+                        
+                    } else if (epoch > currentEpoch) {
+                        // both generations are outdated
+                        recycle(previousBits);
+                        recycle(currentBits);
+                        previousBits = newClearedBits();
+                        currentBits = newClearedBits();
+                    }
+                    currentEpoch = Math.max(epoch, currentEpoch);
+                }
+            }
+        }
+        
+        private synchronized void reset() {
+            recycle(previousBits);
+            recycle(currentBits);
+            previousBits = newClearedBits();
+            currentBits = newClearedBits();
+        }
+        
+        private OffHeapBitSet newClearedBits() {
+            final OffHeapBitSet bits = clearedBits.poll();
+            return (bits == null) ? new OffHeapBitSet(numBits) : bits;
+        }
+        
+        private void recycle(final OffHeapBitSet bits) {
+            final Runnable clearTask = new Runnable() {
+                
+                @Override
+                public void run() {
+                    bits.clear();
+                    clearedBits.offer(bits);
+                }
+            };
+            
+            try {
+                executor.execute(clearTask);
+            } catch (RejectedExecutionException ree) {
+                // the bits will be dropped. A new generation will be allocated on demand 
+            }
+        }
+    }
+    
+    
+    
+    /**
+     * Bit set which is allocated outside the java heap. Updates are not atomic. A lost 
+     * update results in an unremembered key only    
+     */
+    private static final class OffHeapBitSet {
+        private final LongBuffer words;
+        
+        OffHeapBitSet(long numBits) {
+            final int numWords = Ints.checkedCast((numBits + 63) / 64);
+            this.words = ByteBuffer.allocateDirect(Ints.checkedCast(numWords * 8L)).asLongBuffer();
+        }
+        
+        void set(long idx) {
+            final int wordIdx = (int) (idx >>> 6);
+            words.put(wordIdx, words.get(wordIdx) | (1L << idx));
+        }
+        
+        boolean get(long idx) {
+            return (words.get((int) (idx >>> 6)) & (1L << idx)) != 0;
+        }
+        
+        void clear() {
+            for (int i = 0; i < words.capacity(); i++) {
+                words.put(i, 0L);
+            }
+        }
+    }
+}
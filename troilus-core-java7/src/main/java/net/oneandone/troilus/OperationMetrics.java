@@ -0,0 +1,65 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The latency and throughput metrics of an operation type of a table 
+ */
+public interface OperationMetrics {
+
+    /**
+     * @return the number of executed queries
+     */
+    long getCount();
+    
+    /**
+     * @return the number of failed queries
+     */
+    long getNumErrors();
+    
+    /**
+     * @return the executed queries per sec since the metrics has been created 
+     */
+    double getThroughput();
+    
+    /**
+     * @return the mean latency in micros
+     */
+    double getMeanMicros();
+
+    /**
+     * @return the median latency in micros or -1, if no queries are executed 
+     */
+    long getP50Micros();
+    
+    /**
+     * @return the 99th percentile latency in micros or -1, if no queries are executed
+     */
+    long getP99Micros();
+    
+    /**
+     * @return the 99.9th percentile latency in micros or -1, if no queries are executed
+     */
+    long getP999Micros();
+    
+    /**
+     * @param percentile the percentile (e.g. 99.0)
+     * @return the latency of the percentile in micros or -1, if no queries are executed
+     */
+    long getPercentileMicros(double percentile);
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.nio.ByteBuffer;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.oneandone.troilus.java7.Record;
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+
+
+/**
+ * Paranoia check which verifies that the keys of the returned rows match with the requested 
+ * keys. The counter of the detected data swaps is shared by all copies of the check   
+ */
+class ParanoiaCheck {
+    
+    private static final Logger LOG = LoggerFactory.getLogger(ParanoiaCheck.class);
+    
+    private static final int SAMPLE_RATE = 16;
+    
+    private final ParanoiaCheckMode mode;
+    private final AtomicLong detectedDataSwaps;
+    
+    
+    /**
+     * constructor
+     */
+    ParanoiaCheck() {
+        this(ParanoiaCheckMode.STRICT, new AtomicLong());
+    }
+    
+    private ParanoiaCheck(ParanoiaCheckMode mode, AtomicLong detectedDataSwaps) {
+        this.mode = mode;
+        this.detectedDataSwaps = detectedDataSwaps;
+    }
+    
+    /**
+     * @param mode  the mode
+     * @return a copy of this check with the new mode
+     */
+    ParanoiaCheck withMode(ParanoiaCheckMode mode) {
+        return new ParanoiaCheck(mode, detectedDataSwaps);
+    }
+    
+    /**
+     * @return the mode 
+     */
+    ParanoiaCheckMode getMode() {
+        return mode;
+    }
+    
+    /**
+     * @return the number of detected data swaps
+     */
+    long getDetectedDataSwaps() {
+        return detectedDataSwaps.get();
+    }
+    
+    
+    /**
+     * @param queryData       the query data
+     * @param udtValueMapper  the udt value mapper 
+     * @return the check of the result rows of the query 
+     */
+    ResultCheck newResultCheck(ReadQueryData queryData, UDTValueMapper udtValueMapper) {
+        if ((mode == ParanoiaCheckMode.OFF) || queryData.getKeys().isEmpty()) {
+            return new ResultCheck(ImmutableMap.<String, ImmutableSet<ByteBuffer>>of());
+        }
+        
+        // the request keys will be serialized once per query
+        final ImmutableMap.Builder<String, ImmutableSet<ByteBuffer>> requestKeys = ImmutableMap.builder();
+        for (Entry<String, ImmutableList<Object>> entry : queryData.getKeys().entrySet()) {
+            final ImmutableSet.Builder<ByteBuffer> serializedValues = ImmutableSet.builder();
+            for (Object value : entry.getValue()) {
+                if (value == null) continue;
+                try {
+                    serializedValues.add(udtValueMapper.serialize(value));
+                } catch(Exception e) {
+                    LOG.warn("Cassandra 3.0 serialization failed to serialize object: " + value, e);
+                }
+            }
+            requestKeys.put(entry.getKey(), serializedValues.build());
+        }
+        
+        return new ResultCheck(requestKeys.build());
+    }
+    
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                          .add("mode", mode)
+                          .add("detectedDataSwaps", detectedDataSwaps.get())
+                          .toString();
+    }
+    
+    
+    
+    /**
+     * the check of the rows of a dedicated result
+     */
+    final class ResultCheck {
+        private final ImmutableMap<String, ImmutableSet<ByteBuffer>> requestKeys;
+        private final AtomicInteger numRows = new AtomicInteger();
+        
+        private ResultCheck(ImmutableMap<String, ImmutableSet<ByteBuffer>> requestKeys) {
+            this.requestKeys = requestKeys;
+        }
+        
+        /**
+         * @param record  the record to check
+         * @throws ProtocolErrorException if the record key does not match with the requested keys
+         */
+        void check(Record record) {
+            if (requestKeys.isEmpty()) {
+                return;
+            }
+            
+            if ((mode == ParanoiaCheckMode.SAMPLED) && ((numRows.getAndIncrement() % SAMPLE_RATE) != 0)) {
+                return;
+            }
+            
+            for (Entry<String, ImmutableSet<ByteBuffer>> entry : requestKeys.entrySet()) {
+                
+                if (record.isNull(entry.getKey())) {
+                    // response does not include key
+                    return;
+                }
+                
+                // check if response key matches with any of the request keys
+                if (entry.getValue().contains(record.getBytesUnsafe(entry.getKey()))) {
+                    return;
+                }
+                
+                detectedDataSwaps.incrementAndGet();
+                LOG.warn("Dataswap error for " + entry.getKey());
+                throw new ProtocolErrorException("Dataswap error for " + entry.getKey()); 
+            }
+        }
+    }
+}
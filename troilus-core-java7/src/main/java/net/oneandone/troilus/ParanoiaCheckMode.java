@@ -0,0 +1,40 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The mode of the paranoia check which verifies that the keys of the returned rows 
+ * match with the requested keys (protection against swapped responses)  
+ */
+public enum ParanoiaCheckMode {
+    
+    /**
+     * each returned row will be checked 
+     */
+    STRICT,
+    
+    /**
+     * the first row of each result and every 16th row afterwards will be checked 
+     */
+    SAMPLED,
+    
+    /**
+     * no check will be performed
+     */
+    OFF;
+}
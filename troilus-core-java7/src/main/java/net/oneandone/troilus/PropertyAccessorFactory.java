@@ -0,0 +1,369 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import com.google.common.base.Throwables;
+
+
+
+/**
+ * Strategy to create the accessors which are used by the {@link BeanMapper} to read and write 
+ * the bean fields and to instantiate beans. The accessors will be created once per class   
+ */
+interface PropertyAccessorFactory {
+    
+    /**
+     * accessor based on method handles. The method handles will be resolved once per field 
+     */
+    static final PropertyAccessorFactory METHOD_HANDLES = new MethodHandleAccessorFactory();
+    
+    /**
+     * accessor based on java.lang.reflect 
+     */
+    static final PropertyAccessorFactory REFLECTION = new ReflectionAccessorFactory();
+
+    
+    /**
+     * @param field the field 
+     * @return the field accessor
+     */
+    FieldAccessor newFieldAccessor(Field field);
+    
+    /**
+     * @param clazz the class 
+     * @return the instantiator
+     * @throws NoSuchMethodException if the class does not provide a no-args constructor
+     */
+    <T> Instantiator<T> newInstantiator(Class<T> clazz) throws NoSuchMethodException;
+    
+    
+    
+    /**
+     * field accessor 
+     */
+    static interface FieldAccessor {
+        
+        /**
+         * @param bean the bean
+         * @return the field value
+         */
+        Object get(Object bean);
+        
+        /**
+         * @param bean  the bean
+         * @param value the field value to set
+         */
+        void set(Object bean, Object value);
+    }
+    
+    
+    /**
+     * bean instantiator 
+     * @param <T> the bean type
+     */
+    static interface Instantiator<T> {
+        
+        /**
+         * @return the new bean instance
+         */
+        T newInstance();
+    }
+    
+    
+    
+
+    static final class MethodHandleAccessorFactory implements PropertyAccessorFactory {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+        private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class);
+
+        private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        
+        
+        @Override
+        public FieldAccessor newFieldAccessor(Field field) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                return REFLECTION.newFieldAccessor(field);
+            }
+            
+            Accessibles.makeAccessible(field);
+            final FieldAccessor reflectionAccessor = REFLECTION.newFieldAccessor(field);
+            
+            try {
+                final MethodHandle getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+                
+                // final fields can not be written by a method handle
+                final MethodHandle setter = Modifier.isFinal(field.getModifiers()) ? null 
+                                                                                   : lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                return new MethodHandleFieldAccessor(getter, setter, reflectionAccessor);
+                
+            } catch (IllegalAccessException e) {
+                return reflectionAccessor;
+            }
+        }
+        
+        @Override
+        public <T> Instantiator<T> newInstantiator(Class<T> clazz) throws NoSuchMethodException {
+            final Constructor<T> constructor = clazz.getDeclaredConstructor();
+            Accessibles.makeAccessible(constructor);
+            
+            try {
+                return new MethodHandleInstantiator<>(lookup.unreflectConstructor(constructor).asType(CONSTRUCTOR_TYPE));
+            } catch (IllegalAccessException e) {
+                return REFLECTION.newInstantiator(clazz);
+            }
+        }
+        
+        
+        private static final class MethodHandleFieldAccessor implements FieldAccessor {
+            private final MethodHandle getter;
+            private final MethodHandle setter;
+            private final FieldAccessor fallbackAccessor;
+            
+            MethodHandleFieldAccessor(MethodHandle getter, MethodHandle setter, FieldAccessor fallbackAccessor) {
+                this.getter = getter;
+                this.setter = setter;
+                this.fallbackAccessor = fallbackAccessor;
+            }
+            
+            @Override
+            public Object get(Object bean) {
+                try {
+                    return (Object) getter.invokeExact(bean);
+                } catch (Throwable t) {
+                    Throwables.throwIfUnchecked(t);
+                    throw new RuntimeException(t);
+                }
+            }
+            
+            @Override
+            public void set(Object bean, Object value) {
+                if (setter == null) {
+                    fallbackAccessor.set(bean, value);
+                    return;
+                }
+                
+                try {
+                    setter.invokeExact(bean, value);
+                } catch (Throwable t) {
+                    Throwables.throwIfUnchecked(t);
+                    throw new RuntimeException(t);
+                }
+            }
+        }
+        
+        
+        private static final class MethodHandleInstantiator<T> implements Instantiator<T> {
+            private final MethodHandle constructor;
+            
+            MethodHandleInstantiator(MethodHandle constructor) {
+                this.constructor = constructor;
+            }
+            
+            @SuppressWarnings("unchecked")
+            @Override
+            public T newInstance() {
+                try {
+                    return (T) (Object) constructor.invokeExact();
+                } catch (Throwable t) {
+                    Throwables.throwIfUnchecked(t);
+                    throw new RuntimeException(t);
+                }
+            }
+        }
+    }
+    
+    
+    
+    static final class ReflectionAccessorFactory implements PropertyAccessorFactory {
+        
+        @Override
+        public FieldAccessor newFieldAccessor(Field field) {
+            Accessibles.makeAccessible(field);
+            return new ReflectionFieldAccessor(field);
+        }
+        
+        @Override
+        public <T> Instantiator<T> newInstantiator(Class<T> clazz) throws NoSuchMethodException {
+            final Constructor<T> constructor = clazz.getDeclaredConstructor();
+            Accessibles.makeAccessible(constructor);
+            return new ReflectionInstantiator<>(constructor);
+        }
+        
+        
+        private static final class ReflectionFieldAccessor implements FieldAccessor {
+            private final Field field;
+            
+            ReflectionFieldAccessor(Field field) {
+                this.field = field;
+            }
+            
+            @Override
+            public Object get(Object bean) {
+                try {
+                    return field.get(bean);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            
+            @Override
+            public void set(Object bean, Object value) {
+                try {
+                    field.set(bean, value);
+                } catch (IllegalAccessException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+        
+        
+        private static final class ReflectionInstantiator<T> implements Instantiator<T> {
+            private final Constructor<T> constructor;
+            
+            ReflectionInstantiator(Constructor<T> constructor) {
+                this.constructor = constructor;
+            }
+            
+            @Override
+            public T newInstance() {
+                try {
+                    return constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+    }
+    
+    
+    
+    
+    /**
+     * accessor based on a generated {@link EntityMapper}. Fields and constructors which are not 
+     * supported by the entity mapper will be handled by the fallback factory  
+     */
+    static final class EntityMapperAccessorFactory implements PropertyAccessorFactory {
+        private final EntityMapper<Object> entityMapper;
+        private final PropertyAccessorFactory fallbackFactory;
+        
+        @SuppressWarnings("unchecked")
+        EntityMapperAccessorFactory(EntityMapper<?> entityMapper, PropertyAccessorFactory fallbackFactory) {
+            this.entityMapper = (EntityMapper<Object>) entityMapper;
+            this.fallbackFactory = fallbackFactory;
+        }
+        
+        @Override
+        public FieldAccessor newFieldAccessor(Field field) {
+            for (int idx = 0; idx < entityMapper.getPropertyCount(); idx++) {
+                if (entityMapper.getDeclaringClass(idx).equals(field.getDeclaringClass()) && entityMapper.getFieldName(idx).equals(field.getName())) {
+                    // final fields can not be written by the generated code  
+                    final FieldAccessor writeFallbackAccessor = Modifier.isFinal(field.getModifiers()) ? fallbackFactory.newFieldAccessor(field) : null;
+                    return new EntityMapperFieldAccessor(entityMapper, idx, writeFallbackAccessor);
+                }
+            }
+            
+            return fallbackFactory.newFieldAccessor(field);
+        }
+        
+        /**
+         * @param idx  the property index of the entity mapper
+         * @return the accessor of the property
+         * @throws NoSuchFieldException if the field of a final property does not exist
+         */
+        FieldAccessor newPropertyAccessor(int idx) throws NoSuchFieldException {
+            // final fields can not be written by the generated code. Only these fields will be looked up by reflection    
+            final FieldAccessor writeFallbackAccessor = entityMapper.isWritable(idx) ? null 
+                                                                                     : fallbackFactory.newFieldAccessor(entityMapper.getDeclaringClass(idx).getDeclaredField(entityMapper.getFieldName(idx)));
+            return new EntityMapperFieldAccessor(entityMapper, idx, writeFallbackAccessor);
+        }
+        
+        @Override
+        public <T> Instantiator<T> newInstantiator(Class<T> clazz) throws NoSuchMethodException {
+            final Constructor<T> constructor = clazz.getDeclaredConstructor();
+            if (clazz.equals(entityMapper.getEntityClass()) && !Modifier.isPrivate(constructor.getModifiers())) {
+                return new EntityMapperInstantiator<>(entityMapper);
+            } else {
+                return fallbackFactory.newInstantiator(clazz);
+            }
+        }
+        
+        
+        private static final class EntityMapperFieldAccessor implements FieldAccessor {
+            private final EntityMapper<Object> entityMapper;
+            private final int idx;
+            private final FieldAccessor writeFallbackAccessor;
+            
+            EntityMapperFieldAccessor(EntityMapper<Object> entityMapper, int idx, FieldAccessor writeFallbackAccessor) {
+                this.entityMapper = entityMapper;
+                this.idx = idx;
+                this.writeFallbackAccessor = writeFallbackAccessor;
+            }
+            
+            @Override
+            public Object get(Object bean) {
+                return entityMapper.read(bean, idx);
+            }
+            
+            @Override
+            public void set(Object bean, Object value) {
+                if (writeFallbackAccessor == null) {
+                    entityMapper.write(bean, idx, value);
+                } else {
+                    writeFallbackAccessor.set(bean, value);
+                }
+            }
+        }
+        
+        
+        private static final class EntityMapperInstantiator<T> implements Instantiator<T> {
+            private final EntityMapper<Object> entityMapper;
+            
+            EntityMapperInstantiator(EntityMapper<Object> entityMapper) {
+                this.entityMapper = entityMapper;
+            }
+            
+            @SuppressWarnings("unchecked")
+            @Override
+            public T newInstance() {
+                return (T) entityMapper.newInstance();
+            }
+        }
+    }
+    
+    
+    
+    
+    static final class Accessibles {
+        
+        private Accessibles() { }
+        
+        static void makeAccessible(AccessibleObject accessibleObject) {
+            if (!accessibleObject.isAccessible()) {
+                accessibleObject.setAccessible(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The timing breakdown of a single query execution. If the query consists of several 
+ * statements (e.g. parallel reads), the times of the statements are summed up    
+ */
+public interface QueryTimings {
+
+    /**
+     * @return the elapsed time in micros from starting the query until the result is available
+     */
+    long getElapsedMicros();
+    
+    /**
+     * @return the time in micros spent in the request interceptors (incl. cascading interceptors)
+     */
+    long getRequestInterceptorMicros();
+    
+    /**
+     * @return the time in micros spent in building the statements
+     */
+    long getStatementBuildMicros();
+    
+    /**
+     * @return the time in micros spent in preparing the statements
+     */
+    long getPrepareMicros();
+    
+    /**
+     * @return the number of prepared statements which has been already available in the cache 
+     */
+    int getNumPrepareCacheHits();
+    
+    /**
+     * @return the number of prepared statements which has been prepared on demand  
+     */
+    int getNumPrepareCacheMisses();
+    
+    /**
+     * @return the time in micros spent in binding the values
+     */
+    long getBindMicros();
+    
+    /**
+     * @return the time in micros the statements waited for execution (concurrency limit queue)
+     */
+    long getQueueWaitMicros();
+    
+    /**
+     * @return the time in micros spent in executing the statements by the driver 
+     */
+    long getExecuteMicros();
+    
+    /**
+     * @return the time in micros spent in the response interceptors
+     */
+    long getResponseInterceptorMicros();
+    
+    /**
+     * @return the time in micros spent in mapping between entities and rows. For lazy 
+     *         mapped results the time increases while iterating the result
+     */
+    long getMappingMicros();
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import net.oneandone.troilus.MetricsRegistry.Stage;
+
+import com.google.common.base.MoreObjects;
+
+
+
+/**
+ * Records the timing breakdown of a single query execution. The recorder is cheap: All values 
+ * are held by a single array, which is updated lock-free  
+ */
+final class QueryTimingsRecorder implements QueryTimings {
+    
+    private static final int REQUEST_INTERCEPTOR = 0;
+    private static final int STATEMENT_BUILD = 1;
+    private static final int PREPARE = 2;
+    private static final int BIND = 3;
+    private static final int QUEUE_WAIT = 4;
+    private static final int EXECUTE = 5;
+    private static final int RESPONSE_INTERCEPTOR = 6;
+    private static final int MAPPING = 7;
+    private static final int PREPARE_CACHE_HITS = 8;
+    private static final int PREPARE_CACHE_MISSES = 9;
+    private static final int ELAPSED = 10;
+    
+    private final long startNanos = System.nanoTime();
+    private final AtomicLongArray values = new AtomicLongArray(11);
+    
+    
+    /**
+     * @param stage         the stage
+     * @param elapsedNanos  the time spent in the stage
+     */
+    void recordStageTime(Stage stage, long elapsedNanos) {
+        switch (stage) {
+        case STATEMENT_BUILD:
+            values.addAndGet(STATEMENT_BUILD, elapsedNanos);
+            break;
+
+        case PREPARE:
+            values.addAndGet(PREPARE, elapsedNanos);
+            break;
+            
+        case BIND:
+            values.addAndGet(BIND, elapsedNanos);
+            break;
+
+        case ENTITY_MAPPING:
+            values.addAndGet(MAPPING, elapsedNanos);
+            break;
+            
+        default:
+            // server and interceptor times are recorded in a more fine-grained way 
+        }
+    }
+    
+    /**
+     * @param isRequestInterceptor  true, if request interceptors has been executed 
+     * @param elapsedNanos          the time spent in the interceptor
+     */
+    void recordInterceptorTime(boolean isRequestInterceptor, long elapsedNanos) {
+        values.addAndGet(isRequestInterceptor ? REQUEST_INTERCEPTOR : RESPONSE_INTERCEPTOR, elapsedNanos);
+    }
+    
+    /**
+     * @param isHit  true, if the prepared statement has been available in the cache
+     */
+    void recordPrepareCacheAccess(boolean isHit) {
+        values.incrementAndGet(isHit ? PREPARE_CACHE_HITS : PREPARE_CACHE_MISSES);
+    }
+    
+    /**
+     * @param elapsedNanos  the time the statement waited for execution
+     */
+    void recordQueueWait(long elapsedNanos) {
+        values.addAndGet(QUEUE_WAIT, elapsedNanos);
+    }
+    
+    /**
+     * @param elapsedNanos  the time spent in executing the statement by the driver
+     */
+    void recordExecute(long elapsedNanos) {
+        values.addAndGet(EXECUTE, elapsedNanos);
+    }
+    
+    /**
+     * marks the result as available
+     */
+    void stop() {
+        values.compareAndSet(ELAPSED, 0, Math.max(1, System.nanoTime() - startNanos));
+    }
+    
+    
+    @Override
+    public long getElapsedMicros() {
+        final long elapsedNanos = values.get(ELAPSED);
+        return toMicros((elapsedNanos == 0) ? (System.nanoTime() - startNanos) : elapsedNanos);
+    }
+    
+    @Override
+    public long getRequestInterceptorMicros() {
+        return toMicros(values.get(REQUEST_INTERCEPTOR));
+    }
+    
+    @Override
+    public long getStatementBuildMicros() {
+        return toMicros(values.get(STATEMENT_BUILD));
+    }
+    
+    @Override
+    public long getPrepareMicros() {
+        return toMicros(values.get(PREPARE));
+    }
+    
+    @Override
+    public int getNumPrepareCacheHits() {
+        return (int) values.get(PREPARE_CACHE_HITS);
+    }
+    
+    @Override
+    public int getNumPrepareCacheMisses() {
+        return (int) values.get(PREPARE_CACHE_MISSES);
+    }
+    
+    @Override
+    public long getBindMicros() {
+        return toMicros(values.get(BIND));
+    }
+    
+    @Override
+    public long getQueueWaitMicros() {
+        return toMicros(values.get(QUEUE_WAIT));
+    }
+    
+    @Override
+    public long getExecuteMicros() {
+        return toMicros(values.get(EXECUTE));
+    }
+    
+    @Override
+    public long getResponseInterceptorMicros() {
+        return toMicros(values.get(RESPONSE_INTERCEPTOR));
+    }
+    
+    @Override
+    public long getMappingMicros() {
+        return toMicros(values.get(MAPPING));
+    }
+    
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+    
+    
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper("timings")
+                          .add("elapsedMicros", getElapsedMicros())
+                          .add("requestInterceptorMicros", getRequestInterceptorMicros())
+                          .add("statementBuildMicros", getStatementBuildMicros())
+                          .add("prepareMicros", getPrepareMicros())
+                          .add("prepareCacheHits", getNumPrepareCacheHits())
+                          .add("prepareCacheMisses", getNumPrepareCacheMisses())
+                          .add("bindMicros", getBindMicros())
+                          .add("queueWaitMicros", getQueueWaitMicros())
+                          .add("executeMicros", getExecuteMicros())
+                          .add("responseInterceptorMicros", getResponseInterceptorMicros())
+                          .add("mappingMicros", getMappingMicros())
+                          .toString();
+    }
+}
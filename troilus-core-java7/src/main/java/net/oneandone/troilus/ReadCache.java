@@ -0,0 +1,201 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.oneandone.troilus.java7.Record;
+
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+
+
+
+/**
+ * Local cache of the records read by key. The records are cached per row key and column selection. 
+ * Writes and deletes performed by the same context invalidate the affected rows. A record which is 
+ * older than the refresh delay will be returned, but reloaded in the background  
+ */
+class ReadCache {
+    
+    private final MetadataCatalog catalog;
+    private final long ttlNanos;
+    private final long refreshAfterNanos;
+    private final Cache<RowKey, ConcurrentMap<ImmutableMap<String, Boolean>, CachedRecord>> rows;
+    
+    // loads which overlap a modification of their row will not be cached  
+    private final RowVersions versions;
+    
+    
+    /**
+     * @param catalog           the metadata catalog
+     * @param maxSize           the max number of cached rows
+     * @param ttlMillis         the time to live of a cached record in millis
+     * @param refreshAfterMillis the age in millis after which a record will be reloaded in the background
+     */
+    ReadCache(MetadataCatalog catalog, int maxSize, long ttlMillis, long refreshAfterMillis) {
+        this.catalog = catalog;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.refreshAfterNanos = TimeUnit.MILLISECONDS.toNanos(refreshAfterMillis);
+        this.rows = CacheBuilder.newBuilder()
+                                .maximumSize(maxSize)
+                                .expireAfterAccess(ttlMillis, TimeUnit.MILLISECONDS)
+                                .<RowKey, ConcurrentMap<ImmutableMap<String, Boolean>, CachedRecord>>build();
+        this.versions = new RowVersions(maxSize);
+    }
+    
+    
+    /**
+     * @param rowKey          the key of the row to read
+     * @param columnsToFetch  the column selection of the read 
+     * @param loader          the loader which performs the query
+     * @return the cached record or the loaded one  
+     */
+    ListenableFuture<Record> getAsync(RowKey rowKey, ImmutableMap<String, Boolean> columnsToFetch, Supplier<ListenableFuture<Record>> loader) {
+        final ConcurrentMap<ImmutableMap<String, Boolean>, CachedRecord> cachedRecords = rows.getIfPresent(rowKey);
+        
+        if (cachedRecords != null) {
+            final CachedRecord cachedRecord = cachedRecords.get(columnsToFetch);
+            if (cachedRecord != null) {
+                final long age = System.nanoTime() - cachedRecord.getLoadedNanos();
+                if (age < ttlNanos) {
+                    if ((age >= refreshAfterNanos) && cachedRecord.markRefreshing()) {
+                        load(rowKey, columnsToFetch, loader);
+                    }
+                    return Futures.immediateFuture(cachedRecord.getRecord());
+                }
+            }
+        }
+        
+        return load(rowKey, columnsToFetch, loader);
+    }
+    
+    
+    private ListenableFuture<Record> load(final RowKey rowKey, final ImmutableMap<String, Boolean> columnsToFetch, Supplier<ListenableFuture<Record>> loader) {
+        final long loadVersion = versions.getCurrentVersion();
+        final ListenableFuture<Record> future = loader.get();
+        
+        final Runnable cacheUpdater = new Runnable() {
+            
+            @Override
+            public void run() {
+                final Record record;
+                try {
+                    record = future.get();
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    return;
+                }
+                
+                if (record == null) {
+                    remove(rowKey, columnsToFetch);
+                } else {
+                    try {
+                        rows.get(rowKey, new NewRecordMap()).put(columnsToFetch, new CachedRecord(record));
+                    } catch (ExecutionException e) {
+                        return;
+                    }
+                }
+                
+                // a concurrent write or delete of the row may have been missed by the loaded record 
+                if (versions.isModifiedSince(rowKey, loadVersion)) {
+                    remove(rowKey, columnsToFetch);
+                }
+            }
+        };
+        future.addListener(cacheUpdater, MoreExecutors.directExecutor());
+        
+        return future;
+    }
+    
+    
+    private void remove(RowKey rowKey, ImmutableMap<String, Boolean> columnsToFetch) {
+        final ConcurrentMap<ImmutableMap<String, Boolean>, CachedRecord> cachedRecords = rows.getIfPresent(rowKey);
+        if (cachedRecords != null) {
+            cachedRecords.remove(columnsToFetch);
+        }
+    }
+    
+    
+    /**
+     * invalidates the cached records of the modified rows
+     *  
+     * @param tablename  the tablename
+     * @param keys       the keys of the modified row(s). If the keys do not address a single row, all records of the table will be invalidated  
+     */
+    void invalidate(Tablename tablename, ImmutableMap<String, Object> keys) {
+        final RowKey modifiedRowKey = RowKey.newRowKey(catalog, tablename, keys);
+        
+        // the version has to be updated first. Otherwise a concurrent load may re-add the outdated record 
+        if (modifiedRowKey != null) {
+            versions.modified(modifiedRowKey);
+            rows.invalidate(modifiedRowKey);
+        } else {
+            versions.modified(tablename);
+            for (RowKey rowKey : rows.asMap().keySet()) {
+                if (rowKey.getTablename().equals(tablename)) {
+                    rows.invalidate(rowKey);
+                }
+            }
+        }
+    }
+    
+    
+    
+    private static final class NewRecordMap implements Callable<ConcurrentMap<ImmutableMap<String, Boolean>, CachedRecord>> {
+        
+        @Override
+        public ConcurrentMap<ImmutableMap<String, Boolean>, CachedRecord> call() {
+            return Maps.newConcurrentMap();
+        }
+    }
+    
+    
+    private static final class CachedRecord {
+        private final Record record;
+        private final long loadedNanos = System.nanoTime();
+        private final AtomicBoolean isRefreshing = new AtomicBoolean();
+        
+        CachedRecord(Record record) {
+            this.record = record;
+        }
+        
+        Record getRecord() {
+            return record;
+        }
+        
+        long getLoadedNanos() {
+            return loadedNanos;
+        }
+        
+        /**
+         * @return true, if the record has not been marked before
+         */
+        boolean markRefreshing() {
+            return !isRefreshing.getAndSet(true);
+        }
+    }
+}
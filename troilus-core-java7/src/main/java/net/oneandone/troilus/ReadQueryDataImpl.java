@@ -21,20 +21,21 @@ import static com.datastax.driver.core.querybuilder.QueryBuilder.eq;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.in;
 import static com.datastax.driver.core.querybuilder.QueryBuilder.select;
 
-import java.util.List;
 import java.util.Map.Entry;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.java7.interceptor.ReadQueryData;
 
 import com.datastax.driver.core.PagingState;
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.BuiltStatement;
 import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.Select;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
@@ -242,7 +243,71 @@ class ReadQueryDataImpl implements ReadQueryData {
      * @param ctx    the context
      * @return  the query as statement
      */
-    static ListenableFuture<Statement> toStatementAsync(ReadQueryData data, UDTValueMapper udtValueMapper, DBSession dbSession) {
+    static ListenableFuture<Statement> toStatementAsync(final ReadQueryData data, UDTValueMapper udtValueMapper, DBSession dbSession) {
+        final long startNanos = System.nanoTime();
+        
+        // where-based selection
+        if (data.getKeys().isEmpty()) {
+            final Select select = newSelect(data);
+            for (Clause whereClause : data.getWhereConditions()) {
+                select.where(whereClause);
+            }
+            dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
+            
+            return Futures.<Statement>immediateFuture(select);
+
+            
+        // key-based selection    
+        } else {
+            final Object[] values = new Object[data.getKeys().size()];
+            final boolean[] isInClause = new boolean[data.getKeys().size()];
+            
+            int idx = 0;
+            for (Entry<String, ImmutableList<Object>> entry : data.getKeys().entrySet()) {
+                if (entry.getValue().size() == 1) {
+                    values[idx] = udtValueMapper.toStatementValue(data.getTablename(), entry.getKey(), entry.getValue().get(0));
+                } else {
+                    isInClause[idx] = true;
+                    values[idx] = udtValueMapper.toStatementValues(data.getTablename(), entry.getKey(), entry.getValue());
+                }
+                idx++;
+            }
+            
+            final StatementShape shape = StatementShape.of(data.getTablename(),
+                                                           "SELECT",
+                                                           data.getDistinct(),
+                                                           data.getColumnsToFetch().entrySet().asList(),
+                                                           data.getKeys().keySet().asList(),
+                                                           isInClause,
+                                                           data.getLimit(),
+                                                           data.getAllowFiltering(),
+                                                           data.getFetchSize());
+            
+            final Supplier<BuiltStatement> selectFactory = new Supplier<BuiltStatement>() {
+                
+                @Override
+                public BuiltStatement get() {
+                    final Select select = newSelect(data);
+                    for (Entry<String, ImmutableList<Object>> entry : data.getKeys().entrySet()) {
+                        if (entry.getValue().size() == 1) {
+                            select.where(eq(entry.getKey(), bindMarker()));
+                        } else {
+                            select.where(in(entry.getKey(), bindMarker()));
+                        }
+                    }
+                    return select;
+                }
+            };
+
+            dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
+
+            final ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(shape, selectFactory);
+            return dbSession.bindAsync(data.getTablename(), preparedStatementFuture, values);
+        }
+    }   
+    
+    
+    private static Select newSelect(ReadQueryData data) {
         final Select.Selection selection = select();
 
         if ((data.getDistinct() != null) && data.getDistinct()) {
@@ -298,35 +363,8 @@ class ReadQueryDataImpl implements ReadQueryData {
     	//	select.setPagingState(data.getPagingState());
     	//}
         
-        // where-based selection
-        if (data.getKeys().isEmpty()) {
-            for (Clause whereClause : data.getWhereConditions()) {
-                select.where(whereClause);
-            }
-            
-            return Futures.<Statement>immediateFuture(select);
-
-            
-        // key-based selection    
-        } else {
-            final List<Object> values = Lists.newArrayList();
-            
-            for (Entry<String, ImmutableList<Object>> entry : data.getKeys().entrySet()) {
-                if (entry.getValue().size() == 1) {
-                    select.where(eq(entry.getKey(), bindMarker()));
-                    values.add(udtValueMapper.toStatementValue(data.getTablename(), entry.getKey(), entry.getValue().get(0)));
-                } else {
-                    select.where(in(entry.getKey(), bindMarker()));
-                    values.add(udtValueMapper.toStatementValues(data.getTablename(), entry.getKey(), entry.getValue()));
-                }
-                
-            }
-            
-
-            final ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(select);
-            return dbSession.bindAsync(preparedStatementFuture, values.toArray());
-        }
-    }   
+        return select;
+    }
     
     @Override
 	public PagingState getPagingState() {
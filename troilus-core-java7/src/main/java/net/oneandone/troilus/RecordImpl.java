@@ -23,16 +23,12 @@ import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 
 import net.oneandone.troilus.java7.Record;
 import net.oneandone.troilus.java7.interceptor.ReadQueryData;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.ColumnDefinitions.Definition;
 import com.datastax.driver.core.DataType;
@@ -53,8 +49,6 @@ import com.google.common.collect.ImmutableSet;
  * The record implementation
  */
 class RecordImpl implements Record {
-    
-    private static final Logger LOG = LoggerFactory.getLogger(RecordImpl.class);
 
     private final Tablename tablename;
     private final Context ctx;
@@ -71,47 +65,9 @@ class RecordImpl implements Record {
         this.result = result;
         this.row = row;
         this.tablename = queryData.getTablename();
-       
-        paranoiaCheck(ctx, this, queryData);
     }
 
     
-    private static void paranoiaCheck(Context ctx, Record record, ReadQueryData data) {
-        
-        for (Entry<String, ImmutableList<Object>> entry : data.getKeys().entrySet()) {
-           
-            if (record.isNull(entry.getKey())) {
-                // response does not include key
-                return;
-            }
-
-            
-            final ByteBuffer responseKeyValue = record.getBytesUnsafe(entry.getKey());
-
-            
-            // check if response key matches with any of the request keys
-            for (Object value : entry.getValue()) {
-                final UDTValueMapper udtValueMapper = ctx.getUDTValueMapper();
-            	if (value == null) continue;
-            	try {
-            	    final ByteBuffer requestKeyValue = udtValueMapper.serialize(value);
-                	if (requestKeyValue.compareTo(responseKeyValue) == 0) {
-                        return;
-                    }
-            	} catch(Exception e) {
-            		LOG.warn("Cassandra 3.0 serialization failed to serialize object: " + value, e);
-            	}
-            }
-            
-            LOG.warn("Dataswap error for " + entry.getKey());
-            throw new ProtocolErrorException("Dataswap error for " + entry.getKey()); 
-        }
-    }
-    
-    
-    
-    
-    
     /**
      * @return the underlying row
      */
@@ -140,6 +96,11 @@ class RecordImpl implements Record {
     public boolean wasApplied() {
         return result.wasApplied();
     }
+    
+    @Override
+    public QueryTimings getTimings() {
+        return result.getTimings();
+    }
 
     @Override
     public Long getWritetime(String name) {
@@ -303,8 +264,10 @@ class RecordImpl implements Record {
             return ImmutableSet.of();
         }
 
-        final DataType datatype = ctx.getCatalog().getColumnMetadata(tablename, name).getType();
-        if (UDTValueMapper.isBuildInType(datatype)) {
+        final ColumnPlan columnPlan = ctx.getCatalog().getColumnPlan(tablename);
+        final int columnIdx = columnPlan.indexOf(name);
+        final DataType datatype = columnPlan.getType(columnIdx);
+        if (columnPlan.isBuildInType(columnIdx)) {
             return ImmutableSet.copyOf(getRow().getSet(name, elementsClass));
         } else {
             return ctx.getUDTValueMapper().fromUdtValues(datatype.getTypeArguments().get(0), ImmutableSet.copyOf(getRow().getSet(name, UDTValue.class)), elementsClass);
@@ -317,8 +280,10 @@ class RecordImpl implements Record {
             return ImmutableList.of();
         }
         
-        final DataType datatype = ctx.getCatalog().getColumnMetadata(tablename, name).getType();
-        if (UDTValueMapper.isBuildInType(datatype)) {
+        final ColumnPlan columnPlan = ctx.getCatalog().getColumnPlan(tablename);
+        final int columnIdx = columnPlan.indexOf(name);
+        final DataType datatype = columnPlan.getType(columnIdx);
+        if (columnPlan.isBuildInType(columnIdx)) {
             return ImmutableList.copyOf(getRow().getList(name, elementsClass));
         } else {
             return ctx.getUDTValueMapper().fromUdtValues(datatype.getTypeArguments().get(0), ImmutableList.copyOf(getRow().getList(name, UDTValue.class)), elementsClass);
@@ -331,8 +296,10 @@ class RecordImpl implements Record {
             return ImmutableMap.of();
         }
         
-        final DataType datatype = ctx.getCatalog().getColumnMetadata(tablename, name).getType();
-        if (UDTValueMapper.isBuildInType(datatype)) {
+        final ColumnPlan columnPlan = ctx.getCatalog().getColumnPlan(tablename);
+        final int columnIdx = columnPlan.indexOf(name);
+        final DataType datatype = columnPlan.getType(columnIdx);
+        if (columnPlan.isBuildInType(columnIdx)) {
             return ImmutableMap.copyOf(getRow().getMap(name, keysClass, valuesClass));
             
         } else {
@@ -36,14 +36,36 @@ class RecordListImpl implements ResultList<Record> {
     private final Context ctx;
     private final ReadQueryData queryData;
     private final ResultSet rs;
+    private final ParanoiaCheck.ResultCheck resultCheck;
+    private final int prefetchThreshold;
+    private final QueryTimings timings;
     
     private final Iterator<Row> iterator;
     
     RecordListImpl(Context ctx, ReadQueryData queryData, ResultSet rs) {
+        this(ctx, queryData, rs, null);
+    }
+    
+    RecordListImpl(Context ctx, ReadQueryData queryData, ResultSet rs, QueryTimings timings) {
         this.ctx = ctx;
         this.queryData = queryData;
         this.rs = rs;
+        this.timings = timings;
+        this.resultCheck = ctx.getParanoiaCheck().newResultCheck(queryData, ctx.getUDTValueMapper());
         this.iterator = rs.iterator();
+        
+        // the size of the first page is used to estimate the number of rows of the pages fetched ahead. 
+        // Queries with a fetch size return a single page. The next page is read by a new query with the paging state 
+        final Integer prefetchPages = ctx.getPrefetchPages();
+        if ((prefetchPages == null) || (queryData.getFetchSize() != null)) {
+            this.prefetchThreshold = -1;
+        } else {
+            final int pageSize = rs.getAvailableWithoutFetching();
+            this.prefetchThreshold = ctx.getPrefetchLowWatermarkRows() + ((prefetchPages - 1) * pageSize);
+        }
+        
+        // more than one page to fetch ahead -> the first page is below the threshold already
+        prefetchIfNecessary();
     }
     
     @Override
@@ -60,7 +82,18 @@ class RecordListImpl implements ResultList<Record> {
     public boolean wasApplied() {
         return rs.wasApplied();
     }
+    
+    @Override
+    public QueryTimings getTimings() {
+        return timings;
+    }
 
+    private Record newRecord(Row row) {
+        final RecordImpl record = new RecordImpl(ctx, queryData, this, row);
+        resultCheck.check(record);
+        return record;
+    }
+    
     public FetchingIterator<Record> iterator() {
         if (queryData.getFetchSize() != null) {
         	return new PaginationBasedResultsIterator();
@@ -75,7 +108,9 @@ class RecordListImpl implements ResultList<Record> {
             
             @Override
             public Record next() {
-                return new RecordImpl(ctx, queryData, RecordListImpl.this, iterator.next());
+                final Row row = iterator.next();
+                prefetchIfNecessary();
+                return newRecord(row);
             }
 
            @Override
@@ -100,6 +135,14 @@ class RecordListImpl implements ResultList<Record> {
         };
     }
     
+    private void prefetchIfNecessary() {
+        // checked after consuming a row: the fetch starts, if the remaining rows reached the threshold. 
+        // The driver ignores the call, if a fetch is already in flight 
+        if ((prefetchThreshold >= 0) && (rs.getAvailableWithoutFetching() <= prefetchThreshold) && !rs.isFullyFetched()) {
+            rs.fetchMoreResults();
+        }
+    }
+    
     private class PaginationBasedResultsIterator implements FetchingIterator<Record> {
 
     	private int limit;
@@ -116,7 +159,7 @@ class RecordListImpl implements ResultList<Record> {
 		@Override
 		public Record next() {
 			limit--;
-			return new RecordImpl(ctx, queryData, RecordListImpl.this, iterator.next());
+			return newRecord(iterator.next());
 		}
 
 		@Override
@@ -39,6 +39,11 @@ public interface Result {
      * @return if the query was a conditional update, whether it was applied. true for other types of queries.
      */
     boolean wasApplied();
+    
+    /**
+     * @return the timing breakdown of the query execution or null, if stage timing is not activated 
+     */
+    QueryTimings getTimings();
 }
 
 
@@ -48,6 +48,11 @@ abstract class ResultAdapter implements Result {
     public boolean wasApplied() {
         return result.wasApplied();
     }
+    
+    @Override
+    public QueryTimings getTimings() {
+        return result.getTimings();
+    }
 }
 
 
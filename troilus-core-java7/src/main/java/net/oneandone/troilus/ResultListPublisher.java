@@ -16,6 +16,7 @@
 package net.oneandone.troilus;
 
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 import net.oneandone.troilus.java7.FetchingIterator;
 import net.oneandone.troilus.java7.ResultList;
@@ -37,14 +38,17 @@ import com.google.common.util.concurrent.MoreExecutors;
  */
 class ResultListPublisher<R> implements Publisher<R> {
     
+    private final Executor executor;
     private boolean subscribed = false; // true after first subscribe
     private LazyInitializer lazyInitializer;
     
     
     /**
      * @param resultlistFuture  the future result list
+     * @param executor          the (shared) executor the subscription will be processed by 
      */
-    public ResultListPublisher(ListenableFuture<ResultList<R>> resultlistFuture) {
+    public ResultListPublisher(ListenableFuture<ResultList<R>> resultlistFuture, Executor executor) {
+        this.executor = executor;
         this.lazyInitializer = new LazyInitializer(resultlistFuture);
     }
     
@@ -120,7 +124,7 @@ class ResultListPublisher<R> implements Publisher<R> {
             synchronized (this) {
                 if ((!isInitialized) && (subscriber != null) && (iterator != null)) {
                     isInitialized = true;
-                    new ResultListSubscription<>(subscriber, iterator);
+                    new ResultListSubscription<>(subscriber, iterator, executor);
                 }
             }
         }
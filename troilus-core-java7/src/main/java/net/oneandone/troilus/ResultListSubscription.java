@@ -15,11 +15,9 @@
  */
 package net.oneandone.troilus;
 
-import java.io.Closeable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import net.oneandone.troilus.java7.FetchingIterator;
@@ -30,8 +28,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.datastax.driver.core.ResultSet;
-import com.google.common.collect.Queues;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 
 
@@ -41,37 +39,23 @@ import com.google.common.util.concurrent.ListenableFuture;
  * @param <T> the element type
  */
 class ResultListSubscription<T> implements Subscription {
-    private final DatabaseSource<T> databaseSource;
     private final SubscriberNotifier<T> subscriberNotifier;
   
 
     /**
      * @param subscriber  the subscriber 
      * @param iterator    the underlying iterator
+     * @param executor    the (shared) executor to notify the subscriber and to process the fetched records 
      */
-    public ResultListSubscription(Subscriber<? super T> subscriber, FetchingIterator<T> iterator) {
-        final Executor executor = Executors.newCachedThreadPool();
-
-        this.subscriberNotifier = new SubscriberNotifier<>(executor, subscriber);
-        this.databaseSource = new DatabaseSource<>(executor, subscriberNotifier, iterator);
-        
-        subscriberNotifier.emitNotification(new OnSubscribe());
+    public ResultListSubscription(Subscriber<? super T> subscriber, FetchingIterator<T> iterator, Executor executor) {
+        this.subscriberNotifier = new SubscriberNotifier<>(this, executor, subscriber, new DatabaseSource<>(iterator));
+        subscriberNotifier.start();
     }
 
     
-    private class OnSubscribe extends SubscriberNotifier.Notification<T> {
-        
-        @Override
-        public void signalTo(Subscriber<? super T> subscriber) {
-            subscriber.onSubscribe(ResultListSubscription.this);
-        }
-    }
-    
-    
-    
     @Override
     public void cancel() {
-        databaseSource.close();
+        subscriberNotifier.cancel();
     }
     
     
@@ -79,231 +63,222 @@ class ResultListSubscription<T> implements Subscription {
     public void request(long n) {                
         if(n <= 0) {
             // https://github.com/reactive-streams/reactive-streams#3.9
-            subscriberNotifier.emitNotification(new OnError<T>(new IllegalArgumentException("Non-negative number of elements must be requested: https://github.com/reactive-streams/reactive-streams#3.9")));
+            subscriberNotifier.fail(new IllegalArgumentException("Non-negative number of elements must be requested: https://github.com/reactive-streams/reactive-streams#3.9"));
         } else {
-            databaseSource.request(n);
+            subscriberNotifier.request(n);
         }
     }
     
  
     
-    private static class OnError<R> extends SubscriberNotifier.TerminatingNotification<R> {
-        private static final Logger LOG = LoggerFactory.getLogger(OnError.class);
-        private final Throwable error;
-        
-        public OnError(Throwable error) {
-            this.error = error;
-        }
-        
-        @Override
-        public void signalTo(Subscriber<? super R> subscriber) {
-            LOG.debug("processing error occured", error);
-            try {
-                subscriber.onError(error);
-            } catch (RuntimeException rt) {
-                LOG.warn("error occured by notifying error ", rt);
-            }
-        }
-    }
-
-    
     
-    
-    private static final class DatabaseSource<R> implements Closeable {
+    private static final class DatabaseSource<R> {
         private final Object dbQueryLock = new Object();
-        private final AtomicBoolean isOpen = new AtomicBoolean(true);
-
-        private final AtomicLong numRequestedReads = new AtomicLong();
         
-        private final Executor executor;
-        private final SubscriberNotifier<R> notifier;
         private final FetchingIterator<R> iterator;
         
         private Runnable runningDatabaseQuery = null;
 
 
-        DatabaseSource(Executor executor, SubscriberNotifier<R> notifier, FetchingIterator<R> iterator) {
-            this.executor = executor;
-            this.notifier = notifier;
+        DatabaseSource(FetchingIterator<R> iterator) {
             this.iterator = iterator;
         }
         
-        @Override
-        public void close() {
-            isOpen.set(false);
+        FetchingIterator<R> getIterator() {
+            return iterator;
         }
-          
         
-        void request(long num) {
-            if (isOpen.get()) {
-                numRequestedReads.addAndGet(num);
-                processReadRequests();
-            } 
-        }
-    
-    
-        private void processReadRequests() {
-            if (isOpen.get()) {
-                processAvailableDatabaseRecords();
-        
-                // more db records required? 
-                if (numRequestedReads.get() > 0) {
-                    // [synchronization note] under some circumstances the method requestDatabaseForMoreRecords()
-                    // will be executed without the need of more records. However, it does not matter
-                    requestDatabaseForMoreRecords();
+        /**
+         * submits an async database query, if not already running
+         * @param onFetched  the callback to call, if the records are fetched
+         */
+        void requestDatabaseForMoreRecords(final Runnable onFetched) {
+            synchronized (dbQueryLock) {
+                if (runningDatabaseQuery == null) {
+                    final ListenableFuture<ResultSet> future = iterator.fetchMoreResultsAsync();
+                    
+                    final Runnable databaseRequest = new Runnable() {
+                                                        @Override
+                                                        public void run() {
+                                                            synchronized (dbQueryLock) {
+                                                                runningDatabaseQuery = null; 
+                                                            }
+                                                            onFetched.run();
+                                                        }                                                                           
+                                               };
+                    runningDatabaseQuery = databaseRequest;
+                    // the drain will be scheduled on the executor. A rejected drain is signaled to the subscriber 
+                    future.addListener(databaseRequest, MoreExecutors.directExecutor());
                 }
             }
         }
-    
-        
-        private void processAvailableDatabaseRecords() {
-            while ((iterator.getAvailableWithoutFetching() > 0) && numRequestedReads.get() > 0) {
-                try {
-                    numRequestedReads.decrementAndGet();
-                    notifier.emitNotification(new OnNext(iterator.next()));
-                } catch (RuntimeException rt) {
-                    notifier.emitNotification(new OnError<R>(rt));
-                }
-            }
-        }
-
-        
-        
-        void requestDatabaseForMoreRecords() {
-            
-            // more data to fetch available?
-            if (iterator.isFullyFetched()) {
-                // no, all data has been read
-                notifier.emitNotification(new OnComplete());
-                
-            // yes, more elements can be fetched   
-            } else { 
-                synchronized (dbQueryLock) {
-                    // submit an async database query (if not already running) 
-                    if (runningDatabaseQuery == null) {
-                        final ListenableFuture<ResultSet> future = iterator.fetchMoreResultsAsync();
-                        
-                        final Runnable databaseRequest = new Runnable() {
-                                                            @Override
-                                                            public void run() {
-                                                                synchronized (dbQueryLock) {
-                                                                    runningDatabaseQuery = null; 
-                                                                }
-                                                                processReadRequests();
-                                                            }                                                                           
-                                                   };
-                        future.addListener(databaseRequest, executor);
-                        
-                        runningDatabaseQuery = databaseRequest;
-                    }
-                }
-            }
-        }
-        
-        
-        private class OnNext extends SubscriberNotifier.Notification<R> {
-            private final R element;
-            
-            public OnNext(R element) {
-                this.element = element;
-            }
-            
-            @Override
-            public void signalTo(Subscriber<? super R> subscriber) {
-                subscriber.onNext(element);
-            }
-        }
-
-
-        private class OnComplete extends SubscriberNotifier.TerminatingNotification<R> {
-            
-            @Override
-            public void signalTo(Subscriber<? super R> subscriber) {
-                subscriber.onComplete();
-            }
-        }
     }
     
     
 
+    /**
+     * Emits the available records to the subscriber. The signals are emitted by a drain loop which 
+     * emits up to the requested demand per scheduling round. Requests, fetched records and errors 
+     * which occur while draining will be processed by the running loop. By doing this, at most 
+     * one thread signals the subscriber at the same time without locking      
+     */
     private static final class SubscriberNotifier<R> implements Runnable {
-        private final ConcurrentLinkedQueue<Notification<R>> notifications = Queues.newConcurrentLinkedQueue();
-        private final Executor executor;
+        private static final Logger LOG = LoggerFactory.getLogger(SubscriberNotifier.class);
+
+        private final AtomicInteger numPendingDrains = new AtomicInteger();
+        private final AtomicLong numRequested = new AtomicLong();
         private final AtomicBoolean isOpen = new AtomicBoolean(true);
+        private volatile Throwable error = null;
+        private boolean isSubscribed = false;   // will be accessed by the drain loop only
         
+        private final Subscription subscription;
+        private final Executor executor;
         private final Subscriber<? super R> subscriber;
+        private final DatabaseSource<R> databaseSource;
         
-        public SubscriberNotifier(Executor executor, Subscriber<? super R> subscriber) {
+        private final Runnable onFetched = new Runnable() {
+            
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+        
+        
+        SubscriberNotifier(Subscription subscription, Executor executor, Subscriber<? super R> subscriber, DatabaseSource<R> databaseSource) {
+            this.subscription = subscription;
             this.executor = executor;
             this.subscriber = subscriber;
+            this.databaseSource = databaseSource;
         }
         
-        private void close() {
+        void start() {
+            // the first drain round signals onSubscribe
+            drain();
+        }
+        
+        void cancel() {
             isOpen.set(false);
-            notifications.clear();  
         }
         
-        public void emitNotification(Notification<R> notification) {
-            if (isOpen.get()) {
-                if (notifications.offer(notification)) {
-                    tryScheduleToExecute();
+        void request(long num) {
+            // adds the demand. The demand is capped by Long.MAX_VALUE (unbounded) 
+            long requested;
+            long newRequested;
+            do {
+                requested = numRequested.get();
+                newRequested = requested + num;
+                if (newRequested < 0) {
+                    newRequested = Long.MAX_VALUE;
                 }
-            }
+            } while (!numRequested.compareAndSet(requested, newRequested));
+            
+            drain();
         }
-
-        private final void tryScheduleToExecute() {
-            try {
-                executor.execute(this);
-            } catch (Throwable t) {
-                close(); // no further notifying (executor does not work anyway)
-                subscriber.onError(t);
+        
+        void fail(Throwable error) {
+            this.error = error;
+            drain();
+        }
+        
+        
+        private void drain() {
+            if (numPendingDrains.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (Throwable t) {
+                    // no further notifying (executor does not work anyway)
+                    if (isOpen.getAndSet(false)) {
+                        subscriber.onError(t);
+                    }
+                }
             }
         }
         
-
+        
         // main "event loop" 
         @Override 
         public final void run() {
+            int missed = 1;
             
-            if (isOpen.get()) {
-                
-                synchronized (subscriber) {
-                    try {
-                        Notification<R> notification = notifications.poll(); 
-                        if (notification != null) {
-                            if (notification.isTerminating()) {
-                                close();
-                            }
-                            notification.signalTo(subscriber);
-                        }
-                    } finally {
-                        if(!notifications.isEmpty()) {
-                            tryScheduleToExecute(); 
-                        }
+            do {
+                try {
+                    if (!isSubscribed) {
+                        isSubscribed = true;
+                        subscriber.onSubscribe(subscription);
                     }
+                    
+                    emitAvailable();
+                } catch (RuntimeException rt) {
+                    // https://github.com/reactive-streams/reactive-streams-jvm#2.13
+                    LOG.warn("subscriber failed by processing the notification. Subscription will be cancelled", rt);
+                    cancel();
                 }
-            }
+                
+                missed = numPendingDrains.addAndGet(-missed);
+            } while (missed != 0);
         }
-      
-        
+            
         
-        private static abstract class Notification<R> { 
+        private void emitAvailable() {
+            final FetchingIterator<R> iterator = databaseSource.getIterator();
             
-            abstract void signalTo(Subscriber<? super R> subscriber);
+            final long requested = numRequested.get();
+            long emitted = 0;
+
+            while (isOpen.get()) {
+                if (error != null) {
+                    terminate(error);
+                    return;
+                }
+                
+                if ((emitted == requested) || (iterator.getAvailableWithoutFetching() <= 0)) {
+                    break;
+                }
+                
+                final R element;
+                try {
+                    element = iterator.next();
+                } catch (RuntimeException rt) {
+                    terminate(rt);
+                    return;
+                }
+
+                emitted++;
+                subscriber.onNext(element);
+            }
             
-            boolean isTerminating() {
-                return false;
+            if ((emitted > 0) && (requested != Long.MAX_VALUE)) {
+                numRequested.addAndGet(-emitted);
             }
-        };
-        
+            
+            if (isOpen.get() && (iterator.getAvailableWithoutFetching() <= 0)) {
+                
+                // more data to fetch available?
+                if (iterator.isFullyFetched()) {
+                    // no, all data has been read
+                    if (isOpen.getAndSet(false)) {
+                        subscriber.onComplete();
+                    }
+                    
+                // yes, more elements can be fetched, if required   
+                } else if (numRequested.get() > 0) {
+                    databaseSource.requestDatabaseForMoreRecords(onFetched);
+                }
+            }
+        }
         
         
         // Once a terminal state has been signaled (onError, onComplete) it is REQUIRED that no further signals occur
-        private static abstract class TerminatingNotification<R> extends Notification<R> { 
-            
-            boolean isTerminating() {
-                return true;
+        private void terminate(Throwable error) {
+            if (isOpen.getAndSet(false)) {
+                LOG.debug("processing error occured", error);
+                try {
+                    subscriber.onError(error);
+                } catch (RuntimeException rt) {
+                    LOG.warn("error occured by notifying error ", rt);
+                }
             }
-        };
+        }
     }
-}
\ No newline at end of file
+}
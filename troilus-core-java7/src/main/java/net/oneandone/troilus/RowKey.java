@@ -0,0 +1,140 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+
+
+/**
+ * The key of a single row, which is used by the local caches. The key includes the full 
+ * primary key. The column names and the values are normalized, so that reads and writes 
+ * of the same row result in equal keys    
+ */
+final class RowKey {
+    private final Tablename tablename;
+    private final ImmutableMap<String, Object> keys;
+    
+    
+    private RowKey(Tablename tablename, ImmutableMap<String, Object> keys) {
+        this.tablename = tablename;
+        this.keys = keys;
+    }
+    
+    /**
+     * @param catalog  the metadata catalog
+     * @param data     the query data
+     * @return the row key or null, if the query is not a read of a single row by its full primary key
+     */
+    static RowKey newRowKey(MetadataCatalog catalog, ReadQueryData data) {
+        if (data.getKeys().isEmpty() || !data.getWhereConditions().isEmpty()) {
+            return null;
+        }
+        
+        final Map<String, Object> keys = Maps.newHashMap();
+        for (Entry<String, ImmutableList<Object>> entry : data.getKeys().entrySet()) {
+            if (entry.getValue().size() != 1) {
+                return null;
+            }
+            keys.put(entry.getKey(), entry.getValue().get(0));
+        }
+        return newRowKey(catalog, data.getTablename(), keys);
+    }
+    
+    /**
+     * @param catalog    the metadata catalog
+     * @param tablename  the tablename
+     * @param values     the column values of the row. Columns which are not part of the primary key will be ignored
+     * @return the row key or null, if the values do not include the full primary key  
+     */
+    static RowKey newRowKey(MetadataCatalog catalog, Tablename tablename, Map<String, Object> values) {
+        final ColumnPlan columnPlan = catalog.getColumnPlan(tablename);
+        
+        final Map<String, Object> keys = Maps.newHashMap();
+        for (Entry<String, Object> entry : values.entrySet()) {
+            final String name = resolveName(columnPlan, entry.getKey());
+            if ((name != null) && columnPlan.isPrimaryKey(columnPlan.indexOf(name)) && (entry.getValue() != null)) {
+                keys.put(name, normalizeValue(entry.getValue()));
+            }
+        }
+        
+        // a partition key without the clustering columns addresses more than one row  
+        if (keys.isEmpty() || (keys.size() != catalog.getNumPrimaryKeys(tablename))) {
+            return null;
+        }
+        return new RowKey(tablename, ImmutableMap.copyOf(keys));
+    }
+    
+    private static String resolveName(ColumnPlan columnPlan, String name) {
+        if (columnPlan.contains(name)) {
+            return name;
+        }
+        
+        // unquoted names are case insensitive 
+        for (int i = 0; i < columnPlan.size(); i++) {
+            if (columnPlan.getName(i).equalsIgnoreCase(name)) {
+                return columnPlan.getName(i);
+            }
+        }
+        return null;
+    }
+    
+    private static Object normalizeValue(Object value) {
+        // enums and byte arrays are bound as text and blob (see UDTValueMapper#toStatementValue)
+        if (value instanceof Enum) {
+            return value.toString();
+        } else if (value instanceof byte[]) {
+            return ByteBuffer.wrap((byte[]) value);
+        } else {
+            return value;
+        }
+    }
+    
+    Tablename getTablename() {
+        return tablename;
+    }
+    
+    ImmutableMap<String, Object> getKeys() {
+        return keys;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof RowKey) && ((RowKey) other).tablename.equals(tablename) 
+                                         && ((RowKey) other).keys.equals(keys);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(tablename, keys);
+    }
+    
+    @Override
+    public String toString() {
+        // the key order of the query does not matter 
+        return tablename + ImmutableSortedMap.copyOf(keys).toString();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.collect.Maps;
+
+
+
+/**
+ * Tracks the versions of the locally modified rows. A load which has been started before the last 
+ * modification of its row may return outdated data and must not be cached. The versions are stored 
+ * per hash slot of the row key. Rows which share a slot share the version, i.e. a collision results 
+ * in a missed caching opportunity only, but never in an outdated cache entry        
+ */
+final class RowVersions {
+    private static final int MIN_SLOTS = 64;
+    private static final int MAX_SLOTS = 1 << 20;
+    
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLongArray slotVersions;
+    private final ConcurrentMap<Tablename, AtomicLong> tableVersions = Maps.newConcurrentMap();
+    
+    
+    /**
+     * @param expectedRows  the expected number of cached rows 
+     */
+    RowVersions(int expectedRows) {
+        int numSlots = MIN_SLOTS;
+        while ((numSlots < expectedRows) && (numSlots < MAX_SLOTS)) {
+            numSlots <<= 1;
+        }
+        this.slotVersions = new AtomicLongArray(numSlots);
+    }
+    
+    /**
+     * @return the current version which has to be captured before a load is started 
+     */
+    long getCurrentVersion() {
+        return clock.get();
+    }
+    
+    /**
+     * @param rowKey  the key of the modified row
+     */
+    void modified(RowKey rowKey) {
+        final int slot = slotOf(rowKey);
+        final long version = clock.incrementAndGet();
+        
+        long slotVersion;
+        do {
+            slotVersion = slotVersions.get(slot);
+        } while ((slotVersion < version) && !slotVersions.compareAndSet(slot, slotVersion, version));
+    }
+    
+    /**
+     * @param tablename  the table of which any row may have been modified
+     */
+    void modified(Tablename tablename) {
+        AtomicLong tableVersion = tableVersions.get(tablename);
+        if (tableVersion == null) {
+            tableVersions.putIfAbsent(tablename, new AtomicLong());
+            tableVersion = tableVersions.get(tablename);
+        }
+        
+        final long version = clock.incrementAndGet();
+        long currentVersion;
+        do {
+            currentVersion = tableVersion.get();
+        } while ((currentVersion < version) && !tableVersion.compareAndSet(currentVersion, version));
+    }
+    
+    /**
+     * @param rowKey   the row key
+     * @param version  the version captured before the load has been started 
+     * @return true, if the row may have been modified after the given version
+     */
+    boolean isModifiedSince(RowKey rowKey, long version) {
+        if (slotVersions.get(slotOf(rowKey)) > version) {
+            return true;
+        }
+        
+        final AtomicLong tableVersion = tableVersions.get(rowKey.getTablename());
+        return (tableVersion != null) && (tableVersion.get() > version);
+    }
+    
+    private int slotOf(RowKey rowKey) {
+        final int hash = rowKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (slotVersions.length() - 1);
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import net.oneandone.troilus.DBSession.StatementCaches;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.datastax.driver.core.AggregateMetadata;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.FunctionMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.MaterializedViewMetadata;
+import com.datastax.driver.core.SchemaChangeListener;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.UserType;
+
+
+
+/**
+ * Listens to schema changes of the cluster and invalidates the affected entries of 
+ * the metadata catalog and the statement caches. Changes of a table will invalidate 
+ * the metadata and the statements of this table only.  
+ * 
+ * The listener references the catalog and the statement caches which are shared by all 
+ * sessions of a context. It has to be unregistered explicitly, if the context is closed   
+ */
+class SchemaChangeInvalidator implements SchemaChangeListener {
+    private static final Logger LOG = LoggerFactory.getLogger(SchemaChangeInvalidator.class);
+    
+    private final MetadataCatalog catalog;
+    private final StatementCaches statementCaches;
+    private volatile Cluster cluster;
+    
+    
+    private SchemaChangeInvalidator(MetadataCatalog catalog, StatementCaches statementCaches) {
+        this.catalog = catalog;
+        this.statementCaches = statementCaches;
+    }
+    
+    
+    /**
+     * @param cluster          the cluster to listen 
+     * @param catalog          the catalog to invalidate
+     * @param statementCaches  the statement caches to invalidate
+     * @return the registered listener
+     */
+    static SchemaChangeInvalidator register(Cluster cluster, MetadataCatalog catalog, StatementCaches statementCaches) {
+        final SchemaChangeInvalidator invalidator = new SchemaChangeInvalidator(catalog, statementCaches);
+        cluster.register(invalidator);
+        return invalidator;
+    }
+    
+    /**
+     * unregisters the listener. Calling this method several times has no effect 
+     */
+    void unregister() {
+        final Cluster cl = cluster;
+        if (cl != null) {
+            cl.unregister(this);
+        }
+    }
+    
+    
+    @Override
+    public void onRegister(Cluster cluster) {
+        this.cluster = cluster;
+    }
+    
+    @Override
+    public void onUnregister(Cluster cluster) {
+        this.cluster = null;
+    }
+    
+    
+    @Override
+    public void onTableChanged(TableMetadata current, TableMetadata previous) {
+        onTableModified(current);
+    }
+
+    @Override
+    public void onTableRemoved(TableMetadata table) {
+        onTableModified(table);
+    }
+    
+    @Override
+    public void onTableAdded(TableMetadata table) {
+        // a table could be re-created with a different structure 
+        onTableModified(table);
+    }
+    
+    private void onTableModified(TableMetadata table) {
+        final Tablename tablename = Tablename.newTablename(table.getKeyspace().getName(), table.getName());
+        LOG.debug("schema of table " + tablename + " changed. Invalidating cached metadata and statements");
+
+        catalog.invalidate(tablename);
+        statementCaches.invalidate(tablename);
+    }
+    
+    
+    @Override
+    public void onUserTypeChanged(UserType current, UserType previous) {
+        onUserTypeModified(current);
+    }
+
+    @Override
+    public void onUserTypeRemoved(UserType type) {
+        onUserTypeModified(type);
+    }
+    
+    @Override
+    public void onUserTypeAdded(UserType type) {
+        onUserTypeModified(type);
+    }
+    
+    private void onUserTypeModified(UserType type) {
+        LOG.debug("usertype " + type.getKeyspace() + "." + type.getTypeName() + " changed. Invalidating cached metadata and statements of the keyspace");
+        
+        catalog.invalidateUserType(type.getKeyspace(), type.getTypeName());
+        
+        // bound udt values have to match with the usertype of the prepared statement  
+        statementCaches.invalidate(type.getKeyspace());
+    }
+    
+    
+    @Override
+    public void onKeyspaceRemoved(KeyspaceMetadata keyspace) {
+        LOG.debug("keyspace " + keyspace.getName() + " removed. Invalidating cached metadata and statements of the keyspace");
+        
+        catalog.invalidateKeyspace(keyspace.getName());
+        statementCaches.invalidate(keyspace.getName());
+    }
+    
+    @Override
+    public void onKeyspaceAdded(KeyspaceMetadata keyspace) {
+    }
+    
+    @Override
+    public void onKeyspaceChanged(KeyspaceMetadata current, KeyspaceMetadata previous) {
+    }
+    
+    
+    @Override
+    public void onFunctionAdded(FunctionMetadata function) {
+    }
+    
+    @Override
+    public void onFunctionRemoved(FunctionMetadata function) {
+    }
+    
+    @Override
+    public void onFunctionChanged(FunctionMetadata current, FunctionMetadata previous) {
+    }
+    
+    @Override
+    public void onAggregateAdded(AggregateMetadata aggregate) {
+    }
+    
+    @Override
+    public void onAggregateRemoved(AggregateMetadata aggregate) {
+    }
+    
+    @Override
+    public void onAggregateChanged(AggregateMetadata current, AggregateMetadata previous) {
+    }
+    
+    @Override
+    public void onMaterializedViewAdded(MaterializedViewMetadata view) {
+    }
+    
+    @Override
+    public void onMaterializedViewRemoved(MaterializedViewMetadata view) {
+    }
+    
+    @Override
+    public void onMaterializedViewChanged(MaterializedViewMetadata current, MaterializedViewMetadata previous) {
+    }
+}
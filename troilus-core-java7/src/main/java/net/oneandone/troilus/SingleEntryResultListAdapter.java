@@ -64,6 +64,11 @@ class SingleEntryResultListAdapter<T extends Result> extends ResultListAdapter<T
             return result.getExecutionInfo();
         }
         
+        @Override
+        public QueryTimings getTimings() {
+            return result.getTimings();
+        }
+        
         @Override
         public FetchingIterator<T> iterator() {
             return it;
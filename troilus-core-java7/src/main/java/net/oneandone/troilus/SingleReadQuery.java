@@ -17,7 +17,11 @@ package net.oneandone.troilus;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.java7.FetchingIterator;
 import net.oneandone.troilus.java7.Record;
 import net.oneandone.troilus.java7.ResultList;
@@ -30,11 +34,14 @@ import org.reactivestreams.Publisher;
 
 import com.datastax.driver.core.ResultSet;
 import com.google.common.base.Function;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 
 
@@ -122,6 +129,11 @@ class SingleReadQuery extends AbstractQuery<SingleReadQuery> implements SingleRe
         return columns(ImmutableList.copyOf(ns));
     }
     
+    @Override
+    public SingleReadQuery withSpeculativeExecution(double delayPercentile) {
+        return newQuery(getContext().withSpeculativeExecution(delayPercentile));
+    }
+    
     @Override
     public <E> SingleEntityReadQuery<E> asEntity(Class<E> objectClass) {
         return new SingleEntityReadQuery<E>(getContext(), this, objectClass);
@@ -134,7 +146,40 @@ class SingleReadQuery extends AbstractQuery<SingleReadQuery> implements SingleRe
     
     @Override
     public ListenableFuture<Record> executeAsync() {
-        ListenableFuture<ResultList<Record>> recordsFuture = new ListReadQuery(getContext(), data).executeAsync();
+        final DBSession dbSession = getDefaultDbSession();
+        if (!dbSession.isRowCachingActivated()) {
+            return executeUncachedAsync();
+        }
+        
+        final RowKey rowKey = RowKey.newRowKey(getCatalog(), data);
+        if (rowKey == null) {
+            return executeUncachedAsync();
+        }
+        
+        final Supplier<ListenableFuture<Record>> uncachedLoader = new Supplier<ListenableFuture<Record>>() {
+            
+            @Override
+            public ListenableFuture<Record> get() {
+                return executeUncachedAsync();
+            }
+        };
+        
+        final Supplier<ListenableFuture<Record>> cachedLoader = new Supplier<ListenableFuture<Record>>() {
+            
+            @Override
+            public ListenableFuture<Record> get() {
+                final ReadCache readCache = dbSession.getReadCache();
+                return (readCache == null) ? uncachedLoader.get() : readCache.getAsync(rowKey, data.getColumnsToFetch(), uncachedLoader);
+            }
+        };
+        
+        // absent keys will be answered without a database round trip
+        final NegativeCache negativeCache = dbSession.getNegativeCache();
+        return (negativeCache == null) ? cachedLoader.get() : negativeCache.getAsync(rowKey, data, cachedLoader);
+    }
+    
+    private ListenableFuture<Record> executeUncachedAsync() {
+        ListenableFuture<ResultList<Record>> recordsFuture = executeListReadAsync();
         recordsFuture = toSingleEntryResultList(recordsFuture);
         
         final Function<ResultList<Record>, Record> fetchRecordFunction = new Function<ResultList<Record>, Record>() {
@@ -162,10 +207,159 @@ class SingleReadQuery extends AbstractQuery<SingleReadQuery> implements SingleRe
     
     @Override
     public Publisher<Record> executeRx() {
-        ListenableFuture<ResultList<Record>> recordsFuture = new ListReadQuery(getContext(), data).executeAsync();
+        ListenableFuture<ResultList<Record>> recordsFuture = executeListReadAsync();
         recordsFuture = toSingleEntryResultList(recordsFuture);
         
-        return new ResultListPublisher<Record>(recordsFuture);
+        return new ResultListPublisher<Record>(recordsFuture, getExecutor());
+    }
+    
+    
+    private ListenableFuture<ResultList<Record>> executeListReadAsync() {
+        
+        // only key-based reads with speculative execution will be tracked and executed speculatively
+        final Double delayPercentile = getContext().getSpeculativeExecutionPercentile();
+        if ((delayPercentile == null) || data.getKeys().isEmpty() || !data.getWhereConditions().isEmpty()) {
+            return new ListReadQuery(getContext(), data).executeAsync();
+        } 
+
+        // the reads will be executed non-speculatively until enough latencies have been recorded 
+        final LatencyTracker latencyTracker = getDefaultDbSession().getLatencyTracker();
+        final long delayMicros = latencyTracker.getPercentileMicros(data.getTablename(), delayPercentile);
+        
+        if (delayMicros < 0) {
+            return executeTrackedListReadAsync(latencyTracker);
+        } else {
+            return new SpeculativeReadFuture(latencyTracker, delayMicros);
+        }
+    }
+    
+    
+    private ListenableFuture<ResultList<Record>> executeTrackedListReadAsync(final LatencyTracker latencyTracker) {
+        final long startNanos = System.nanoTime();
+        final ListenableFuture<ResultList<Record>> recordsFuture = new ListReadQuery(getContext(), data).executeAsync();
+        
+        final Runnable latencyRecorder = new Runnable() {
+            
+            @Override
+            public void run() {
+                if (!recordsFuture.isCancelled()) {
+                    try {
+                        recordsFuture.get();
+                        latencyTracker.record(data.getTablename(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+                    } catch (InterruptedException | ExecutionException | RuntimeException ignore) { }
+                }
+            }
+        };
+        recordsFuture.addListener(latencyRecorder, MoreExecutors.directExecutor());
+        
+        return recordsFuture;
+    }
+    
+    
+    
+    /**
+     * Executes the read and, if no response has been received within the delay, a second one. 
+     * The first successful response wins. The other request is not cancelled. It completes 
+     * anyway to record its latency. Otherwise the tracked latencies would be biased towards 
+     * the fast responses. The requests are started outside the lock; only the winner is decided 
+     * under the lock   
+     */
+    private final class SpeculativeReadFuture extends AbstractFuture<ResultList<Record>> {
+        private final LatencyTracker latencyTracker;
+        private final ListenableFuture<ResultList<Record>> primaryFuture;
+        private final ScheduledFuture<?> speculativeExecution;
+        
+        private boolean isSpeculativeStarted = false;                            // guarded by this
+        private ListenableFuture<ResultList<Record>> speculativeFuture = null;    // guarded by this
+        private Throwable firstError = null;                                     // guarded by this
+        
+        
+        SpeculativeReadFuture(LatencyTracker latencyTracker, long delayMicros) {
+            this.latencyTracker = latencyTracker;
+            
+            final Runnable speculativeExecutor = new Runnable() {
+                
+                @Override
+                public void run() {
+                    onDelayElapsed();
+                }
+            };
+            
+            final ListenableFuture<ResultList<Record>> future = executeTrackedListReadAsync(latencyTracker);
+            
+            // listeners will not be called before both fields are set 
+            synchronized (this) {
+                this.primaryFuture = future;
+                this.speculativeExecution = SharedScheduler.INSTANCE.schedule(speculativeExecutor, delayMicros, TimeUnit.MICROSECONDS);
+            }
+            future.addListener(new ResponseListener(future), MoreExecutors.directExecutor());
+        }
+        
+
+        private void onDelayElapsed() {
+            synchronized (this) {
+                if (isDone() || primaryFuture.isDone()) {
+                    return;
+                }
+                isSpeculativeStarted = true;
+            }
+            
+            final ListenableFuture<ResultList<Record>> future = executeTrackedListReadAsync(latencyTracker);
+            synchronized (this) {
+                speculativeFuture = future;
+            }
+            
+            future.addListener(new ResponseListener(future), MoreExecutors.directExecutor());
+        }
+        
+        
+        private void onResponse(ListenableFuture<ResultList<Record>> future) {
+            synchronized (this) {
+                if (isDone()) {
+                    return;
+                }
+                
+                try {
+                    set(future.get());
+                    
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    if (firstError == null) {
+                        firstError = ListenableFutures.unwrapIfNecessary(e);
+                    }
+                    
+                    // the other request is still running (or being started) and may succeed
+                    if (isOtherRunning(future)) {
+                        return;
+                    }
+                    
+                    setException(firstError);
+                }
+            }
+
+            speculativeExecution.cancel(false);
+        }
+        
+        private synchronized boolean isOtherRunning(ListenableFuture<ResultList<Record>> future) {
+            if (future == primaryFuture) {
+                return isSpeculativeStarted && ((speculativeFuture == null) || !speculativeFuture.isDone());
+            } else {
+                return !primaryFuture.isDone();
+            }
+        }
+        
+        
+        private final class ResponseListener implements Runnable {
+            private final ListenableFuture<ResultList<Record>> future;
+            
+            ResponseListener(ListenableFuture<ResultList<Record>> future) {
+                this.future = future;
+            }
+            
+            @Override
+            public void run() {
+                onResponse(future);
+            }
+        }
     }
     
     
@@ -208,9 +402,18 @@ class SingleReadQuery extends AbstractQuery<SingleReadQuery> implements SingleRe
                 public E apply(Record record) {
                     if (record == null) {
                         return null;
+                    } 
+                    
+                    final long startNanos = System.nanoTime();
+                    final E entity;
+                    if (record instanceof RecordImpl) {
+                        entity = getEntityRowMapper().map(clazz, ((RecordImpl) record).getRow());
                     } else {
-                        return getBeanMapper().fromValues(clazz, RecordImpl.toPropertiesSource(record), getCatalog().getColumnNames(query.data.getTablename()));
+                        entity = getBeanMapper().fromValues(clazz, RecordImpl.toPropertiesSource(record), getCatalog().getColumnNames(query.data.getTablename()));
                     }
+                    getExecutionDbSession(record).recordStageTime(query.data.getTablename(), Stage.ENTITY_MAPPING, startNanos);
+                    
+                    return entity;
                 }
             };
             
@@ -222,7 +425,7 @@ class SingleReadQuery extends AbstractQuery<SingleReadQuery> implements SingleRe
             ListenableFuture<ResultList<E>> recordsFuture = new ListReadQuery(getContext(), query.data).asEntity(clazz).executeAsync();
             recordsFuture = toSingleEntryResultList(recordsFuture);
                 
-            return new ResultListPublisher<E>(recordsFuture);
+            return new ResultListPublisher<E>(recordsFuture, getExecutor());
         }
     }
     
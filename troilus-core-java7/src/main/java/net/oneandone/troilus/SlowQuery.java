@@ -0,0 +1,91 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import net.oneandone.troilus.MetricsRegistry.Operation;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.google.common.collect.ImmutableList;
+
+
+
+/**
+ * A query which has exceeded the threshold of the {@link SlowQueryLog}. The bound values 
+ * are not captured. Only their serialized sizes are available 
+ */
+public interface SlowQuery {
+
+    /**
+     * @return the time the query has been completed (millis since epoch)
+     */
+    long getTimestampMillis();
+    
+    /**
+     * @return the qualified tablename (keyspace.table) or null, if the statement may refer several tables (batches)
+     */
+    String getTablename();
+    
+    /**
+     * @return the operation type
+     */
+    Operation getOperation();
+    
+    /**
+     * @return the cql of the statement. Values which are sent separately are represented by bind markers. For batches the
+     *         distinct statements are listed
+     */
+    String getCql();
+    
+    /**
+     * @return the serialized sizes in bytes of the bound values. The size is -1 for null values
+     */
+    ImmutableList<Integer> getBoundValueSizes();
+    
+    /**
+     * @return the consistency level achieved by downgrading retries or the requested one otherwise. Null, if the default consistency level is used
+     */
+    ConsistencyLevel getConsistencyLevel();
+    
+    /**
+     * @return the address of the coordinator or null, if the query has failed
+     */
+    String getCoordinator();
+    
+    /**
+     * @return the number of pages fetched so far
+     */
+    int getNumPages();
+    
+    /**
+     * @return the number of rows fetched so far
+     */
+    int getNumRows();
+    
+    /**
+     * @return the elapsed time in micros from starting the query until the (first page of the) response is available
+     */
+    long getElapsedMicros();
+    
+    /**
+     * @return the error message or null, if the query has been successful 
+     */
+    String getError();
+    
+    /**
+     * @return the timing breakdown or null, if stage timing is not activated
+     */
+    QueryTimings getTimings();
+}
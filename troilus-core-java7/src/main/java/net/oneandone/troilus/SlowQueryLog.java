@@ -0,0 +1,389 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.oneandone.troilus.MetricsRegistry.Operation;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Statement;
+import com.google.common.base.Joiner;
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+
+
+/**
+ * Log which keeps the most recent queries exceeding the threshold of the queried table. The queries 
+ * are kept in a bounded ring buffer, i.e. older entries will be overwritten. The log implements 
+ * {@link SlowQueryLogMBean} and can be registered at a MBean server to dump the slow queries via JMX  
+ */
+public class SlowQueryLog implements SlowQueryLogMBean {
+    
+    private static final int DEFAULT_CAPACITY = 100;
+    
+    private final AtomicReferenceArray<SlowQuery> ringBuffer;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<String, Long> thresholdsMillis = new ConcurrentHashMap<>(); 
+    private volatile long defaultThresholdMillis;
+    
+    
+    /**
+     * @param defaultThresholdMillis  the threshold in millis of the tables which do not have a dedicated threshold
+     */
+    public SlowQueryLog(long defaultThresholdMillis) {
+        this(defaultThresholdMillis, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param defaultThresholdMillis  the threshold in millis of the tables which do not have a dedicated threshold
+     * @param capacity                the max number of slow queries to keep
+     */
+    public SlowQueryLog(long defaultThresholdMillis, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity has to be larger than 0");
+        }
+        this.defaultThresholdMillis = defaultThresholdMillis;
+        this.ringBuffer = new AtomicReferenceArray<>(capacity);
+    }
+    
+    
+    @Override
+    public long getDefaultThresholdMillis() {
+        return defaultThresholdMillis;
+    }
+    
+    @Override
+    public void setDefaultThresholdMillis(long thresholdMillis) {
+        this.defaultThresholdMillis = thresholdMillis;
+    }
+    
+    /**
+     * @param tablename        the qualified tablename (keyspace.table)
+     * @param thresholdMillis  the threshold in millis of the table
+     * @return this instance
+     */
+    public SlowQueryLog withThresholdMillis(String tablename, long thresholdMillis) {
+        thresholdsMillis.put(tablename, thresholdMillis);
+        return this;
+    }
+    
+    /**
+     * @param tablename  the qualified tablename (keyspace.table) or null
+     * @return the threshold in millis of the table
+     */
+    public long getThresholdMillis(String tablename) {
+        if (tablename != null) {
+            final Long thresholdMillis = thresholdsMillis.get(tablename);
+            if (thresholdMillis != null) {
+                return thresholdMillis;
+            }
+        }
+        return defaultThresholdMillis;
+    }
+    
+    @Override
+    public int getCapacity() {
+        return ringBuffer.length();
+    }
+    
+    @Override
+    public long getNumSlowQueries() {
+        return sequence.get();
+    }
+    
+    /**
+     * @return the kept slow queries, newest first 
+     */
+    public ImmutableList<SlowQuery> getSlowQueries() {
+        final ImmutableList.Builder<SlowQuery> slowQueries = ImmutableList.builder();
+        
+        final long last = sequence.get();
+        final long first = Math.max(0, last - ringBuffer.length());
+        for (long seq = last - 1; seq >= first; seq--) {
+            final SlowQuery slowQuery = ringBuffer.get((int) (seq % ringBuffer.length()));
+            if (slowQuery != null) {
+                slowQueries.add(slowQuery);
+            }
+        }
+        
+        return slowQueries.build();
+    }
+    
+    @Override
+    public String[] dump() {
+        final ImmutableList<SlowQuery> slowQueries = getSlowQueries();
+        
+        final String[] lines = new String[slowQueries.size()];
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = slowQueries.get(i).toString();
+        }
+        return lines;
+    }
+    
+    @Override
+    public void clear() {
+        for (int i = 0; i < ringBuffer.length(); i++) {
+            ringBuffer.set(i, null);
+        }
+    }
+
+    private void add(SlowQuery slowQuery) {
+        final long seq = sequence.getAndIncrement();
+        ringBuffer.set((int) (seq % ringBuffer.length()), slowQuery);
+    }
+    
+    
+    /**
+     * observes the query execution and logs the query, if the threshold of the table is exceeded
+     *  
+     * @param tablename        the tablename or null, if the statement may refer several tables (batches)
+     * @param operation        the operation type of the statement
+     * @param statement        the statement 
+     * @param startNanos       the start time of the query execution (System.nanoTime())
+     * @param timings          the timings of the query execution or null  
+     * @param protocolVersion  the protocol version
+     * @param codecRegistry    the codec registry
+     * @param future           the result future
+     */
+    void observe(final Tablename tablename, 
+                 final Operation operation, 
+                 final Statement statement, 
+                 final long startNanos,
+                 final QueryTimings timings,
+                 final ProtocolVersion protocolVersion,
+                 final CodecRegistry codecRegistry,
+                 final ListenableFuture<ResultSet> future) {
+        
+        final Runnable detector = new Runnable() {
+            
+            @Override
+            public void run() {
+                final long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+                // tables of the same name may exist in several keyspaces
+                final String name = (tablename == null) ? null : tablename.toString();
+                if (elapsedMicros < TimeUnit.MILLISECONDS.toMicros(getThresholdMillis(name))) {
+                    return;
+                }
+                
+                ResultSet rs = null;
+                String error = null;
+                try {
+                    rs = future.get();
+                } catch (InterruptedException | ExecutionException | RuntimeException e) {
+                    error = ListenableFutures.unwrapIfNecessary(e).toString();
+                }
+                
+                add(new SlowQueryImpl(name, operation, statement, protocolVersion, codecRegistry, rs, elapsedMicros, error, timings));
+            }
+        };
+        future.addListener(detector, MoreExecutors.directExecutor());
+    }
+    
+    
+    
+    private static final class SlowQueryImpl implements SlowQuery {
+        private final long timestampMillis = System.currentTimeMillis();
+        private final String tablename;
+        private final Operation operation;
+        private final String cql;
+        private final ImmutableList<Integer> boundValueSizes;
+        private final ConsistencyLevel consistencyLevel;
+        private final String coordinator;
+        private final int numPages;
+        private final int numRows;
+        private final long elapsedMicros;
+        private final String error;
+        private final QueryTimings timings;
+        
+        SlowQueryImpl(String tablename,
+                      Operation operation, 
+                      Statement statement, 
+                      ProtocolVersion protocolVersion,
+                      CodecRegistry codecRegistry,
+                      ResultSet rs,
+                      long elapsedMicros,
+                      String error,
+                      QueryTimings timings) {
+            this.tablename = tablename;
+            this.operation = operation;
+            this.cql = toCql(statement);
+            this.elapsedMicros = elapsedMicros;
+            this.error = error;
+            this.timings = timings;
+            
+            final ImmutableList.Builder<Integer> sizes = ImmutableList.builder();
+            collectBoundValueSizes(statement, protocolVersion, codecRegistry, sizes);
+            this.boundValueSizes = sizes.build();
+            
+            if (rs == null) {
+                this.consistencyLevel = statement.getConsistencyLevel();
+                this.coordinator = null;
+                this.numPages = 0;
+                this.numRows = 0;
+            } else {
+                final ExecutionInfo executionInfo = rs.getExecutionInfo();
+                this.consistencyLevel = (executionInfo.getAchievedConsistencyLevel() == null) ? statement.getConsistencyLevel() 
+                                                                                                : executionInfo.getAchievedConsistencyLevel();
+                this.coordinator = (executionInfo.getQueriedHost() == null) ? null : executionInfo.getQueriedHost().getAddress().getHostAddress();
+                this.numPages = rs.getAllExecutionInfo().size();
+                this.numRows = rs.getAvailableWithoutFetching();
+            }
+        }
+        
+        private static String toCql(Statement statement) {
+            if (statement instanceof BoundStatement) {
+                return ((BoundStatement) statement).preparedStatement().getQueryString();
+                
+            } else if (statement instanceof BatchStatement) {
+                final Set<String> cqls = Sets.newLinkedHashSet();
+                for (Statement childStatement : ((BatchStatement) statement).getStatements()) {
+                    cqls.add(toCql(childStatement));
+                }
+                return "BATCH " + Joiner.on("; ").join(cqls);
+                
+            } else if (statement instanceof RegularStatement) {
+                return ((RegularStatement) statement).getQueryString();
+                
+            } else {
+                return statement.toString();
+            }
+        }
+        
+        private static void collectBoundValueSizes(Statement statement, ProtocolVersion protocolVersion, CodecRegistry codecRegistry, ImmutableList.Builder<Integer> sizes) {
+            if (statement instanceof BoundStatement) {
+                final BoundStatement boundStatement = (BoundStatement) statement;
+                for (int i = 0; i < boundStatement.preparedStatement().getVariables().size(); i++) {
+                    sizes.add(sizeOf(boundStatement.getBytesUnsafe(i)));
+                }
+                
+            } else if (statement instanceof BatchStatement) {
+                for (Statement childStatement : ((BatchStatement) statement).getStatements()) {
+                    collectBoundValueSizes(childStatement, protocolVersion, codecRegistry, sizes);
+                }
+                
+            } else if (statement instanceof RegularStatement) {
+                final ByteBuffer[] values = ((RegularStatement) statement).getValues(protocolVersion, codecRegistry);
+                if (values != null) {
+                    for (ByteBuffer value : values) {
+                        sizes.add(sizeOf(value));
+                    }
+                }
+            }
+        }
+        
+        private static int sizeOf(ByteBuffer value) {
+            return (value == null) ? -1 : value.remaining();
+        }
+        
+        @Override
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+        
+        @Override
+        public String getTablename() {
+            return tablename;
+        }
+        
+        @Override
+        public Operation getOperation() {
+            return operation;
+        }
+        
+        @Override
+        public String getCql() {
+            return cql;
+        }
+        
+        @Override
+        public ImmutableList<Integer> getBoundValueSizes() {
+            return boundValueSizes;
+        }
+        
+        @Override
+        public ConsistencyLevel getConsistencyLevel() {
+            return consistencyLevel;
+        }
+        
+        @Override
+        public String getCoordinator() {
+            return coordinator;
+        }
+        
+        @Override
+        public int getNumPages() {
+            return numPages;
+        }
+        
+        @Override
+        public int getNumRows() {
+            return numRows;
+        }
+        
+        @Override
+        public long getElapsedMicros() {
+            return elapsedMicros;
+        }
+        
+        @Override
+        public String getError() {
+            return error;
+        }
+        
+        @Override
+        public QueryTimings getTimings() {
+            return timings;
+        }
+        
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper("slowQuery")
+                              .omitNullValues()
+                              .add("timestampMillis", timestampMillis)
+                              .add("table", tablename)
+                              .add("operation", operation)
+                              .add("elapsedMicros", elapsedMicros)
+                              .add("cql", cql)
+                              .add("boundValueSizes", boundValueSizes)
+                              .add("consistencyLevel", consistencyLevel)
+                              .add("coordinator", coordinator)
+                              .add("pages", numPages)
+                              .add("rows", numRows)
+                              .add("error", error)
+                              .add("timings", timings)
+                              .toString();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The management interface of the {@link SlowQueryLog} 
+ */
+public interface SlowQueryLogMBean {
+
+    /**
+     * @return the threshold in millis of the tables which do not have a dedicated threshold
+     */
+    long getDefaultThresholdMillis();
+    
+    /**
+     * @param thresholdMillis  the threshold in millis of the tables which do not have a dedicated threshold
+     */
+    void setDefaultThresholdMillis(long thresholdMillis);
+    
+    /**
+     * @return the max number of slow queries which are kept
+     */
+    int getCapacity();
+    
+    /**
+     * @return the total number of slow queries detected so far (incl. the dropped ones) 
+     */
+    long getNumSlowQueries();
+    
+    /**
+     * @return the kept slow queries as text, newest first 
+     */
+    String[] dump();
+    
+    /**
+     * removes the kept slow queries 
+     */
+    void clear();
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+
+/**
+ * The accumulated time per stage of the queries of a table. The server time in comparison with the 
+ * other stages shows whether the queries spent their time in Cassandra or on the client-side  
+ */
+public interface StageMetrics {
+
+    /**
+     * @return the accumulated statement build time in micros 
+     */
+    long getStatementBuildMicros();
+    
+    /**
+     * @return the accumulated prepare time in micros 
+     */
+    long getPrepareMicros();
+    
+    /**
+     * @return the accumulated bind time in micros 
+     */
+    long getBindMicros();
+    
+    /**
+     * @return the accumulated server time in micros 
+     */
+    long getServerMicros();
+    
+    /**
+     * @return the accumulated interceptor time in micros 
+     */
+    long getInterceptorMicros();
+    
+    /**
+     * @return the accumulated entity mapping time in micros 
+     */
+    long getEntityMappingMicros();
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.Arrays;
+
+
+
+
+/**
+ * The shape of a statement such as the table, the statement kind, the column names 
+ * and flags which influences the generated CQL (ttl-present, if not exists, IN-arity, ...). 
+ * Statements of the same shape will be compiled to the same CQL query string, but  
+ * the shape is much cheaper to compute than the query string itself.
+ */
+final class StatementShape {
+    
+    private final Tablename tablename;
+    private final Object[] parts;
+    private final int hash;
+    
+    private StatementShape(Tablename tablename, Object[] parts) {
+        this.tablename = tablename;
+        this.parts = parts;
+        this.hash = (31 * tablename.hashCode()) + Arrays.deepHashCode(parts);
+    }
+    
+    /**
+     * @param tablename the tablename 
+     * @param parts     the shape parts. The parts have to implement a value-based equals and hashCode or have to be arrays 
+     * @return the shape
+     */
+    static StatementShape of(Tablename tablename, Object... parts) {
+        return new StatementShape(tablename, parts);
+    }
+    
+    /**
+     * @return the tablename
+     */
+    Tablename getTablename() {
+        return tablename;
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof StatementShape) && 
+               (((StatementShape) other).hash == this.hash) &&
+               ((StatementShape) other).tablename.equals(this.tablename) &&
+               Arrays.deepEquals(((StatementShape) other).parts, this.parts);
+    }
+    
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    @Override
+    public String toString() {
+        return tablename + " " + Arrays.deepToString(parts);
+    }
+}
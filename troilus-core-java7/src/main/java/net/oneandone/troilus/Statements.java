@@ -0,0 +1,59 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Statement;
+
+
+
+/**
+ * Statement utilities 
+ */
+class Statements {
+    
+    /**
+     * @param statement  the statement
+     * @return true, if the statement is a lightweight transaction (IF NOT EXISTS, IF EXISTS or IF conditions)
+     */
+    public static boolean isConditional(Statement statement) {
+        if (statement.getSerialConsistencyLevel() != null) {
+            return true;
+        }
+        
+        final String query;
+        if (statement instanceof BatchStatement) {
+            for (Statement childStatement : ((BatchStatement) statement).getStatements()) {
+                if (isConditional(childStatement)) {
+                    return true;
+                }
+            }
+            return false;
+            
+        } else if (statement instanceof BoundStatement) {
+            query = ((BoundStatement) statement).preparedStatement().getQueryString();
+        } else if (statement instanceof RegularStatement) {
+            query = ((RegularStatement) statement).getQueryString();
+        } else {
+            return false;
+        }
+        
+        // the conditions are rendered by the query builder as upper case IF clause 
+        return query.contains(" IF ");
+    }
+}
@@ -25,8 +25,10 @@ import com.google.common.base.Objects;
  */
 public class Tablename {
 
-    private String keyspacename;
-    private String tablename;
+    private final String keyspacename;
+    private final String tablename;
+    private final String qualifiedName;
+    private final int hash;
     
 
     /**
@@ -57,6 +59,10 @@ public class Tablename {
     private Tablename(String keyspacename, String tablename) {
         this.keyspacename = keyspacename;
         this.tablename = tablename;
+        this.qualifiedName = (keyspacename == null) ? tablename : keyspacename + "." + tablename;
+        
+        // tablename is used as cache key and metrics name on the hot path
+        this.hash = qualifiedName.hashCode();
     }
 
     
@@ -74,6 +80,27 @@ public class Tablename {
         return tablename;
     }
     
+    /**
+     * @return the qualified tablename (keyspace.table) or the tablename, if no keyspace is assigned 
+     */
+    String getQualifiedName() {
+        return qualifiedName;
+    }
+    
+    /**
+     * @param keyspacename the keyspacename
+     * @param tablename    the tablename or null to match all tables of the keyspace 
+     * @return true, if this is the given table or a table of the given keyspace (the names are compared case insensitive as Cassandra does for unquoted names)
+     */
+    boolean isSameTable(String keyspacename, String tablename) {
+        return isSameName(keyspacename, this.keyspacename) && 
+               ((tablename == null) || isSameName(tablename, this.tablename));
+    }
+    
+    private static boolean isSameName(String name, String otherName) {
+        return (name == null) ? (otherName == null) : name.equalsIgnoreCase(otherName);
+    }
+    
     @Override
     public boolean equals(Object other) {
         return (other instanceof Tablename) && 
@@ -83,11 +110,11 @@ public class Tablename {
     
     @Override
     public int hashCode() {
-        return toString().hashCode();
+        return hash;
     }
     
     @Override
     public String toString() {
-        return (keyspacename == null) ? tablename : keyspacename + "." + tablename;
+        return qualifiedName;
     }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import static com.datastax.driver.core.querybuilder.QueryBuilder.gt;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.lte;
+import static com.datastax.driver.core.querybuilder.QueryBuilder.token;
+
+import com.datastax.driver.core.TokenRange;
+import com.datastax.driver.core.querybuilder.Clause;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+
+
+/**
+ * Full table scan which splits the ring into token ranges. Each token range will be queried by a 
+ * dedicated query. See {@link MergedResultList}   
+ */
+final class TokenRangeScan {
+    
+    private TokenRangeScan() {  }
+    
+    
+    /**
+     * @param partitionKeyNames  the partition key columnnames 
+     * @param ranges             the unwrapped token ranges in token order
+     * @return the where conditions per token range
+     */
+    static ImmutableList<ImmutableSet<Clause>> newRangeConditions(ImmutableList<String> partitionKeyNames, ImmutableList<TokenRange> ranges) {
+        final String token = token(partitionKeyNames.toArray(new String[partitionKeyNames.size()]));
+        
+        final ImmutableList.Builder<ImmutableSet<Clause>> conditions = ImmutableList.builder();
+        for (TokenRange range : ranges) {
+            // a range which ends at the minimum token (or covers the whole ring) is open at the end 
+            if (range.getEnd().compareTo(range.getStart()) <= 0) {
+                conditions.add(ImmutableSet.<Clause>of(gt(token, range.getStart().getValue())));
+            } else {
+                conditions.add(ImmutableSet.<Clause>of(gt(token, range.getStart().getValue()), 
+                                                       lte(token, range.getEnd().getValue())));
+            }
+        }
+        
+        return conditions.build();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.UDTValue;
+import com.datastax.driver.core.UserType;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+
+
+/**
+ * Compiled encoder which maps java values to the udt-based db value of a data type. The user types, 
+ * the field codecs and the nested encoders are resolved once. The encoders of the java classes which 
+ * are mapped to a user type are resolved on first use of the class 
+ */
+abstract class UDTValueEncoder {
+    
+    /**
+     * @param value  the java value
+     * @return the db value
+     */
+    abstract Object encode(Object value);
+    
+    
+    /**
+     * @param tablename        the tablename
+     * @param catalog          the metadata catalog
+     * @param datatype         the data type
+     * @param beanMapper       the bean mapper
+     * @param codecRegistry    the codec registry
+     * @param protocolVersion  the protocol version
+     * @return the encoder
+     */
+    static UDTValueEncoder newEncoder(Tablename tablename, MetadataCatalog catalog, DataType datatype, BeanMapper beanMapper, CodecRegistry codecRegistry, ProtocolVersion protocolVersion) {
+
+        // build-in type (will not be converted)
+        if (UDTValueMapper.isBuildInType(datatype)) {
+            return BuildInEncoder.INSTANCE;
+            
+        // udt collection
+        } else if (datatype.isCollection()) {
+            
+            // set
+            if (DataType.Name.SET == datatype.getName()) {
+                return new SetEncoder(newEncoder(tablename, catalog, datatype.getTypeArguments().get(0), beanMapper, codecRegistry, protocolVersion));
+                
+            // list
+            } else if (DataType.Name.LIST == datatype.getName()) {
+                return new ListEncoder(newEncoder(tablename, catalog, datatype.getTypeArguments().get(0), beanMapper, codecRegistry, protocolVersion));
+                
+            // map
+            } else {
+                return new MapEncoder(newEncoder(tablename, catalog, datatype.getTypeArguments().get(0), beanMapper, codecRegistry, protocolVersion),
+                                      newEncoder(tablename, catalog, datatype.getTypeArguments().get(1), beanMapper, codecRegistry, protocolVersion));
+            }
+            
+        // udt
+        } else {
+            final UserType usertype = catalog.getUserType(tablename, ((UserType) datatype).getTypeName());
+            return new UserTypeEncoder(tablename, catalog, usertype, beanMapper, codecRegistry, protocolVersion);
+        }
+    }
+    
+    
+    
+    private static final class BuildInEncoder extends UDTValueEncoder {
+        static final BuildInEncoder INSTANCE = new BuildInEncoder();
+        
+        @Override
+        Object encode(Object value) {
+            return value;
+        }
+    }
+    
+    
+    
+    private static final class SetEncoder extends UDTValueEncoder {
+        private final UDTValueEncoder elementEncoder;
+        
+        SetEncoder(UDTValueEncoder elementEncoder) {
+            this.elementEncoder = elementEncoder;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        Object encode(Object value) {
+            if (value == null) {
+                return ImmutableSet.of();
+            }
+            
+            final ImmutableSet.Builder<Object> udt = ImmutableSet.builder();
+            for (Object element : (Set<Object>) value) {
+                udt.add(elementEncoder.encode(element));
+            }
+            return udt.build();
+        }
+    }
+
+    
+    
+    private static final class ListEncoder extends UDTValueEncoder {
+        private final UDTValueEncoder elementEncoder;
+        
+        ListEncoder(UDTValueEncoder elementEncoder) {
+            this.elementEncoder = elementEncoder;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        Object encode(Object value) {
+            if (value == null) {
+                return ImmutableList.of();
+            }
+            
+            final List<Object> elements = (List<Object>) value;
+            final List<Object> udt = Lists.newArrayListWithCapacity(elements.size());
+            for (Object element : elements) {
+                udt.add(elementEncoder.encode(element));
+            }
+            return ImmutableList.copyOf(udt);
+        }
+    }
+    
+    
+    
+    private static final class MapEncoder extends UDTValueEncoder {
+        private final UDTValueEncoder keyEncoder;
+        private final UDTValueEncoder valueEncoder;
+        
+        MapEncoder(UDTValueEncoder keyEncoder, UDTValueEncoder valueEncoder) {
+            this.keyEncoder = keyEncoder;
+            this.valueEncoder = valueEncoder;
+        }
+        
+        @SuppressWarnings("unchecked")
+        @Override
+        Object encode(Object value) {
+            if (value == null) {
+                return ImmutableMap.of();
+            }
+            
+            final Map<Object, Object> udt = Maps.newHashMap();
+            for (Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                udt.put(keyEncoder.encode(entry.getKey()), valueEncoder.encode(entry.getValue()));
+            }
+            return ImmutableMap.copyOf(udt);
+        }
+    }
+    
+    
+    
+    private static final class UserTypeEncoder extends UDTValueEncoder {
+        private final Tablename tablename;
+        private final MetadataCatalog catalog;
+        private final UserType usertype;
+        private final BeanMapper beanMapper;
+        private final CodecRegistry codecRegistry;
+        private final ProtocolVersion protocolVersion;
+        
+        // typically one java class will be mapped to a user type
+        private final ConcurrentMap<Class<?>, BeanEncoder> beanEncoders = Maps.newConcurrentMap();
+        
+        UserTypeEncoder(Tablename tablename, MetadataCatalog catalog, UserType usertype, BeanMapper beanMapper, CodecRegistry codecRegistry, ProtocolVersion protocolVersion) {
+            this.tablename = tablename;
+            this.catalog = catalog;
+            this.usertype = usertype;
+            this.beanMapper = beanMapper;
+            this.codecRegistry = codecRegistry;
+            this.protocolVersion = protocolVersion;
+        }
+        
+        @Override
+        Object encode(Object value) {
+            if (value == null) {
+                return null;
+            }
+            
+            BeanEncoder beanEncoder = beanEncoders.get(value.getClass());
+            if (beanEncoder == null) {
+                beanEncoder = new BeanEncoder(value.getClass());
+                beanEncoders.put(value.getClass(), beanEncoder);
+            }
+            
+            return beanEncoder.encode(value);
+        }
+        
+        
+        /**
+         * encoder of a java class to the user type
+         */
+        private final class BeanEncoder {
+            private final BeanMapper.IndexedReader reader;
+            
+            // per property 
+            private final int[] fieldIndexes;
+            private final TypeCodec<Object>[] codecs;
+            private final UDTValueEncoder[] nestedEncoders;
+            
+            @SuppressWarnings("unchecked")
+            BeanEncoder(Class<?> clazz) {
+                final ImmutableList<String> names = beanMapper.getReadablePropertyNames(clazz).asList();
+                this.reader = beanMapper.newIndexedReader(clazz, names);
+                
+                this.fieldIndexes = new int[names.size()];
+                this.codecs = new TypeCodec[names.size()];
+                this.nestedEncoders = new UDTValueEncoder[names.size()];
+                
+                final ImmutableList<UserType.Field> fields = ImmutableList.copyOf(usertype);
+                for (int i = 0; i < names.size(); i++) {
+                    final int fieldIdx = indexOf(fields, names.get(i));
+                    final DataType fieldType = fields.get(fieldIdx).getType();
+                    
+                    fieldIndexes[i] = fieldIdx;
+                    codecs[i] = codecRegistry.codecFor(fieldType);
+                    nestedEncoders[i] = UDTValueMapper.isBuildInType(fieldType) ? null 
+                                                                                : newEncoder(tablename, catalog, fieldType, beanMapper, codecRegistry, protocolVersion);
+                }
+            }
+            
+            private int indexOf(ImmutableList<UserType.Field> fields, String name) {
+                for (int i = 0; i < fields.size(); i++) {
+                    if (fields.get(i).getName().equals(name)) {
+                        return i;
+                    }
+                }
+                
+                // unquoted names are case insensitive 
+                for (int i = 0; i < fields.size(); i++) {
+                    if (fields.get(i).getName().equalsIgnoreCase(name)) {
+                        return i;
+                    }
+                }
+                
+                throw new IllegalArgumentException(name + " is not a field defined in user type " + usertype.getTypeName());
+            }
+
+            UDTValue encode(Object bean) {
+                final UDTValue udtValue = usertype.newValue();
+                
+                for (int i = 0; i < fieldIndexes.length; i++) {
+                    final Optional<Object> optionalValue = reader.read(bean, i);
+                    if (!optionalValue.isPresent()) {
+                        udtValue.setToNull(fieldIndexes[i]);
+                        continue;
+                    }
+                    
+                    Object value = optionalValue.get();
+                    if (nestedEncoders[i] != null) {
+                        value = nestedEncoders[i].encode(value);
+                    }
+                    
+                    final ByteBuffer bytes = codecs[i].serialize(value, protocolVersion);
+                    udtValue.setBytesUnsafe(fieldIndexes[i], bytes);
+                }
+                
+                return udtValue;
+            }
+        }
+    }
+}
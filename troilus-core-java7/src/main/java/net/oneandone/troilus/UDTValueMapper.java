@@ -21,8 +21,9 @@ import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 
 
 
@@ -37,13 +38,16 @@ import com.datastax.driver.core.TypeCodec;
 import com.datastax.driver.core.UDTValue;
 import com.datastax.driver.core.UserType;
 import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableCollection;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 
 /**
@@ -54,10 +58,21 @@ class UDTValueMapper {
     private final ProtocolVersion protocolVersion;
     private final BeanMapper beanMapper;
     private final MetadataCatalog catalog;
-    private final CodecRegistry codecRegistry = CodecRegistry.DEFAULT_INSTANCE;
+    private final CodecRegistry codecRegistry;
+    
+    // the compiled udt encoders per (column) data type. Data types will be compared by identity. Refreshed 
+    // metadata provides new data type instances 
+    private final Cache<DataType, UDTValueEncoder> udtValueEncoderCache = CacheBuilder.newBuilder()
+                                                                                      .weakKeys()
+                                                                                      .build();
     
     UDTValueMapper(ProtocolVersion protocolVersion, MetadataCatalog catalog, BeanMapper beanMapper) {
+        this(protocolVersion, CodecRegistry.DEFAULT_INSTANCE, catalog, beanMapper);
+    }
+    
+    UDTValueMapper(ProtocolVersion protocolVersion, CodecRegistry codecRegistry, MetadataCatalog catalog, BeanMapper beanMapper) {
         this.protocolVersion = protocolVersion;
+        this.codecRegistry = codecRegistry;
         this.catalog = catalog;
         this.beanMapper = beanMapper;
     }
@@ -275,90 +290,30 @@ class UDTValueMapper {
     }
     
     
-    @SuppressWarnings("unchecked")
-    public Object toUdtValue(Tablename tablename,
-                             MetadataCatalog catalog, 
-                             DataType datatype, 
+    public Object toUdtValue(final Tablename tablename,
+                             final MetadataCatalog catalog, 
+                             final DataType datatype, 
                              Object value) {
         
         // build-in type (will not be converted)
         if (isBuildInType(datatype)) {
             return value;
             
-        // udt collection
-        } else if (datatype.isCollection()) {
-           
-           // set
-        	if (DataType.Name.SET == datatype.getName()) {
-        	   final DataType elementDataType = datatype.getTypeArguments().get(0);
-               
-               final Set<Object> udt = Sets.newHashSet();
-               if (value != null) {
-                   for (Object element : (Set<Object>) value) {
-                       udt.add(toUdtValue(tablename, catalog, elementDataType, element));
-                   }
-               }
-               
-               return ImmutableSet.copyOf(udt);
-               
-           // list 
-        	 } else if (DataType.Name.LIST == datatype.getName()) {    
-        	     final DataType elementDataType = datatype.getTypeArguments().get(0);
-               
-        	     final List<Object> udt = Lists.newArrayList();
-               if (value != null) {
-                   for (Object element : (List<Object>) value) {
-                       udt.add(toUdtValue(tablename, catalog, elementDataType, element));
-                   }
-               }
-               
-               return ImmutableList.copyOf(udt);
-              
-           // map
-           } else {
-               final DataType keyDataType = datatype.getTypeArguments().get(0);
-               final DataType valueDataType = datatype.getTypeArguments().get(1);
-               
-               final Map<Object, Object> udt = Maps.newHashMap();
-               if (value != null) {
-                   for (Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
-                         udt.put(toUdtValue(tablename, catalog, keyDataType, entry.getKey()), 
-                                 toUdtValue(tablename, catalog, valueDataType, entry.getValue()));
-                   }
-               
-               }
-               return ImmutableMap.copyOf(udt);  
-           }
-    
-           
-        // udt
+        // udt or udt collection
         } else {
-            if (value == null) {
-                return value;
+            final Callable<UDTValueEncoder> encoderFactory = new Callable<UDTValueEncoder>() {
                 
-            } else {
-                final UserType usertype = catalog.getUserType(tablename, ((UserType) datatype).getTypeName());
-                final UDTValue udtValue = usertype.newValue();
-                
-                for (Entry<String, Optional<Object>> entry : beanMapper.toValues(value, ImmutableSet.<String>of()).entrySet()) {
-                    if (!entry.getValue().isPresent()) {
-                        //return null;
-                    	udtValue.setToNull(entry.getKey());
-                    	continue;
-                    }
-
-                    final DataType fieldType = usertype.getFieldType(entry.getKey());
-                    Object vl = entry.getValue().get();
-                    
-                    if (!isBuildInType(usertype.getFieldType(entry.getKey()))) {
-                        vl = toUdtValue(tablename, catalog, fieldType, vl);
-                    }
-                    
-                    final String key = entry.getKey();
-                    udtValue.setBytesUnsafe(key, serialize(fieldType, vl));
+                @Override
+                public UDTValueEncoder call() throws Exception {
+                    return UDTValueEncoder.newEncoder(tablename, catalog, datatype, beanMapper, getCodecRegistry(), protocolVersion);
                 }
-                
-                return udtValue;
+            };
+            
+            try {
+                return udtValueEncoderCache.get(datatype, encoderFactory).encode(value);
+            } catch (ExecutionException | UncheckedExecutionException e) {
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new RuntimeException(e.getCause());
             }
         }
     }
@@ -371,22 +326,32 @@ class UDTValueMapper {
      * @return the mapped value
      */
     Object toStatementValue(Tablename tablename, String name, Object value) {
+        final ColumnPlan columnPlan = catalog.getColumnPlan(tablename);
+        return toStatementValue(columnPlan, columnPlan.indexOf(name), value);
+    }
+    
+    
+    /**
+     * @param columnPlan  the column plan of the table
+     * @param columnIdx   the column index 
+     * @param value       the value 
+     * @return the mapped value
+     */
+    Object toStatementValue(ColumnPlan columnPlan, int columnIdx, Object value) {
         if (isNullOrEmpty(value)) {
             return null;
         } 
         
-        final DataType dataType = catalog.getColumnMetadata(tablename, name).getType();
-        
         // build in
-        if (UDTValueMapper.isBuildInType(dataType)) {
+        if (columnPlan.isBuildInType(columnIdx)) {
             
             // enum
-            if (DataTypes.isTextDataType(dataType) && Enum.class.isAssignableFrom(value.getClass())) {
+            if (columnPlan.isTextType(columnIdx) && Enum.class.isAssignableFrom(value.getClass())) {
                 return value.toString();
             }
             
             // byte buffer (byte[])
-            if (dataType.equals(DataType.blob()) && byte[].class.isAssignableFrom(value.getClass())) {
+            if (columnPlan.isBlobType(columnIdx) && byte[].class.isAssignableFrom(value.getClass())) {
                 return ByteBuffer.wrap((byte[]) value);
             }
             
@@ -394,7 +359,7 @@ class UDTValueMapper {
          
         // udt    
         } else {
-            return toUdtValue(tablename, catalog, catalog.getColumnMetadata(tablename, name).getType(), value);
+            return toUdtValue(columnPlan.getTablename(), catalog, columnPlan.getType(columnIdx), value);
         }
     }
     
@@ -406,10 +371,12 @@ class UDTValueMapper {
      * @return            the mapped values
      */
     ImmutableList<Object> toStatementValues(Tablename tablename, String name, ImmutableList<Object> values) {
+        final ColumnPlan columnPlan = catalog.getColumnPlan(tablename);
+        final int columnIdx = columnPlan.indexOf(name);
+        
         final List<Object> result = Lists.newArrayList(); 
-
         for (Object value : values) {
-            result.add(toStatementValue(tablename, name, value));
+            result.add(toStatementValue(columnPlan, columnIdx, value));
         }
         
         return ImmutableList.copyOf(result);
@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.java7.Batchable;
 import net.oneandone.troilus.java7.UpdateWithUnitAndCounter;
 import net.oneandone.troilus.java7.interceptor.WriteQueryData;
@@ -75,7 +76,10 @@ class UpdateQuery extends WriteQuery<UpdateWithUnitAndCounter> implements Update
      * @return the new insert query
      */@Override
      public UpdateQuery entity(Object entity) {
+        final long startNanos = System.nanoTime();
         ImmutableMap<String, Optional<Object>> values = getBeanMapper().toValues(entity, getCatalog().getColumnNames(getData().getTablename()));
+        getDefaultDbSession().recordStageTime(getData().getTablename(), Stage.ENTITY_MAPPING, startNanos);
+        
         return newQuery(getData().valuesToMutate(Immutables.join(getData().getValuesToMutate(), values)));
     }
     
@@ -16,8 +16,12 @@
 package net.oneandone.troilus;
 
 
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
+import net.oneandone.troilus.MetricsRegistry.Operation;
+
 import net.oneandone.troilus.java7.Batchable;
 import net.oneandone.troilus.java7.interceptor.CascadeOnWriteInterceptor;
 import net.oneandone.troilus.java7.interceptor.WriteQueryData;
@@ -28,9 +32,11 @@ import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
 
 
@@ -55,6 +61,16 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
         return data;
     }
     
+    @Override
+    Tablename getTablename() {
+        return data.getTablename();
+    }
+    
+    @Override
+    Operation getOperation() {
+        return Operation.WRITE;
+    }
+    
     
     public CounterMutationQuery incr(String name) {
         return incr(name, 1);
@@ -88,6 +104,18 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
     public ListenableFuture<Result> executeAsync() {
         ListenableFuture<Result> future = super.executeAsync();
         
+        final DBSession dbSession = getDefaultDbSession();
+        if (dbSession.isRowCachingActivated()) {
+            // reads performed while the write is in flight may have cached the old row 
+            Runnable cacheInvalidator = new Runnable() {
+                @Override
+                public void run() {
+                    dbSession.invalidateCachedRows(data.getTablename(), getRowKeys(data));
+                }
+            };
+            future.addListener(cacheInvalidator, MoreExecutors.directExecutor());
+        }
+        
         Function<Result, Result> validateLwtIfFunction = new Function<Result, Result>() {
             @Override
             public Result apply(Result result) {
@@ -102,6 +130,22 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
 
     
     
+    /**
+     * @param queryData  the query data
+     * @return the keys and values of the modified row(s). Inserted entities have no dedicated keys. The 
+     *         primary key columns will be picked by the caches  
+     */
+    private ImmutableMap<String, Object> getRowKeys(WriteQueryData queryData) {
+        final Map<String, Object> keys = Maps.newHashMap();
+        for (Entry<String, Optional<Object>> entry : queryData.getValuesToMutate().entrySet()) {
+            if (entry.getValue().isPresent()) {
+                keys.put(entry.getKey(), entry.getValue().get());
+            }
+        }
+        keys.putAll(queryData.getKeys());
+        return ImmutableMap.copyOf(keys);
+    }
+    
     private boolean isLwt() {
         return ((data.getIfNotExits() != null) && (data.getIfNotExits()) || !data.getOnlyIfConditions().isEmpty());                
     }
@@ -112,12 +156,15 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
     
     public ListenableFuture<Statement> getStatementAsync(final DBSession dbSession) {
         // perform request executors
-        ListenableFuture<WriteQueryData> queryDataFuture = executeRequestInterceptorsAsync(Futures.<WriteQueryData>immediateFuture(data));        
+        ListenableFuture<WriteQueryData> queryDataFuture = executeRequestInterceptorsAsync(dbSession, Futures.<WriteQueryData>immediateFuture(data));        
         
         // query data to statement
         Function<WriteQueryData, ListenableFuture<Statement>> queryDataToStatement = new Function<WriteQueryData, ListenableFuture<Statement>>() {
             @Override
             public ListenableFuture<Statement> apply(WriteQueryData queryData) {
+                if (dbSession.isRowCachingActivated()) {
+                    dbSession.invalidateCachedRows(queryData.getTablename(), getRowKeys(queryData));
+                }
                 return WriteQueryDataImpl.toStatementAsync(queryData, getExecutionSpec(), getUDTValueMapper(), dbSession);
             }
         };
@@ -138,7 +185,7 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
     
     
     
-    private ListenableFuture<WriteQueryData> executeRequestInterceptorsAsync(ListenableFuture<WriteQueryData> queryDataFuture) {
+    private ListenableFuture<WriteQueryData> executeRequestInterceptorsAsync(final DBSession dbSession, ListenableFuture<WriteQueryData> queryDataFuture) {
 
         for (WriteQueryRequestInterceptor interceptor : getInterceptorRegistry().getInterceptors(WriteQueryRequestInterceptor.class).reverse()) {
             final WriteQueryRequestInterceptor icptor = interceptor;
@@ -146,7 +193,7 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
             Function<WriteQueryData, ListenableFuture<WriteQueryData>> mapperFunction = new Function<WriteQueryData, ListenableFuture<WriteQueryData>>() {
                 @Override
                 public ListenableFuture<WriteQueryData> apply(WriteQueryData queryData) {
-                    return icptor.onWriteRequestAsync(queryData);
+                    return dbSession.recordInterceptorTime(queryData.getTablename(), true, System.nanoTime(), icptor.onWriteRequestAsync(queryData));
                 }
             };
 
@@ -159,7 +206,7 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
     
     
     
-    private ListenableFuture<ImmutableSet<Statement>> executeCascadeInterceptorsAsync(DBSession dbSession, ListenableFuture<WriteQueryData> queryDataFuture) {
+    private ListenableFuture<ImmutableSet<Statement>> executeCascadeInterceptorsAsync(final DBSession dbSession, ListenableFuture<WriteQueryData> queryDataFuture) {
         Set<ListenableFuture<ImmutableSet<Statement>>> statmentFutures = Sets.newHashSet();
         
         for (CascadeOnWriteInterceptor interceptor : getInterceptorRegistry().getInterceptors(CascadeOnWriteInterceptor.class).reverse()) {
@@ -168,7 +215,7 @@ abstract class WriteQuery<Q> extends MutationQuery<Q> {
             Function<WriteQueryData, ListenableFuture<ImmutableSet<? extends Batchable<?>>>> querydataToBatchables = new Function<WriteQueryData, ListenableFuture<ImmutableSet<? extends Batchable<?>>>>() {
                 @Override
                 public ListenableFuture<ImmutableSet<? extends Batchable<?>>> apply(WriteQueryData queryData) {
-                    return icptor.onWriteAsync(queryData);                    
+                    return dbSession.recordInterceptorTime(queryData.getTablename(), true, System.nanoTime(), icptor.onWriteAsync(queryData));
                 }
             };
             
@@ -35,14 +35,17 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.java7.interceptor.WriteQueryData;
 
 import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.querybuilder.BuiltStatement;
 import com.datastax.driver.core.querybuilder.Clause;
 import com.datastax.driver.core.querybuilder.Insert;
 import com.datastax.driver.core.querybuilder.QueryBuilder;
 import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -652,15 +655,51 @@ class WriteQueryDataImpl implements WriteQueryData {
     }
     
     
-    private static ListenableFuture<Statement> toInsertStatementAsync(WriteQueryData data, ExecutionSpec executionSpec, UDTValueMapper udtValueMapper, DBSession dbSession) {
-        final Insert insert = (data.getTablename().getKeyspacename() == null) ? insertInto(data.getTablename().getTablename()) 
-                                                                              : insertInto(data.getTablename().getKeyspacename(), data.getTablename().getTablename());
+    private static ListenableFuture<Statement> toInsertStatementAsync(final WriteQueryData data, final ExecutionSpec executionSpec, UDTValueMapper udtValueMapper, DBSession dbSession) {
+        final long startNanos = System.nanoTime();
+        final boolean isTtlPresent = (executionSpec.getTtl() != null);
         
-        final List<Object> values = Lists.newArrayList();
+        final ColumnPlan columnPlan = udtValueMapper.getMetadataCatalog().getColumnPlan(data.getTablename());
         
+        final Object[] values = new Object[data.getValuesToMutate().size() + (isTtlPresent ? 1 : 0)];
+        int idx = 0;
         for(Entry<String, Optional<Object>> entry : data.getValuesToMutate().entrySet()) {
-            insert.value(entry.getKey(), bindMarker());  
-            values.add(udtValueMapper.toStatementValue(data.getTablename(), entry.getKey(), entry.getValue().orNull())); 
+            values[idx++] = udtValueMapper.toStatementValue(columnPlan, columnPlan.indexOf(entry.getKey()), entry.getValue().orNull()); 
+        }
+        
+        if (isTtlPresent) {
+            values[idx++] = (Integer) executionSpec.getTtl();
+        }
+        
+        
+        final StatementShape shape = StatementShape.of(data.getTablename(), 
+                                                       "INSERT", 
+                                                       data.getValuesToMutate().keySet().asList(),
+                                                       data.getIfNotExits() != null,
+                                                       (data.getIfNotExits() == null) ? null : executionSpec.getSerialConsistencyLevel(),
+                                                       isTtlPresent);
+        
+        final Supplier<BuiltStatement> insertFactory = new Supplier<BuiltStatement>() {
+            
+            @Override
+            public BuiltStatement get() {
+                return newInsert(data, executionSpec);
+            }
+        };
+        
+        dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
+        
+        final ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(shape, insertFactory);
+        return dbSession.bindAsync(data.getTablename(), preparedStatementFuture, values);
+    }
+    
+    
+    static Insert newInsert(WriteQueryData data, ExecutionSpec executionSpec) {
+        final Insert insert = (data.getTablename().getKeyspacename() == null) ? insertInto(data.getTablename().getTablename()) 
+                                                                              : insertInto(data.getTablename().getKeyspacename(), data.getTablename().getTablename());
+        
+        for(String name : data.getValuesToMutate().keySet()) {
+            insert.value(name, bindMarker());  
         }
         
         if (data.getIfNotExits() != null) {
@@ -672,69 +711,51 @@ class WriteQueryDataImpl implements WriteQueryData {
 
         if (executionSpec.getTtl() != null) {
             insert.using(ttl(bindMarker()));  
-            values.add((Integer) executionSpec.getTtl());
         }
-
         
-        final ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(insert);
-        return dbSession.bindAsync(preparedStatementFuture, values.toArray());
+        return insert;
     }
     
     
     
     
-    private static ListenableFuture<Statement> toUpdateStatementAsync(WriteQueryData data, ExecutionSpec executionSpec, UDTValueMapper udtValueMapper, DBSession dbSession) {
-        
-        final com.datastax.driver.core.querybuilder.Update update = (data.getTablename().getKeyspacename() == null) ? update(data.getTablename().getTablename()) 
-                                                                                                                    : update(data.getTablename().getKeyspacename(), data.getTablename().getTablename());
-        
-        for (Clause onlyIfCondition : data.getOnlyIfConditions()) {
-            update.onlyIf(onlyIfCondition);
-        }
-
+    private static ListenableFuture<Statement> toUpdateStatementAsync(final WriteQueryData data, final ExecutionSpec executionSpec, final UDTValueMapper udtValueMapper, DBSession dbSession) {
+        final long startNanos = System.nanoTime();
         
         // key-based update
         if (data.getWhereConditions().isEmpty()) {
             final List<Object> values = Lists.newArrayList();
             
             if (executionSpec.getTtl() != null) {
-                update.using(QueryBuilder.ttl(bindMarker())); 
                 values.add((Integer) executionSpec.getTtl()); 
             }
             
+            final ColumnPlan columnPlan = udtValueMapper.getMetadataCatalog().getColumnPlan(data.getTablename());
             for (Entry<String, Optional<Object>> entry : data.getValuesToMutate().entrySet()) {
-                final boolean isPrimaryKey = udtValueMapper.getMetadataCatalog().isPrimaryKey(data.getTablename(), entry.getKey());
-            	if (!isPrimaryKey) {
-            		update.with(set(entry.getKey(), bindMarker())); 
-                    values.add(toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue().orNull()));
-            	}
+                final int columnIdx = columnPlan.indexOf(entry.getKey());
+                if (!columnPlan.isPrimaryKey(columnIdx)) {
+                    values.add(udtValueMapper.toStatementValue(columnPlan, columnIdx, entry.getValue().orNull()));
+                }
             }
 
             for (Entry<String, ImmutableSet<Object>> entry : data.getSetValuesToAdd().entrySet()) {
-                update.with(addAll(entry.getKey(), bindMarker())); 
                 values.add(toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue()));
             }
             for(Entry<String, ImmutableSet<Object>> entry : data.getSetValuesToRemove().entrySet()) {
-                update.with(removeAll(entry.getKey(), bindMarker())); 
                 values.add(toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue()));
             }
 
             for (Entry<String, ImmutableList<Object>> entry : data.getListValuesToPrepend().entrySet()) {
-                update.with(prependAll(entry.getKey(), bindMarker())); 
                 values.add(toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue()));
             } 
             for (Entry<String, ImmutableList<Object>> entry : data.getListValuesToAppend().entrySet()) {
-                update.with(appendAll(entry.getKey(), bindMarker())); 
                 values.add(toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue()));
             } 
             for (Entry<String, ImmutableList<Object>> entry : data.getListValuesToRemove().entrySet()) {
-                update.with(discardAll(entry.getKey(), bindMarker())); 
                 values.add(toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue()));
             } 
 
             for(Entry<String, ImmutableMap<Object, Optional<Object>>> entry : data.getMapValuesToMutate().entrySet()) {
-                update.with(putAll(entry.getKey(), bindMarker())); 
-                
                 /**
                  * Mike Wislocki - change 1/26/16
                  * this change iterates through the map mutations and rebuids the map of objects 
@@ -754,17 +775,47 @@ class WriteQueryDataImpl implements WriteQueryData {
             
             
             for(Entry<String, Object> entry : data.getKeys().entrySet()) {
-                update.where(eq(entry.getKey(), bindMarker())); 
                 values.add(toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue())); 
             }
             
-   
             
-            final ListenableFuture<PreparedStatement> preparedStatementFuture = dbSession.prepareAsync(update);
-            return dbSession.bindAsync(preparedStatementFuture, values.toArray());
+            final Supplier<BuiltStatement> updateFactory = new Supplier<BuiltStatement>() {
+                
+                @Override
+                public BuiltStatement get() {
+                    return newKeyBasedUpdate(data, executionSpec, udtValueMapper.getMetadataCatalog());
+                }
+            };
+            
+            final ListenableFuture<PreparedStatement> preparedStatementFuture;
+            if (data.getOnlyIfConditions().isEmpty()) {
+                final StatementShape shape = StatementShape.of(data.getTablename(), 
+                                                               "UPDATE",
+                                                               executionSpec.getTtl() != null,
+                                                               data.getValuesToMutate().keySet().asList(),
+                                                               data.getSetValuesToAdd().keySet().asList(),
+                                                               data.getSetValuesToRemove().keySet().asList(),
+                                                               data.getListValuesToPrepend().keySet().asList(),
+                                                               data.getListValuesToAppend().keySet().asList(),
+                                                               data.getListValuesToRemove().keySet().asList(),
+                                                               data.getMapValuesToMutate().keySet().asList(),
+                                                               data.getKeys().keySet().asList());
+                dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
+                preparedStatementFuture = dbSession.prepareAsync(shape, updateFactory);
+                
+            } else {
+                // only if conditions are part of the query string (the clauses do not support equals) 
+                final BuiltStatement update = updateFactory.get();
+                dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
+                preparedStatementFuture = dbSession.prepareAsync(data.getTablename(), update);
+            }
+            
+            return dbSession.bindAsync(data.getTablename(), preparedStatementFuture, values.toArray());
             
         // where condition-based update
         } else {
+            final com.datastax.driver.core.querybuilder.Update update = newUpdate(data);
+            
             for (Entry<String, Optional<Object>> entry : data.getValuesToMutate().entrySet()) {
                 update.with(set(entry.getKey(), toStatementValue(udtValueMapper, data.getTablename(), entry.getKey(), entry.getValue().orNull())));
             }
@@ -797,12 +848,68 @@ class WriteQueryDataImpl implements WriteQueryData {
             for (Clause whereCondition : data.getWhereConditions()) {
                 update.where(whereCondition);
             }
+            dbSession.recordStageTime(data.getTablename(), Stage.STATEMENT_BUILD, startNanos);
                         
             return Futures.<Statement>immediateFuture(update);
         }
     }
     
     
+    private static com.datastax.driver.core.querybuilder.Update newUpdate(WriteQueryData data) {
+        final com.datastax.driver.core.querybuilder.Update update = (data.getTablename().getKeyspacename() == null) ? update(data.getTablename().getTablename()) 
+                                                                                                                    : update(data.getTablename().getKeyspacename(), data.getTablename().getTablename());
+        
+        for (Clause onlyIfCondition : data.getOnlyIfConditions()) {
+            update.onlyIf(onlyIfCondition);
+        }
+        
+        return update;
+    }
+    
+    
+    private static com.datastax.driver.core.querybuilder.Update newKeyBasedUpdate(WriteQueryData data, ExecutionSpec executionSpec, MetadataCatalog catalog) {
+        final com.datastax.driver.core.querybuilder.Update update = newUpdate(data);
+        
+        if (executionSpec.getTtl() != null) {
+            update.using(QueryBuilder.ttl(bindMarker())); 
+        }
+        
+        final ColumnPlan columnPlan = catalog.getColumnPlan(data.getTablename());
+        for (String name : data.getValuesToMutate().keySet()) {
+            if (!columnPlan.isPrimaryKey(columnPlan.indexOf(name))) {
+                update.with(set(name, bindMarker())); 
+            }
+        }
+
+        for (String name : data.getSetValuesToAdd().keySet()) {
+            update.with(addAll(name, bindMarker())); 
+        }
+        for (String name : data.getSetValuesToRemove().keySet()) {
+            update.with(removeAll(name, bindMarker())); 
+        }
+
+        for (String name : data.getListValuesToPrepend().keySet()) {
+            update.with(prependAll(name, bindMarker())); 
+        } 
+        for (String name : data.getListValuesToAppend().keySet()) {
+            update.with(appendAll(name, bindMarker())); 
+        } 
+        for (String name : data.getListValuesToRemove().keySet()) {
+            update.with(discardAll(name, bindMarker())); 
+        } 
+
+        for (String name : data.getMapValuesToMutate().keySet()) {
+            update.with(putAll(name, bindMarker())); 
+        }
+        
+        for (String name : data.getKeys().keySet()) {
+            update.where(eq(name, bindMarker())); 
+        }
+        
+        return update;
+    }
+    
+    
     private static boolean isKeyOnlyStatement(WriteQueryData data) {
         return data.getListValuesToAppend().isEmpty() && 
                data.getListValuesToPrepend().isEmpty() &&
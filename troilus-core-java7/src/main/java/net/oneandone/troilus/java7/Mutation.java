@@ -55,6 +55,17 @@ public interface Mutation<Q, R> extends Query<R> {
      */
     Q withoutTracking();
     
+    /**
+     * @return a cloned query instance which records the timing breakdown of the executions (see {@link net.oneandone.troilus.Result#getTimings()}). 
+     *         In contrast to tracking, the server-side tracing is not activated
+     */
+    Q withStageTiming();
+
+    /**
+     * @return a cloned query instance which does not record the timing breakdown of the executions
+     */
+    Q withoutStageTiming();
+    
     /**
      * @param policy  the retry policy
      * @return a cloned query instance with the modified behavior
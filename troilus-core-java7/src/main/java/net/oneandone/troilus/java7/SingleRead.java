@@ -42,6 +42,17 @@ public interface SingleRead<T, R> extends Query<T> {
      * @return a cloned query instance with deactivated tracking 
      */
     SingleRead<T, R> withoutTracking();
+    
+    /**
+     * @return a cloned query instance which records the timing breakdown of the executions (see {@link net.oneandone.troilus.Result#getTimings()}). 
+     *         In contrast to tracking, the server-side tracing is not activated
+     */
+    SingleRead<T, R> withStageTiming();
+
+    /**
+     * @return a cloned query instance which does not record the timing breakdown of the executions
+     */
+    SingleRead<T, R> withoutStageTiming();
 
     
     /**
@@ -15,6 +15,7 @@
  */
 package net.oneandone.troilus.java7.interceptor;
 
+import net.oneandone.troilus.QueryTimings;
 import net.oneandone.troilus.java7.FetchingIterator;
 import net.oneandone.troilus.java7.ResultList;
 
@@ -44,6 +45,11 @@ public class ResultListAdapter<T> implements ResultList<T> {
     public boolean wasApplied() {
         return recordList.wasApplied();
     }
+    
+    @Override
+    public QueryTimings getTimings() {
+        return recordList.getTimings();
+    }
 
     @Override
     public FetchingIterator<T> iterator() {
@@ -0,0 +1,40 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.CompletableFuture;
+
+
+
+/**
+ * Writer which groups the written mutations by partition and executes them as unlogged batches. 
+ * A batch will be executed, if it reaches the max batch size or the max delay has been elapsed   
+ */
+public interface BatchingWriter {
+
+    /**
+     * @param mutation  the mutation to write
+     * @return the result future of the mutation. The result is shared by the mutations of the same batch. 
+     *         Conditional mutations are not batched and get their own result. The future fails with 
+     *         a RejectedExecutionException, if the max queue size is exceeded   
+     */
+    CompletableFuture<Result> writeAsync(Batchable<?> mutation);
+    
+    /**
+     * executes all pending mutations without waiting for the max delay 
+     */
+    void flush();
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.util.concurrent.CompletableFuture;
+
+
+
+/**
+ * Java8 adapter of a BatchingWriter
+ */
+class BatchingWriterAdapter implements BatchingWriter {
+    
+    private final BatchingWriterImpl writer;
+    
+    /**
+     * @param writer  the underlying writer
+     */
+    BatchingWriterAdapter(BatchingWriterImpl writer) {
+        this.writer = writer;
+    }
+    
+    @Override
+    public CompletableFuture<Result> writeAsync(Batchable<?> mutation) {
+        // the adapted mutation hides the execution spec of the mutation. It has to be passed explicitly 
+        final ExecutionSpec executionSpec = (mutation instanceof AbstractQuery) ? ((AbstractQuery<?>) mutation).getExecutionSpec() : null;
+        return CompletableFutures.toCompletableFuture(writer.writeAsync(Mutations.toJava7Mutation(mutation), executionSpec));
+    }
+    
+    @Override
+    public void flush() {
+        writer.flush();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+
+import com.datastax.driver.core.ConsistencyLevel;
+
+
+
+/**
+ * Bulk write which streams entities into a table with bounded concurrency. The entities
+ * source will be consumed once   
+ */
+public interface BulkWrite extends Query<BulkWriteReport> {
+
+    /**
+     * @param consistencyLevel  the consistency level to use
+     * @return a cloned query instance with the modified behavior
+     */
+    BulkWrite withConsistency(ConsistencyLevel consistencyLevel);
+    
+    /**
+     * @param ttl  the time-to-live to set
+     * @return a cloned query instance with the modified behavior
+     */
+    BulkWrite withTtl(Duration ttl);
+
+    /**
+     * @param microsSinceEpoch  the writetime in since epoch to set
+     * @return a cloned query instance with the modified behavior
+     */
+    BulkWrite withWritetime(long microsSinceEpoch);
+    
+    /**
+     * @param maxInFlight  the max number of concurrently executed writes
+     * @return a cloned query instance with the modified behavior
+     */
+    BulkWrite withMaxInFlight(int maxInFlight);
+    
+    /**
+     * @param maxRetries  the max number of retries of a timed out write 
+     * @return a cloned query instance with the modified behavior
+     */
+    BulkWrite withMaxRetries(int maxRetries);
+    
+    /**
+     * @param reportInterval  the number of written entities between two progress reports 
+     * @param listener        the progress listener. The listener may be called by different threads
+     * @return a cloned query instance with the modified behavior
+     */
+    BulkWrite withProgressListener(long reportInterval, Consumer<BulkWriteReport> listener);
+}
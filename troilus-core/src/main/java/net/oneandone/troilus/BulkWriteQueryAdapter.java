@@ -0,0 +1,90 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import net.oneandone.troilus.AbstractQuery;
+import net.oneandone.troilus.Context;
+
+
+
+/**
+ * Java8 adapter of a BulkWriteQuery
+ */
+class BulkWriteQueryAdapter extends AbstractQuery<BulkWriteQueryAdapter> implements BulkWrite {
+    
+    private final BulkWriteQuery query;
+    
+    
+    /**
+     * @param ctx    the context 
+     * @param query  the underyling query
+     */
+    BulkWriteQueryAdapter(Context ctx, BulkWriteQuery query) {
+        super(ctx);
+        this.query = query;
+    }
+    
+    
+    ////////////////////
+    // factory methods
+    
+    @Override
+    protected BulkWriteQueryAdapter newQuery(Context newContext) {
+        return new BulkWriteQueryAdapter(newContext, query.newQuery(newContext));
+    }
+    
+    private BulkWriteQueryAdapter newQuery(BulkWriteQuery query) {
+        return new BulkWriteQueryAdapter(getContext(), query.newQuery(getContext()));
+    }
+    
+    // 
+    ////////////////////
+    
+    
+    @Override
+    public BulkWriteQueryAdapter withTtl(Duration ttl) {
+        return withTtl((int) ttl.getSeconds());
+    }
+    
+    @Override
+    public BulkWriteQueryAdapter withMaxInFlight(int maxInFlight) {
+        return newQuery(query.withMaxInFlight(maxInFlight));
+    }
+    
+    @Override
+    public BulkWriteQueryAdapter withMaxRetries(int maxRetries) {
+        return newQuery(query.withMaxRetries(maxRetries));
+    }
+    
+    @Override
+    public BulkWriteQueryAdapter withProgressListener(long reportInterval, Consumer<BulkWriteReport> listener) {
+        return newQuery(query.withProgressListener(reportInterval, report -> listener.accept(report)));
+    }
+    
+    @Override
+    public BulkWriteReport execute() {
+        return CompletableFutures.getUninterruptibly(executeAsync());
+    }
+    
+    @Override
+    public CompletableFuture<BulkWriteReport> executeAsync() {
+        return CompletableFutures.toCompletableFuture(query.executeAsync());
+    }
+}
@@ -91,6 +91,16 @@ import com.google.common.util.concurrent.ListenableFuture;
          public net.oneandone.troilus.java7.CounterMutation withTracking() {
              return (net.oneandone.troilus.java7.CounterMutation) mutation.withTracking();
          }
+         
+         @Override
+         public net.oneandone.troilus.java7.CounterMutation withStageTiming() {
+             return (net.oneandone.troilus.java7.CounterMutation) mutation.withStageTiming();
+         }
+         
+         @Override
+         public net.oneandone.troilus.java7.CounterMutation withoutStageTiming() {
+             return (net.oneandone.troilus.java7.CounterMutation) mutation.withoutStageTiming();
+         }
 
          @Override
          public net.oneandone.troilus.java7.CounterMutation withWritetime(long microsSinceEpoch) {
@@ -162,6 +172,16 @@ import com.google.common.util.concurrent.ListenableFuture;
              public CounterMutation withTracking() {
                  return (CounterMutation) mutation.withTracking();
              }
+             
+             @Override
+             public CounterMutation withStageTiming() {
+                 return (CounterMutation) mutation.withStageTiming();
+             }
+             
+             @Override
+             public CounterMutation withoutStageTiming() {
+                 return (CounterMutation) mutation.withoutStageTiming();
+             }
 
              @Override
              public CounterMutation withWritetime(long microsSinceEpoch) {
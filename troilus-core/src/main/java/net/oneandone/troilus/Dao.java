@@ -16,11 +16,15 @@
 package net.oneandone.troilus;
 
 
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.Optional;
 
 import net.oneandone.troilus.ColumnName;
 import net.oneandone.troilus.interceptor.QueryInterceptor;
 
+import org.reactivestreams.Publisher;
+
 import com.datastax.driver.core.ConsistencyLevel;
 import com.datastax.driver.core.policies.RetryPolicy;
 import com.datastax.driver.core.querybuilder.Clause;
@@ -55,6 +59,17 @@ public interface Dao {
      * @return a cloned Dao instance with deactivated tracking 
      */
     Dao withoutTracking();
+    
+    /**
+     * @return a cloned Dao instance which records the timing breakdown of the executions (see {@link Result#getTimings()}). 
+     *         In contrast to tracking, the server-side tracing is not activated
+     */
+    Dao withStageTiming();
+
+    /**
+     * @return a cloned Dao instance which does not record the timing breakdown of the executions
+     */
+    Dao withoutStageTiming();
 
     /**
      * @param policy  the retry policy
@@ -68,6 +83,98 @@ public interface Dao {
      */
     Dao withInterceptor(QueryInterceptor queryInterceptor);
     
+    /**
+     * @param mode  the mode of the paranoia check which verifies that the keys of the returned rows match with the requested keys 
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withParanoiaCheck(ParanoiaCheckMode mode);
+    
+    /**
+     * @return the number of data swaps detected by the paranoia check of this Dao instance and its clones
+     */
+    long getDetectedDataSwaps();
+    
+    /**
+     * @param maxLimit      the max number of concurrently executed queries. The limit adapts to the latency up to the max limit
+     * @param maxQueueSize  the max number of queries waiting for execution. Further queries will be rejected 
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withConcurrencyLimit(int maxLimit, int maxQueueSize);
+    
+    /**
+     * @return the state of the concurrency limit
+     */
+    ConcurrencyLimit getConcurrencyLimit();
+    
+    /**
+     * @param metricsRegistry  the registry to report the latency and throughput metrics to
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withMetricsRegistry(MetricsRegistry metricsRegistry);
+    
+    /**
+     * @return the registry the metrics are reported to. By default, an {@link InMemoryMetricsRegistry} is used
+     */
+    MetricsRegistry getMetricsRegistry();
+    
+    /**
+     * @param slowQueryLog  the log to record the queries exceeding the threshold of the table to or null to disable slow query logging
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withSlowQueryLog(SlowQueryLog slowQueryLog);
+    
+    /**
+     * @return the slow query log or null, if slow query logging is not activated
+     */
+    SlowQueryLog getSlowQueryLog();
+    
+    /**
+     * activates the local cache for single row reads by key (readWithKey(...)). The records are cached 
+     * per key and column selection. Writes and deletes performed by this Dao (or the Daos derived from it)  
+     * invalidate the cached records of the modified rows. Modifications performed by other Daos or clients 
+     * are visible after the ttl at the latest
+     * 
+     * @param maxSize       the max number of cached rows
+     * @param ttl           the time to live of a cached record
+     * @param refreshAfter  the age after which a requested record will be reloaded in the background. A value larger than the ttl disables the refresh-ahead
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withReadCache(int maxSize, Duration ttl, Duration refreshAfter);
+    
+    /**
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withoutReadCache();
+    
+    /**
+     * activates the local negative cache for single row reads by key (readWithKey(...)). The keys of absent 
+     * rows are remembered, i.e. a read of a remembered key is answered as absent without a database round trip. 
+     * Writes and deletes performed by this Dao (or the Daos derived from it) invalidate the modified keys.
+     * Rows which are inserted by other Daos or clients are visible after the ttl at the latest
+     * 
+     * @param maxSize       the max number of remembered keys
+     * @param ttl           the time to live of a remembered key
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withNegativeCache(int maxSize, Duration ttl);
+    
+    /**
+     * activates the local negative cache like {@link #withNegativeCache(int, Duration)}, but remembers 
+     * the keys by a bloom filter which is allocated outside the java heap. Requires some bytes per key only, 
+     * but reports an existing row as absent with the given false positive probability 
+     * 
+     * @param expectedKeys  the expected number of remembered keys per ttl
+     * @param fpp           the false positive probability (e.g. 0.001)
+     * @param ttl           the time to live of a remembered key
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withNegativeBloomFilterCache(int expectedKeys, double fpp, Duration ttl);
+    
+    /**
+     * @return a cloned Dao instance with the modified behavior
+     */
+    Dao withoutNegativeCache();
+    
     
    
     
@@ -76,6 +183,15 @@ public interface Dao {
     // MUTATIONS
 
     
+    /**
+     * @param maxDelay      the max time a mutation waits for further mutations of the same partition  
+     * @param maxBatchSize  the max number of mutations per batch
+     * @param maxInFlight   the max number of concurrently executed batches
+     * @param maxQueueSize  the max number of batches waiting for execution. Further batches will be rejected 
+     * @return a new writer which groups the mutations by partition into unlogged batches 
+     */
+    BatchingWriter newBatchingWriter(Duration maxDelay, int maxBatchSize, int maxInFlight, int maxQueueSize);
+    
     /**
      * @param clauses the clauses 
      * @return a write query 
@@ -87,6 +203,18 @@ public interface Dao {
      * @return a write 
      */
     Insertion writeEntity(Object entity);
+    
+    /**
+     * @param entities the entities to write
+     * @return a bulk write which writes the entities with bounded concurrency 
+     */
+    BulkWrite bulkWrite(Iterator<?> entities);
+    
+    /**
+     * @param entities the publisher of the entities to write
+     * @return a bulk write which writes the entities with bounded concurrency 
+     */
+    BulkWrite bulkWrite(Publisher<?> entities);
 
     /**
      * @param composedKeyParts the composed key 
@@ -16,6 +16,8 @@
 package net.oneandone.troilus;
 
 
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -24,6 +26,7 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
+import net.oneandone.troilus.MetricsRegistry.Stage;
 import net.oneandone.troilus.interceptor.CascadeOnDeleteInterceptor;
 import net.oneandone.troilus.interceptor.CascadeOnWriteInterceptor;
 import net.oneandone.troilus.interceptor.DeleteQueryData;
@@ -36,6 +39,7 @@ import net.oneandone.troilus.interceptor.WriteQueryData;
 import net.oneandone.troilus.interceptor.WriteQueryRequestInterceptor;
 import net.oneandone.troilus.java7.Batchable;
 
+import org.reactivestreams.Publisher;
 import org.reactivestreams.Subscriber;
 import org.reactivestreams.Subscription;
 
@@ -106,6 +110,16 @@ public class DaoImpl implements Dao {
     public Dao withoutTracking() {
         return new DaoImpl(ctx.withoutTracking(), this.tablename);
     }
+    
+    @Override
+    public Dao withStageTiming() {
+        return new DaoImpl(ctx.withStageTiming(), this.tablename);
+    }
+    
+    @Override
+    public Dao withoutStageTiming() {
+        return new DaoImpl(ctx.withoutStageTiming(), this.tablename);
+    }
 
     @Override
     public Dao withRetryPolicy(RetryPolicy policy) {
@@ -143,14 +157,106 @@ public class DaoImpl implements Dao {
 
         return new DaoImpl(context, this.tablename);
     }
+
+    @Override
+    public Dao withParanoiaCheck(ParanoiaCheckMode mode) {
+        return new DaoImpl(ctx.withParanoiaCheck(mode), this.tablename);
+    }
+    
+    @Override
+    public long getDetectedDataSwaps() {
+        return ctx.getParanoiaCheck().getDetectedDataSwaps();
+    }
+    
+    @Override
+    public Dao withConcurrencyLimit(int maxLimit, int maxQueueSize) {
+        return new DaoImpl(ctx.withConcurrencyLimit(maxLimit, maxQueueSize), this.tablename);
+    }
+    
+    @Override
+    public ConcurrencyLimit getConcurrencyLimit() {
+        return ctx.getConcurrencyLimiter();
+    }
+    
+    /**
+     * unregisters the schema change listener of this dao and the daos derived from it. Call 
+     * this, if the dao is not used anymore. Otherwise the listener keeps the caches of the 
+     * dao referenced as long as the cluster is open  
+     */
+    public void close() {
+        ctx.close();
+    }
+    
+    @Override
+    public Dao withMetricsRegistry(MetricsRegistry metricsRegistry) {
+        return new DaoImpl(ctx.withMetricsRegistry(metricsRegistry), this.tablename);
+    }
+    
+    @Override
+    public MetricsRegistry getMetricsRegistry() {
+        return ctx.getMetricsRegistry();
+    }
+    
+    @Override
+    public Dao withSlowQueryLog(SlowQueryLog slowQueryLog) {
+        return new DaoImpl(ctx.withSlowQueryLog(slowQueryLog), this.tablename);
+    }
+    
+    @Override
+    public SlowQueryLog getSlowQueryLog() {
+        return ctx.getSlowQueryLog();
+    }
+    
+    @Override
+    public Dao withReadCache(int maxSize, Duration ttl, Duration refreshAfter) {
+        return new DaoImpl(ctx.withReadCache(maxSize, ttl.toMillis(), refreshAfter.toMillis()), this.tablename);
+    }
+    
+    @Override
+    public Dao withoutReadCache() {
+        return new DaoImpl(ctx.withoutReadCache(), this.tablename);
+    }
+    
+    @Override
+    public Dao withNegativeCache(int maxSize, Duration ttl) {
+        return new DaoImpl(ctx.withNegativeCache(maxSize, ttl.toMillis()), this.tablename);
+    }
+    
+    @Override
+    public Dao withNegativeBloomFilterCache(int expectedKeys, double fpp, Duration ttl) {
+        return new DaoImpl(ctx.withNegativeBloomFilterCache(expectedKeys, fpp, ttl.toMillis()), this.tablename);
+    }
+    
+    @Override
+    public Dao withoutNegativeCache() {
+        return new DaoImpl(ctx.withoutNegativeCache(), this.tablename);
+    }
+    
+    @Override
+    public BatchingWriter newBatchingWriter(Duration maxDelay, int maxBatchSize, int maxInFlight, int maxQueueSize) {
+        return new BatchingWriterAdapter(new BatchingWriterImpl(ctx, maxDelay.toMillis(), maxBatchSize, maxInFlight, maxQueueSize));
+    }
     
     
     @Override
     public Insertion writeEntity(Object entity) {
+        final long startNanos = System.nanoTime();
         final ImmutableMap<String, com.google.common.base.Optional<Object>> values = ctx.getBeanMapper().toValues(entity, ctx.getCatalog().getColumnNames(tablename));
+        ctx.getDefaultDbSession().recordStageTime(tablename, Stage.ENTITY_MAPPING, startNanos);
+        
         return new InsertQueryAdapter(ctx, new InsertQuery(ctx, new WriteQueryDataImpl(tablename).valuesToMutate(values)));
     }
     
+    @Override
+    public BulkWrite bulkWrite(Iterator<?> entities) {
+        return new BulkWriteQueryAdapter(ctx, new BulkWriteQuery(ctx, tablename, entities));
+    }
+    
+    @Override
+    public BulkWrite bulkWrite(Publisher<?> entities) {
+        return new BulkWriteQueryAdapter(ctx, new BulkWriteQuery(ctx, tablename, entities));
+    }
+    
     @Override
     public UpdateWithUnitAndCounter writeWhere(Clause... clauses) {
         return new UpdateQueryAdapter(ctx, new UpdateQuery(ctx, new WriteQueryDataImpl(tablename).whereConditions((ImmutableList.copyOf(clauses)))));
@@ -538,6 +644,11 @@ public class DaoImpl implements Dao {
             return recordList.wasApplied();
         }
         
+        @Override
+        public QueryTimings getTimings() {
+            return recordList.getTimings();
+        }
+        
         
         @Override
         public FetchingIterator<Record> iterator() {
@@ -595,6 +706,11 @@ public class DaoImpl implements Dao {
                 public ImmutableList<ExecutionInfo> getAllExecutionInfo() {
                     return recordList.getAllExecutionInfo();
                 }
+                
+                @Override
+                public QueryTimings getTimings() {
+                    return recordList.getTimings();
+                }
 
                 public net.oneandone.troilus.java7.FetchingIterator<net.oneandone.troilus.java7.Record> iterator() {
                     
@@ -39,6 +39,21 @@ public interface ListRead<T, R> extends SingleRead<T, R> {
      * @return a cloned query instance with deactivated tracking
      */
     ListRead<T, R> withFetchSize(int fetchSize);
+    
+    /**
+     * @param pages             the max number of pages which will be fetched ahead
+     * @param lowWatermarkRows  the number of locally available rows (beyond the pages fetched ahead) which triggers fetching the next page 
+     * @return a cloned query instance which fetches the next pages while the current page is consumed. 
+     *         Queries with a fetch size return a single page and will not prefetch
+     */
+    ListRead<T, R> withPrefetch(int pages, int lowWatermarkRows);
+    
+    /**
+     * @param parallelism  the max number of concurrently running sub queries
+     * @return a cloned query instance which scans the whole table by querying the token ranges of the ring concurrently. 
+     *         Multi-key reads will be split into concurrent queries per replica set of the keys 
+     */
+    ListRead<T, R> withParallelism(int parallelism);
 
     /**
      * @return a cloned query instance with distinct
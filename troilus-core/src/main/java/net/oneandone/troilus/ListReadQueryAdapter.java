@@ -121,6 +121,16 @@ class ListReadQueryAdapter extends AbstractQuery<ListReadQueryAdapter> implement
         return newQuery(query.withFetchSize(fetchSize));
     }
     
+    @Override
+    public ListReadQueryAdapter withPrefetch(int pages, int lowWatermarkRows) {
+        return newQuery(query.withPrefetch(pages, lowWatermarkRows));
+    }
+    
+    @Override
+    public ListReadQueryAdapter withParallelism(int parallelism) {
+        return newQuery(query.withParallelism(parallelism));
+    }
+    
     @Override
     public ListReadQueryAdapter withDistinct() {
         return newQuery(query.withDistinct());
@@ -193,6 +203,16 @@ class ListReadQueryAdapter extends AbstractQuery<ListReadQueryAdapter> implement
             return new ListEntityReadQueryAdapter<>(getContext(), query.withFetchSize(fetchSize));
         }
         
+        @Override
+        public ListRead<ResultList<E>, E> withPrefetch(int pages, int lowWatermarkRows) {
+            return new ListEntityReadQueryAdapter<>(getContext(), query.withPrefetch(pages, lowWatermarkRows));
+        }
+        
+        @Override
+        public ListRead<ResultList<E>, E> withParallelism(int parallelism) {
+            return new ListEntityReadQueryAdapter<>(getContext(), query.withParallelism(parallelism));
+        }
+        
         @Override
         public ListRead<ResultList<E>, E> withAllowFiltering() {
             return new ListEntityReadQueryAdapter<>(getContext(), query.withAllowFiltering());
@@ -265,6 +285,16 @@ class ListReadQueryAdapter extends AbstractQuery<ListReadQueryAdapter> implement
             return new CountReadQueryAdapter(getContext(), query.withFetchSize(fetchSize));
 
         }
+        
+        @Override
+        public ListRead<Count, Count> withPrefetch(int pages, int lowWatermarkRows) {
+            return new CountReadQueryAdapter(getContext(), query.withPrefetch(pages, lowWatermarkRows));
+        }
+        
+        @Override
+        public ListRead<Count, Count> withParallelism(int parallelism) {
+            return new CountReadQueryAdapter(getContext(), query.withParallelism(parallelism));
+        }
     
         @Override
         public ListRead<Count, Count> withDistinct() {
@@ -74,6 +74,16 @@ class Mutations {
             return mutation.withTracking();
         }
         
+        @Override
+        public Object withStageTiming() {
+            return mutation.withStageTiming();
+        }
+        
+        @Override
+        public Object withoutStageTiming() {
+            return mutation.withoutStageTiming();
+        }
+        
         @Override
         public BatchMutation combinedWith(net.oneandone.troilus.java7.Batchable other) {
             // TODO Auto-generated method stub
@@ -71,6 +71,11 @@ class RecordAdapter implements Record {
     public boolean wasApplied() {
         return record.wasApplied();
     }
+    
+    @Override
+    public QueryTimings getTimings() {
+        return record.getTimings();
+    }
 
     @Override
     public Long getWritetime(String name) {
@@ -250,6 +255,11 @@ class RecordAdapter implements Record {
                 return record.getAllExecutionInfo();
             }
             
+            @Override
+            public QueryTimings getTimings() {
+                return record.getTimings();
+            }
+            
             @Override
             public boolean isNull(String name) {
                 return record.isNull(name);
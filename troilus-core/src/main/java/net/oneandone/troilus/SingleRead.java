@@ -45,6 +45,17 @@ public interface SingleRead<T, R> extends Query<T> {
      */
     SingleRead<T, R> withoutTracking();
     
+    /**
+     * @return a cloned query instance which records the timing breakdown of the executions (see {@link Result#getTimings()}). 
+     *         In contrast to tracking, the server-side tracing is not activated
+     */
+    SingleRead<T, R> withStageTiming();
+
+    /**
+     * @return a cloned query instance which does not record the timing breakdown of the executions
+     */
+    SingleRead<T, R> withoutStageTiming();
+    
     /**
      * @param consistencyLevel   the  consistency level to use
      * @return a cloned query instance with the modified behavior
@@ -68,6 +68,11 @@ class SingleReadQueryAdapter extends AbstractQuery<SingleReadQueryAdapter> imple
         return newQuery(query.all());
     }
     
+    @Override
+    public SingleReadQueryAdapter withSpeculativeExecution(double delayPercentile) {
+        return newQuery(getContext().withSpeculativeExecution(delayPercentile));
+    }
+    
     @Override
     public <E> SingleEntityReadQueryAdapter<E> asEntity(Class<E> objectClass) {
         return new SingleEntityReadQueryAdapter<>(getContext(), query.asEntity(objectClass));
@@ -38,4 +38,15 @@ public interface SingleReadWithUnit<T, R> extends SingleReadWithColumns<T, R> {
      * @return  a cloned query instance with the modified behavior 
      */
     <E> SingleRead<Optional<E>, E> asEntity(Class<E> objectClass);
+
+    /**
+     * activates speculative execution. If no response has been received within the latency of the given percentile,
+     * a second request will be sent. The first response wins. The latency is taken from the (per table) latencies 
+     * of the key-based reads with speculative execution measured so far. Reads without speculative execution are 
+     * not tracked
+     *  
+     * @param delayPercentile  the latency percentile to wait before sending the second request (e.g. 99.0)
+     * @return a cloned query instance with the modified behavior
+     */
+    SingleReadWithUnit<T, R> withSpeculativeExecution(double delayPercentile);
 }
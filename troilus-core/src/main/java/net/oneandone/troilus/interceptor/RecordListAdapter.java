@@ -19,6 +19,7 @@ package net.oneandone.troilus.interceptor;
 
 
 import net.oneandone.troilus.FetchingIterator;
+import net.oneandone.troilus.QueryTimings;
 
 import net.oneandone.troilus.ResultList;
 
@@ -49,6 +50,11 @@ public class RecordListAdapter<T> implements ResultList<T> {
         return list.wasApplied();
     }
     
+    @Override
+    public QueryTimings getTimings() {
+        return list.getTimings();
+    }
+    
     @Override
     public FetchingIterator<T> iterator() {
         return list.iterator();
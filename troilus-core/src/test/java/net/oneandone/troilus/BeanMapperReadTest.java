@@ -15,6 +15,14 @@
  */
 package net.oneandone.troilus;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 import net.oneandone.troilus.BeanMapper;
 import net.oneandone.troilus.Field;
@@ -25,6 +33,7 @@ import org.junit.Test;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 
 
 
@@ -57,6 +66,64 @@ public class BeanMapperReadTest {
     }        
     
     
+    @Test
+    public void testStaleEntityMapperRegistration() throws Exception {
+        File classesDir = Files.createTempDirectory("beanmappertest").toFile();
+        File serviceFile = new File(classesDir, "META-INF/services/net.oneandone.troilus.EntityMapper");
+        serviceFile.getParentFile().mkdirs();
+        Files.write(serviceFile.toPath(), Arrays.asList("example.Removed_EntityMapper"), StandardCharsets.UTF_8);
+        
+        // the bean class is defined by a class loader which registers a no longer existing entity mapper
+        try (URLClassLoader classLoader = new ChildFirstClassLoader(classesDir, SimpleBean.class.getName())) {
+            Class<?> beanClass = classLoader.loadClass(SimpleBean.class.getName());
+            Assert.assertSame(classLoader, beanClass.getClassLoader());
+            
+            // the bean will be mapped by reflection 
+            ImmutableMap<String, Optional<Object>> result = new BeanMapper().toValues(beanClass.getConstructor(String.class).newInstance("test"), ImmutableSet.<String>of());
+            Assert.assertEquals("test", result.get("s").get());
+        }
+    }
+    
+    
+    private static final class ChildFirstClassLoader extends URLClassLoader {
+        private final String classname;
+        
+        ChildFirstClassLoader(File classesDir, String classname) throws IOException {
+            super(new URL[] { classesDir.toURI().toURL() }, BeanMapperReadTest.class.getClassLoader());
+            this.classname = classname;
+        }
+        
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(classname)) {
+                return super.loadClass(name, resolve);
+            }
+            
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz == null) {
+                    try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                        byte[] bytes = ByteStreams.toByteArray(is);
+                        clazz = defineClass(name, bytes, 0, bytes.length);
+                    } catch (IOException ioe) {
+                        throw new ClassNotFoundException(name, ioe);
+                    }
+                }
+                return clazz;
+            }
+        }
+    }
+    
+    
+    public static final class SimpleBean {
+        
+        @Field(name="s")
+        private final String s;
+        
+        public SimpleBean(String s) {
+            this.s = s;
+        }
+    }
     
     
     public static final class MyBean {
@@ -75,6 +75,21 @@ public class BeanMapperWriteTest {
     }        
     
     
+    @Test
+    public void testWriteBeanWithPrivateConstructor() throws Exception {
+        
+        for (BeanMapper mapper : ImmutableSet.of(new BeanMapper(PropertyAccessorFactory.METHOD_HANDLES), new BeanMapper(PropertyAccessorFactory.REFLECTION))) {
+            PrivateBean bean = mapper.fromValues(PrivateBean.class, SimplePropertySource.newSource(ImmutableMap.of("n", Optional.of(5L), "s", Optional.of("test"))), ImmutableSet.of());
+            Assert.assertEquals(5L, bean.n);
+            Assert.assertEquals("test", bean.s);
+            
+            ImmutableMap<String, Optional<Object>> values = mapper.toValues(bean, ImmutableSet.<String>of());
+            Assert.assertEquals(5L, values.get("n").get());
+            Assert.assertEquals("test", values.get("s").get());
+        }
+    }        
+    
+    
     
     
     public static final class MyBean {
@@ -126,6 +141,19 @@ public class BeanMapperWriteTest {
     
     
     
+    private static final class PrivateBean {
+        
+        @Field(name="n")
+        private long n;
+        
+        @Field(name="s")
+        private final String s = null;
+        
+        private PrivateBean() { }
+    }
+    
+    
+    
     private static final class SimplePropertySource implements PropertiesSource {
         
         private final ImmutableMap<String, Optional<Object>> properties; 
@@ -0,0 +1,98 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.io.IOException;
+
+import net.oneandone.troilus.api.UsersTable;
+import net.oneandone.troilus.example.AddressType;
+import net.oneandone.troilus.example.HotelsTable;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.DataType;
+
+
+
+public class ColumnPlanTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+        cassandra.tryExecuteCqlFile(AddressType.DDL);
+        cassandra.tryExecuteCqlFile(HotelsTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testColumnPlan() throws Exception {
+        MetadataCatalog catalog = new MetadataCatalog(cassandra.getSession());
+        Tablename tablename = Tablename.newTablename(cassandra.getSession(), UsersTable.TABLE);
+        
+        ColumnPlan columnPlan = catalog.getColumnPlan(tablename);
+        Assert.assertSame(columnPlan, catalog.getColumnPlan(tablename));
+        Assert.assertEquals(tablename, columnPlan.getTablename());
+        Assert.assertEquals(10, columnPlan.size());
+        
+        int userIdIdx = columnPlan.indexOf(UsersTable.USER_ID);
+        Assert.assertEquals(UsersTable.USER_ID, columnPlan.getName(userIdIdx));
+        Assert.assertEquals(DataType.text(), columnPlan.getType(userIdIdx));
+        Assert.assertTrue(columnPlan.isPrimaryKey(userIdIdx));
+        Assert.assertTrue(columnPlan.isTextType(userIdIdx));
+        Assert.assertFalse(columnPlan.isBlobType(userIdIdx));
+        
+        int pictureIdx = columnPlan.indexOf(UsersTable.PICTURE);
+        Assert.assertFalse(columnPlan.isPrimaryKey(pictureIdx));
+        Assert.assertFalse(columnPlan.isTextType(pictureIdx));
+        Assert.assertTrue(columnPlan.isBlobType(pictureIdx));
+        
+        int phoneNumbersIdx = columnPlan.indexOf(UsersTable.PHONE_NUMBERS);
+        Assert.assertEquals(DataType.set(DataType.text()), columnPlan.getType(phoneNumbersIdx));
+        Assert.assertTrue(columnPlan.isBuildInType(phoneNumbersIdx));
+        Assert.assertFalse(columnPlan.isTextType(phoneNumbersIdx));
+        
+        Assert.assertTrue(columnPlan.contains(UsersTable.NAME));
+        Assert.assertFalse(columnPlan.contains("unknown"));
+        try {
+            columnPlan.indexOf("unknown");
+            Assert.fail("RuntimeException expected");
+        } catch (RuntimeException expected) { }
+    }
+    
+    
+    @Test
+    public void testUDTColumn() throws Exception {
+        MetadataCatalog catalog = new MetadataCatalog(cassandra.getSession());
+        ColumnPlan columnPlan = catalog.getColumnPlan(Tablename.newTablename(cassandra.getSession(), HotelsTable.TABLE));
+        
+        Assert.assertFalse(columnPlan.isBuildInType(columnPlan.indexOf("address")));
+        Assert.assertTrue(columnPlan.isBuildInType(columnPlan.indexOf(HotelsTable.ROOM_IDS)));
+        Assert.assertTrue(columnPlan.isTextType(columnPlan.indexOf(HotelsTable.CLASSIFICATION)));
+    }
+}
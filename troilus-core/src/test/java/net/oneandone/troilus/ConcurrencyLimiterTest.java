@@ -0,0 +1,125 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.oneandone.troilus.MetricsRegistry.Operation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+
+public class ConcurrencyLimiterTest {
+    
+    private final Tablename tablename = Tablename.newTablename("limiter", "users");
+    private final List<SettableFuture<ResultSet>> executed = Lists.newArrayList();
+    
+    
+    @Test
+    public void testCancelledQueuedQuery() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, MoreExecutors.directExecutor());
+        DBSession dbSession = newDBSession();
+        
+        ListenableFuture<ResultSet> future1 = limiter.executeAsync(dbSession, tablename, Operation.READ, newStatement());
+        ListenableFuture<ResultSet> future2 = limiter.executeAsync(dbSession, tablename, Operation.READ, newStatement());
+        ListenableFuture<ResultSet> future3 = limiter.executeAsync(dbSession, tablename, Operation.READ, newStatement());
+        Assert.assertEquals(1, limiter.getNumInFlight());
+        Assert.assertEquals(2, limiter.getQueueDepth());
+        
+        // the cancelled query leaves the queue immediately  
+        future2.cancel(false);
+        Assert.assertEquals(1, limiter.getQueueDepth());
+        
+        // and will not be started  
+        executed.get(0).set(Mockito.mock(ResultSet.class));
+        Assert.assertNotNull(future1.get());
+        Assert.assertEquals(2, executed.size());
+        Assert.assertEquals(1, limiter.getNumInFlight());
+        Assert.assertEquals(0, limiter.getQueueDepth());
+        
+        executed.get(1).set(Mockito.mock(ResultSet.class));
+        Assert.assertNotNull(future3.get());
+        Assert.assertEquals(0, limiter.getNumInFlight());
+    }
+    
+    
+    @Test
+    public void testRejectingExecutor() throws Exception {
+        Executor rejectingExecutor = new Executor() {
+            
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException("executor is shut down");
+            }
+        };
+        
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, rejectingExecutor);
+        DBSession dbSession = newDBSession();
+        
+        ListenableFuture<ResultSet> future1 = limiter.executeAsync(dbSession, tablename, Operation.WRITE, newStatement());
+        ListenableFuture<ResultSet> future2 = limiter.executeAsync(dbSession, tablename, Operation.WRITE, newStatement());
+        ListenableFuture<ResultSet> future3 = limiter.executeAsync(dbSession, tablename, Operation.WRITE, newStatement());
+        Assert.assertEquals(2, limiter.getQueueDepth());
+        
+        executed.get(0).set(Mockito.mock(ResultSet.class));
+        Assert.assertNotNull(future1.get());
+        
+        // the queued queries can not be started. Their slots have to be released 
+        for (ListenableFuture<ResultSet> future : Lists.newArrayList(future2, future3)) {
+            try {
+                future.get();
+                Assert.fail("RejectedExecutionException expected");
+            } catch (ExecutionException expected) {
+                Assert.assertTrue(expected.getCause() instanceof RejectedExecutionException);
+            }
+        }
+        
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(0, limiter.getNumInFlight());
+        Assert.assertEquals(0, limiter.getQueueDepth());
+        Assert.assertEquals(2, limiter.getNumRejected());
+    }
+    
+    
+    private DBSession newDBSession() {
+        DBSession dbSession = Mockito.mock(DBSession.class);
+        Mockito.when(dbSession.executeAsync(Mockito.any(Statement.class))).thenAnswer(invocation -> {
+            SettableFuture<ResultSet> future = SettableFuture.create();
+            executed.add(future);
+            return future;
+        });
+        return dbSession;
+    }
+    
+    private static Statement newStatement() {
+        return new SimpleStatement("SELECT * FROM limiter.users");
+    }
+}
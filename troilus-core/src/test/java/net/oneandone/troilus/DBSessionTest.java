@@ -0,0 +1,145 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.querybuilder.BuiltStatement;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+
+public class DBSessionTest {
+    
+    private final Tablename tablename = Tablename.newTablename("prepare", "users");
+    private final List<SettableFuture<PreparedStatement>> prepared = Lists.newCopyOnWriteArrayList();
+    
+    
+    @Test
+    public void testConcurrentPreparesAreMerged() throws Exception {
+        final DBSession dbSession = newDBSession();
+        
+        final int numCallers = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(numCallers);
+        try {
+            List<Future<ListenableFuture<PreparedStatement>>> callers = Lists.newArrayList();
+            for (int i = 0; i < numCallers; i++) {
+                callers.add(executor.submit(new Callable<ListenableFuture<PreparedStatement>>() {
+                    @Override
+                    public ListenableFuture<PreparedStatement> call() throws Exception {
+                        start.await();
+                        return dbSession.prepareAsync(tablename, newStatement());
+                    }
+                }));
+            }
+            start.countDown();
+            
+            List<ListenableFuture<PreparedStatement>> futures = Lists.newArrayList();
+            for (Future<ListenableFuture<PreparedStatement>> caller : callers) {
+                futures.add(caller.get(10, TimeUnit.SECONDS));
+            }
+            
+            // only one round trip for all callers 
+            Assert.assertEquals(1, prepared.size());
+            for (ListenableFuture<PreparedStatement> future : futures) {
+                Assert.assertFalse(future.isDone());
+            }
+            
+            PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+            prepared.get(0).set(preparedStatement);
+            for (ListenableFuture<PreparedStatement> future : futures) {
+                Assert.assertSame(preparedStatement, future.get());
+            }
+            
+            // and the result is cached
+            Assert.assertSame(preparedStatement, dbSession.prepareAsync(tablename, newStatement()).get());
+            Assert.assertEquals(1, prepared.size());
+            
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    
+    @Test
+    public void testFailedPrepareIsNotCached() throws Exception {
+        DBSession dbSession = newDBSession();
+        
+        ListenableFuture<PreparedStatement> future1 = dbSession.prepareAsync(tablename, newStatement());
+        ListenableFuture<PreparedStatement> future2 = dbSession.prepareAsync(tablename, newStatement());
+        Assert.assertEquals(1, prepared.size());
+        
+        prepared.get(0).setException(new IllegalStateException("connection lost"));
+        for (ListenableFuture<PreparedStatement> future : Lists.newArrayList(future1, future2)) {
+            try {
+                future.get();
+                Assert.fail("IllegalStateException expected");
+            } catch (ExecutionException expected) {
+                Assert.assertTrue(expected.getCause() instanceof IllegalStateException);
+            }
+        }
+        
+        // the next caller retries to prepare the statement 
+        ListenableFuture<PreparedStatement> future3 = dbSession.prepareAsync(tablename, newStatement());
+        Assert.assertEquals(2, prepared.size());
+        
+        PreparedStatement preparedStatement = Mockito.mock(PreparedStatement.class);
+        prepared.get(1).set(preparedStatement);
+        Assert.assertSame(preparedStatement, future3.get());
+        
+        Assert.assertSame(preparedStatement, dbSession.prepareAsync(tablename, newStatement()).get());
+        Assert.assertEquals(2, prepared.size());
+    }
+    
+    
+    
+    private DBSession newDBSession() {
+        Session session = Mockito.mock(Session.class);
+        Mockito.when(session.getCluster()).thenReturn(Mockito.mock(Cluster.class));
+        Mockito.when(session.prepareAsync(Mockito.any(RegularStatement.class))).thenAnswer(invocation -> {
+            SettableFuture<PreparedStatement> future = SettableFuture.create();
+            prepared.add(future);
+            return future;
+        });
+        
+        return new DBSession(session, Mockito.mock(MetadataCatalog.class), new BeanMapper());
+    }
+    
+    private BuiltStatement newStatement() {
+        return QueryBuilder.select().from(tablename.getKeyspacename(), tablename.getTablename())
+                           .where(QueryBuilder.eq("id", QueryBuilder.bindMarker()));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import net.oneandone.troilus.EntityRowMapper.RowMappingPlan;
+import net.oneandone.troilus.api.UsersTable;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Row;
+
+
+
+public class EntityRowMapperTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+        cassandra.executeCql("INSERT INTO users (user_id, name, modified) VALUES ('rowmapper1', 'tom', 34)");
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testPlanReuse() throws Exception {
+        EntityRowMapper entityRowMapper = newEntityRowMapper();
+        
+        Row row = cassandra.getSession().execute("SELECT * FROM users WHERE user_id = 'rowmapper1'").one();
+        RowMappingPlan<User> plan = entityRowMapper.getPlan(User.class, row.getColumnDefinitions());
+        Assert.assertSame(plan, entityRowMapper.getPlan(User.class, row.getColumnDefinitions()));
+        
+        User user = plan.map(row);
+        Assert.assertEquals("rowmapper1", user.getUserId());
+        Assert.assertEquals("tom", user.getName());
+        Assert.assertEquals((Long) 34L, user.getModified());
+        
+        // the plans are bound to the column definitions instance  
+        Row otherRow = cassandra.getSession().execute("SELECT * FROM users WHERE user_id = 'rowmapper1'").one();
+        Assert.assertNotSame(plan, entityRowMapper.getPlan(User.class, otherRow.getColumnDefinitions()));
+        Assert.assertEquals("tom", entityRowMapper.map(User.class, otherRow).getName());
+    }
+    
+    
+    @Test
+    public void testUnselectedProperties() throws Exception {
+        EntityRowMapper entityRowMapper = newEntityRowMapper();
+        
+        // the properties which are not selected keep the values assigned by the entity constructor 
+        Row row = cassandra.getSession().execute("SELECT user_id, modified FROM users WHERE user_id = 'rowmapper1'").one();
+        DefaultedUser user = entityRowMapper.map(DefaultedUser.class, row);
+        Assert.assertEquals("rowmapper1", user.getUserId());
+        Assert.assertEquals((Long) 34L, user.getModified());
+        Assert.assertEquals("unknown", user.getName());
+        
+        // selected null values are written 
+        cassandra.executeCql("INSERT INTO users (user_id, modified) VALUES ('rowmapper2', 12)");
+        row = cassandra.getSession().execute("SELECT * FROM users WHERE user_id = 'rowmapper2'").one();
+        user = entityRowMapper.map(DefaultedUser.class, row);
+        Assert.assertNull(user.getName());
+    }
+    
+    
+    @Test
+    public void testPlanEviction() throws Exception {
+        EntityRowMapper entityRowMapper = newEntityRowMapper();
+        
+        ColumnDefinitions columnDefinitions = cassandra.getSession().execute("SELECT * FROM users WHERE user_id = 'rowmapper1'").getColumnDefinitions();
+        RowMappingPlan<User> plan = entityRowMapper.getPlan(User.class, columnDefinitions);
+        Assert.assertNotNull(plan);
+        
+        // the cached plan must not keep the column definitions alive
+        WeakReference<ColumnDefinitions> columnDefinitionsRef = new WeakReference<>(columnDefinitions);
+        columnDefinitions = null;
+        for (int i = 0; (i < 50) && (columnDefinitionsRef.get() != null); i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        
+        Assert.assertNull(columnDefinitionsRef.get());
+    }
+    
+    
+    private static EntityRowMapper newEntityRowMapper() {
+        BeanMapper beanMapper = new BeanMapper();
+        MetadataCatalog catalog = new MetadataCatalog(cassandra.getSession());
+        UDTValueMapper udtValueMapper = new UDTValueMapper(cassandra.getSession().getCluster().getConfiguration().getProtocolOptions().getProtocolVersion(), catalog, beanMapper);
+        return new EntityRowMapper(beanMapper, udtValueMapper);
+    }
+    
+    
+    
+    public static class User {
+        
+        @Field(name = "user_id")
+        private String userId;
+        
+        @Field(name = "name")
+        private String name;
+        
+        @Field(name = "modified")
+        private Long modified;
+        
+        
+        @SuppressWarnings("unused")
+        private User() {  }
+        
+        public String getUserId() {
+            return userId;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Long getModified() {
+            return modified;
+        }
+    }
+    
+    
+    public static class DefaultedUser {
+        
+        @Field(name = "user_id")
+        private String userId;
+        
+        @Field(name = "name")
+        private String name = "unknown";
+        
+        @Field(name = "modified")
+        private Long modified;
+        
+        
+        @SuppressWarnings("unused")
+        private DefaultedUser() {  }
+        
+        public String getUserId() {
+            return userId;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Long getModified() {
+            return modified;
+        }
+    }
+}
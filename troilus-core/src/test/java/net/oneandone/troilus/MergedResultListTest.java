@@ -0,0 +1,183 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.List;
+
+import net.oneandone.troilus.java7.FetchingIterator;
+import net.oneandone.troilus.java7.Record;
+import net.oneandone.troilus.java7.ResultList;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+
+
+public class MergedResultListTest {
+    
+    
+    @Test
+    public void testPagesOfRunningRangesAreFetchedAhead() throws Exception {
+        PagedResultList rangeA = new PagedResultList("A", 2, 2, 2);
+        PagedResultList rangeB = new PagedResultList("B", 2, 2);
+        PagedResultList rangeC = new PagedResultList("C", 1, 3);
+        
+        ResultList<Record> mergedResultList = MergedResultList.executeAsync(ImmutableList.of(rangeA, rangeB, rangeC), 
+                                                                            new Function<PagedResultList, ListenableFuture<ResultList<Record>>>() {
+                                                                                @Override
+                                                                                public ListenableFuture<ResultList<Record>> apply(PagedResultList range) {
+                                                                                    return Futures.<ResultList<Record>>immediateFuture(range);
+                                                                                }
+                                                                            }, 
+                                                                            2).get();
+        
+        // the second page of both running ranges is requested before any record has been consumed  
+        Assert.assertEquals(1, rangeA.getNumFetches());
+        Assert.assertEquals(1, rangeB.getNumFetches());
+        Assert.assertEquals(0, rangeC.getNumFetches());
+        
+        FetchingIterator<Record> it = mergedResultList.iterator();
+        Assert.assertEquals("A", it.next().getString("range"));
+        Assert.assertEquals(0, rangeB.getNumConsumed());
+        Assert.assertEquals(1, rangeB.getNumFetches());
+        
+        List<String> ranges = Lists.newArrayList("A");
+        while (it.hasNext()) {
+            ranges.add(it.next().getString("range"));
+        }
+        
+        // the order of the ranges is kept  
+        Assert.assertEquals(ImmutableList.of("A", "A", "A", "A", "A", "A", "B", "B", "B", "B", "C", "C", "C", "C"), ranges);
+        Assert.assertEquals(2, rangeA.getNumFetches());
+        Assert.assertEquals(1, rangeB.getNumFetches());
+        Assert.assertEquals(1, rangeC.getNumFetches());
+    }
+    
+    
+    
+    private static final class PagedResultList implements ResultList<Record> {
+        private final Record record;
+        private final List<Integer> pendingPages = Lists.newArrayList();
+        private final FetchingIterator<Record> iterator = new PagedIterator();
+        private int available;
+        private int numFetches = 0;
+        private int numConsumed = 0;
+        
+        PagedResultList(String name, int firstPageSize, Integer... nextPageSizes) {
+            this.record = Mockito.mock(Record.class);
+            Mockito.when(record.getString("range")).thenReturn(name);
+            this.available = firstPageSize;
+            pendingPages.addAll(ImmutableList.copyOf(nextPageSizes));
+        }
+        
+        synchronized int getNumFetches() {
+            return numFetches;
+        }
+        
+        synchronized int getNumConsumed() {
+            return numConsumed;
+        }
+        
+        @Override
+        public ExecutionInfo getExecutionInfo() {
+            return null;
+        }
+        
+        @Override
+        public ImmutableList<ExecutionInfo> getAllExecutionInfo() {
+            return ImmutableList.of();
+        }
+        
+        @Override
+        public boolean wasApplied() {
+            return true;
+        }
+        
+        @Override
+        public QueryTimings getTimings() {
+            return null;
+        }
+        
+        @Override
+        public FetchingIterator<Record> iterator() {
+            return iterator;
+        }
+        
+        
+        private final class PagedIterator implements FetchingIterator<Record> {
+            
+            @Override
+            public boolean hasNext() {
+                synchronized (PagedResultList.this) {
+                    if (available == 0) {
+                        fetchMoreResultsAsync();
+                    }
+                    return available > 0;
+                }
+            }
+            
+            @Override
+            public Record next() {
+                synchronized (PagedResultList.this) {
+                    hasNext();
+                    available--;
+                    numConsumed++;
+                    return record;
+                }
+            }
+            
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+            
+            @Override
+            public int getAvailableWithoutFetching() {
+                synchronized (PagedResultList.this) {
+                    return available;
+                }
+            }
+            
+            @Override
+            public boolean isFullyFetched() {
+                synchronized (PagedResultList.this) {
+                    return pendingPages.isEmpty();
+                }
+            }
+            
+            @Override
+            public ListenableFuture<ResultSet> fetchMoreResultsAsync() {
+                synchronized (PagedResultList.this) {
+                    if (!pendingPages.isEmpty()) {
+                        numFetches++;
+                        available += pendingPages.remove(0);
+                    }
+                    return Futures.immediateFuture(null);
+                }
+            }
+        }
+    }
+}
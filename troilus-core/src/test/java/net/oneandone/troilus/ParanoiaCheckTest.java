@@ -0,0 +1,149 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.nio.ByteBuffer;
+
+import net.oneandone.troilus.ParanoiaCheck.ResultCheck;
+import net.oneandone.troilus.java7.Record;
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.datastax.driver.core.ProtocolVersion;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+
+
+public class ParanoiaCheckTest {
+    
+    private final UDTValueMapper udtValueMapper = new UDTValueMapper(ProtocolVersion.NEWEST_SUPPORTED, null, null);
+    private final ReadQueryData queryData = new ReadQueryDataImpl(Tablename.newTablename("paranoia", "users"))
+                                                    .keys(ImmutableMap.of("user_id", ImmutableList.<Object>of("user1", "user2")));
+    
+    
+    @Test
+    public void testStrict() throws Exception {
+        ParanoiaCheck paranoiaCheck = new ParanoiaCheck();
+        Assert.assertEquals(ParanoiaCheckMode.STRICT, paranoiaCheck.getMode());
+        
+        ResultCheck resultCheck = paranoiaCheck.newResultCheck(queryData, udtValueMapper);
+        resultCheck.check(newRecord("user1"));
+        resultCheck.check(newRecord("user2"));
+        resultCheck.check(newRecord(null));   // key is not included
+        Assert.assertEquals(0, paranoiaCheck.getDetectedDataSwaps());
+        
+        // each row is checked
+        for (int i = 0; i < 3; i++) {
+            try {
+                resultCheck.check(newRecord("user3"));
+                Assert.fail("ProtocolErrorException expected");
+            } catch (ProtocolErrorException expected) { }
+        }
+        Assert.assertEquals(3, paranoiaCheck.getDetectedDataSwaps());
+    }
+    
+    
+    @Test
+    public void testSampled() throws Exception {
+        ParanoiaCheck paranoiaCheck = new ParanoiaCheck().withMode(ParanoiaCheckMode.SAMPLED);
+        Assert.assertEquals(ParanoiaCheckMode.SAMPLED, paranoiaCheck.getMode());
+        
+        // every 16th row is checked, starting with the first one 
+        ResultCheck resultCheck = paranoiaCheck.newResultCheck(queryData, udtValueMapper);
+        int numErrors = 0;
+        for (int i = 0; i < 40; i++) {
+            try {
+                resultCheck.check(newRecord("user3"));
+            } catch (ProtocolErrorException expected) {
+                Assert.assertEquals(0, i % 16);
+                numErrors++;
+            }
+        }
+        Assert.assertEquals(3, numErrors);
+        Assert.assertEquals(3, paranoiaCheck.getDetectedDataSwaps());
+        
+        // the sampling is done per result
+        try {
+            paranoiaCheck.newResultCheck(queryData, udtValueMapper).check(newRecord("user3"));
+            Assert.fail("ProtocolErrorException expected");
+        } catch (ProtocolErrorException expected) { }
+    }
+    
+    
+    @Test
+    public void testOff() throws Exception {
+        ParanoiaCheck paranoiaCheck = new ParanoiaCheck().withMode(ParanoiaCheckMode.OFF);
+        
+        ResultCheck resultCheck = paranoiaCheck.newResultCheck(queryData, udtValueMapper);
+        for (int i = 0; i < 20; i++) {
+            resultCheck.check(newRecord("user3"));
+        }
+        Assert.assertEquals(0, paranoiaCheck.getDetectedDataSwaps());
+    }
+    
+    
+    @Test
+    public void testQueryWithoutKeys() throws Exception {
+        ParanoiaCheck paranoiaCheck = new ParanoiaCheck();
+        
+        ResultCheck resultCheck = paranoiaCheck.newResultCheck(new ReadQueryDataImpl(Tablename.newTablename("paranoia", "users")), udtValueMapper);
+        resultCheck.check(newRecord("user3"));
+        Assert.assertEquals(0, paranoiaCheck.getDetectedDataSwaps());
+    }
+    
+    
+    @Test
+    public void testSharedCounter() throws Exception {
+        ParanoiaCheck strictCheck = new ParanoiaCheck();
+        ParanoiaCheck sampledCheck = strictCheck.withMode(ParanoiaCheckMode.SAMPLED);
+        ParanoiaCheck offCheck = sampledCheck.withMode(ParanoiaCheckMode.OFF);
+        
+        try {
+            strictCheck.newResultCheck(queryData, udtValueMapper).check(newRecord("user3"));
+            Assert.fail("ProtocolErrorException expected");
+        } catch (ProtocolErrorException expected) { }
+
+        try {
+            sampledCheck.newResultCheck(queryData, udtValueMapper).check(newRecord("user4"));
+            Assert.fail("ProtocolErrorException expected");
+        } catch (ProtocolErrorException expected) { }
+
+        offCheck.newResultCheck(queryData, udtValueMapper).check(newRecord("user5"));
+        
+        // the clones share the counter of the detected data swaps  
+        Assert.assertEquals(2, strictCheck.getDetectedDataSwaps());
+        Assert.assertEquals(2, sampledCheck.getDetectedDataSwaps());
+        Assert.assertEquals(2, offCheck.getDetectedDataSwaps());
+        
+        // a new check has its own counter 
+        Assert.assertEquals(0, new ParanoiaCheck().getDetectedDataSwaps());
+    }
+    
+    
+    private Record newRecord(String userId) {
+        ByteBuffer key = (userId == null) ? null : udtValueMapper.serialize(userId);
+        
+        Record record = Mockito.mock(Record.class);
+        Mockito.when(record.isNull("user_id")).thenReturn(userId == null);
+        Mockito.when(record.getBytesUnsafe("user_id")).thenReturn(key);
+        return record;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.Iterator;
+import java.util.List;
+
+import net.oneandone.troilus.java7.Record;
+import net.oneandone.troilus.java7.interceptor.ReadQueryData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+
+
+public class RecordListImplTest {
+    
+    private final ReadQueryDataImpl queryData = new ReadQueryDataImpl(Tablename.newTablename("prefetch", "users"));
+    
+    
+    @Test
+    public void testLowWatermark() throws Exception {
+        PagedResultSet pages = new PagedResultSet(10, 10, 10);
+        Iterator<Record> it = new RecordListImpl(newContext(1, 3), queryData, pages.getResultSet()).iterator();
+        
+        // the next page is fetched, if 3 rows are remaining
+        consume(it, 6);
+        Assert.assertEquals(ImmutableList.of(), pages.getPrefetchedAtRows());
+        consume(it, 1);
+        Assert.assertEquals(ImmutableList.of(7), pages.getPrefetchedAtRows());
+        
+        consume(it, 23);
+        Assert.assertFalse(it.hasNext());
+        Assert.assertEquals(ImmutableList.of(7, 17), pages.getPrefetchedAtRows());
+        Assert.assertEquals(0, pages.getNumBlockingFetches());
+    }
+    
+    
+    @Test
+    public void testPages() throws Exception {
+        PagedResultSet pages = new PagedResultSet(10, 10, 10);
+        Iterator<Record> it = new RecordListImpl(newContext(2, 0), queryData, pages.getResultSet()).iterator();
+        
+        // two pages are kept ahead. The second page is requested before the first row is consumed 
+        Assert.assertEquals(ImmutableList.of(0), pages.getPrefetchedAtRows());
+        consume(it, 9);
+        Assert.assertEquals(ImmutableList.of(0), pages.getPrefetchedAtRows());
+        consume(it, 1);
+        Assert.assertEquals(ImmutableList.of(0, 10), pages.getPrefetchedAtRows());
+        
+        consume(it, 20);
+        Assert.assertFalse(it.hasNext());
+        Assert.assertEquals(0, pages.getNumBlockingFetches());
+    }
+    
+    
+    @Test
+    public void testNoPrefetch() throws Exception {
+        PagedResultSet pages = new PagedResultSet(10, 10);
+        Iterator<Record> it = new RecordListImpl(newContext(null, null), queryData, pages.getResultSet()).iterator();
+        
+        consume(it, 20);
+        Assert.assertFalse(it.hasNext());
+        Assert.assertEquals(ImmutableList.of(), pages.getPrefetchedAtRows());
+        Assert.assertEquals(1, pages.getNumBlockingFetches());
+    }
+    
+    
+    @Test
+    public void testFetchSize() throws Exception {
+        // a query with fetch size returns the first page only 
+        PagedResultSet pages = new PagedResultSet(10, 10);
+        ReadQueryData fetchSizeQueryData = queryData.fetchSize(10);
+        Iterator<Record> it = new RecordListImpl(newContext(2, 0), fetchSizeQueryData, pages.getResultSet()).iterator();
+        
+        consume(it, 10);
+        Assert.assertFalse(it.hasNext());
+        Assert.assertEquals(ImmutableList.of(), pages.getPrefetchedAtRows());
+    }
+    
+    
+    private static void consume(Iterator<Record> it, int numRows) {
+        for (int i = 0; i < numRows; i++) {
+            Assert.assertNotNull(it.next());
+        }
+    }
+    
+    private static Context newContext(Integer prefetchPages, Integer prefetchLowWatermarkRows) {
+        Context ctx = Mockito.mock(Context.class);
+        Mockito.when(ctx.getParanoiaCheck()).thenReturn(new ParanoiaCheck());
+        Mockito.when(ctx.getPrefetchPages()).thenReturn(prefetchPages);
+        Mockito.when(ctx.getPrefetchLowWatermarkRows()).thenReturn(prefetchLowWatermarkRows);
+        return ctx;
+    }
+    
+    
+    
+    /**
+     * result set which pages as the driver does. Prefetched pages are available immediately   
+     */
+    private static final class PagedResultSet {
+        private final ResultSet rs = Mockito.mock(ResultSet.class);
+        private final Row row = Mockito.mock(Row.class);
+        private final List<Integer> pendingPages = Lists.newArrayList();
+        private final List<Integer> prefetchedAtRows = Lists.newArrayList();
+        private int available;
+        private int consumed = 0;
+        private int numBlockingFetches = 0;
+        
+        PagedResultSet(int firstPageSize, Integer... nextPageSizes) {
+            this.available = firstPageSize;
+            pendingPages.addAll(ImmutableList.copyOf(nextPageSizes));
+            
+            Mockito.when(rs.getAvailableWithoutFetching()).thenAnswer(new Answer<Integer>() {
+                @Override
+                public Integer answer(InvocationOnMock invocation) {
+                    return available;
+                }
+            });
+            
+            Mockito.when(rs.isFullyFetched()).thenAnswer(new Answer<Boolean>() {
+                @Override
+                public Boolean answer(InvocationOnMock invocation) {
+                    return pendingPages.isEmpty();
+                }
+            });
+            
+            Mockito.when(rs.fetchMoreResults()).thenAnswer(new Answer<ListenableFuture<ResultSet>>() {
+                @Override
+                public ListenableFuture<ResultSet> answer(InvocationOnMock invocation) {
+                    prefetchedAtRows.add(consumed);
+                    fetchNextPage();
+                    return Futures.immediateFuture(rs);
+                }
+            });
+            
+            Mockito.when(rs.iterator()).thenReturn(new Iterator<Row>() {
+                
+                @Override
+                public boolean hasNext() {
+                    if ((available == 0) && !pendingPages.isEmpty()) {
+                        numBlockingFetches++;
+                        fetchNextPage();
+                    }
+                    return available > 0;
+                }
+                
+                @Override
+                public Row next() {
+                    Assert.assertTrue(hasNext());
+                    available--;
+                    consumed++;
+                    return row;
+                }
+                
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            });
+        }
+        
+        private void fetchNextPage() {
+            if (!pendingPages.isEmpty()) {
+                available += pendingPages.remove(0);
+            }
+        }
+        
+        ResultSet getResultSet() {
+            return rs;
+        }
+        
+        List<Integer> getPrefetchedAtRows() {
+            return prefetchedAtRows;
+        }
+        
+        int getNumBlockingFetches() {
+            return numBlockingFetches;
+        }
+    }
+}
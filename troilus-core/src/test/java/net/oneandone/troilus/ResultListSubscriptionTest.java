@@ -0,0 +1,219 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.oneandone.troilus.java7.FetchingIterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.datastax.driver.core.ResultSet;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+
+
+public class ResultListSubscriptionTest {
+    
+    private static final int NUM_ELEMENTS = 2000;
+    private static final int PAGE_SIZE = 10;
+    private static final int NUM_REQUESTERS = 4;
+    
+    
+    @Test
+    public void testRequestsOverlappingPageCompletion() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        ScheduledExecutorService fetchExecutor = Executors.newScheduledThreadPool(2);
+        ExecutorService requesters = Executors.newFixedThreadPool(NUM_REQUESTERS);
+        
+        try {
+            for (int run = 0; run < 5; run++) {
+                final CheckingSubscriber subscriber = new CheckingSubscriber();
+                new ResultListSubscription<>(subscriber, new AsyncPagedIterator(fetchExecutor), executor);
+                Assert.assertTrue(subscriber.subscribed.await(10, TimeUnit.SECONDS));
+                
+                // the demand is signaled by several threads while pages are completed 
+                for (int i = 0; i < NUM_REQUESTERS; i++) {
+                    requesters.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int j = 0; j < (NUM_ELEMENTS / NUM_REQUESTERS); j++) {
+                                subscriber.subscription.get().request(1);
+                                if (ThreadLocalRandom.current().nextInt(20) == 0) {
+                                    Thread.yield();
+                                }
+                            }
+                        }
+                    });
+                }
+                
+                Assert.assertTrue(subscriber.completed.await(30, TimeUnit.SECONDS));
+                Thread.sleep(50);   // further signals would arrive now
+                
+                Assert.assertNull(subscriber.failure.get());
+                Assert.assertEquals(NUM_ELEMENTS, subscriber.received.get());
+                Assert.assertEquals(1, subscriber.numCompleted.get());
+            }
+            
+        } finally {
+            executor.shutdownNow();
+            fetchExecutor.shutdownNow();
+            requesters.shutdownNow();
+        }
+    }
+    
+    
+    
+    private static final class CheckingSubscriber implements Subscriber<Integer> {
+        private final CountDownLatch subscribed = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final AtomicReference<Subscription> subscription = new AtomicReference<>();
+        private final AtomicBoolean isSignaling = new AtomicBoolean();
+        private final AtomicInteger received = new AtomicInteger();
+        private final AtomicInteger numCompleted = new AtomicInteger();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription.set(subscription);
+            subscribed.countDown();
+        }
+        
+        @Override
+        public void onNext(Integer element) {
+            if (!isSignaling.compareAndSet(false, true)) {
+                failure.compareAndSet(null, new AssertionError("concurrent onNext"));
+            }
+            
+            // the elements are emitted in order
+            if (element.intValue() != received.getAndIncrement()) {
+                failure.compareAndSet(null, new AssertionError("got " + element + " expected " + (received.get() - 1)));
+            }
+            if (ThreadLocalRandom.current().nextInt(50) == 0) {
+                Thread.yield();
+            }
+            
+            isSignaling.set(false);
+        }
+        
+        @Override
+        public void onError(Throwable t) {
+            failure.compareAndSet(null, t);
+            completed.countDown();
+        }
+        
+        @Override
+        public void onComplete() {
+            if (isSignaling.get()) {
+                failure.compareAndSet(null, new AssertionError("onComplete concurrent to onNext"));
+            }
+            numCompleted.incrementAndGet();
+            completed.countDown();
+        }
+    }
+    
+    
+    
+    /**
+     * iterator which fetches the pages asynchronously as the driver does 
+     */
+    private static final class AsyncPagedIterator implements FetchingIterator<Integer> {
+        private final ScheduledExecutorService fetchExecutor;
+        private final List<Integer> available = Lists.newLinkedList();
+        private int numFetched = 0;
+        private SettableFuture<ResultSet> runningFetch = null;
+        
+        AsyncPagedIterator(ScheduledExecutorService fetchExecutor) {
+            this.fetchExecutor = fetchExecutor;
+            addPage();
+        }
+        
+        private void addPage() {
+            for (int i = 0; (i < PAGE_SIZE) && (numFetched < NUM_ELEMENTS); i++) {
+                available.add(numFetched++);
+            }
+        }
+        
+        @Override
+        public synchronized boolean hasNext() {
+            return !available.isEmpty() || !isFullyFetched();
+        }
+        
+        @Override
+        public synchronized Integer next() {
+            if (available.isEmpty()) {
+                // blocking fetch is not expected by the subscription  
+                throw new NoSuchElementException();
+            }
+            return available.remove(0);
+        }
+        
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public synchronized int getAvailableWithoutFetching() {
+            return available.size();
+        }
+        
+        @Override
+        public synchronized boolean isFullyFetched() {
+            return numFetched >= NUM_ELEMENTS;
+        }
+        
+        @Override
+        public synchronized ListenableFuture<ResultSet> fetchMoreResultsAsync() {
+            if (isFullyFetched()) {
+                return Futures.immediateFuture(null);
+            }
+            
+            if (runningFetch == null) {
+                final SettableFuture<ResultSet> fetch = SettableFuture.create();
+                runningFetch = fetch;
+                fetchExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (AsyncPagedIterator.this) {
+                            addPage();
+                            runningFetch = null;
+                        }
+                        fetch.set(null);
+                    }
+                }, ThreadLocalRandom.current().nextInt(200), TimeUnit.MICROSECONDS);
+            }
+            return runningFetch;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus;
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import net.oneandone.troilus.Context.SharedTaskExecutor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+
+public class SharedTaskExecutorTest {
+    
+    
+    @Test
+    public void testBoundedQueue() throws Exception {
+        SharedTaskExecutor executor = new SharedTaskExecutor(1, 1);
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        registry.setTaskExecutorMetrics(executor);
+        ExecutorMetrics metrics = registry.getTaskExecutorMetrics();
+        
+        try {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch released = new CountDownLatch(1);
+            Runnable blockingTask = new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        released.await();
+                    } catch (InterruptedException ignore) { }
+                }
+            };
+            
+            executor.execute(blockingTask);
+            Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+            executor.execute(blockingTask);
+            Assert.assertEquals(1, metrics.getActiveCount());
+            Assert.assertEquals(1, metrics.getQueueDepth());
+            
+            // the queue is full 
+            try {
+                executor.execute(blockingTask);
+                Assert.fail("RejectedExecutionException expected");
+            } catch (RejectedExecutionException expected) { }
+            Assert.assertEquals(1, metrics.getNumRejected());
+            
+            released.countDown();
+            long maxWaitNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while ((metrics.getCompletedTaskCount() < 2) && (System.nanoTime() < maxWaitNanos)) {
+                Thread.sleep(10);
+            }
+            Assert.assertEquals(2, metrics.getCompletedTaskCount());
+            Assert.assertEquals(0, metrics.getQueueDepth());
+            
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    
+    @Test
+    public void testNoTaskExecutorMetrics() throws Exception {
+        // e.g. the common fork join pool is used  
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        Assert.assertEquals(0, registry.getTaskExecutorMetrics().getQueueDepth());
+        Assert.assertEquals(0, registry.getTaskExecutorMetrics().getCompletedTaskCount());
+    }
+}
@@ -25,6 +25,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
 
 import net.oneandone.troilus.java7.FetchingIterator;
 
@@ -62,7 +63,7 @@ public class SimpleResultList implements net.oneandone.troilus.java7.ResultList<
     }
 
     public static ResultListPublisher<Record> newResultListPublisher(long elements, int fetchDelayMillis) {
-        return new ResultListPublisher<Record>(Futures.immediateFuture(new SimpleResultList(elements, fetchDelayMillis)));
+        return new ResultListPublisher<Record>(Futures.immediateFuture(new SimpleResultList(elements, fetchDelayMillis)), ForkJoinPool.commonPool());
     }
     
     @Override
@@ -80,6 +81,11 @@ public class SimpleResultList implements net.oneandone.troilus.java7.ResultList<
         return null;
     }
     
+    @Override
+    public QueryTimings getTimings() {
+        return null;
+    }
+    
     @Override
     public FetchingIterator<Record> iterator() {
         return new FetchingIteratorImpl(elements, fetchDelayMillis);
@@ -245,6 +251,11 @@ public class SimpleResultList implements net.oneandone.troilus.java7.ResultList<
                         return null;
                     }
                     
+                    @Override
+                    public QueryTimings getTimings() {
+                        return null;
+                    }
+                    
                     @Override
                     public boolean isNull(String name) {
                         return false;
@@ -19,13 +19,16 @@ package net.oneandone.troilus.api;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Date;
 import java.util.Optional;
 
+import net.oneandone.troilus.BatchMutation;
 import net.oneandone.troilus.Dao;
 import net.oneandone.troilus.DaoImpl;
 import net.oneandone.troilus.CassandraDB;
 import net.oneandone.troilus.Insertion;
 import net.oneandone.troilus.Record;
+import net.oneandone.troilus.Result;
 import net.oneandone.troilus.Write;
 import net.oneandone.troilus.example.Address;
 import net.oneandone.troilus.example.AddressType;
@@ -40,6 +43,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.datastax.driver.core.ConsistencyLevel;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 
@@ -69,6 +73,7 @@ public class BatchingWithMultiSessionTest {
         cassandra.tryExecuteCqlFile(AddressType.DDL);
         cassandra.tryExecuteCqlFile(HotelsTable.DDL);
         cassandra.tryExecuteCqlFile(UsersTable.DDL);
+        cassandra.tryExecuteCqlFile(PaginationInvites.DDL);
     }
     
     
@@ -124,4 +129,87 @@ public class BatchingWithMultiSessionTest {
                           .get();
         Assert.assertEquals("Corinthia Budapest", record.getString(HotelsTable.NAME));
     }
-}
\ No newline at end of file
+    
+    
+    
+    @Test
+    public void testLargeUnloggedBatch() throws Exception {
+        Dao usersDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE)
+                                   .withConsistency(ConsistencyLevel.LOCAL_QUORUM);
+        
+        // ~60kb will be split into several unlogged batches 
+        BatchMutation batch = usersDao.writeWithKey(UsersTable.USER_ID, "large0")
+                                      .value(UsersTable.PICTURE, ByteBuffer.wrap(new byte[200]))
+                                      .combinedWith(usersDao.writeWithKey(UsersTable.USER_ID, "large1")
+                                                            .value(UsersTable.PICTURE, ByteBuffer.wrap(new byte[200])));
+        for (int i = 2; i < 300; i++) {
+            batch = batch.combinedWith(usersDao.writeWithKey(UsersTable.USER_ID, "large" + i)
+                                               .value(UsersTable.PICTURE, ByteBuffer.wrap(new byte[200])));
+        }
+        
+        Result result = batch.withoutWriteAheadLog().execute();
+        Assert.assertTrue(result.wasApplied());
+        Assert.assertTrue(result.getAllExecutionInfo().size() > 1);
+        
+        for (int i = 0; i < 300; i++) {
+            Assert.assertTrue(usersDao.readWithKey(UsersTable.USER_ID, "large" + i)
+                                      .execute()
+                                      .isPresent());
+        }
+    }
+    
+    
+    @Test
+    public void testLargeUnloggedSinglePartitionBatch() throws Exception {
+        Dao invitesDao = new DaoImpl(cassandra.getSession(), PaginationInvites.TABLE_NAME);
+        
+        // ~8kb of the same partition will not be split 
+        long time = System.currentTimeMillis();
+        BatchMutation batch = invitesDao.writeWithKey("group_id", "largegroup1", PaginationInvites.INVITE_DATE, new Date(time), "email_address", Strings.repeat("a", 200))
+                                        .combinedWith(invitesDao.writeWithKey("group_id", "largegroup1", PaginationInvites.INVITE_DATE, new Date(time + 1), "email_address", Strings.repeat("b", 200)));
+        for (int i = 2; i < 40; i++) {
+            batch = batch.combinedWith(invitesDao.writeWithKey("group_id", "largegroup1", PaginationInvites.INVITE_DATE, new Date(time + i), "email_address", Strings.repeat("c", 200)));
+        }
+        
+        Result result = batch.withoutWriteAheadLog().execute();
+        Assert.assertTrue(result.wasApplied());
+        Assert.assertEquals(1, result.getAllExecutionInfo().size());
+        
+        int count = 0;
+        for (Record record : invitesDao.readSequenceWithKey("group_id", "largegroup1").execute()) {
+            Assert.assertEquals("largegroup1", record.getString("group_id"));
+            count++;
+        }
+        Assert.assertEquals(40, count);
+    }
+    
+    
+    @Test
+    public void testLargeUnloggedConditionalBatch() throws Exception {
+        Dao invitesDao = new DaoImpl(cassandra.getSession(), PaginationInvites.TABLE_NAME);
+        
+        // ~8kb including a conditional write will not be split
+        long time = System.currentTimeMillis();
+        BatchMutation batch = invitesDao.writeWithKey("group_id", "largegroup2", PaginationInvites.INVITE_DATE, new Date(time), "email_address", Strings.repeat("a", 200))
+                                        .ifNotExists()
+                                        .combinedWith(invitesDao.writeWithKey("group_id", "largegroup2", PaginationInvites.INVITE_DATE, new Date(time + 1), "email_address", Strings.repeat("b", 200)));
+        for (int i = 2; i < 40; i++) {
+            batch = batch.combinedWith(invitesDao.writeWithKey("group_id", "largegroup2", PaginationInvites.INVITE_DATE, new Date(time + i), "email_address", Strings.repeat("c", 200)));
+        }
+        
+        Result result = batch.withoutWriteAheadLog().execute();
+        Assert.assertTrue(result.wasApplied());
+        Assert.assertEquals(1, result.getAllExecutionInfo().size());
+
+        invitesDao.deleteWithKey("group_id", "largegroup2", PaginationInvites.INVITE_DATE, new Date(time + 1), "email_address", Strings.repeat("b", 200))
+                  .execute();
+        
+        // the conditional row exists already. None of the writes will be applied 
+        result = batch.withoutWriteAheadLog().execute();
+        Assert.assertFalse(result.wasApplied());
+        Assert.assertEquals(1, result.getAllExecutionInfo().size());
+        Assert.assertFalse(invitesDao.readWithKey("group_id", "largegroup2", PaginationInvites.INVITE_DATE, new Date(time + 1), "email_address", Strings.repeat("b", 200))
+                                     .execute()
+                                     .isPresent());
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.oneandone.troilus.BatchingWriter;
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.Record;
+import net.oneandone.troilus.Result;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+
+public class BatchingWriterTest {
+    
+    private static final int ROWS_PER_GROUP = 120;
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(PaginationInvites.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testBatchingWriter() throws Exception {
+        Dao invitesDao = new DaoImpl(cassandra.getSession(), PaginationInvites.TABLE_NAME);
+        
+        BatchingWriter writer = invitesDao.newBatchingWriter(Duration.ofMillis(20), 50, 4, 1000);
+        
+        List<CompletableFuture<?>> futures = Lists.newArrayList();
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < ROWS_PER_GROUP; i++) {
+            for (String groupId : ImmutableList.of("batching_1", "batching_2", "batching_3")) {
+                futures.add(writer.writeAsync(invitesDao.writeWithKey("group_id", groupId, 
+                                                                      PaginationInvites.INVITE_DATE, new Date(time + i), 
+                                                                      "email_address", "b" + i + "@foo.com")));
+            }
+        }
+        writer.flush();
+        
+        for (CompletableFuture<?> future : futures) {
+            future.get();
+        }
+        
+        for (String groupId : ImmutableList.of("batching_1", "batching_2", "batching_3")) {
+            int count = 0;
+            for (Record record : invitesDao.readSequenceWithKey("group_id", groupId).execute()) {
+                Assert.assertEquals(groupId, record.getString("group_id"));
+                count++;
+            }
+            Assert.assertEquals(ROWS_PER_GROUP, count);
+        }
+    }
+    
+    
+    @Test
+    public void testBatchingWriterTimeFlush() throws Exception {
+        Dao invitesDao = new DaoImpl(cassandra.getSession(), PaginationInvites.TABLE_NAME);
+        
+        BatchingWriter writer = invitesDao.newBatchingWriter(Duration.ofMillis(50), 1000, 2, 1000);
+        
+        // batch size will not be reached. The batch has to be executed by the max delay 
+        CompletableFuture<?> future = writer.writeAsync(invitesDao.writeWithKey("group_id", "batching_4", 
+                                                                                PaginationInvites.INVITE_DATE, new Date(), 
+                                                                                "email_address", "single@foo.com"));
+        future.get();
+        
+        Assert.assertTrue(invitesDao.readSequenceWithKey("group_id", "batching_4").execute().iterator().hasNext());
+    }
+    
+    
+    @Test
+    public void testConditionalWrites() throws Exception {
+        Dao invitesDao = new DaoImpl(cassandra.getSession(), PaginationInvites.TABLE_NAME);
+        
+        BatchingWriter writer = invitesDao.newBatchingWriter(Duration.ofMillis(50), 50, 2, 1000);
+        
+        // the conditional writes are not merged into a batch. Each of them gets its own result   
+        Date date = new Date();
+        List<CompletableFuture<Result>> futures = Lists.newArrayList();
+        for (int i = 0; i < 2; i++) {
+            futures.add(writer.writeAsync(invitesDao.writeWithKey("group_id", "batching_5", 
+                                                                  PaginationInvites.INVITE_DATE, date, 
+                                                                  "email_address", "conditional@foo.com")
+                                                    .ifNotExists()));
+        }
+        writer.flush();
+        
+        int numApplied = 0;
+        for (CompletableFuture<Result> future : futures) {
+            if (future.get().wasApplied()) {
+                numApplied++;
+            }
+        }
+        Assert.assertEquals(1, numApplied);
+    }
+    
+    
+    @Test
+    public void testRejectedBatches() throws Exception {
+        Dao invitesDao = new DaoImpl(cassandra.getSession(), PaginationInvites.TABLE_NAME);
+        
+        BatchingWriter writer = invitesDao.newBatchingWriter(Duration.ofMillis(0), 1, 1, 0);
+        
+        List<CompletableFuture<?>> futures = Lists.newArrayList();
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < 50; i++) {
+            futures.add(writer.writeAsync(invitesDao.writeWithKey("group_id", "batching_6_" + i, 
+                                                                  PaginationInvites.INVITE_DATE, new Date(time), 
+                                                                  "email_address", "rejected@foo.com")));
+        }
+        writer.flush();
+        
+        int numRejected = 0;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+                numRejected++;
+            }
+        }
+        
+        Assert.assertTrue(numRejected > 0);
+    }
+}
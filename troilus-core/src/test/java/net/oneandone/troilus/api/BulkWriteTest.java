@@ -0,0 +1,163 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.oneandone.troilus.BulkWriteReport;
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.example.Address;
+import net.oneandone.troilus.example.AddressType;
+import net.oneandone.troilus.example.ClassifierEnum;
+import net.oneandone.troilus.example.Hotel;
+import net.oneandone.troilus.example.HotelsTable;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+
+public class BulkWriteTest {
+    
+    private static final int NUM_HOTELS = 500;
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    @Before
+    public void before() throws IOException {
+        cassandra.tryExecuteCqlFile(AddressType.DDL);
+        cassandra.tryExecuteCqlFile(HotelsTable.DDL);
+    }
+    
+    
+    @Test
+    public void testBulkWrite() throws Exception {
+        Dao hotelsDao = new DaoImpl(cassandra.getSession(), HotelsTable.TABLE)
+                                  .withConsistency(ConsistencyLevel.LOCAL_QUORUM);
+        
+        AtomicInteger numProgressReports = new AtomicInteger();
+        BulkWriteReport report = hotelsDao.bulkWrite(newHotels(NUM_HOTELS))
+                                          .withMaxInFlight(16)
+                                          .withProgressListener(100, progress -> numProgressReports.incrementAndGet())
+                                          .execute();
+        
+        Assert.assertEquals(NUM_HOTELS, report.getNumWritten());
+        Assert.assertEquals(NUM_HOTELS / 100, numProgressReports.get());
+        Assert.assertEquals(NUM_HOTELS, hotelsDao.readSequence().count().execute().getCount());
+        
+        Hotel hotel = hotelsDao.readWithKey(HotelsTable.ID, "BULK42")
+                               .asEntity(Hotel.class)
+                               .execute()
+                               .get();
+        Assert.assertEquals("hotel 42", hotel.getName());
+        Assert.assertEquals(ClassifierEnum.FOUR, hotel.getClassification().get());
+        
+        
+        // bulk write of a publisher
+        report = hotelsDao.bulkWrite(hotelsDao.readSequence()
+                                              .asEntity(Hotel.class)
+                                              .executeRx())
+                          .withWritetime(System.currentTimeMillis() * 1000)
+                          .execute();
+        Assert.assertEquals(NUM_HOTELS, report.getNumWritten());
+    }
+    
+    
+    @Test
+    public void testEmptyBulkWrite() throws Exception {
+        Dao hotelsDao = new DaoImpl(cassandra.getSession(), HotelsTable.TABLE);
+        
+        BulkWriteReport report = hotelsDao.bulkWrite(newHotels(0))
+                                          .execute();
+        Assert.assertEquals(0, report.getNumWritten());
+    }
+    
+    
+    @Test
+    public void testBulkWriteInvalidatesCachedRows() throws Exception {
+        Dao negativeCachedDao = new DaoImpl(cassandra.getSession(), HotelsTable.TABLE)
+                                           .withNegativeCache(1000, Duration.ofMinutes(10));
+        Dao readCachedDao = new DaoImpl(cassandra.getSession(), HotelsTable.TABLE)
+                                       .withReadCache(1000, Duration.ofMinutes(10), Duration.ofMinutes(10));
+        
+        // the absent row will be remembered by the negative cache 
+        Assert.assertFalse(negativeCachedDao.readWithKey(HotelsTable.ID, "CACHED3").execute().isPresent());
+        
+        negativeCachedDao.bulkWrite(newHotels("CACHED", "hotel ", 10))
+                         .execute();
+        Assert.assertTrue(negativeCachedDao.readWithKey(HotelsTable.ID, "CACHED3").execute().isPresent());
+        
+        
+        // the row will be cached by the read cache 
+        Assert.assertEquals("hotel 3", readCachedDao.readWithKey(HotelsTable.ID, "CACHED3")
+                                                    .asEntity(Hotel.class)
+                                                    .execute()
+                                                    .get()
+                                                    .getName());
+        
+        readCachedDao.bulkWrite(newHotels("CACHED", "renamed hotel ", 10))
+                     .execute();
+        Assert.assertEquals("renamed hotel 3", readCachedDao.readWithKey(HotelsTable.ID, "CACHED3")
+                                                            .asEntity(Hotel.class)
+                                                            .execute()
+                                                            .get()
+                                                            .getName());
+    }
+    
+    
+    private static Iterator<Hotel> newHotels(int num) {
+        return newHotels("BULK", "hotel ", num);
+    }
+    
+    private static Iterator<Hotel> newHotels(String idPrefix, String namePrefix, int num) {
+        List<Hotel> hotels = Lists.newArrayList();
+        for (int i = 0; i < num; i++) {
+            hotels.add(new Hotel(idPrefix + i, 
+                                 namePrefix + i,
+                                 ImmutableSet.of("1", "2"),
+                                 Optional.of(ClassifierEnum.FOUR), 
+                                 Optional.empty(),
+                                 new Address("street " + i, "Budapest", "1073"),
+                                 Optional.empty()));
+        }
+        return hotels.iterator();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.google.common.collect.Lists;
+
+
+public class ConcurrencyLimitTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testQueuedQueries() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE)
+                                 .withConcurrencyLimit(4, 1000);
+        
+        List<CompletableFuture<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < 200; i++) {
+            futures.add(userDao.writeWithKey(UsersTable.USER_ID, "limited" + i)
+                               .value(UsersTable.NAME, "name" + i)
+                               .executeAsync());
+        }
+        
+        for (CompletableFuture<?> future : futures) {
+            future.get();
+        }
+        
+        Assert.assertEquals(0, userDao.getConcurrencyLimit().getNumInFlight());
+        Assert.assertEquals(0, userDao.getConcurrencyLimit().getQueueDepth());
+        Assert.assertEquals(0, userDao.getConcurrencyLimit().getNumRejected());
+        Assert.assertTrue(userDao.getConcurrencyLimit().getLimit() <= 4);
+        
+        // the limiter is shared by the clones
+        Assert.assertSame(userDao.getConcurrencyLimit(), userDao.withConsistency(ConsistencyLevel.ONE).getConcurrencyLimit());
+    }
+    
+    
+    @Test
+    public void testRejectedQueries() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE)
+                                 .withConcurrencyLimit(1, 0);
+        
+        List<CompletableFuture<?>> futures = Lists.newArrayList();
+        for (int i = 0; i < 50; i++) {
+            futures.add(userDao.readWithKey(UsersTable.USER_ID, "limited" + i)
+                               .executeAsync());
+        }
+        
+        int numRejected = 0;
+        for (CompletableFuture<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+                numRejected++;
+            }
+        }
+        
+        Assert.assertTrue(numRejected > 0);
+        Assert.assertEquals(numRejected, userDao.getConcurrencyLimit().getNumRejected());
+    }
+}
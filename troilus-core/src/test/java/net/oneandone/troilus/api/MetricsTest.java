@@ -0,0 +1,113 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.InMemoryMetricsRegistry;
+import net.oneandone.troilus.JmxMetricsRegistry;
+import net.oneandone.troilus.MetricsRegistry.Operation;
+import net.oneandone.troilus.OperationMetrics;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class MetricsTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testInMemoryMetrics() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withMetricsRegistry(registry);
+        Assert.assertSame(registry, userDao.getMetricsRegistry());
+        
+        // the metrics are kept by the qualified tablename
+        String tablename = cassandra.getKeyspacename() + "." + UsersTable.TABLE;
+        
+        for (int i = 0; i < 10; i++) {
+            userDao.writeWithKey(UsersTable.USER_ID, "metrics" + i)
+                   .value(UsersTable.NAME, "tom")
+                   .execute();
+            
+            userDao.readWithKey(UsersTable.USER_ID, "metrics" + i)
+                   .execute();
+        }
+        
+        userDao.deleteWithKey(UsersTable.USER_ID, "metrics0")
+               .execute();
+        
+        
+        OperationMetrics writeMetrics = registry.getOperationMetrics(tablename, Operation.WRITE);
+        Assert.assertEquals(10, writeMetrics.getCount());
+        Assert.assertEquals(0, writeMetrics.getNumErrors());
+        Assert.assertTrue(writeMetrics.getP99Micros() > 0);
+
+        OperationMetrics readMetrics = registry.getOperationMetrics(tablename, Operation.READ);
+        Assert.assertEquals(10, readMetrics.getCount());
+        Assert.assertTrue(readMetrics.getP50Micros() <= readMetrics.getP999Micros());
+        
+        Assert.assertEquals(1, registry.getOperationMetrics(tablename, Operation.DELETE).getCount());
+        Assert.assertEquals(0, registry.getOperationMetrics(tablename, Operation.COUNTER).getCount());
+        
+        Assert.assertTrue(registry.getStageMetrics(tablename).getServerMicros() > 0);
+        Assert.assertTrue(registry.getStageMetrics(tablename).getStatementBuildMicros() > 0);
+        Assert.assertEquals(0, registry.getOperationMetrics(UsersTable.TABLE, Operation.WRITE).getCount());
+    }
+    
+    
+    @Test
+    public void testJmxMetrics() throws Exception {
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        JmxMetricsRegistry registry = new JmxMetricsRegistry(mbeanServer, "metricsTest");
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withMetricsRegistry(registry);
+        
+        userDao.writeWithKey(UsersTable.USER_ID, "jmxMetrics")
+               .value(UsersTable.NAME, "tom")
+               .execute();
+        
+        ObjectName name = new ObjectName("net.oneandone.troilus:type=OperationMetrics,scope=\"metricsTest\",table=\"" + cassandra.getKeyspacename() + ".users\",operation=WRITE");
+        Assert.assertTrue(registry.getRegisteredNames().contains(name));
+        Assert.assertEquals(1L, mbeanServer.getAttribute(name, "Count"));
+        
+        registry.unregister();
+        Assert.assertFalse(mbeanServer.isRegistered(name));
+    }
+}
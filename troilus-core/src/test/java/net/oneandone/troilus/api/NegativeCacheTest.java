@@ -0,0 +1,120 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.Record;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class NegativeCacheTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+        cassandra.tryExecuteCqlFile(FeesTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testNegativeCache() throws Exception {
+        Dao cachedUserDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withNegativeCache(1000, Duration.ofMinutes(10));
+        assertNegativeCache(cachedUserDao, "absent1");
+    }
+    
+    @Test
+    public void testBloomFilterNegativeCache() throws Exception {
+        Dao cachedUserDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withNegativeBloomFilterCache(1000000, 0.001, Duration.ofMinutes(10));
+        assertNegativeCache(cachedUserDao, "absent2");
+    }
+    
+    @Test
+    public void testPartitionKeyOnlyRead() throws Exception {
+        assertPartitionKeyOnlyRead(new DaoImpl(cassandra.getSession(), FeesTable.TABLE).withNegativeCache(1000, Duration.ofMinutes(10)), "absentcust1");
+        assertPartitionKeyOnlyRead(new DaoImpl(cassandra.getSession(), FeesTable.TABLE).withNegativeBloomFilterCache(1000000, 0.001, Duration.ofMinutes(10)), "absentcust2");
+    }
+    
+    
+    private void assertPartitionKeyOnlyRead(Dao cachedFeesDao, String customerId) {
+        
+        // the partition key does not address a single row and will not be remembered 
+        Optional<Record> record = cachedFeesDao.readWithKey(FeesTable.CUSTOMER_ID, customerId)
+                                               .execute();
+        Assert.assertFalse(record.isPresent());
+        
+        cachedFeesDao.writeWithKey(FeesTable.CUSTOMER_ID, customerId, FeesTable.YEAR, 2015)
+                     .value(FeesTable.AMOUNT, 100)
+                     .execute();
+        
+        record = cachedFeesDao.readWithKey(FeesTable.CUSTOMER_ID, customerId)
+                              .execute();
+        Assert.assertEquals(100, record.get().getInt(FeesTable.AMOUNT));
+    }
+    
+    
+    private void assertNegativeCache(Dao cachedUserDao, String id) {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        Optional<Record> record = cachedUserDao.readWithKey(UsersTable.USER_ID, id)
+                                               .execute();
+        Assert.assertFalse(record.isPresent());
+        
+        
+        // rows inserted by other daos are not visible before the ttl has been expired
+        userDao.writeWithKey(UsersTable.USER_ID, id)
+               .value(UsersTable.NAME, "tom")
+               .execute();
+        
+        record = cachedUserDao.readWithKey(UsersTable.USER_ID, id)
+                              .execute();
+        Assert.assertFalse(record.isPresent());
+        
+        record = cachedUserDao.withoutNegativeCache()
+                              .readWithKey(UsersTable.USER_ID, id)
+                              .execute();
+        Assert.assertTrue(record.isPresent());
+        
+        
+        // own modifications invalidate the remembered key
+        cachedUserDao.writeWithKey(UsersTable.USER_ID, id)
+                     .value(UsersTable.NAME, "bob")
+                     .execute();
+        
+        record = cachedUserDao.readWithKey(UsersTable.USER_ID, id)
+                              .execute();
+        Assert.assertEquals("bob", record.get().getString(UsersTable.NAME));
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.Record;
+import net.oneandone.troilus.reactive.MySubscriber;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.querybuilder.QueryBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+
+public class ParallelScanTest {
+    
+    private static final int ROW_COUNT = 300;
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+        
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        for (int i = 0; i < ROW_COUNT; i++) {
+            userDao.writeWithKey(UsersTable.USER_ID, "scan" + i)
+                   .value(UsersTable.NAME, "name" + i)
+                   .execute();
+        }
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testParallelScan() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE)
+                                .withConsistency(ConsistencyLevel.ONE);
+        
+        Set<String> userIds = Sets.newHashSet();
+        for (Record record : userDao.readSequence()
+                                    .withParallelism(4)
+                                    .execute()) {
+            Assert.assertTrue(userIds.add(record.getString(UsersTable.USER_ID)));
+        }
+        Assert.assertEquals(ROW_COUNT, userIds.size());
+        
+        
+        MySubscriber subscriber = new MySubscriber();
+        userDao.readSequence()
+               .withParallelism(2)
+               .executeRx()
+               .subscribe(subscriber);
+        Assert.assertEquals(ROW_COUNT, subscriber.getAll().size());
+    }
+    
+    
+    @Test
+    public void testParallelKeyRead() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        List<Object> keys = Lists.newArrayList();
+        for (int i = 0; i < 50; i++) {
+            keys.add("scan" + (i * 3));
+        }
+        
+        Set<String> userIds = Sets.newHashSet();
+        for (Record record : userDao.readSequenceWithKeys(UsersTable.USER_ID, ImmutableList.copyOf(keys))
+                                    .withParallelism(4)
+                                    .execute()) {
+            Assert.assertTrue(keys.contains(record.getString(UsersTable.USER_ID)));
+            Assert.assertTrue(userIds.add(record.getString(UsersTable.USER_ID)));
+        }
+        Assert.assertEquals(keys.size(), userIds.size());
+    }
+    
+    
+    @Test
+    public void testParallelScanWithConditions() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        try {
+            userDao.readSequenceWhere(QueryBuilder.eq(UsersTable.NAME, "name1"))
+                   .withAllowFiltering()
+                   .withParallelism(4)
+                   .execute();
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException expected) { }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+import net.oneandone.troilus.BatchingWriter;
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.Record;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class ReadCacheTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+        cassandra.tryExecuteCqlFile(FeesTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testReadCache() throws Exception {
+        Dao cachedUserDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withReadCache(100, Duration.ofMinutes(10), Duration.ofMinutes(10));
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        cachedUserDao.writeWithKey(UsersTable.USER_ID, "cached1")
+                     .value(UsersTable.NAME, "tom")
+                     .execute();
+        
+        Optional<Record> record = cachedUserDao.readWithKey(UsersTable.USER_ID, "cached1")
+                                               .execute();
+        Assert.assertEquals("tom", record.get().getString(UsersTable.NAME));
+        
+        
+        // modifications by other daos are not visible before the ttl has been expired
+        userDao.writeWithKey(UsersTable.USER_ID, "cached1")
+               .value(UsersTable.NAME, "bob")
+               .execute();
+        
+        record = cachedUserDao.readWithKey(UsersTable.USER_ID, "cached1")
+                              .execute();
+        Assert.assertEquals("tom", record.get().getString(UsersTable.NAME));
+        
+        // the column selection is part of the cache key
+        record = cachedUserDao.readWithKey(UsersTable.USER_ID, "cached1")
+                              .column(UsersTable.NAME)
+                              .execute();
+        Assert.assertEquals("bob", record.get().getString(UsersTable.NAME));
+        
+        // the derived dao shares the cache 
+        record = cachedUserDao.withoutTracking()
+                              .readWithKey(UsersTable.USER_ID, "cached1")
+                              .execute();
+        Assert.assertEquals("tom", record.get().getString(UsersTable.NAME));
+        
+        
+        // own modifications invalidate the cache
+        cachedUserDao.writeWithKey(UsersTable.USER_ID, "cached1")
+                     .value(UsersTable.NAME, "alice")
+                     .execute();
+        
+        record = cachedUserDao.readWithKey(UsersTable.USER_ID, "cached1")
+                              .execute();
+        Assert.assertEquals("alice", record.get().getString(UsersTable.NAME));
+
+        cachedUserDao.deleteWithKey(UsersTable.USER_ID, "cached1")
+                     .execute();
+        
+        record = cachedUserDao.readWithKey(UsersTable.USER_ID, "cached1")
+                              .execute();
+        Assert.assertFalse(record.isPresent());
+    }
+    
+    
+    @Test
+    public void testBatchedWrites() throws Exception {
+        Dao cachedUserDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withReadCache(100, Duration.ofMinutes(10), Duration.ofMinutes(10));
+        
+        cachedUserDao.writeWithKey(UsersTable.USER_ID, "cachedbatch1")
+                     .value(UsersTable.NAME, "tom")
+                     .combinedWith(cachedUserDao.writeWithKey(UsersTable.USER_ID, "cachedbatch2")
+                                                .value(UsersTable.NAME, "tom"))
+                     .withWriteAheadLog()
+                     .execute();
+        Assert.assertEquals("tom", cachedUserDao.readWithKey(UsersTable.USER_ID, "cachedbatch1").execute().get().getString(UsersTable.NAME));
+        Assert.assertEquals("tom", cachedUserDao.readWithKey(UsersTable.USER_ID, "cachedbatch2").execute().get().getString(UsersTable.NAME));
+        
+        
+        // batched modifications invalidate the cache
+        cachedUserDao.writeWithKey(UsersTable.USER_ID, "cachedbatch1")
+                     .value(UsersTable.NAME, "alice")
+                     .combinedWith(cachedUserDao.deleteWithKey(UsersTable.USER_ID, "cachedbatch2"))
+                     .withoutWriteAheadLog()
+                     .execute();
+        Assert.assertEquals("alice", cachedUserDao.readWithKey(UsersTable.USER_ID, "cachedbatch1").execute().get().getString(UsersTable.NAME));
+        Assert.assertFalse(cachedUserDao.readWithKey(UsersTable.USER_ID, "cachedbatch2").execute().isPresent());
+        
+        
+        // as well as the modifications of the batching writer  
+        BatchingWriter writer = cachedUserDao.newBatchingWriter(Duration.ofMillis(50), 10, 2, 100);
+        writer.writeAsync(cachedUserDao.writeWithKey(UsersTable.USER_ID, "cachedbatch1")
+                                       .value(UsersTable.NAME, "bob"))
+              .get();
+        Assert.assertEquals("bob", cachedUserDao.readWithKey(UsersTable.USER_ID, "cachedbatch1").execute().get().getString(UsersTable.NAME));
+    }
+    
+    
+    @Test
+    public void testPartitionKeyOnlyRead() throws Exception {
+        Dao cachedFeesDao = new DaoImpl(cassandra.getSession(), FeesTable.TABLE).withReadCache(100, Duration.ofMinutes(10), Duration.ofMinutes(10));
+        
+        cachedFeesDao.writeWithKey(FeesTable.CUSTOMER_ID, "cachedcust1", FeesTable.YEAR, 2015)
+                     .value(FeesTable.AMOUNT, 100)
+                     .execute();
+        
+        // the partition key does not address a single row and will not be cached 
+        Optional<Record> record = cachedFeesDao.readWithKey(FeesTable.CUSTOMER_ID, "cachedcust1")
+                                               .execute();
+        Assert.assertEquals(100, record.get().getInt(FeesTable.AMOUNT));
+        
+        cachedFeesDao.writeWithKey(FeesTable.CUSTOMER_ID, "cachedcust1", FeesTable.YEAR, 2015)
+                     .value(FeesTable.AMOUNT, 200)
+                     .execute();
+        
+        record = cachedFeesDao.readWithKey(FeesTable.CUSTOMER_ID, "cachedcust1")
+                              .execute();
+        Assert.assertEquals(200, record.get().getInt(FeesTable.AMOUNT));
+        
+        
+        // reads of the full primary key are invalidated by writes of the row  
+        record = cachedFeesDao.readWithKey(FeesTable.CUSTOMER_ID, "cachedcust1", FeesTable.YEAR, 2015)
+                              .execute();
+        Assert.assertEquals(200, record.get().getInt(FeesTable.AMOUNT));
+        
+        cachedFeesDao.writeWithKey(FeesTable.CUSTOMER_ID, "cachedcust1", FeesTable.YEAR, 2015)
+                     .value(FeesTable.AMOUNT, 300)
+                     .execute();
+        
+        record = cachedFeesDao.readWithKey(FeesTable.CUSTOMER_ID, "cachedcust1", FeesTable.YEAR, 2015)
+                              .execute();
+        Assert.assertEquals(300, record.get().getInt(FeesTable.AMOUNT));
+    }
+    
+    
+    @Test
+    public void testExpiredAndDeactivatedReadCache() throws Exception {
+        Dao cachedUserDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withReadCache(100, Duration.ofMillis(200), Duration.ofMillis(100));
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        userDao.writeWithKey(UsersTable.USER_ID, "cached2")
+               .value(UsersTable.NAME, "tom")
+               .execute();
+        
+        Optional<Record> record = cachedUserDao.readWithKey(UsersTable.USER_ID, "cached2")
+                                               .execute();
+        Assert.assertEquals("tom", record.get().getString(UsersTable.NAME));
+
+        userDao.writeWithKey(UsersTable.USER_ID, "cached2")
+               .value(UsersTable.NAME, "bob")
+               .execute();
+
+        record = cachedUserDao.withoutReadCache()
+                              .readWithKey(UsersTable.USER_ID, "cached2")
+                              .execute();
+        Assert.assertEquals("bob", record.get().getString(UsersTable.NAME));
+        
+        Thread.sleep(300);
+        
+        record = cachedUserDao.readWithKey(UsersTable.USER_ID, "cached2")
+                              .execute();
+        Assert.assertEquals("bob", record.get().getString(UsersTable.NAME));
+    }
+}
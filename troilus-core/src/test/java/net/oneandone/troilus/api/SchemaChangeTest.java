@@ -0,0 +1,253 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.Field;
+import net.oneandone.troilus.InMemoryMetricsRegistry;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+
+public class SchemaChangeTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCql("DROP TABLE schemachange_items");
+        cassandra.tryExecuteCql("DROP TABLE schemachange_boxes");
+        cassandra.tryExecuteCql("DROP TABLE schemachange_parts");
+        cassandra.tryExecuteCql("DROP TYPE schemachange_dim");
+        cassandra.executeCql("CREATE TABLE schemachange_items (id text, name text, PRIMARY KEY (id))");
+        cassandra.executeCql("CREATE TYPE schemachange_dim (width int)");
+        cassandra.executeCql("CREATE TABLE schemachange_boxes (id text, dim frozen<schemachange_dim>, PRIMARY KEY (id))");
+        cassandra.executeCql("CREATE TABLE schemachange_parts (id text, name text, PRIMARY KEY (id))");
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testTableChanged() throws Exception {
+        Dao itemsDao = new DaoImpl(cassandra.getSession(), "schemachange_items");
+        
+        // quantity is not a column yet and will be ignored 
+        itemsDao.writeEntity(new Item("item1", "screw", 4))
+                .execute();
+        Item item = itemsDao.readWithKey("id", "item1")
+                            .asEntity(Item.class)
+                            .execute()
+                            .get();
+        Assert.assertEquals("screw", item.getName());
+        Assert.assertNull(item.getQuantity());
+        
+        
+        cassandra.executeCql("ALTER TABLE schemachange_items ADD quantity int");
+        
+        // the schema change event is processed asynchronously 
+        for (int i = 0; i < 50; i++) {
+            itemsDao.writeEntity(new Item("item1", "screw", 4))
+                    .execute();
+            item = itemsDao.readWithKey("id", "item1")
+                           .asEntity(Item.class)
+                           .execute()
+                           .get();
+            if (item.getQuantity() != null) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+        
+        Assert.assertEquals((Integer) 4, item.getQuantity());
+    }
+    
+    
+    @Test
+    public void testDerivedDaoTableChanged() throws Exception {
+        // the dao derived from the new one shares its caches. The new one is not referenced anymore
+        DaoImpl partsDao = (DaoImpl) new DaoImpl(cassandra.getSession(), "schemachange_parts").withMetricsRegistry(new InMemoryMetricsRegistry());
+        
+        partsDao.writeEntity(new Item("part1", "nut", 9))
+                .execute();
+        Item item = partsDao.readWithKey("id", "part1")
+                            .asEntity(Item.class)
+                            .execute()
+                            .get();
+        Assert.assertNull(item.getQuantity());
+        
+        System.gc();
+        cassandra.executeCql("ALTER TABLE schemachange_parts ADD quantity int");
+        
+        // the schema change event is processed asynchronously 
+        for (int i = 0; i < 50; i++) {
+            partsDao.writeEntity(new Item("part1", "nut", 9))
+                    .execute();
+            item = partsDao.readWithKey("id", "part1")
+                           .asEntity(Item.class)
+                           .execute()
+                           .get();
+            if (item.getQuantity() != null) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+        
+        Assert.assertEquals((Integer) 9, item.getQuantity());
+        
+        partsDao.close();
+        partsDao.close();  // has no effect
+    }
+    
+    
+    @Test
+    public void testUserTypeChanged() throws Exception {
+        Dao boxesDao = new DaoImpl(cassandra.getSession(), "schemachange_boxes");
+        
+        // height is not a field of the usertype yet and will be ignored 
+        boxesDao.writeEntity(new Box("box1", new Dim(3, 7)))
+                .execute();
+        Box box = boxesDao.readWithKey("id", "box1")
+                          .asEntity(Box.class)
+                          .execute()
+                          .get();
+        Assert.assertEquals((Integer) 3, box.getDim().getWidth());
+        Assert.assertNull(box.getDim().getHeight());
+        
+        
+        cassandra.executeCql("ALTER TYPE schemachange_dim ADD height int");
+        
+        // the schema change event is processed asynchronously 
+        for (int i = 0; i < 50; i++) {
+            boxesDao.writeEntity(new Box("box1", new Dim(3, 7)))
+                    .execute();
+            box = boxesDao.readWithKey("id", "box1")
+                          .asEntity(Box.class)
+                          .execute()
+                          .get();
+            if (box.getDim().getHeight() != null) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+        
+        Assert.assertEquals((Integer) 7, box.getDim().getHeight());
+    }
+    
+    
+    
+    public static class Item {
+        
+        @Field(name = "id")
+        private String id;
+        
+        @Field(name = "name")
+        private String name;
+
+        @Field(name = "quantity")
+        private Integer quantity;
+        
+        
+        @SuppressWarnings("unused")
+        private Item() {  }
+        
+        public Item(String id, String name, Integer quantity) {
+            this.id = id;
+            this.name = name;
+            this.quantity = quantity;
+        }
+        
+        public String getId() {
+            return id;
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public Integer getQuantity() {
+            return quantity;
+        }
+    }
+    
+    
+    public static class Box {
+        
+        @Field(name = "id")
+        private String id;
+        
+        @Field(name = "dim")
+        private Dim dim;
+        
+        
+        @SuppressWarnings("unused")
+        private Box() {  }
+        
+        public Box(String id, Dim dim) {
+            this.id = id;
+            this.dim = dim;
+        }
+        
+        public String getId() {
+            return id;
+        }
+        
+        public Dim getDim() {
+            return dim;
+        }
+    }
+    
+    
+    public static class Dim {
+        
+        @Field(name = "width")
+        private Integer width;
+        
+        @Field(name = "height")
+        private Integer height;
+        
+        
+        @SuppressWarnings("unused")
+        private Dim() {  }
+        
+        public Dim(Integer width, Integer height) {
+            this.width = width;
+            this.height = height;
+        }
+        
+        public Integer getWidth() {
+            return width;
+        }
+        
+        public Integer getHeight() {
+            return height;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.MetricsRegistry.Operation;
+import net.oneandone.troilus.SlowQuery;
+import net.oneandone.troilus.SlowQueryLog;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class SlowQueryLogTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testSlowQueryLog() throws Exception {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(0, 2);
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withSlowQueryLog(slowQueryLog);
+        Assert.assertSame(slowQueryLog, userDao.getSlowQueryLog());
+        
+        userDao.writeWithKey(UsersTable.USER_ID, "slow1")
+               .value(UsersTable.NAME, "tom")
+               .withStageTiming()
+               .execute();
+        
+        SlowQuery slowQuery = slowQueryLog.getSlowQueries().get(0);
+        Assert.assertEquals(cassandra.getKeyspacename() + "." + UsersTable.TABLE, slowQuery.getTablename());
+        Assert.assertEquals(Operation.WRITE, slowQuery.getOperation());
+        Assert.assertTrue(slowQuery.getCql().contains("?"));
+        Assert.assertFalse(slowQuery.getCql().contains("tom"));
+        Assert.assertTrue(slowQuery.getBoundValueSizes().contains(3));   // tom
+        Assert.assertNotNull(slowQuery.getCoordinator());
+        Assert.assertNull(slowQuery.getError());
+        Assert.assertNotNull(slowQuery.getTimings());
+        
+        
+        userDao.readWithKey(UsersTable.USER_ID, "slow1")
+               .execute();
+        
+        slowQuery = slowQueryLog.getSlowQueries().get(0);
+        Assert.assertEquals(Operation.READ, slowQuery.getOperation());
+        Assert.assertEquals(1, slowQuery.getNumPages());
+        Assert.assertEquals(1, slowQuery.getNumRows());
+        Assert.assertNull(slowQuery.getTimings());
+        
+        
+        // the ring buffer keeps the newest queries only 
+        userDao.readWithKey(UsersTable.USER_ID, "slow1")
+               .execute();
+        Assert.assertEquals(3, slowQueryLog.getNumSlowQueries());
+        Assert.assertEquals(2, slowQueryLog.getSlowQueries().size());
+        Assert.assertEquals(Operation.READ, slowQueryLog.getSlowQueries().get(1).getOperation());
+        
+        slowQueryLog.clear();
+        Assert.assertTrue(slowQueryLog.getSlowQueries().isEmpty());
+        
+        
+        // table specific threshold. The threshold is assigned by the qualified tablename  
+        slowQueryLog.withThresholdMillis(UsersTable.TABLE, 60000);
+        userDao.readWithKey(UsersTable.USER_ID, "slow1")
+               .execute();
+        Assert.assertEquals(1, slowQueryLog.getSlowQueries().size());
+        slowQueryLog.clear();
+
+        slowQueryLog.withThresholdMillis(cassandra.getKeyspacename() + "." + UsersTable.TABLE, 60000);
+        userDao.readWithKey(UsersTable.USER_ID, "slow1")
+               .execute();
+        Assert.assertTrue(slowQueryLog.getSlowQueries().isEmpty());
+    }
+    
+    
+    @Test
+    public void testJmxDump() throws Exception {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(0);
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withSlowQueryLog(slowQueryLog);
+        
+        MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("net.oneandone.troilus:type=SlowQueryLog,scope=test");
+        mbeanServer.registerMBean(slowQueryLog, name);
+        
+        try {
+            userDao.readWithKey(UsersTable.USER_ID, "slow2")
+                   .execute();
+
+            String[] dump = (String[]) mbeanServer.invoke(name, "dump", new Object[0], new String[0]);
+            Assert.assertEquals(1, dump.length);
+            Assert.assertTrue(dump[0].contains(UsersTable.TABLE));
+            
+        } finally {
+            mbeanServer.unregisterMBean(name);
+        }
+    }
+}
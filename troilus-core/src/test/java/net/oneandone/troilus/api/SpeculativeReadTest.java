@@ -0,0 +1,101 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.Record;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+
+public class SpeculativeReadTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testSpeculativeRead() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        userDao.writeWithKey(UsersTable.USER_ID, "speculative1")
+               .value(UsersTable.NAME, "tom")
+               .execute();
+        
+        
+        // warm up the latency histogram of the table. Only reads with speculative execution are tracked
+        for (int i = 0; i < 150; i++) {
+            userDao.readWithKey(UsersTable.USER_ID, "speculative1")
+                   .withSpeculativeExecution(99)
+                   .execute();
+        }
+        
+        
+        // a very low percentile forces speculative executions 
+        List<CompletableFuture<Optional<Record>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            futures.add(userDao.readWithKey(UsersTable.USER_ID, "speculative1")
+                               .withSpeculativeExecution(1)
+                               .executeAsync());
+        }
+        
+        for (CompletableFuture<Optional<Record>> future : futures) {
+            Assert.assertEquals("tom", future.get().get().getString(UsersTable.NAME));
+        }
+        
+        
+        Optional<Record> record = userDao.readWithKey(UsersTable.USER_ID, "speculativeUnknown")
+                                         .withSpeculativeExecution(99)
+                                         .execute();
+        Assert.assertFalse(record.isPresent());
+    }
+    
+    
+    @Test
+    public void testInvalidPercentile() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        try {
+            userDao.readWithKey(UsersTable.USER_ID, "speculative1")
+                   .withSpeculativeExecution(100);
+            Assert.fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException expected) { }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.api;
+
+
+import java.io.IOException;
+import java.util.Optional;
+
+import net.oneandone.troilus.CassandraDB;
+import net.oneandone.troilus.Dao;
+import net.oneandone.troilus.DaoImpl;
+import net.oneandone.troilus.QueryTimings;
+import net.oneandone.troilus.Record;
+import net.oneandone.troilus.Result;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+
+public class StageTimingTest {
+    
+    private static CassandraDB cassandra;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        cassandra = CassandraDB.newInstance();
+        cassandra.tryExecuteCqlFile(UsersTable.DDL);
+    }
+        
+    @AfterClass
+    public static void afterClass() throws IOException {
+        cassandra.close();
+    }
+
+    
+    @Test
+    public void testStageTiming() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE);
+        
+        Result result = userDao.writeWithKey(UsersTable.USER_ID, "timing1")
+                               .value(UsersTable.NAME, "tom")
+                               .withStageTiming()
+                               .execute();
+        
+        QueryTimings timings = result.getTimings();
+        Assert.assertNotNull(timings);
+        Assert.assertTrue(timings.getExecuteMicros() > 0);
+        Assert.assertTrue(timings.getElapsedMicros() >= timings.getExecuteMicros());
+        Assert.assertEquals(1, timings.getNumPrepareCacheHits() + timings.getNumPrepareCacheMisses());
+        
+        
+        Optional<Record> record = userDao.readWithKey(UsersTable.USER_ID, "timing1")
+                                         .withStageTiming()
+                                         .execute();
+        timings = record.get().getTimings();
+        Assert.assertNotNull(timings);
+        Assert.assertTrue(timings.getExecuteMicros() > 0);
+        Assert.assertEquals(0, timings.getQueueWaitMicros());
+        
+        
+        // stage timing is deactivated by default
+        record = userDao.readWithKey(UsersTable.USER_ID, "timing1")
+                        .execute();
+        Assert.assertNull(record.get().getTimings());
+    }
+    
+    
+    @Test
+    public void testDaoStageTiming() throws Exception {
+        Dao userDao = new DaoImpl(cassandra.getSession(), UsersTable.TABLE).withStageTiming();
+        
+        userDao.writeWithKey(UsersTable.USER_ID, "timing2")
+               .value(UsersTable.NAME, "tom")
+               .execute();
+        
+        Result result = userDao.deleteWithKey(UsersTable.USER_ID, "timing2")
+                               .execute();
+        Assert.assertTrue(result.getTimings().getExecuteMicros() > 0);
+        
+        result = userDao.deleteWithKey(UsersTable.USER_ID, "timing2")
+                        .withoutStageTiming()
+                        .execute();
+        Assert.assertNull(result.getTimings());
+    }
+}
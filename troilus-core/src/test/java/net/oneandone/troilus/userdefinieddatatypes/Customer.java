@@ -0,0 +1,74 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.userdefinieddatatypes;
+
+
+import net.oneandone.troilus.Field;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class Customer {
+
+    @Field(name = "id")
+    private String id;
+
+    @Field(name = "name")
+    private String name;
+
+    @Field(name = "current_address")
+    private Addr currentAddress;
+    
+    @Field(name = "old_addresses")
+    private ImmutableSet<Addr> oldAddresses;
+    
+    @Field(name = "classification")
+    private ImmutableMap<Classifier, Score> classification;
+    
+    
+    @SuppressWarnings("unused")
+    private Customer() { }
+
+    
+    public Customer(String id, String name, Addr currentAddress, ImmutableSet<Addr> oldAddresses, ImmutableMap<Classifier, Score> classification) {
+        this.id = id;
+        this.name = name;
+        this.currentAddress = currentAddress;
+        this.oldAddresses = oldAddresses;
+        this.classification = classification;
+    }
+    
+    
+    public String getId() {
+        return id;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public Addr getCurrentAddress() {
+        return currentAddress;
+    }
+    
+    public ImmutableSet<Addr> getOldAddresses() {
+        return oldAddresses;
+    }
+    
+    public ImmutableMap<Classifier, Score> getClassification() {
+        return classification;
+    }
+}
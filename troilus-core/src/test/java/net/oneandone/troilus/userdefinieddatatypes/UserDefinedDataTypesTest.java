@@ -121,6 +121,35 @@ public class UserDefinedDataTypesTest {
         Assert.assertTrue(record.getValue(ColumnName.defineMap("classification", Classifier.class, Score.class)).isEmpty());
         Assert.assertTrue(record.getValue(ColumnName.defineMap("classification", Integer.class, Score.class)).isEmpty());
     }               
+    
+    
+    @Test
+    public void testEntityRoundTrip() throws Exception {
+        Dao customersDao = new DaoImpl(cassandra.getSession(), CustomersTable.TABLE)
+                                     .withConsistency(ConsistencyLevel.LOCAL_QUORUM);
+        
+        // the udt encoders are created by the first write and reused by the subsequent ones  
+        for (int i = 0; i < 3; i++) {
+            customersDao.writeEntity(new Customer("entity" + i, 
+                                                  "paul" + i, 
+                                                  new Addr(ImmutableList.of(new Addressline("brauerstrasse " + i)), 76336, ImmutableMap.of("a1", new Addressline("alias" + i))),
+                                                  ImmutableSet.of(new Addr(ImmutableList.of(new Addressline("frankfurter ring " + i)), 80445, ImmutableMap.<String, Addressline>of())),
+                                                  ImmutableMap.of(new Classifier("reliability"), new Score(i))))
+                        .execute();
+        }
+        
+        for (int i = 0; i < 3; i++) {
+            Customer customer = customersDao.readWithKey(CustomersTable.ID, "entity" + i)
+                                            .asEntity(Customer.class)
+                                            .execute()
+                                            .get();
+            
+            Assert.assertEquals("paul" + i, customer.getName());
+            Assert.assertEquals("brauerstrasse " + i, customer.getCurrentAddress().getLines().get(0).getLine());
+            Assert.assertEquals((Integer) 76336, customer.getCurrentAddress().getZipCode());
+            Assert.assertEquals("alias" + i, customer.getCurrentAddress().getAliases().get("a1").getLine());
+            Assert.assertEquals("frankfurter ring " + i, customer.getOldAddresses().iterator().next().getLines().get(0).getLine());
+            Assert.assertEquals((Integer) i, customer.getClassification().get(new Classifier("reliability")).getScore());
+        }
+    }
 }
-
-
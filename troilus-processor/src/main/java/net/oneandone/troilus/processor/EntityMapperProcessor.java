@@ -0,0 +1,533 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.processor;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+
+
+
+
+/**
+ * Annotation processor which generates a {@code net.oneandone.troilus.EntityMapper} for each class 
+ * with mapped fields ({@code @net.oneandone.troilus.Field}, {@code @javax.persistence.Column} or 
+ * {@code @com.datastax.driver.mapping.annotations.Field}). The generated mappers will be registered 
+ * as service provider and used by Troilus instead of the runtime reflection based mapping.
+ *  
+ * The generated code accesses the fields directly. For this reason mappers will be generated for 
+ * classes only, which fields are accessible within the package of the class (no private fields). 
+ * Other classes will be mapped by reflection at runtime.  
+ */
+@SupportedAnnotationTypes({ EntityMapperProcessor.FIELD_ANNOTATION, EntityMapperProcessor.JEE_COLUMN_ANNOTATION, EntityMapperProcessor.CASSANDRA_MAPPER_FIELD_ANNOTATION })
+public class EntityMapperProcessor extends AbstractProcessor {
+    
+    static final String FIELD_ANNOTATION = "net.oneandone.troilus.Field";
+    static final String JEE_COLUMN_ANNOTATION = "javax.persistence.Column";
+    static final String CASSANDRA_MAPPER_FIELD_ANNOTATION = "com.datastax.driver.mapping.annotations.Field";
+    
+    private static final String ENTITY_MAPPER_INTERFACE = "net.oneandone.troilus.EntityMapper";
+    private static final String MAPPER_SUFFIX = "_EntityMapper";
+    private static final String SERVICE_FILE = "META-INF/services/" + ENTITY_MAPPER_INTERFACE;
+    
+    private final Set<String> processedEntities = new HashSet<String>();
+    private final List<String> generatedMappers = new ArrayList<String>();
+    
+    
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+    
+    
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            
+        } else {
+            for (TypeElement annotation : annotations) {
+                for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                    if ((element.getKind() == ElementKind.FIELD) && (element.getEnclosingElement() instanceof TypeElement)) {
+                        final TypeElement entityType = (TypeElement) element.getEnclosingElement();
+                        if (processedEntities.add(entityType.getQualifiedName().toString())) {
+                            process(entityType);
+                        }
+                    }
+                }
+            }
+        }
+        
+        // other processors may be interested in the annotations as well
+        return false;
+    }
+    
+    
+    private void process(TypeElement entityType) {
+        try {
+            final EntityModel model = EntityModel.of(processingEnv, entityType);
+            writeMapper(model);
+            generatedMappers.add(model.getMapperQualifiedName());
+            
+        } catch (UnsupportedEntityException use) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, 
+                                                     "no entity mapper generated for " + entityType.getQualifiedName() + " (" + use.getMessage() + "). The entity will be mapped by reflection at runtime", 
+                                                     entityType);
+        } catch (IOException ioe) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "could not write entity mapper " + ioe.getMessage(), entityType);
+        }
+    }
+    
+    
+    private void writeMapper(EntityModel model) throws IOException {
+        final JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(model.getMapperQualifiedName(), model.getEntityType());
+        try (Writer writer = sourceFile.openWriter()) {
+            writer.write(model.toSource());
+        }
+    }
+    
+    
+    private void writeServiceFile() {
+        if (generatedMappers.isEmpty()) {
+            return;
+        }
+        
+        // on incremental builds only the changed entities are processed. The mappers registered 
+        // by former builds have to be kept 
+        final Set<String> mappers = new LinkedHashSet<String>(readServiceFile());
+        mappers.addAll(generatedMappers);
+        
+        try {
+            final FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = serviceFile.openWriter()) {
+                for (String mapper : mappers) {
+                    writer.write(mapper);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException ioe) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "could not write service file " + ioe.getMessage());
+        }
+    }
+    
+    
+    private List<String> readServiceFile() {
+        final List<String> mappers = new ArrayList<String>();
+        
+        try {
+            final FileObject serviceFile = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(serviceFile.openReader(true))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final int commentIdx = line.indexOf('#');
+                    final String mapper = ((commentIdx < 0) ? line : line.substring(0, commentIdx)).trim();
+                    if (!mapper.isEmpty()) {
+                        mappers.add(mapper);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException ignore) {
+            // no service file written by a former build 
+        }
+        
+        return mappers;
+    }
+    
+    
+    
+    
+    private static final class UnsupportedEntityException extends Exception {
+        private static final long serialVersionUID = -3364476212283713577L;
+
+        public UnsupportedEntityException(String reason) {
+            super(reason);
+        }
+    }
+    
+    
+    
+    private static final class Property {
+        private final String name;
+        private final VariableElement field;
+        private final TypeElement declaringType;
+        
+        Property(String name, VariableElement field) {
+            this.name = name;
+            this.field = field;
+            this.declaringType = (TypeElement) field.getEnclosingElement();
+        }
+    }
+    
+    
+    
+    private static final class EntityModel {
+        private final TypeElement entityType;
+        private final String packagename;
+        private final String mapperSimpleName;
+        private final boolean isInstantiable;
+        private final List<Property> properties;
+        private final javax.lang.model.util.Types types;
+        
+        private EntityModel(TypeElement entityType, String packagename, String mapperSimpleName, boolean isInstantiable, List<Property> properties, javax.lang.model.util.Types types) {
+            this.entityType = entityType;
+            this.packagename = packagename;
+            this.mapperSimpleName = mapperSimpleName;
+            this.isInstantiable = isInstantiable;
+            this.properties = properties;
+            this.types = types;
+        }
+        
+        
+        static EntityModel of(javax.annotation.processing.ProcessingEnvironment env, TypeElement entityType) throws UnsupportedEntityException {
+            final PackageElement pkg = env.getElementUtils().getPackageOf(entityType);
+            final String packagename = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+            
+            if (entityType.getKind() != ElementKind.CLASS) {
+                throw new UnsupportedEntityException("entity is not a class");
+            }
+            
+            if (!entityType.getTypeParameters().isEmpty()) {
+                throw new UnsupportedEntityException("generic entity classes are not supported");
+            }
+            
+            // nested classes have to be static and accessible 
+            String mapperSimpleName = entityType.getSimpleName().toString();
+            for (Element type = entityType; type instanceof TypeElement; type = type.getEnclosingElement()) {
+                if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                    throw new UnsupportedEntityException("entity class is not accessible");
+                }
+                
+                if (((TypeElement) type).getNestingKind() == NestingKind.MEMBER) {
+                    if (!type.getModifiers().contains(Modifier.STATIC)) {
+                        throw new UnsupportedEntityException("inner classes are not supported");
+                    }
+                    mapperSimpleName = type.getEnclosingElement().getSimpleName() + "_" + mapperSimpleName;
+                    
+                } else if (((TypeElement) type).getNestingKind() != NestingKind.TOP_LEVEL) {
+                    throw new UnsupportedEntityException("local or anonymous classes are not supported");
+                }
+            }
+            mapperSimpleName = mapperSimpleName + MAPPER_SUFFIX; 
+            
+            
+            // the properties of the super classes overrule the properties of the sub class (see BeanMapper). 
+            final Map<String, Property> properties = new LinkedHashMap<String, Property>();
+            for (TypeElement type = entityType; type != null; type = superclassOf(type)) {
+                final List<VariableElement> fields = ElementFilter.fieldsIn(type.getEnclosedElements());
+                putProperties(env, properties, fields, CASSANDRA_MAPPER_FIELD_ANNOTATION);
+                putProperties(env, properties, fields, FIELD_ANNOTATION);
+                putProperties(env, properties, fields, JEE_COLUMN_ANNOTATION);
+            }
+            
+            for (Property property : properties.values()) {
+                final Set<Modifier> modifiers = property.field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC)) {
+                    throw new UnsupportedEntityException("static field " + property.field.getSimpleName() + " is not supported");
+                }
+                
+                if (!isAccessible(env, property.declaringType, modifiers, packagename) || !isAccessible(env, property.declaringType.asType(), packagename)) {
+                    throw new UnsupportedEntityException("field " + property.field.getSimpleName() + " is not accessible");
+                }
+                
+                if (!isAccessible(env, env.getTypeUtils().erasure(property.field.asType()), packagename)) {
+                    throw new UnsupportedEntityException("type of field " + property.field.getSimpleName() + " is not accessible");
+                }
+                
+                // the type arguments are referred by the generated code as well
+                if (property.field.asType().getKind() == TypeKind.DECLARED) {
+                    for (TypeMirror typeArgument : ((DeclaredType) property.field.asType()).getTypeArguments()) {
+                        if ((typeArgument.getKind() != TypeKind.WILDCARD) && (typeArgument.getKind() != TypeKind.TYPEVAR) && 
+                            !isAccessible(env, env.getTypeUtils().erasure(typeArgument), packagename)) {
+                            throw new UnsupportedEntityException("type argument of field " + property.field.getSimpleName() + " is not accessible");
+                        }
+                    }
+                }
+            }
+            
+            return new EntityModel(entityType, packagename, mapperSimpleName, isInstantiable(entityType), Collections.unmodifiableList(new ArrayList<>(properties.values())), env.getTypeUtils());
+        }
+        
+        
+        private static void putProperties(javax.annotation.processing.ProcessingEnvironment env, Map<String, Property> properties, List<VariableElement> fields, String annotationName) {
+            for (VariableElement field : fields) {
+                for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+                    if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                        final String name = readName(env, annotation);
+                        if (name != null) {
+                            properties.remove(name);
+                            properties.put(name, new Property(name, field));
+                        }
+                    }
+                }
+            }
+        }
+        
+        private static String readName(javax.annotation.processing.ProcessingEnvironment env, AnnotationMirror annotation) {
+            for (Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : env.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+                if (entry.getKey().getSimpleName().toString().equalsIgnoreCase("name")) {
+                    return (String) entry.getValue().getValue();
+                }
+            }
+            return null;
+        }
+        
+        private static TypeElement superclassOf(TypeElement type) {
+            final TypeMirror superclass = type.getSuperclass();
+            if (superclass.getKind() != TypeKind.DECLARED) {
+                return null;
+            }
+            
+            final TypeElement superType = (TypeElement) ((DeclaredType) superclass).asElement();
+            return superType.getQualifiedName().contentEquals("java.lang.Object") ? null : superType;
+        }
+        
+        private static boolean isInstantiable(TypeElement entityType) {
+            if (entityType.getModifiers().contains(Modifier.ABSTRACT)) {
+                return false;
+            }
+            
+            // the implicit default constructor is included
+            for (ExecutableElement constructor : ElementFilter.constructorsIn(entityType.getEnclosedElements())) {
+                if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        private static boolean isAccessible(javax.annotation.processing.ProcessingEnvironment env, Element declaringElement, Set<Modifier> modifiers, String packagename) {
+            if (modifiers.contains(Modifier.PUBLIC)) {
+                return true;
+            } else if (modifiers.contains(Modifier.PRIVATE)) {
+                return false;
+            } else {
+                return env.getElementUtils().getPackageOf(declaringElement).getQualifiedName().contentEquals(packagename);
+            }
+        }
+        
+        private static boolean isAccessible(javax.annotation.processing.ProcessingEnvironment env, TypeMirror type, String packagename) {
+            if (type.getKind().isPrimitive()) {
+                return true;
+                
+            } else if (type.getKind() == TypeKind.ARRAY) {
+                return isAccessible(env, ((ArrayType) type).getComponentType(), packagename);
+                
+            } else if (type.getKind() == TypeKind.DECLARED) {
+                for (Element element = ((DeclaredType) type).asElement(); element instanceof TypeElement; element = element.getEnclosingElement()) {
+                    if (!isAccessible(env, element, element.getModifiers(), packagename)) {
+                        return false;
+                    }
+                }
+                return true;
+                
+            } else {
+                return false;
+            }
+        }
+        
+        
+        
+        TypeElement getEntityType() {
+            return entityType;
+        }
+        
+        String getMapperQualifiedName() {
+            return packagename.isEmpty() ? mapperSimpleName : packagename + "." + mapperSimpleName;
+        }
+        
+        
+        String toSource() {
+            final String entityName = entityType.getQualifiedName().toString();
+            final StringBuilder sb = new StringBuilder();
+            
+            if (!packagename.isEmpty()) {
+                sb.append("package ").append(packagename).append(";\n\n");
+            }
+            
+            sb.append("/**\n")
+              .append(" * entity mapper of {@link ").append(entityName).append("} generated by ").append(EntityMapperProcessor.class.getName()).append("\n")
+              .append(" */\n")
+              .append("public final class ").append(mapperSimpleName).append(" implements ").append(ENTITY_MAPPER_INTERFACE).append("<").append(entityName).append("> {\n\n");
+            
+            sb.append("    @Override\n")
+              .append("    public Class<").append(entityName).append("> getEntityClass() {\n")
+              .append("        return ").append(entityName).append(".class;\n")
+              .append("    }\n\n");
+            
+            sb.append("    @Override\n")
+              .append("    public int getPropertyCount() {\n")
+              .append("        return ").append(properties.size()).append(";\n")
+              .append("    }\n\n");
+            
+            sb.append("    @Override\n")
+              .append("    public String getPropertyName(int idx) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                sb.append("        case ").append(idx).append(": return \"").append(escape(properties.get(idx).name)).append("\";\n");
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("    @Override\n")
+              .append("    public Class<?> getDeclaringClass(int idx) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                sb.append("        case ").append(idx).append(": return ").append(properties.get(idx).declaringType.getQualifiedName()).append(".class;\n");
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("    @Override\n")
+              .append("    public String getFieldName(int idx) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                sb.append("        case ").append(idx).append(": return \"").append(properties.get(idx).field.getSimpleName()).append("\";\n");
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("    @Override\n")
+              .append("    public Class<?> getPropertyType(int idx) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                sb.append("        case ").append(idx).append(": return ").append(toClassLiteral(properties.get(idx).field.asType())).append(";\n");
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("    @Override\n")
+              .append("    public Class<?>[] getPropertyTypeArguments(int idx) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                sb.append("        case ").append(idx).append(": return new Class<?>[] { ");
+                final TypeMirror type = properties.get(idx).field.asType();
+                if (type.getKind() == TypeKind.DECLARED) {
+                    String separator = "";
+                    for (TypeMirror typeArgument : ((DeclaredType) type).getTypeArguments()) {
+                        sb.append(separator).append(toClassLiteral(typeArgument));
+                        separator = ", ";
+                    }
+                }
+                sb.append(" };\n");
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("    @Override\n")
+              .append("    public boolean isWritable(int idx) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                sb.append("        case ").append(idx).append(": return ").append(!properties.get(idx).field.getModifiers().contains(Modifier.FINAL)).append(";\n");
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("    @Override\n")
+              .append("    public ").append(entityName).append(" newInstance() {\n");
+            if (isInstantiable) {
+                sb.append("        return new ").append(entityName).append("();\n");
+            } else {
+                sb.append("        throw new UnsupportedOperationException(\"").append(entityName).append(" does not provide an accessible no-args constructor\");\n");
+            }
+            sb.append("    }\n\n");
+            
+            sb.append("    @Override\n")
+              .append("    public Object read(").append(entityName).append(" entity, int idx) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                final Property property = properties.get(idx);
+                sb.append("        case ").append(idx).append(": return ((").append(property.declaringType.getQualifiedName()).append(") entity).").append(property.field.getSimpleName()).append(";\n");
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("    @Override\n")
+              .append("    public void write(").append(entityName).append(" entity, int idx, Object value) {\n")
+              .append("        switch (idx) {\n");
+            for (int idx = 0; idx < properties.size(); idx++) {
+                final Property property = properties.get(idx);
+                if (property.field.getModifiers().contains(Modifier.FINAL)) {
+                    sb.append("        case ").append(idx).append(": throw new UnsupportedOperationException(\"field ").append(property.field.getSimpleName()).append(" is final\");\n");
+                } else {
+                    sb.append("        case ").append(idx).append(": ((").append(property.declaringType.getQualifiedName()).append(") entity).").append(property.field.getSimpleName())
+                      .append(" = (").append(toCastType(property.field.asType())).append(") value; return;\n");
+                }
+            }
+            appendDefaultCase(sb);
+            
+            sb.append("}\n");
+            return sb.toString();
+        }
+        
+        private String toCastType(TypeMirror type) {
+            if (type.getKind().isPrimitive()) {
+                return types.boxedClass(types.getPrimitiveType(type.getKind())).getQualifiedName().toString();
+            } else {
+                return types.erasure(type).toString();
+            }
+        }
+        
+        private String toClassLiteral(TypeMirror type) {
+            switch (type.getKind()) {
+            case WILDCARD:
+            case TYPEVAR:
+                // bounded or not, the type argument is treated as Object like the reflection based mapping does 
+                return "Object.class";
+                
+            default:
+                return types.erasure(type).toString() + ".class";
+            }
+        }
+        
+        private static void appendDefaultCase(StringBuilder sb) {
+            sb.append("        default: throw new IndexOutOfBoundsException(\"property index \" + idx);\n")
+              .append("        }\n")
+              .append("    }\n\n");
+        }
+        
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"");
+        }
+    }
+}
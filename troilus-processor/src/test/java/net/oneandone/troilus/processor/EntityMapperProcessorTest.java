@@ -0,0 +1,212 @@
+/*
+ * Copyright 1&1 Internet AG, https://github.com/1and1/
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.oneandone.troilus.processor;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import net.oneandone.troilus.EntityMapper;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableSet;
+
+
+
+public class EntityMapperProcessorTest {
+    
+    private static File classesDir;
+    private static DiagnosticCollector<JavaFileObject> diagnostics;
+    
+    
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        final File baseDir = Files.createTempDirectory("processortest").toFile();
+        final File sourceDir = new File(baseDir, "src");
+        classesDir = new File(baseDir, "classes");
+        classesDir.mkdirs();
+        
+        final File itemSource = writeSource(sourceDir, "example/Item.java", 
+                                            "package example;",
+                                            "import java.util.Map;",
+                                            "import java.util.Set;",
+                                            "import com.google.common.base.Optional;",
+                                            "import net.oneandone.troilus.Field;",
+                                            "public class Item {",
+                                            "    @Field(name = \"id\") String id;",
+                                            "    @Field(name = \"tags\") Set<String> tags;",
+                                            "    @Field(name = \"ratings\") Map<String, Integer> ratings;",
+                                            "    @Field(name = \"quantity\") Optional<Long> quantity;",
+                                            "    @Field(name = \"version\") final int version = 1;",
+                                            "    @Field(name = \"flag\") boolean flag;",
+                                            "}");
+        
+        final File hiddenSource = writeSource(sourceDir, "example/Hidden.java", 
+                                              "package example;",
+                                              "import net.oneandone.troilus.Field;",
+                                              "public class Hidden {",
+                                              "    @Field(name = \"id\") private String id;",
+                                              "}");
+        
+        diagnostics = new DiagnosticCollector<>();
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), compile(diagnostics, itemSource, hiddenSource));
+    }
+    
+    private static boolean compile(DiagnosticCollector<JavaFileObject> diagnostics, File... sources) throws IOException {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            final List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"), 
+                                                       "-d", classesDir.getAbsolutePath(), 
+                                                       "-s", classesDir.getAbsolutePath());
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null, fileManager.getJavaFileObjects(sources));
+            task.setProcessors(Arrays.asList(new EntityMapperProcessor()));
+            return task.call();
+        }
+    }
+    
+    private static File writeSource(File sourceDir, String filename, String... lines) throws IOException {
+        final File file = new File(sourceDir, filename);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+    
+
+    
+    @Test
+    public void testServiceFile() throws Exception {
+        final File serviceFile = new File(classesDir, "META-INF/services/net.oneandone.troilus.EntityMapper");
+        Assert.assertEquals(Arrays.asList("example.Item_EntityMapper"), Files.readAllLines(serviceFile.toPath(), StandardCharsets.UTF_8));
+        
+        // the private field can not be accessed by generated code 
+        Assert.assertFalse(new File(classesDir, "example/Hidden_EntityMapper.class").exists());
+        boolean isNoted = false;
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if ((diagnostic.getKind() == Diagnostic.Kind.NOTE) && diagnostic.getMessage(null).contains("example.Hidden")) {
+                isNoted = true;
+            }
+        }
+        Assert.assertTrue(isNoted);
+    }
+    
+    
+    @Test
+    public void testIncrementalServiceFile() throws Exception {
+        final File baseDir = Files.createTempDirectory("processortest").toFile();
+        final File sourceDir = new File(baseDir, "src");
+        final File orderSource = writeSource(sourceDir, "example/Order.java", 
+                                             "package example;",
+                                             "import net.oneandone.troilus.Field;",
+                                             "public class Order {",
+                                             "    @Field(name = \"id\") String id;",
+                                             "}");
+        
+        // only the changed entity is compiled. The mapper registered before has to be kept  
+        final File serviceFile = new File(classesDir, "META-INF/services/net.oneandone.troilus.EntityMapper");
+        final List<String> mappers = Files.readAllLines(serviceFile.toPath(), StandardCharsets.UTF_8); 
+        try {
+            final DiagnosticCollector<JavaFileObject> orderDiagnostics = new DiagnosticCollector<>();
+            final boolean isCompiled = compile(orderDiagnostics, orderSource);
+            Assert.assertTrue(orderDiagnostics.getDiagnostics().toString(), isCompiled);
+            Assert.assertEquals(Arrays.asList("example.Item_EntityMapper", "example.Order_EntityMapper"), Files.readAllLines(serviceFile.toPath(), StandardCharsets.UTF_8));
+        } finally {
+            Files.write(serviceFile.toPath(), mappers, StandardCharsets.UTF_8);
+        }
+    }
+    
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testGeneratedMapper() throws Exception {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { classesDir.toURI().toURL() }, getClass().getClassLoader())) {
+            
+            // the mapper is loaded by the service loader the same way as the BeanMapper does  
+            EntityMapper<Object> mapper = null;
+            for (EntityMapper<?> entityMapper : ServiceLoader.load(EntityMapper.class, classLoader)) {
+                mapper = (EntityMapper<Object>) entityMapper;
+            }
+            Assert.assertNotNull(mapper);
+            Assert.assertEquals("example.Item", mapper.getEntityClass().getName());
+            Assert.assertEquals(6, mapper.getPropertyCount());
+            
+            Assert.assertEquals("id", mapper.getPropertyName(0));
+            Assert.assertEquals("id", mapper.getFieldName(0));
+            Assert.assertEquals(mapper.getEntityClass(), mapper.getDeclaringClass(0));
+            Assert.assertEquals(String.class, mapper.getPropertyType(0));
+            Assert.assertEquals(0, mapper.getPropertyTypeArguments(0).length);
+            Assert.assertTrue(mapper.isWritable(0));
+            
+            Assert.assertEquals(Set.class, mapper.getPropertyType(1));
+            Assert.assertArrayEquals(new Class<?>[] { String.class }, mapper.getPropertyTypeArguments(1));
+            
+            Assert.assertEquals(Map.class, mapper.getPropertyType(2));
+            Assert.assertArrayEquals(new Class<?>[] { String.class, Integer.class }, mapper.getPropertyTypeArguments(2));
+            
+            Assert.assertEquals(Optional.class, mapper.getPropertyType(3));
+            Assert.assertArrayEquals(new Class<?>[] { Long.class }, mapper.getPropertyTypeArguments(3));
+            
+            Assert.assertEquals(int.class, mapper.getPropertyType(4));
+            Assert.assertFalse(mapper.isWritable(4));
+            
+            Assert.assertEquals(boolean.class, mapper.getPropertyType(5));
+            Assert.assertTrue(mapper.isWritable(5));
+            
+            
+            Object item = mapper.newInstance();
+            mapper.write(item, 0, "item1");
+            mapper.write(item, 1, ImmutableSet.of("red"));
+            mapper.write(item, 3, Optional.of(5L));
+            mapper.write(item, 5, true);
+            
+            Assert.assertEquals("item1", mapper.read(item, 0));
+            Assert.assertEquals(ImmutableSet.of("red"), mapper.read(item, 1));
+            Assert.assertNull(mapper.read(item, 2));
+            Assert.assertEquals(Optional.of(5L), mapper.read(item, 3));
+            Assert.assertEquals(1, mapper.read(item, 4));
+            Assert.assertEquals(true, mapper.read(item, 5));
+            
+            try {
+                mapper.write(item, 4, 2);
+                Assert.fail("UnsupportedOperationException expected");
+            } catch (UnsupportedOperationException expected) { }
+            
+            try {
+                mapper.read(item, 6);
+                Assert.fail("IndexOutOfBoundsException expected");
+            } catch (IndexOutOfBoundsException expected) { }
+        }
+    }
+}